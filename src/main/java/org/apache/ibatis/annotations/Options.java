@@ -156,6 +156,19 @@ public @interface Options {
    */
   String resultSets() default "";
 
+  /**
+   * 语句读写的表名,多个用,分隔开来
+   * 声明后二级缓存按表版本失效:更新语句提交时只使依赖这些表的缓存条目失效,不再清空整个命名空间缓存.
+   * Returns table names that this statement reads or writes.
+   * <p>
+   * If you specify multiple table, please separate using comma(',').
+   * </p>
+   *
+   * @return table names that separate with comma(',')
+   * @since 3.5.6
+   */
+  String cacheTables() default "";
+
   /**
    * 数据库厂商id
    *
@@ -132,7 +132,8 @@ public class MapperRegistry {
    */
   public void addMappers(String packageName, Class<?> superType) {
     ResolverUtil<Class<?>> resolverUtil = new ResolverUtil<>();
-    resolverUtil.find(new ResolverUtil.IsA(superType), packageName);  //通过包名查找指定接口类型的子类
+    //只有接口才会注册为mapper,其余类根据文件头排除,无需加载
+    resolverUtil.find(new ResolverUtil.IsInterface(new ResolverUtil.IsA(superType)), packageName);  //通过包名查找指定接口类型的子类
     Set<Class<? extends Class<?>>> mapperSet = resolverUtil.getClasses();
     for (Class<?> mapperClass : mapperSet) {
       addMapper(mapperClass); //获取所有class遍历注册
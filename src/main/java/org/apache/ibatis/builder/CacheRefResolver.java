@@ -42,4 +42,13 @@ public class CacheRefResolver {
   public Cache resolveCacheRef() {
     return assistant.useCacheRef(cacheRefNamespace);
   }
+
+  /**
+   * @return 所属命名空间
+   * @since 3.5.6
+   */
+  public String getNamespace() {
+    return assistant.getCurrentNamespace();
+  }
+
 }
@@ -21,20 +21,75 @@ package org.apache.ibatis.builder;
 public class IncompleteElementException extends BuilderException {
   private static final long serialVersionUID = -3697292286890900315L;
 
+  /**
+   * 缺少的元素(见{@link #resultMapElement(String)},{@link #cacheElement(String)},{@link #cacheRefElement(String)}),未知时为null
+   */
+  private final String missingElement;
+
   public IncompleteElementException() {
     super();
+    this.missingElement = null;
+  }
+
+  /**
+   * @param message        异常信息
+   * @param missingElement 缺少的元素,用于在该元素解析完成后再解析依赖它的元素
+   * @param cause          原因(可为空)
+   * @since 3.5.6
+   */
+  public IncompleteElementException(String message, String missingElement, Throwable cause) {
+    super(message, cause);
+    this.missingElement = missingElement;
   }
 
   public IncompleteElementException(String message, Throwable cause) {
     super(message, cause);
+    this.missingElement = null;
   }
 
   public IncompleteElementException(String message) {
     super(message);
+    this.missingElement = null;
   }
 
   public IncompleteElementException(Throwable cause) {
     super(cause);
+    this.missingElement = null;
+  }
+
+  /**
+   * @return 缺少的元素,未知时为null
+   * @since 3.5.6
+   */
+  public String getMissingElement() {
+    return missingElement;
+  }
+
+  /**
+   * @param id resultMap的完整Id
+   * @return resultMap对应的元素名
+   * @since 3.5.6
+   */
+  public static String resultMapElement(String id) {
+    return "resultMap:" + id;
+  }
+
+  /**
+   * @param namespace 命名空间
+   * @return 命名空间中定义的缓存对应的元素名
+   * @since 3.5.6
+   */
+  public static String cacheElement(String namespace) {
+    return "cache:" + namespace;
+  }
+
+  /**
+   * @param namespace 命名空间
+   * @return 命名空间的缓存引用对应的元素名,缓存引用解析完成后才能添加该命名空间的语句
+   * @since 3.5.6
+   */
+  public static String cacheRefElement(String namespace) {
+    return "cache-ref:" + namespace;
   }
 
 }
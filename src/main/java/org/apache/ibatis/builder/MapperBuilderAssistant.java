@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.executor.ErrorContext;
@@ -121,6 +122,8 @@ public class MapperBuilderAssistant extends BaseBuilder {
       // is it qualified with any namespace yet?
       //如果是跨xml引用的话，那就是用被调用的命名空间.方法名，所以这里判断包含.号就不用在拼接了
       if (base.contains(".")) {
+        // 记录跨命名空间的引用,被引用的mapper重新加载时需要一起重新解析
+        configuration.addNamespaceReference(base.substring(0, base.lastIndexOf('.')), currentNamespace);
         return base;
       }
     } else {
@@ -149,18 +152,21 @@ public class MapperBuilderAssistant extends BaseBuilder {
     if (namespace == null) {
       throw new BuilderException("cache-ref element requires a namespace attribute.");
     }
+    configuration.addNamespaceReference(namespace, currentNamespace);
     try {
       unresolvedCacheRef = true;
       Cache cache = configuration.getCache(namespace);
       if (cache == null) {
         //这段代码是永远不会执行到的，忽略它吧
-        throw new IncompleteElementException("No cache for namespace '" + namespace + "' could be found.");
+        throw new IncompleteElementException("No cache for namespace '" + namespace + "' could be found.",
+            IncompleteElementException.cacheElement(namespace), null);
       }
       currentCache = cache;
       unresolvedCacheRef = false;
       return cache;
     } catch (IllegalArgumentException e) {
-      throw new IncompleteElementException("No cache for namespace '" + namespace + "' could be found.", e);
+      throw new IncompleteElementException("No cache for namespace '" + namespace + "' could be found.",
+          IncompleteElementException.cacheElement(namespace), e);
     }
   }
 
@@ -183,6 +189,7 @@ public class MapperBuilderAssistant extends BaseBuilder {
                            boolean readWrite,
                            boolean blocking,
                            Properties props) {
+    CacheStatistics statistics = configuration.isCacheStatisticsEnabled() ? new CacheStatistics(currentNamespace) : null;
     Cache cache = new CacheBuilder(currentNamespace)
       .implementation(valueOrDefault(typeClass, PerpetualCache.class))
       .addDecorator(valueOrDefault(evictionClass, LruCache.class))
@@ -191,8 +198,16 @@ public class MapperBuilderAssistant extends BaseBuilder {
       .readWrite(readWrite)
       .blocking(blocking)
       .properties(props)
+      .statistics(statistics)
       .build();
     configuration.addCache(cache);
+    if (typeClass != null && !PerpetualCache.class.equals(typeClass)) {
+      //自定义缓存可能被多个JVM共享,本地的表版本无法使其条目失效
+      configuration.getTableVersions().exclude(cache.getId());
+    }
+    if (statistics != null) {
+      configuration.addCacheStatistics(statistics);
+    }
     currentCache = cache;
     return cache;
   }
@@ -243,7 +258,8 @@ public class MapperBuilderAssistant extends BaseBuilder {
     if (extend != null) {
       //没有找到就会失败了
       if (!configuration.hasResultMap(extend)) {
-        throw new IncompleteElementException("Could not find a parent resultmap with id '" + extend + "'");
+        throw new IncompleteElementException("Could not find a parent resultmap with id '" + extend + "'",
+            IncompleteElementException.resultMapElement(extend), null);
       }
       ResultMap resultMap = configuration.getResultMap(extend);
       //创建一个继承映射
@@ -324,10 +340,11 @@ public class MapperBuilderAssistant extends BaseBuilder {
       String keyColumn,
       String databaseId,
       LanguageDriver lang,
-      String resultSets) {
+      String resultSets,
+      String cacheTables) {
     //当存在缓存引用未解析完成时，不可添加MappedStatement
     if (unresolvedCacheRef) {
-      throw new IncompleteElementException("Cache-ref not yet resolved");
+      throw new IncompleteElementException("Cache-ref not yet resolved", IncompleteElementException.cacheRefElement(currentNamespace), null);
     }
 
     id = applyCurrentNamespace(id, false);
@@ -345,6 +362,7 @@ public class MapperBuilderAssistant extends BaseBuilder {
         .lang(lang)
         .resultOrdered(resultOrdered)
         .resultSets(resultSets)
+        .cacheTables(cacheTables) //语句读写的表(二级缓存按表版本失效)
         .resultMaps(getStatementResultMaps(resultMap, resultType, id))
         .resultSetType(resultSetType)
         .flushCacheRequired(valueOrDefault(flushCache, !isSelect))  //是否刷新缓存
@@ -361,6 +379,34 @@ public class MapperBuilderAssistant extends BaseBuilder {
     return statement;
   }
 
+  public MappedStatement addMappedStatement(
+      String id,
+      SqlSource sqlSource,
+      StatementType statementType,
+      SqlCommandType sqlCommandType,
+      Integer fetchSize,
+      Integer timeout,
+      String parameterMap,
+      Class<?> parameterType,
+      String resultMap,
+      Class<?> resultType,
+      ResultSetType resultSetType,
+      boolean flushCache,
+      boolean useCache,
+      boolean resultOrdered,
+      KeyGenerator keyGenerator,
+      String keyProperty,
+      String keyColumn,
+      String databaseId,
+      LanguageDriver lang,
+      String resultSets) {
+    return addMappedStatement(
+      id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+      parameterMap, parameterType, resultMap, resultType, resultSetType,
+      flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+      keyColumn, databaseId, lang, resultSets, null);
+  }
+
   /**
    * Backward compatibility signature 'addMappedStatement'.
    *
@@ -466,7 +512,8 @@ public class MapperBuilderAssistant extends BaseBuilder {
         try {
           resultMaps.add(configuration.getResultMap(resultMapName.trim()));
         } catch (IllegalArgumentException e) {
-          throw new IncompleteElementException("Could not find result map '" + resultMapName + "' referenced from '" + statementId + "'", e);
+          throw new IncompleteElementException("Could not find result map '" + resultMapName + "' referenced from '" + statementId + "'",
+              IncompleteElementException.resultMapElement(resultMapName.trim()), e);
         }
       }
     } else if (resultType != null) {
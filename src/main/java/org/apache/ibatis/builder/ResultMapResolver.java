@@ -47,4 +47,12 @@ public class ResultMapResolver {
     return assistant.addResultMap(this.id, this.type, this.extend, this.discriminator, this.resultMappings, this.autoMapping);
   }
 
+  /**
+   * @return 所属命名空间
+   * @since 3.5.6
+   */
+  public String getNamespace() {
+    return assistant.getCurrentNamespace();
+  }
+
 }
@@ -112,7 +112,20 @@ public class MapperAnnotationBuilder {
     this.type = type;
   }
 
+  /**
+   * @return 当前命名空间(mapper接口全类名)
+   * @since 3.5.6
+   */
+  public String getNamespace() {
+    return type.getName();
+  }
+
   public void parse() {
+    //在注册锁内解析,运行期注册mapper时查找语句的线程不会读到解析了一半的配置
+    configuration.registerMappings(this::parseType);
+  }
+
+  private void parseType() {
     String resource = type.toString();  //interface xxxx.xxxx.xxxx
     if (!configuration.isResourceLoaded(resource)) {
       loadXmlResource();  //尝试加载按全类名放置的xml资源
@@ -435,7 +448,8 @@ public class MapperAnnotationBuilder {
           statementAnnotation.getDatabaseId(),
           languageDriver,
           // ResultSets
-          options != null ? nullOrEmpty(options.resultSets()) : null);
+          options != null ? nullOrEmpty(options.resultSets()) : null,
+          options != null ? nullOrEmpty(options.cacheTables()) : null);
     });
   }
 
@@ -33,4 +33,12 @@ public class MethodResolver {
     annotationBuilder.parseStatement(method);
   }
 
-}
\ No newline at end of file
+  /**
+   * @return 所属命名空间
+   * @since 3.5.6
+   */
+  public String getNamespace() {
+    return annotationBuilder.getNamespace();
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * mapper快照
+ * 记录构建期已解析并校验通过的mapper文件摘要(SHA-256),运行时通过mapperSnapshot配置加载,
+ * 摘要一致的mapper文件不再进行DTD校验,摘要不一致(文件已修改)的仍按原方式校验.
+ * 可通过{@link #main(String[])}在构建期生成:
+ * <pre>
+ * java org.apache.ibatis.builder.xml.MapperSnapshot mybatis-config.xml target/classes/mybatis-snapshot.properties
+ * </pre>
+ *
+ * @since 3.5.6
+ */
+public class MapperSnapshot {
+
+  private final Properties hashes;
+
+  public MapperSnapshot() {
+    this(new Properties());
+  }
+
+  private MapperSnapshot(Properties hashes) {
+    this.hashes = hashes;
+  }
+
+  /**
+   * 从类路径加载快照
+   *
+   * @param resource 快照资源路径
+   * @return 快照
+   * @throws IOException 读取失败
+   */
+  public static MapperSnapshot load(String resource) throws IOException {
+    return new MapperSnapshot(Resources.getResourceAsProperties(resource));
+  }
+
+  /**
+   * 输出快照
+   *
+   * @param outputStream 输出流
+   * @throws IOException 写入失败
+   */
+  public void store(OutputStream outputStream) throws IOException {
+    hashes.store(outputStream, "MyBatis mapper snapshot");
+  }
+
+  /**
+   * 判断mapper文件是否已校验过
+   *
+   * @param location mapper文件位置(resource或url)
+   * @param hash     文件摘要
+   * @return 快照中存在且摘要一致返回true
+   */
+  public boolean isValidated(String location, String hash) {
+    return hash.equals(hashes.getProperty(location));
+  }
+
+  /**
+   * 记录已校验的mapper文件
+   *
+   * @param location mapper文件位置(resource或url)
+   * @param hash     文件摘要
+   */
+  public void addValidated(String location, String hash) {
+    hashes.setProperty(location, hash);
+  }
+
+  public int size() {
+    return hashes.size();
+  }
+
+  /**
+   * 计算文件摘要
+   *
+   * @param content 文件内容
+   * @return SHA-256摘要(十六进制)
+   */
+  public static String hash(byte[] content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+      StringBuilder builder = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return builder.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new BuilderException("SHA-256 algorithm is not available. Cause: " + e, e);
+    }
+  }
+
+  static byte[] readContent(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = inputStream.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * 构建期生成快照
+   * 完整解析配置文件(包括解析所有语句),全部成功后输出mapper文件摘要.
+   *
+   * @param args 配置文件资源路径, 快照输出文件
+   * @throws IOException 读写失败
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Usage: MapperSnapshot <configuration resource> <output file>");
+    }
+    MapperSnapshot snapshot = new MapperSnapshot();
+    try (Reader reader = Resources.getResourceAsReader(args[0])) {
+      XMLConfigBuilder builder = new XMLConfigBuilder(reader);
+      builder.setRecordedMappers(snapshot);
+      builder.parse().getMappedStatements();
+    }
+    try (OutputStream outputStream = new FileOutputStream(args[1])) {
+      snapshot.store(outputStream);
+    }
+  }
+
+}
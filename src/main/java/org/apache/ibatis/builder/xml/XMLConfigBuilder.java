@@ -15,9 +15,13 @@
  */
 package org.apache.ibatis.builder.xml;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.List;
 import java.util.Properties;
+import java.util.stream.IntStream;
 
 import javax.sql.DataSource;
 
@@ -31,6 +35,7 @@ import org.apache.ibatis.io.VFS;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.mapping.DatabaseIdProvider;
 import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.parsing.StaxDocumentBuilder;
 import org.apache.ibatis.parsing.XNode;
 import org.apache.ibatis.parsing.XPathParser;
 import org.apache.ibatis.plugin.Interceptor;
@@ -44,6 +49,7 @@ import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.StatementLogMode;
 import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.type.JdbcType;
 
@@ -69,6 +75,14 @@ public class XMLConfigBuilder extends BaseBuilder {
    * 反射工厂
    */
   private final ReflectorFactory localReflectorFactory = new DefaultReflectorFactory();
+  /**
+   * 构建期生成的mapper快照
+   */
+  private MapperSnapshot mapperSnapshot;
+  /**
+   * 记录本次解析的mapper文件摘要(生成快照时使用)
+   */
+  private MapperSnapshot recordedMappers;
 
   public XMLConfigBuilder(Reader reader) {
     this(reader, null, null);
@@ -345,6 +359,7 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setAggressiveLazyLoading(booleanValueOf(props.getProperty("aggressiveLazyLoading"), false));
     configuration.setMultipleResultSetsEnabled(booleanValueOf(props.getProperty("multipleResultSetsEnabled"), true));
     configuration.setUseColumnLabel(booleanValueOf(props.getProperty("useColumnLabel"), true));
+    configuration.setUseColumnIndex(booleanValueOf(props.getProperty("useColumnIndex"), false));
     configuration.setUseGeneratedKeys(booleanValueOf(props.getProperty("useGeneratedKeys"), false));
     configuration.setDefaultExecutorType(ExecutorType.valueOf(props.getProperty("defaultExecutorType", "SIMPLE")));
     configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
@@ -359,11 +374,27 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setDefaultScriptingLanguage(resolveClass(props.getProperty("defaultScriptingLanguage")));
     configuration.setDefaultEnumTypeHandler(resolveClass(props.getProperty("defaultEnumTypeHandler")));
     configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
+    configuration.setCompactMapResults(booleanValueOf(props.getProperty("compactMapResults"), false));
     configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), true));
     configuration.setReturnInstanceForEmptyRow(booleanValueOf(props.getProperty("returnInstanceForEmptyRow"), false));
     configuration.setLogPrefix(props.getProperty("logPrefix"));
     configuration.setConfigurationFactory(resolveClass(props.getProperty("configurationFactory")));
     configuration.setShrinkWhitespacesInSql(booleanValueOf(props.getProperty("shrinkWhitespacesInSql"), false));
+    configuration.setReflectorWarmUpEnabled(booleanValueOf(props.getProperty("reflectorWarmUpEnabled"), false));
+    configuration.setParallelMapperParsingEnabled(booleanValueOf(props.getProperty("parallelMapperParsingEnabled"), false));
+    configuration.setMapperSnapshot(props.getProperty("mapperSnapshot"));
+    configuration.setLazyStatementBuildingEnabled(booleanValueOf(props.getProperty("lazyStatementBuildingEnabled"), false));
+    configuration.setLazyStatementValidationEnabled(booleanValueOf(props.getProperty("lazyStatementValidationEnabled"), false));
+    configuration.setStreamingMapperParsingEnabled(booleanValueOf(props.getProperty("streamingMapperParsingEnabled"), false));
+    configuration.setSlowQueryThreshold(integerValueOf(props.getProperty("slowQueryThreshold"), null));
+    configuration.setExecutionStatisticsEnabled(booleanValueOf(props.getProperty("executionStatisticsEnabled"), false));
+    configuration.setCacheStatisticsEnabled(booleanValueOf(props.getProperty("cacheStatisticsEnabled"), false));
+    configuration.setCacheStatisticsJmxName(props.getProperty("cacheStatisticsJmxName"));
+    configuration.setStatementLogMode(StatementLogMode.valueOf(props.getProperty("statementLogMode", "PROXY")));
+    configuration.setStatementLogSampleRate(Double.parseDouble(props.getProperty("statementLogSampleRate", "1")));
+    configuration.setStatementLogAsync(booleanValueOf(props.getProperty("statementLogAsync"), false));
+    configuration.setCacheMissCoalescingEnabled(booleanValueOf(props.getProperty("cacheMissCoalescingEnabled"), false));
+    configuration.setCacheMissCoalescingTimeout(integerValueOf(props.getProperty("cacheMissCoalescingTimeout"), 10000));
   }
 
   /**
@@ -513,7 +544,12 @@ public class XMLConfigBuilder extends BaseBuilder {
    * @throws Exception exception
    */
   private void mapperElement(XNode parent) throws Exception {
-    if (parent != null) {
+    if (parent != null && configuration.getMapperSnapshot() != null) {
+      mapperSnapshot = MapperSnapshot.load(configuration.getMapperSnapshot());
+    }
+    if (parent != null && configuration.isParallelMapperParsingEnabled()) {
+      parallelMapperElement(parent);
+    } else if (parent != null) {
       for (XNode child : parent.getChildren()) {
         if ("package".equals(child.getName())) {
           //处理按包注册的 <package name="org.mybatis.builder"/>
@@ -526,14 +562,13 @@ public class XMLConfigBuilder extends BaseBuilder {
           if (resource != null && url == null && mapperClass == null) {
             //<mapper resource="org/mybatis/builder/AuthorMapper.xml"/> 按相对类路径进行注册的
             ErrorContext.instance().resource(resource);
-            InputStream inputStream = Resources.getResourceAsStream(resource);
-            XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments());
+            XMLMapperBuilder mapperParser = new XMLMapperBuilder(createMapperParser(child), configuration, resource, configuration.getSqlFragments());
             mapperParser.parse();
           } else if (resource == null && url != null && mapperClass == null) {
             //<mapper url="file:///var/mappers/AuthorMapper.xml"/> 按资源定位符进行注册的
             ErrorContext.instance().resource(url);
-            InputStream inputStream = Resources.getUrlAsStream(url);
-            XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, url, configuration.getSqlFragments());
+            configuration.addUrlResource(url);
+            XMLMapperBuilder mapperParser = new XMLMapperBuilder(createMapperParser(child), configuration, url, configuration.getSqlFragments());
             mapperParser.parse();
           } else if (resource == null && url == null && mapperClass != null) {
             //<mapper class="org.mybatis.builder.AuthorMapper"/> 按class进行注册的
@@ -547,6 +582,131 @@ public class XMLConfigBuilder extends BaseBuilder {
     }
   }
 
+  /**
+   * 并行解析<mappers></mappers> 节点
+   * 先并行读取并校验所有resource/url指定的mapper文件,再按声明顺序合并到配置中,
+   * 最后统一解析引用了后续mapper的未完成元素.
+   *
+   * @param parent mappers节点
+   * @throws Exception exception
+   */
+  private void parallelMapperElement(XNode parent) throws Exception {
+    List<XNode> children = parent.getChildren();
+    XPathParser[] parsers = new XPathParser[children.size()];
+    IntStream.range(0, children.size()).parallel().forEach(i -> {
+      try {
+        parsers[i] = createMapperParser(children.get(i));
+      } catch (IOException e) {
+        throw new BuilderException("Error parsing Mapper XML. The XML location is '" + getMapperLocation(children.get(i)) + "'. Cause: " + e, e);
+      }
+    });
+    //所有mapper在同一次注册中合并并解析未完成元素,期间查找语句的线程读取注册前的快照,注册完成后只重新封存一次
+    configuration.registerMappings(() -> {
+      for (int i = 0; i < children.size(); i++) {
+        XNode child = children.get(i);
+        if ("package".equals(child.getName())) {
+          configuration.addMappers(child.getStringAttribute("name"));
+        } else if (parsers[i] != null) {
+          String location = getMapperLocation(child);
+          ErrorContext.instance().resource(location);
+          if (child.getStringAttribute("resource") == null) {
+            configuration.addUrlResource(location);
+          }
+          new XMLMapperBuilder(parsers[i], configuration, location, configuration.getSqlFragments()).parseMapper();
+        } else if (child.getStringAttribute("resource") == null && child.getStringAttribute("url") == null
+            && child.getStringAttribute("class") != null) {
+          configuration.addMapper(mapperClassForName(child.getStringAttribute("class")));
+        } else {
+          throw new BuilderException("A mapper element may only specify a url, resource or class, but not more than one.");
+        }
+      }
+      XMLMapperBuilder.resolvePendingElements(configuration);
+    });
+  }
+
+  private static Class<?> mapperClassForName(String className) {
+    try {
+      return Resources.classForName(className);
+    } catch (ClassNotFoundException e) {
+      throw new BuilderException("Error resolving mapper class. Cause: " + e, e);
+    }
+  }
+
+  /**
+   * 读取mapper文件并构建xml文档(可在多个线程中同时执行)
+   * 配置了mapper快照时,摘要与快照一致的文件已在构建期校验过,不再进行DTD校验.
+   *
+   * @param child mapper节点
+   * @return xml解析器(非resource/url方式的节点返回null)
+   * @throws IOException 读取文件失败
+   */
+  private XPathParser createMapperParser(XNode child) throws IOException {
+    String location = getMapperLocation(child);
+    if ("package".equals(child.getName()) || location == null) {
+      return null;
+    }
+    try (InputStream inputStream = child.getStringAttribute("resource") != null
+        ? Resources.getResourceAsStream(location) : Resources.getUrlAsStream(location)) {
+      if (mapperSnapshot == null && recordedMappers == null) {
+        return newMapperParser(inputStream, true, configuration.isStreamingMapperParsingEnabled());
+      }
+      byte[] content = MapperSnapshot.readContent(inputStream);
+      String hash = MapperSnapshot.hash(content);
+      boolean validation = mapperSnapshot == null || !mapperSnapshot.isValidated(location, hash);
+      //生成快照时必须校验,快照中已过期的文件也需要重新校验
+      boolean streaming = configuration.isStreamingMapperParsingEnabled() && recordedMappers == null && !validation;
+      XPathParser mapperParser = newMapperParser(new ByteArrayInputStream(content), validation, streaming);
+      if (recordedMappers != null) {
+        recordedMappers.addValidated(location, hash);
+      }
+      return mapperParser;
+    }
+  }
+
+  private XPathParser newMapperParser(InputStream inputStream, boolean validation, boolean streaming) {
+    if (streaming) {
+      //流式解析,不加载DTD也不进行校验
+      return new XPathParser(StaxDocumentBuilder.parse(inputStream), false, configuration.getVariables(), new XMLMapperEntityResolver());
+    }
+    return new XPathParser(inputStream, validation, configuration.getVariables(), new XMLMapperEntityResolver());
+  }
+
+  /**
+   * 设置用于记录mapper文件摘要的快照(生成快照时使用)
+   *
+   * @param recordedMappers 快照
+   */
+  void setRecordedMappers(MapperSnapshot recordedMappers) {
+    this.recordedMappers = recordedMappers;
+  }
+
+  /**
+   * 设置已加载的mapper快照(未配置mapperSnapshot时使用)
+   *
+   * @param mapperSnapshot 快照
+   */
+  void setMapperSnapshot(MapperSnapshot mapperSnapshot) {
+    this.mapperSnapshot = mapperSnapshot;
+  }
+
+  /**
+   * 获取mapper节点中唯一指定的resource或url
+   *
+   * @param child mapper节点
+   * @return 文件位置(未指定或同时指定了多个属性返回null)
+   */
+  private String getMapperLocation(XNode child) {
+    String resource = child.getStringAttribute("resource");
+    String url = child.getStringAttribute("url");
+    String mapperClass = child.getStringAttribute("class");
+    if (resource != null && url == null && mapperClass == null) {
+      return resource;
+    } else if (resource == null && url != null && mapperClass == null) {
+      return url;
+    }
+    return null;
+  }
+
   /**
    * 判断是否匹配当前环境
    *
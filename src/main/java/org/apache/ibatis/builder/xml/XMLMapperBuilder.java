@@ -17,15 +17,18 @@ package org.apache.ibatis.builder.xml;
 
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.Function;
 
 import org.apache.ibatis.builder.BaseBuilder;
 import org.apache.ibatis.builder.BuilderException;
@@ -82,7 +85,7 @@ public class XMLMapperBuilder extends BaseBuilder {
         configuration, resource, sqlFragments);
   }
 
-  private XMLMapperBuilder(XPathParser parser, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
+  XMLMapperBuilder(XPathParser parser, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
     super(configuration);
     this.builderAssistant = new MapperBuilderAssistant(configuration, resource);
     this.parser = parser;
@@ -91,17 +94,135 @@ public class XMLMapperBuilder extends BaseBuilder {
   }
 
   public void parse() {
+    //在注册锁内解析,运行期加载mapper时查找语句的线程不会读到解析了一半的配置
+    configuration.registerMappings(() -> {
+      parseMapper();
+      //这里就是用来处理解析失败的xml，好比如，解析mapper1.xml的时候，引用到了mapper2.xml，那就会解析失败
+      //所以，每解析成功一次mapper.xml都来尝试修复这些解析未成功的数据
+      parsePendingResultMaps();
+      parsePendingCacheRefs();
+      parsePendingStatements();
+    });
+  }
+
+  /**
+   * 只解析当前mapper文件,不处理解析失败的元素(由调用方统一调用{@link #resolvePendingElements(Configuration)})
+   */
+  void parseMapper() {
     //检查资源是否已经加载
     if (!configuration.isResourceLoaded(resource)) {
       configurationElement(parser.evalNode("/mapper"));
       configuration.addLoadedResource(resource);
       bindMapperForNamespace();
     }
-    //这里就是用来处理解析失败的xml，好比如，解析mapper1.xml的时候，引用到了mapper2.xml，那就会解析失败
-    //所以，每解析成功一次mapper.xml都来尝试修复这些解析未成功的数据
-    parsePendingResultMaps();
-    parsePendingCacheRefs();
-    parsePendingStatements();
+  }
+
+  /**
+   * 按依赖顺序统一解析未完成的元素
+   * 每个元素先按resultMap、缓存引用、语句和注解方法的顺序解析一次,解析失败时记录它缺少的元素(见{@link IncompleteElementException#getMissingElement()}),
+   * 缺少的元素解析完成后再解析依赖它的元素(拓扑顺序),每个元素只在其依赖满足时重试,不再反复扫描所有未完成元素.
+   * 未说明缺少哪个元素的解析失败在其他元素解析完成后统一重试.
+   * 仍然无法解析的元素保留在配置中,与逐个文件解析时一样在首次获取语句时报错.
+   * 需要在{@link Configuration#registerMappings(Runnable)}内调用,保证先获取注册锁再获取未完成元素集合的锁.
+   *
+   * @param configuration 配置
+   */
+  static void resolvePendingElements(Configuration configuration) {
+    List<PendingElement<?>> elements = new ArrayList<>();
+    drainPending(configuration.getIncompleteResultMaps(), elements,
+        resolver -> IncompleteElementException.resultMapElement(resolver.resolve().getId()));
+    drainPending(configuration.getIncompleteCacheRefs(), elements, resolver -> {
+      resolver.resolveCacheRef();
+      return IncompleteElementException.cacheRefElement(resolver.getNamespace());
+    });
+    drainPending(configuration.getIncompleteStatements(), elements, builder -> {
+      builder.parseStatementNode();
+      return null;
+    });
+    drainPending(configuration.getIncompleteMethods(), elements, resolver -> {
+      resolver.resolve();
+      return null;
+    });
+    //缺少的元素 -> 等待它的元素
+    Map<String, List<PendingElement<?>>> waiting = new HashMap<>();
+    List<PendingElement<?>> unknown = new ArrayList<>();
+    Deque<PendingElement<?>> ready = new ArrayDeque<>(elements);
+    try {
+      boolean resolvedAny = false;
+      while (true) {
+        while (!ready.isEmpty()) {
+          PendingElement<?> element = ready.pollFirst();
+          try {
+            String provided = element.resolve();
+            resolvedAny = true;
+            List<PendingElement<?>> dependents = provided == null ? null : waiting.remove(provided);
+            if (dependents != null) {
+              ready.addAll(dependents);
+            }
+          } catch (IncompleteElementException e) {
+            if (e.getMissingElement() == null) {
+              unknown.add(element);
+            } else {
+              waiting.computeIfAbsent(e.getMissingElement(), k -> new ArrayList<>()).add(element);
+            }
+          }
+        }
+        if (!resolvedAny || unknown.isEmpty()) {
+          break;
+        }
+        resolvedAny = false;
+        ready.addAll(unknown);
+        unknown.clear();
+      }
+    } finally {
+      //未解析的元素按原顺序放回
+      for (PendingElement<?> element : elements) {
+        element.restoreIfUnresolved();
+      }
+    }
+  }
+
+  private static <T> void drainPending(Collection<T> pending, List<PendingElement<?>> elements, Function<T, String> resolver) {
+    synchronized (pending) {
+      for (T element : pending) {
+        elements.add(new PendingElement<>(pending, element, resolver));
+      }
+      pending.clear();
+    }
+  }
+
+  /**
+   * 一个未完成的元素
+   */
+  private static final class PendingElement<T> {
+
+    private final Collection<T> pending;
+    private final T element;
+    /**
+     * 解析元素,返回它提供给其他元素的元素名(没有时为null)
+     */
+    private final Function<T, String> resolver;
+    private boolean resolved;
+
+    PendingElement(Collection<T> pending, T element, Function<T, String> resolver) {
+      this.pending = pending;
+      this.element = element;
+      this.resolver = resolver;
+    }
+
+    String resolve() {
+      String provided = resolver.apply(element);
+      resolved = true;
+      return provided;
+    }
+
+    void restoreIfUnresolved() {
+      if (!resolved) {
+        synchronized (pending) {
+          pending.add(element);
+        }
+      }
+    }
   }
 
   public XNode getSqlFragment(String refid) {
@@ -120,6 +241,7 @@ public class XMLMapperBuilder extends BaseBuilder {
         throw new BuilderException("Mapper's namespace cannot be empty");
       }
       builderAssistant.setCurrentNamespace(namespace);
+      configuration.addNamespaceResource(namespace, resource);
       cacheRefElement(context.evalNode("cache-ref")); //解析缓存引用
       cacheElement(context.evalNode("cache"));  //解析缓存
       parameterMapElement(context.evalNodes("/mapper/parameterMap")); //解析附加参数
@@ -155,6 +277,11 @@ public class XMLMapperBuilder extends BaseBuilder {
   private void buildStatementFromContext(List<XNode> list, String requiredDatabaseId) {
     for (XNode context : list) {
       final XMLStatementBuilder statementParser = new XMLStatementBuilder(configuration, builderAssistant, context, requiredDatabaseId);
+      if (configuration.isLazyStatementBuildingEnabled()) {
+        //延迟构建,首次获取语句时再解析
+        statementParser.registerStatementNode();
+        continue;
+      }
       try {
         statementParser.parseStatementNode();
       } catch (IncompleteElementException e) {
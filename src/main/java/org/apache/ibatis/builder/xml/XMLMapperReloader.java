@@ -0,0 +1,221 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.CacheRefResolver;
+import org.apache.ibatis.builder.ResultMapResolver;
+import org.apache.ibatis.builder.annotation.MapperAnnotationBuilder;
+import org.apache.ibatis.builder.annotation.MethodResolver;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * mapper文件热加载
+ * 只重新解析内容发生变化的mapper文件,同时重新解析通过resultMap,sql片段,缓存引用等引用了其命名空间的mapper,
+ * 无需重新创建SqlSessionFactory.
+ * 语句,resultMap,sql片段和缓存在替换完成后整体生效,已经获取到旧语句的会话继续使用旧版本;
+ * 任意mapper解析失败时恢复到替换前的状态.
+ *
+ * @since 3.5.6
+ */
+public class XMLMapperReloader {
+
+  private final Configuration configuration;
+  /**
+   * 上次加载时mapper文件的摘要
+   */
+  private final Map<String, String> resourceHashes = new ConcurrentHashMap<>();
+
+  public XMLMapperReloader(Configuration configuration) {
+    this.configuration = configuration;
+    for (String resource : configuration.getNamespaceResources().values()) {
+      try {
+        resourceHashes.put(resource, MapperSnapshot.hash(readResource(resource)));
+      } catch (IOException e) {
+        // ignore, 无法读取的文件在重新加载时再报错
+      }
+    }
+  }
+
+  /**
+   * 重新加载内容发生变化的mapper文件
+   *
+   * @return 重新加载的命名空间
+   */
+  public Set<String> reloadChanged() {
+    Map<String, byte[]> changed = new LinkedHashMap<>();
+    for (String resource : new LinkedHashSet<>(configuration.getNamespaceResources().values())) {
+      byte[] content;
+      try {
+        content = readResource(resource);
+      } catch (IOException e) {
+        throw new BuilderException("Error reading mapper resource '" + resource + "'. Cause: " + e, e);
+      }
+      if (!MapperSnapshot.hash(content).equals(resourceHashes.get(resource))) {
+        changed.put(resource, content);
+      }
+    }
+    return changed.isEmpty() ? Collections.emptySet() : reload(changed);
+  }
+
+  /**
+   * 重新加载mapper文件(不比较内容)
+   *
+   * @param resources 已注册的mapper文件资源(resource或url,按注册时的方式读取)
+   * @return 重新加载的命名空间
+   */
+  public Set<String> reload(Collection<String> resources) {
+    Map<String, byte[]> contents = new LinkedHashMap<>();
+    for (String resource : resources) {
+      try {
+        contents.put(resource, readResource(resource));
+      } catch (IOException e) {
+        throw new BuilderException("Error reading mapper resource '" + resource + "'. Cause: " + e, e);
+      }
+    }
+    return reload(contents);
+  }
+
+  private Set<String> reload(Map<String, byte[]> contents) {
+    // 先完成xml解析(含DTD校验),格式错误时不影响当前配置
+    Map<String, XPathParser> parsers = new LinkedHashMap<>();
+    contents.forEach((resource, content) -> parsers.put(resource, newParser(content)));
+    Set<String> reloaded = new LinkedHashSet<>();
+    configuration.replaceMappers(() -> {
+      Map<String, XPathParser> namespaces = collectNamespaces(parsers, reloaded);
+      reloaded.forEach(configuration::removeNamespace);
+      namespaces.forEach((resource, parser) ->
+        new XMLMapperBuilder(parser, configuration, resource, configuration.getSqlFragments()).parseMapper());
+      for (String namespace : reloaded) {
+        Class<?> boundType = getBoundType(namespace);
+        if (boundType != null && configuration.hasMapper(boundType)) {
+          if (configuration.getNamespaceResource(namespace) != null) {
+            // 防止注解解析时按接口名再次加载xml
+            configuration.addLoadedResource("namespace:" + namespace);
+          }
+          new MapperAnnotationBuilder(configuration, boundType).parse();
+        }
+      }
+      XMLMapperBuilder.resolvePendingElements(configuration);
+      checkResolved(reloaded);
+    });
+    contents.forEach((resource, content) -> resourceHashes.put(resource, MapperSnapshot.hash(content)));
+    return reloaded;
+  }
+
+  /**
+   * 计算需要重新解析的命名空间: 变化的文件中声明的命名空间,文件原先声明的命名空间,以及(递归)引用了它们的命名空间
+   *
+   * @param parsers  变化的文件
+   * @param reloaded 需要重新解析的命名空间(输出)
+   * @return 需要重新解析的mapper文件
+   */
+  private Map<String, XPathParser> collectNamespaces(Map<String, XPathParser> parsers, Set<String> reloaded) {
+    Map<String, XPathParser> namespaces = new LinkedHashMap<>(parsers);
+    Deque<String> queue = new ArrayDeque<>();
+    Map<String, String> resourceNamespaces = new HashMap<>();
+    configuration.getNamespaceResources().forEach((namespace, resource) -> resourceNamespaces.put(resource, namespace));
+    parsers.forEach((resource, parser) -> {
+      queue.add(parser.evalNode("/mapper").getStringAttribute("namespace"));
+      String previous = resourceNamespaces.get(resource);
+      if (previous != null) {
+        queue.add(previous);
+      }
+    });
+    while (!queue.isEmpty()) {
+      String namespace = queue.poll();
+      if (namespace == null || !reloaded.add(namespace)) {
+        continue;
+      }
+      String resource = configuration.getNamespaceResource(namespace);
+      if (resource != null && !namespaces.containsKey(resource)) {
+        try {
+          namespaces.put(resource, newParser(readResource(resource)));
+        } catch (IOException e) {
+          throw new BuilderException("Error reading mapper resource '" + resource + "'. Cause: " + e, e);
+        }
+      }
+      queue.addAll(configuration.getReferencingNamespaces(namespace));
+    }
+    return namespaces;
+  }
+
+  /**
+   * 检查重新解析的命名空间中是否还有未完成的元素
+   *
+   * @param reloaded 重新解析的命名空间
+   */
+  private void checkResolved(Set<String> reloaded) {
+    for (XMLStatementBuilder statement : configuration.getIncompleteStatements()) {
+      if (reloaded.contains(statement.getStatementId().substring(0, statement.getStatementId().lastIndexOf('.')))) {
+        throw new BuilderException("Error reloading mapper. Statement '" + statement.getStatementId() + "' could not be resolved.");
+      }
+    }
+    for (CacheRefResolver cacheRef : configuration.getIncompleteCacheRefs()) {
+      checkResolved(reloaded, cacheRef.getNamespace(), "Cache reference");
+    }
+    for (ResultMapResolver resultMap : configuration.getIncompleteResultMaps()) {
+      checkResolved(reloaded, resultMap.getNamespace(), "Result map");
+    }
+    for (MethodResolver method : configuration.getIncompleteMethods()) {
+      checkResolved(reloaded, method.getNamespace(), "Mapper method");
+    }
+  }
+
+  private void checkResolved(Set<String> reloaded, String namespace, String element) {
+    if (reloaded.contains(namespace)) {
+      throw new BuilderException("Error reloading mapper. " + element + " in namespace '" + namespace + "' could not be resolved.");
+    }
+  }
+
+  private XPathParser newParser(byte[] content) {
+    return new XPathParser(new ByteArrayInputStream(content), true, configuration.getVariables(), new XMLMapperEntityResolver());
+  }
+
+  private Class<?> getBoundType(String namespace) {
+    try {
+      return Resources.classForName(namespace);
+    } catch (ClassNotFoundException e) {
+      // ignore, bound type is not required
+      return null;
+    }
+  }
+
+  private byte[] readResource(String resource) throws IOException {
+    // 按注册时的方式读取: 通过<mapper url>加载的按url读取,其余按类路径资源读取
+    try (InputStream inputStream = configuration.isUrlResource(resource)
+        ? Resources.getUrlAsStream(resource) : Resources.getResourceAsStream(resource)) {
+      return MapperSnapshot.readContent(inputStream);
+    }
+  }
+
+}
@@ -62,6 +62,52 @@ public class XMLStatementBuilder extends BaseBuilder {
       return;
     }
 
+    buildStatementNode(id, databaseId);
+  }
+
+  /**
+   * 延迟构建模式下只登记语句,首次获取语句时再由{@link Configuration}调用{@link #buildStatementNode()}构建
+   *
+   * @since 3.5.6
+   */
+  public void registerStatementNode() {
+    String id = context.getStringAttribute("id");
+    String databaseId = context.getStringAttribute("databaseId");
+
+    //跳过不匹配的数据库厂商解析
+    if (!databaseIdMatchesCurrent(id, databaseId, this.requiredDatabaseId)) {
+      return;
+    }
+
+    configuration.addLazyStatement(getStatementId(), this);
+  }
+
+  /**
+   * 构建已登记的语句(数据库厂商已在登记时匹配过)
+   *
+   * @since 3.5.6
+   */
+  public void buildStatementNode() {
+    buildStatementNode(context.getStringAttribute("id"), context.getStringAttribute("databaseId"));
+  }
+
+  /**
+   * @return 语句全限定id
+   * @since 3.5.6
+   */
+  public String getStatementId() {
+    return builderAssistant.applyCurrentNamespace(context.getStringAttribute("id"), false);
+  }
+
+  /**
+   * @return 节点中配置的数据库厂商
+   * @since 3.5.6
+   */
+  public String getDatabaseId() {
+    return context.getStringAttribute("databaseId");
+  }
+
+  private void buildStatementNode(String id, String databaseId) {
     String nodeName = context.getNode().getNodeName();
     SqlCommandType sqlCommandType = SqlCommandType.valueOf(nodeName.toUpperCase(Locale.ENGLISH));
     boolean isSelect = sqlCommandType == SqlCommandType.SELECT;
@@ -112,11 +158,12 @@ public class XMLStatementBuilder extends BaseBuilder {
     String keyProperty = context.getStringAttribute("keyProperty");
     String keyColumn = context.getStringAttribute("keyColumn");
     String resultSets = context.getStringAttribute("resultSets");
+    String cacheTables = context.getStringAttribute("cacheTables");
 
     builderAssistant.addMappedStatement(id, sqlSource, statementType, sqlCommandType,
         fetchSize, timeout, parameterMap, parameterTypeClass, resultMap, resultTypeClass,
         resultSetTypeEnum, flushCache, useCache, resultOrdered,
-        keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets);
+        keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets, cacheTables);
   }
 
   /**
@@ -216,6 +263,10 @@ public class XMLStatementBuilder extends BaseBuilder {
     if (!this.configuration.hasStatement(id, false)) {
       return true;
     }
+    XMLStatementBuilder lazyPrevious = this.configuration.getLazyStatement(id);
+    if (lazyPrevious != null) {
+      return lazyPrevious.getDatabaseId() == null;
+    }
     // skip this statement if there is a previous one with a not null databaseId
     // 跳过前一个MappedStatement的数据库厂商不为空的情况.....
     MappedStatement previous = this.configuration.getMappedStatement(id, false); // issue #2
@@ -0,0 +1,279 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 二级缓存统计
+ * 计数使用{@link LongAdder},并发累加时不争用同一变量.
+ * 命中,写入,淘汰等由{@link org.apache.ibatis.cache.decorators.StatisticsCache}记录,
+ * 未命中的加载耗时由CachingExecutor记录,事务缓存丢弃的条目由{@link org.apache.ibatis.cache.decorators.TransactionalCache}记录.
+ *
+ * @since 3.5.6
+ */
+public class CacheStatistics implements CacheStatisticsMXBean {
+
+  private static final IntSupplier NO_ENTRIES = () -> 0;
+
+  private final String id;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder staleHits = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder removals = new LongAdder();
+  private final LongAdder clears = new LongAdder();
+  /**
+   * 序列化值(readWrite缓存)的写入次数与字节数,用于估算占用
+   */
+  private final LongAdder serializedPuts = new LongAdder();
+  private final LongAdder serializedBytes = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadNanos = new LongAdder();
+  private final LongAccumulator maxLoadNanos = new LongAccumulator(Long::max, 0L);
+  private final LongAdder discardedOnClear = new LongAdder();
+  private final LongAdder discardedOnRollback = new LongAdder();
+  private volatile IntSupplier entryCounter = NO_ENTRIES;
+  private ObjectName objectName;
+
+  public CacheStatistics(String id) {
+    this.id = id;
+  }
+
+  public void recordHit() {
+    hits.increment();
+  }
+
+  public void recordMiss() {
+    misses.increment();
+  }
+
+  /**
+   * 将一次命中改记为未命中:缓存中的条目已按表版本过期,调用方仍需查询数据库
+   */
+  public void recordStaleHit() {
+    hits.decrement();
+    misses.increment();
+    staleHits.increment();
+  }
+
+  public void recordPut(Object value) {
+    puts.increment();
+    if (value instanceof byte[]) {
+      serializedPuts.increment();
+      serializedBytes.add(((byte[]) value).length);
+    }
+  }
+
+  public void recordEvictions(int count) {
+    evictions.add(count);
+  }
+
+  public void recordRemoval() {
+    removals.increment();
+  }
+
+  public void recordClear() {
+    clears.increment();
+  }
+
+  /**
+   * 记录一次未命中后从数据库加载的耗时
+   *
+   * @param nanos 耗时(纳秒)
+   */
+  public void recordLoad(long nanos) {
+    loads.increment();
+    loadNanos.add(nanos);
+    maxLoadNanos.accumulate(nanos);
+  }
+
+  /**
+   * 记录事务中因清空缓存而丢弃的待提交条目
+   *
+   * @param count 条目数
+   */
+  public void recordDiscardedOnClear(int count) {
+    discardedOnClear.add(count);
+  }
+
+  /**
+   * 记录事务回滚时丢弃的待提交条目
+   *
+   * @param count 条目数
+   */
+  public void recordDiscardedOnRollback(int count) {
+    discardedOnRollback.add(count);
+  }
+
+  /**
+   * 设置当前条目数的来源(一般为被统计的缓存)
+   *
+   * @param entryCounter 条目数来源
+   */
+  public void setEntryCounter(IntSupplier entryCounter) {
+    this.entryCounter = entryCounter == null ? NO_ENTRIES : entryCounter;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public long getStaleHits() {
+    return staleHits.sum();
+  }
+
+  @Override
+  public double getHitRatio() {
+    long hitCount = getHits();
+    long requests = hitCount + getMisses();
+    return requests == 0 ? 0D : (double) hitCount / requests;
+  }
+
+  @Override
+  public long getPuts() {
+    return puts.sum();
+  }
+
+  @Override
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  @Override
+  public long getRemovals() {
+    return removals.sum();
+  }
+
+  @Override
+  public long getClears() {
+    return clears.sum();
+  }
+
+  @Override
+  public int getEntryCount() {
+    return entryCounter.getAsInt();
+  }
+
+  /**
+   * 估算占用字节数(序列化值的平均大小 * 条目数)
+   *
+   * @return 字节数,缓存值未序列化(readOnly缓存)时无法估算,返回-1
+   */
+  @Override
+  public long getEstimatedBytes() {
+    long count = serializedPuts.sum();
+    if (count == 0) {
+      return getPuts() == 0 ? 0 : -1;
+    }
+    return serializedBytes.sum() / count * getEntryCount();
+  }
+
+  @Override
+  public long getLoadCount() {
+    return loads.sum();
+  }
+
+  @Override
+  public double getLoadMeanMillis() {
+    long count = loads.sum();
+    return count == 0 ? 0D : loadNanos.sum() / 1_000_000D / count;
+  }
+
+  @Override
+  public double getLoadMaxMillis() {
+    return maxLoadNanos.get() / 1_000_000D;
+  }
+
+  @Override
+  public long getDiscardedOnClear() {
+    return discardedOnClear.sum();
+  }
+
+  @Override
+  public long getDiscardedOnRollback() {
+    return discardedOnRollback.sum();
+  }
+
+  /**
+   * 注册到平台MBeanServer,名称为org.apache.ibatis.cache:type=CacheStatistics,name="name",id="缓存Id".
+   * 已注册同名MBean时将其替换.
+   *
+   * @param name 名称(区分同一JVM中的多个配置)
+   */
+  public synchronized void registerMBean(String name) {
+    unregisterMBean();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName candidate = new ObjectName("org.apache.ibatis.cache:type=CacheStatistics,name=" + ObjectName.quote(name)
+          + ",id=" + ObjectName.quote(id));
+      if (server.isRegistered(candidate)) {
+        server.unregisterMBean(candidate);
+      }
+      server.registerMBean(this, candidate);
+      objectName = candidate;
+    } catch (JMException e) {
+      throw new CacheException("Error registering statistics MBean for cache '" + id + "'.  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * 从平台MBeanServer注销
+   */
+  public synchronized void unregisterMBean() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      throw new CacheException("Error unregistering statistics MBean for cache '" + id + "'.  Cause: " + e, e);
+    } finally {
+      objectName = null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return id + " {hits=" + getHits() + ", misses=" + getMisses() + ", staleHits=" + getStaleHits() + ", puts=" + getPuts() + ", evictions=" + getEvictions()
+        + ", entries=" + getEntryCount() + ", estimatedBytes=" + getEstimatedBytes() + ", loadMeanMillis=" + getLoadMeanMillis()
+        + ", discardedOnClear=" + getDiscardedOnClear() + ", discardedOnRollback=" + getDiscardedOnRollback() + "}";
+  }
+
+}
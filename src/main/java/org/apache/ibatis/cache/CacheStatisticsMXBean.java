@@ -0,0 +1,60 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 二级缓存统计的JMX视图
+ *
+ * @since 3.5.6
+ */
+public interface CacheStatisticsMXBean {
+
+  String getId();
+
+  long getHits();
+
+  long getMisses();
+
+  /**
+   * @return 按表版本过期而计为未命中的条目读取次数
+   */
+  long getStaleHits();
+
+  double getHitRatio();
+
+  long getPuts();
+
+  long getEvictions();
+
+  long getRemovals();
+
+  long getClears();
+
+  int getEntryCount();
+
+  long getEstimatedBytes();
+
+  long getLoadCount();
+
+  double getLoadMeanMillis();
+
+  double getLoadMaxMillis();
+
+  long getDiscardedOnClear();
+
+  long getDiscardedOnRollback();
+
+}
@@ -0,0 +1,249 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 表版本号
+ * 每张表维护一个递增的版本号,声明了cacheTables的更新语句在事务提交时递增对应表的版本.
+ * 二级缓存条目记录查询前读取到的版本快照,读取时只要依赖的任一表版本发生变化即视为未命中,
+ * 从而只使受影响的条目失效,不再清空整个命名空间缓存.
+ * 未声明cacheTables的查询依赖所在命名空间(见{@link #namespaceTable(String)}),
+ * 所有查询还依赖命名空间的清空版本(见{@link #namespaceStamp(String)}),整个命名空间被清空时递增.
+ * <p>
+ * 表版本按缓存开启:只有存在声明了cacheTables的语句的缓存才记录版本快照,其他缓存保持原有的清空行为.
+ * 版本号只保存在当前JVM中,重启后从0开始,因此快照还记录了创建它的实例,其他实例(包括重启前)写入的条目均视为未命中.
+ * 自定义缓存实现(如远程缓存)可能被多个JVM共享,其他节点的更新不会递增本节点的版本,
+ * 因此不支持按表失效(见{@link #exclude(String)}).
+ *
+ * @since 3.5.6
+ */
+public class TableVersions {
+
+  private static final String NAMESPACE_PREFIX = "@";
+  private static final String STAMP_PREFIX = "#";
+
+  private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  /**
+   * 实例标识,区分其他实例(包括重启前)的版本快照
+   */
+  private final long epoch = UUID.randomUUID().getMostSignificantBits();
+  /**
+   * 开启了表版本的缓存Id
+   */
+  private final Set<String> enabledCaches = ConcurrentHashMap.newKeySet();
+  /**
+   * 不支持表版本的缓存Id
+   */
+  private final Set<String> excludedCaches = ConcurrentHashMap.newKeySet();
+  /**
+   * 是否对所有(未排除的)缓存开启,配置了缓存失效广播时开启
+   */
+  private volatile boolean allEnabled;
+
+  /**
+   * @return 是否有缓存开启了表版本
+   */
+  public boolean isEnabled() {
+    return allEnabled || !enabledCaches.isEmpty();
+  }
+
+  /**
+   * @param cacheId 缓存Id
+   * @return 缓存是否开启了表版本,未开启时缓存条目不记录版本
+   */
+  public boolean isEnabled(String cacheId) {
+    return (allEnabled || enabledCaches.contains(cacheId)) && !excludedCaches.contains(cacheId);
+  }
+
+  /**
+   * 对缓存开启表版本(存在声明了cacheTables的语句时)
+   *
+   * @param cacheId 缓存Id
+   * @throws CacheException 缓存不支持表版本时
+   */
+  public void enable(String cacheId) {
+    if (excludedCaches.contains(cacheId)) {
+      throw new CacheException("Cache '" + cacheId + "' uses a custom implementation that may be shared between JVMs. "
+          + "Table versions are local to this JVM, so cacheTables cannot be used with it.");
+    }
+    enabledCaches.add(cacheId);
+  }
+
+  /**
+   * 对所有未排除的缓存开启表版本
+   */
+  public void enableAll() {
+    allEnabled = true;
+  }
+
+  /**
+   * 排除不支持表版本的缓存(自定义缓存实现)
+   *
+   * @param cacheId 缓存Id
+   * @throws CacheException 缓存已开启表版本时
+   */
+  public void exclude(String cacheId) {
+    if (enabledCaches.contains(cacheId)) {
+      throw new CacheException("Cache '" + cacheId + "' already uses table versions and cannot be excluded.");
+    }
+    excludedCaches.add(cacheId);
+  }
+
+  /**
+   * 获取表的当前版本
+   *
+   * @param table 表名
+   * @return 版本号(从0开始)
+   */
+  public long getVersion(String table) {
+    AtomicLong version = versions.get(table);
+    return version == null ? 0L : version.get();
+  }
+
+  /**
+   * 读取表的版本快照(需在查询数据库之前读取)
+   *
+   * @param tables 表名
+   * @return 版本快照
+   */
+  public Snapshot snapshot(String[] tables) {
+    long[] snapshot = new long[tables.length];
+    for (int i = 0; i < tables.length; i++) {
+      snapshot[i] = getVersion(tables[i]);
+    }
+    return new Snapshot(epoch, tables, snapshot);
+  }
+
+  /**
+   * @param snapshot 版本快照
+   * @return 快照由当前实例创建,且其中的表版本都未变化
+   */
+  public boolean isCurrent(Snapshot snapshot) {
+    if (snapshot.epoch != epoch) {
+      return false;
+    }
+    for (int i = 0; i < snapshot.tables.length; i++) {
+      if (getVersion(snapshot.tables[i]) != snapshot.versions[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 递增表版本,使依赖这些表的缓存条目失效(需在数据库事务提交之后调用)
+   *
+   * @param tables 表名
+   */
+  public void increment(Collection<String> tables) {
+    for (String table : tables) {
+      versions.computeIfAbsent(table, k -> new AtomicLong()).incrementAndGet();
+    }
+  }
+
+  /**
+   * 未声明cacheTables的语句以所在命名空间作为依赖
+   *
+   * @param cacheId 缓存Id(命名空间)
+   * @return 命名空间对应的虚拟表名
+   */
+  public static String namespaceTable(String cacheId) {
+    return NAMESPACE_PREFIX + cacheId;
+  }
+
+  /**
+   * 命名空间缓存被清空时递增的版本,清空前开始加载的结果在清空后写入时会被视为过期
+   *
+   * @param cacheId 缓存Id(命名空间)
+   * @return 命名空间清空版本对应的虚拟表名
+   */
+  public static String namespaceStamp(String cacheId) {
+    return STAMP_PREFIX + cacheId;
+  }
+
+  /**
+   * 表版本快照
+   */
+  public static final class Snapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long epoch;
+    private final String[] tables;
+    private final long[] versions;
+
+    Snapshot(long epoch, String[] tables, long[] versions) {
+      this.epoch = epoch;
+      this.tables = tables;
+      this.versions = versions;
+    }
+
+    public String[] getTables() {
+      return tables.clone();
+    }
+
+    /**
+     * @param tables 表名
+     * @return 是否依赖其中任一表
+     */
+    public boolean dependsOn(Collection<String> tables) {
+      for (String table : this.tables) {
+        if (tables.contains(table)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(tables) + Arrays.toString(versions);
+    }
+  }
+
+  /**
+   * 记录了版本快照的缓存值
+   */
+  static final class VersionedValue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object value;
+    private final Snapshot snapshot;
+
+    VersionedValue(Object value, Snapshot snapshot) {
+      this.value = value;
+      this.snapshot = snapshot;
+    }
+
+    Object getValue() {
+      return value;
+    }
+
+    Snapshot getSnapshot() {
+      return snapshot;
+    }
+  }
+
+}
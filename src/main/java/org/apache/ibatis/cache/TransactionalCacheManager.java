@@ -15,10 +15,16 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBroadcaster;
 
 /**
  * 事务缓存管理器
@@ -27,6 +33,56 @@ import org.apache.ibatis.cache.decorators.TransactionalCache;
 public class TransactionalCacheManager {
 
   private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
+  /**
+   * 获取缓存对应的统计数据(未开启统计时返回null)
+   */
+  private final Function<Cache, CacheStatistics> statisticsResolver;
+  /**
+   * 表版本号
+   */
+  private final TableVersions tableVersions;
+  /**
+   * 提交事务时需要递增版本的表
+   */
+  private final Set<String> tablesToInvalidateOnCommit = new HashSet<>();
+  /**
+   * 缓存失效广播(未配置时为null)
+   */
+  private final CacheInvalidationBroadcaster broadcaster;
+
+  public TransactionalCacheManager() {
+    this(cache -> null);
+  }
+
+  /**
+   * @param statisticsResolver 获取缓存对应的统计数据
+   * @since 3.5.6
+   */
+  public TransactionalCacheManager(Function<Cache, CacheStatistics> statisticsResolver) {
+    this(statisticsResolver, new TableVersions());
+  }
+
+  /**
+   * @param statisticsResolver 获取缓存对应的统计数据
+   * @param tableVersions      表版本号
+   * @since 3.5.6
+   */
+  public TransactionalCacheManager(Function<Cache, CacheStatistics> statisticsResolver, TableVersions tableVersions) {
+    this(statisticsResolver, tableVersions, null);
+  }
+
+  /**
+   * @param statisticsResolver 获取缓存对应的统计数据
+   * @param tableVersions      表版本号
+   * @param broadcaster        缓存失效广播,提交事务后将本次清空的缓存及修改的表通知给其他节点
+   * @since 3.5.6
+   */
+  public TransactionalCacheManager(Function<Cache, CacheStatistics> statisticsResolver, TableVersions tableVersions,
+      CacheInvalidationBroadcaster broadcaster) {
+    this.statisticsResolver = statisticsResolver;
+    this.tableVersions = tableVersions;
+    this.broadcaster = broadcaster;
+  }
 
   /**
    * 清空事务缓存值
@@ -45,7 +101,24 @@ public class TransactionalCacheManager {
    * @return 值
    */
   public Object getObject(Cache cache, CacheKey key) {
-    return getTransactionalCache(cache).getObject(key);
+    Object value = getTransactionalCache(cache).getObject(key);
+    if (value == null || !tableVersions.isEnabled(cache.getId())) {
+      return value;
+    }
+    if (value instanceof TableVersions.VersionedValue) {
+      TableVersions.VersionedValue versionedValue = (TableVersions.VersionedValue) value;
+      TableVersions.Snapshot snapshot = versionedValue.getSnapshot();
+      //依赖的表在当前事务中已被修改(未提交),或已被其他事务修改时视为未命中
+      if (!snapshot.dependsOn(tablesToInvalidateOnCommit) && tableVersions.isCurrent(snapshot)) {
+        return versionedValue.getValue();
+      }
+    }
+    //过期条目及开启表版本之前写入的条目(无法判断是否过期)视为未命中
+    CacheStatistics statistics = statisticsResolver.apply(cache);
+    if (statistics != null) {
+      statistics.recordStaleHit();
+    }
+    return null;
   }
 
   /**
@@ -59,19 +132,105 @@ public class TransactionalCacheManager {
     getTransactionalCache(cache).putObject(key, value);
   }
 
+  /**
+   * 读取查询依赖的表版本快照,需在查询数据库之前调用
+   *
+   * @param cache  缓存实现
+   * @param tables 查询声明的表(为空时依赖所在命名空间)
+   * @return 版本快照(缓存未开启表版本时返回null)
+   * @since 3.5.6
+   */
+  public TableVersions.Snapshot snapshot(Cache cache, String[] tables) {
+    if (!tableVersions.isEnabled(cache.getId())) {
+      return null;
+    }
+    String[] dependencies;
+    if (tables == null) {
+      dependencies = new String[] {TableVersions.namespaceTable(cache.getId()), TableVersions.namespaceStamp(cache.getId())};
+    } else {
+      dependencies = Arrays.copyOf(tables, tables.length + 1);
+      dependencies[tables.length] = TableVersions.namespaceStamp(cache.getId());
+    }
+    return tableVersions.snapshot(dependencies);
+  }
+
+  /**
+   * @param snapshot 版本快照(可为空)
+   * @return 快照中的表版本是否都未变化
+   * @since 3.5.6
+   */
+  public boolean isCurrent(TableVersions.Snapshot snapshot) {
+    return snapshot == null || tableVersions.isCurrent(snapshot);
+  }
+
+  /**
+   * 写入事务缓存,并记录查询前读取的表版本快照
+   *
+   * @param cache    缓存实现
+   * @param key      缓存key
+   * @param value    缓存值
+   * @param snapshot 版本快照(为空时直接写入)
+   * @since 3.5.6
+   */
+  public void putObject(Cache cache, CacheKey key, Object value, TableVersions.Snapshot snapshot) {
+    putObject(cache, key, snapshot == null ? value : new TableVersions.VersionedValue(value, snapshot));
+  }
+
+  /**
+   * 标记表已修改,提交事务时递增表版本
+   * 同时使所在命名空间中未声明表的查询失效
+   *
+   * @param cache  更新语句所在命名空间的缓存(可为空)
+   * @param tables 更新语句声明的表
+   * @since 3.5.6
+   */
+  public void invalidate(Cache cache, String[] tables) {
+    Collections.addAll(tablesToInvalidateOnCommit, tables);
+    if (cache != null) {
+      tablesToInvalidateOnCommit.add(TableVersions.namespaceTable(cache.getId()));
+    }
+  }
+
   /**
    * 提交事务缓存
    */
   public void commit() {
+    Set<String> clearedCaches = null;
+    for (Map.Entry<Cache, TransactionalCache> entry : transactionalCaches.entrySet()) {
+      if (entry.getValue().isClearOnCommit()) {
+        if (clearedCaches == null) {
+          clearedCaches = new HashSet<>();
+        }
+        clearedCaches.add(entry.getKey().getId());
+      }
+    }
+    if (clearedCaches != null) {
+      //清空前开始加载的结果不能在清空后写入
+      for (String cacheId : clearedCaches) {
+        if (tableVersions.isEnabled(cacheId)) {
+          tablesToInvalidateOnCommit.add(TableVersions.namespaceStamp(cacheId));
+        }
+      }
+    }
+    Set<String> invalidatedTables = Collections.emptySet();
+    if (!tablesToInvalidateOnCommit.isEmpty()) {
+      tableVersions.increment(tablesToInvalidateOnCommit);
+      invalidatedTables = new HashSet<>(tablesToInvalidateOnCommit);
+      tablesToInvalidateOnCommit.clear();
+    }
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.commit();
     }
+    if (broadcaster != null && (clearedCaches != null || !invalidatedTables.isEmpty())) {
+      broadcaster.invalidated(clearedCaches == null ? Collections.emptySet() : clearedCaches, invalidatedTables);
+    }
   }
 
   /**
    * 回滚事务缓存
    */
   public void rollback() {
+    tablesToInvalidateOnCommit.clear();
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.rollback();
     }
@@ -84,7 +243,7 @@ public class TransactionalCacheManager {
    * @return 事务缓存
    */
   private TransactionalCache getTransactionalCache(Cache cache) {
-    return transactionalCaches.computeIfAbsent(cache, TransactionalCache::new);
+    return transactionalCaches.computeIfAbsent(cache, c -> new TransactionalCache(c, statisticsResolver.apply(c)));
   }
 
 }
@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+
+/**
+ * 缓存统计装饰者
+ * 记录命中,未命中,写入,移除及清空次数.
+ * 开启淘汰统计时,写入后条目数未增加即计为淘汰(并发加载同一key造成的覆盖写入同样会被计入),
+ * 需要位于淘汰策略装饰者之上并由{@link SynchronizedCache}保护.
+ *
+ * @since 3.5.6
+ */
+public class StatisticsCache implements Cache {
+
+  private final Cache delegate;
+  private final CacheStatistics statistics;
+  private final boolean trackEvictions;
+
+  public StatisticsCache(Cache delegate) {
+    this(delegate, new CacheStatistics(delegate.getId()), true);
+  }
+
+  /**
+   * @param delegate       缓存对象
+   * @param statistics     统计数据
+   * @param trackEvictions 是否统计淘汰(每次写入需要两次读取条目数,自定义缓存获取条目数开销较大时应关闭)
+   */
+  public StatisticsCache(Cache delegate, CacheStatistics statistics, boolean trackEvictions) {
+    this.delegate = delegate;
+    this.statistics = statistics;
+    this.trackEvictions = trackEvictions;
+    statistics.setEntryCounter(delegate::getSize);
+  }
+
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (trackEvictions) {
+      int before = delegate.getSize();
+      delegate.putObject(key, value);
+      int after = delegate.getSize();
+      if (after <= before) {
+        statistics.recordEvictions(before + 1 - after);
+      }
+    } else {
+      delegate.putObject(key, value);
+    }
+    statistics.recordPut(value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value == null) {
+      statistics.recordMiss();
+    } else {
+      statistics.recordHit();
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    statistics.recordRemoval();
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    statistics.recordClear();
+    delegate.clear();
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+}
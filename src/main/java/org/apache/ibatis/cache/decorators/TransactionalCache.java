@@ -22,6 +22,7 @@ import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -56,12 +57,26 @@ public class TransactionalCache implements Cache {
    * 未命中缓存数据
    */
   private final Set<Object> entriesMissedInCache;
+  /**
+   * 缓存统计(未开启时为null)
+   */
+  private final CacheStatistics statistics;
 
   public TransactionalCache(Cache delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param delegate   缓存对象
+   * @param statistics 缓存统计,用于记录清空及回滚时丢弃的待提交条目
+   * @since 3.5.6
+   */
+  public TransactionalCache(Cache delegate, CacheStatistics statistics) {
     this.delegate = delegate;
     this.clearOnCommit = false;
     this.entriesToAddOnCommit = new HashMap<>();
     this.entriesMissedInCache = new HashSet<>();
+    this.statistics = statistics;
   }
 
   @Override
@@ -114,9 +129,20 @@ public class TransactionalCache implements Cache {
   @Override
   public void clear() {
     clearOnCommit = true; //重置标志位
+    if (statistics != null) {
+      statistics.recordDiscardedOnClear(entriesToAddOnCommit.size());
+    }
     entriesToAddOnCommit.clear(); //清空缓冲区
   }
 
+  /**
+   * @return 提交事务时是否清空缓存
+   * @since 3.5.6
+   */
+  public boolean isClearOnCommit() {
+    return clearOnCommit;
+  }
+
   /**
    * 提交事务
    */
@@ -135,6 +161,9 @@ public class TransactionalCache implements Cache {
    * 回滚事务
    */
   public void rollback() {
+    if (statistics != null) {
+      statistics.recordDiscardedOnRollback(entriesToAddOnCommit.size());
+    }
     //解锁
     unlockMissedEntries();
     //重置事务缓存
@@ -0,0 +1,38 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.Set;
+
+/**
+ * 缓存失效广播
+ * 二级缓存的清空及表版本的递增只作用于当前JVM,多节点部署时通过该接口通知其他节点.
+ * 在{@link org.apache.ibatis.cache.TransactionalCacheManager#commit()}提交事务缓存后调用,一次事务只调用一次.
+ *
+ * @since 3.5.6
+ * @see CacheInvalidationBus
+ */
+public interface CacheInvalidationBroadcaster {
+
+  /**
+   * 事务已提交,通知其他节点失效对应缓存
+   *
+   * @param clearedCaches 被清空的缓存Id(命名空间)
+   * @param tables        版本被递增的表(包含命名空间对应的虚拟表)
+   */
+  void invalidated(Set<String> clearedCaches, Set<String> tables);
+
+}
@@ -0,0 +1,304 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TableVersions;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 基于{@link InvalidationTransport}的缓存失效广播
+ * 提交事务产生的失效先合并到当前批次,间隔{@code batchIntervalMillis}后作为一条消息发送,
+ * 收到其他节点的消息时递增对应的表版本及命名空间清空版本,并清空本地缓存.
+ * 由于缓存条目记录了加载前的版本快照,收到消息前开始加载,收到消息后才写入的结果同样会被视为过期.
+ * 每个节点的消息带有递增序号,重复或乱序到达的旧消息会被忽略.
+ * 传输失败的消息会保留并按顺序重发,直到发送成功(积压过多时丢弃最早的消息).
+ * 发现序号不连续,或传输报告可能丢失了消息(如连接中断)时,无法确定丢失了哪些失效,
+ * 此时递增所有命名空间的清空版本并清空全部本地缓存.
+ *
+ * <pre>
+ * CacheInvalidationBus bus = new CacheInvalidationBus(configuration, new SocketTransport(bindAddress, peers));
+ * configuration.setCacheInvalidationBroadcaster(bus);
+ * bus.start();
+ * </pre>
+ *
+ * @since 3.5.6
+ */
+public class CacheInvalidationBus implements CacheInvalidationBroadcaster {
+
+  private static final Log log = LogFactory.getLog(CacheInvalidationBus.class);
+
+  private static final long DEFAULT_BATCH_INTERVAL_MILLIS = 10;
+  private static final long RETRY_INTERVAL_MILLIS = 1000;
+  private static final int MAX_UNSENT_MESSAGES = 10000;
+
+  private final Configuration configuration;
+  private final InvalidationTransport transport;
+  private final long batchIntervalMillis;
+  private final String nodeId = UUID.randomUUID().toString();
+  private final AtomicLong sequence = new AtomicLong();
+  /**
+   * 其他节点最后处理的消息序号
+   */
+  private final Map<String, Long> receivedSequences = new ConcurrentHashMap<>();
+  private final AtomicLong sentMessages = new AtomicLong();
+  private final AtomicLong receivedMessages = new AtomicLong();
+  private final AtomicLong resyncs = new AtomicLong();
+  private final Object batchLock = new Object();
+  /**
+   * 分配序号及发送消息的锁,保证消息按序号顺序发送
+   */
+  private final Object sendLock = new Object();
+  /**
+   * 传输失败待重发的消息(按序号排列)
+   */
+  private final Deque<InvalidationMessage> unsentMessages = new ArrayDeque<>();
+  private boolean retryScheduled;
+  private Set<String> pendingCaches = new LinkedHashSet<>();
+  private Set<String> pendingTables = new LinkedHashSet<>();
+  private boolean flushScheduled;
+  private ScheduledExecutorService scheduler;
+
+  public CacheInvalidationBus(Configuration configuration, InvalidationTransport transport) {
+    this(configuration, transport, DEFAULT_BATCH_INTERVAL_MILLIS);
+  }
+
+  /**
+   * @param configuration       配置
+   * @param transport           传输方式
+   * @param batchIntervalMillis 批量发送间隔(毫秒),为0时每次事务提交立即发送
+   */
+  public CacheInvalidationBus(Configuration configuration, InvalidationTransport transport, long batchIntervalMillis) {
+    if (batchIntervalMillis < 0) {
+      throw new IllegalArgumentException("Batch interval must not be negative but was " + batchIntervalMillis + ".");
+    }
+    this.configuration = configuration;
+    this.transport = transport;
+    this.batchIntervalMillis = batchIntervalMillis;
+  }
+
+  /**
+   * 打开传输并开始接收其他节点的消息
+   *
+   * @throws IOException 传输打开失败
+   */
+  public synchronized void start() throws IOException {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "CacheInvalidationBus-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    transport.open(this::receive, this::resync);
+  }
+
+  /**
+   * 发送未发送的失效并关闭传输
+   */
+  public synchronized void close() {
+    if (scheduler == null) {
+      return;
+    }
+    flush();
+    scheduler.shutdownNow();
+    scheduler = null;
+    transport.close();
+  }
+
+  @Override
+  public void invalidated(Set<String> clearedCaches, Set<String> tables) {
+    boolean schedule;
+    synchronized (batchLock) {
+      pendingCaches.addAll(clearedCaches);
+      pendingTables.addAll(tables);
+      schedule = !flushScheduled && batchIntervalMillis > 0;
+      flushScheduled |= schedule;
+    }
+    ScheduledExecutorService currentScheduler = scheduler;
+    if (schedule && currentScheduler != null) {
+      currentScheduler.schedule(this::flush, batchIntervalMillis, TimeUnit.MILLISECONDS);
+    } else if (batchIntervalMillis == 0 || currentScheduler == null) {
+      flush();
+    }
+  }
+
+  /**
+   * 立即发送当前批次,并重发之前发送失败的消息
+   */
+  public void flush() {
+    Set<String> caches = null;
+    Set<String> tables = null;
+    synchronized (batchLock) {
+      flushScheduled = false;
+      if (!pendingCaches.isEmpty() || !pendingTables.isEmpty()) {
+        caches = pendingCaches;
+        tables = pendingTables;
+        pendingCaches = new LinkedHashSet<>();
+        pendingTables = new LinkedHashSet<>();
+      }
+    }
+    synchronized (sendLock) {
+      if (caches != null) {
+        unsentMessages.addLast(new InvalidationMessage(nodeId, sequence.incrementAndGet(), caches, tables));
+        if (unsentMessages.size() > MAX_UNSENT_MESSAGES) {
+          // 其他节点收到后续消息时会发现序号不连续,从而清空全部缓存
+          InvalidationMessage dropped = unsentMessages.removeFirst();
+          log.warn("Dropping unsent cache invalidation " + dropped.getSequence() + ", too many messages are waiting to be resent.");
+        }
+      }
+      while (!unsentMessages.isEmpty()) {
+        InvalidationMessage message = unsentMessages.peekFirst();
+        try {
+          transport.send(message.encode());
+        } catch (IOException e) {
+          log.warn("Failed to broadcast cache invalidation for caches " + message.getClearedCaches() + " and tables "
+              + message.getTables() + ", " + unsentMessages.size() + " message(s) will be resent. Cause: " + e);
+          scheduleRetry();
+          return;
+        }
+        unsentMessages.removeFirst();
+        sentMessages.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * @return 等待重发的消息数
+   */
+  public int getUnsentMessages() {
+    synchronized (sendLock) {
+      return unsentMessages.size();
+    }
+  }
+
+  private void scheduleRetry() {
+    ScheduledExecutorService currentScheduler = scheduler;
+    if (currentScheduler == null || retryScheduled) {
+      return;
+    }
+    retryScheduled = true;
+    currentScheduler.schedule(() -> {
+      synchronized (sendLock) {
+        retryScheduled = false;
+      }
+      flush();
+    }, RETRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 处理其他节点的消息
+   *
+   * @param bytes 消息
+   */
+  void receive(byte[] bytes) {
+    InvalidationMessage message;
+    try {
+      message = InvalidationMessage.decode(bytes);
+    } catch (IOException e) {
+      log.warn("Ignoring malformed cache invalidation message. Cause: " + e);
+      return;
+    }
+    if (nodeId.equals(message.getNodeId()) || !accept(message)) {
+      return;
+    }
+    receivedMessages.incrementAndGet();
+    TableVersions tableVersions = configuration.getTableVersions();
+    tableVersions.increment(message.getTables());
+    for (String cacheId : message.getClearedCaches()) {
+      tableVersions.increment(Collections.singleton(TableVersions.namespaceStamp(cacheId)));
+      if (configuration.hasCache(cacheId)) {
+        Cache cache = configuration.getCache(cacheId);
+        cache.clear();
+      }
+    }
+  }
+
+  private boolean accept(InvalidationMessage message) {
+    boolean[] accepted = new boolean[1];
+    boolean[] gap = new boolean[1];
+    receivedSequences.compute(message.getNodeId(), (node, last) -> {
+      if (last != null && last >= message.getSequence()) {
+        return last;
+      }
+      accepted[0] = true;
+      // 首次收到某节点的消息时序号应从1开始
+      gap[0] = message.getSequence() > (last == null ? 0L : last) + 1;
+      return message.getSequence();
+    });
+    if (gap[0]) {
+      log.warn("Missed cache invalidations from node " + message.getNodeId() + " before " + message.getSequence() + ".");
+      resync();
+    }
+    return accepted[0];
+  }
+
+  /**
+   * 可能丢失了其他节点的消息,使全部本地缓存失效
+   * 递增清空版本使正在加载的结果同样被视为过期.
+   */
+  void resync() {
+    resyncs.incrementAndGet();
+    TableVersions tableVersions = configuration.getTableVersions();
+    for (Cache cache : configuration.getCaches()) {
+      tableVersions.increment(Collections.singleton(TableVersions.namespaceStamp(cache.getId())));
+      cache.clear();
+    }
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * @return 已发送的消息数
+   */
+  public long getSentMessages() {
+    return sentMessages.get();
+  }
+
+  /**
+   * @return 已处理的其他节点消息数
+   */
+  public long getReceivedMessages() {
+    return receivedMessages.get();
+  }
+
+  /**
+   * @return 因可能丢失消息而清空全部缓存的次数
+   */
+  public long getResyncs() {
+    return resyncs.get();
+  }
+
+}
@@ -0,0 +1,114 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 缓存失效消息
+ * 使用固定格式编码(不使用Java序列化,避免反序列化来自网络的任意对象).
+ *
+ * @since 3.5.6
+ */
+final class InvalidationMessage {
+
+  private static final int VERSION = 1;
+  private static final int MAX_ENTRIES = 65536;
+
+  private final String nodeId;
+  private final long sequence;
+  private final Set<String> clearedCaches;
+  private final Set<String> tables;
+
+  InvalidationMessage(String nodeId, long sequence, Set<String> clearedCaches, Set<String> tables) {
+    this.nodeId = nodeId;
+    this.sequence = sequence;
+    this.clearedCaches = clearedCaches;
+    this.tables = tables;
+  }
+
+  String getNodeId() {
+    return nodeId;
+  }
+
+  long getSequence() {
+    return sequence;
+  }
+
+  Set<String> getClearedCaches() {
+    return clearedCaches;
+  }
+
+  Set<String> getTables() {
+    return tables;
+  }
+
+  byte[] encode() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      out.writeUTF(nodeId);
+      out.writeLong(sequence);
+      writeStrings(out, clearedCaches);
+      writeStrings(out, tables);
+    } catch (IOException e) {
+      // ByteArrayOutputStream不会抛出IOException
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static InvalidationMessage decode(byte[] message) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IOException("Unsupported cache invalidation message version " + version + ".");
+      }
+      String nodeId = in.readUTF();
+      long sequence = in.readLong();
+      Set<String> clearedCaches = readStrings(in);
+      Set<String> tables = readStrings(in);
+      return new InvalidationMessage(nodeId, sequence, clearedCaches, tables);
+    }
+  }
+
+  private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+    out.writeInt(values.size());
+    for (String value : values) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static Set<String> readStrings(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    if (size < 0 || size > MAX_ENTRIES) {
+      throw new IOException("Invalid cache invalidation message entry count " + size + ".");
+    }
+    Set<String> values = new LinkedHashSet<>();
+    for (int i = 0; i < size; i++) {
+      values.add(in.readUTF());
+    }
+    return values;
+  }
+
+}
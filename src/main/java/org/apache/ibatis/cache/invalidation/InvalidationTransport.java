@@ -0,0 +1,55 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * 缓存失效消息的传输方式
+ * 只负责在节点之间传递字节消息,消息的编码,批量及去重由{@link CacheInvalidationBus}处理.
+ *
+ * @since 3.5.6
+ * @see LoopbackTransport
+ * @see SocketTransport
+ */
+public interface InvalidationTransport {
+
+  /**
+   * 开始接收消息
+   *
+   * @param receiver     消息接收者(可能在传输实现的线程中调用)
+   * @param messagesLost 可能丢失了其他节点的消息时调用(如与其他节点的连接中断),接收方会清空全部缓存
+   * @throws IOException 打开失败
+   */
+  void open(Consumer<byte[]> receiver, Runnable messagesLost) throws IOException;
+
+  /**
+   * 发送消息给其他节点
+   * 抛出异常时由{@link CacheInvalidationBus}保留消息并稍后重发;
+   * 传输实现自行保证送达(如按对端重试)时可以直接返回.
+   *
+   * @param message 消息
+   * @throws IOException 发送失败
+   */
+  void send(byte[] message) throws IOException;
+
+  /**
+   * 关闭传输,释放资源
+   */
+  void close();
+
+}
@@ -0,0 +1,64 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内传输
+ * 连接到同一{@link Channel}的传输之间直接在发送线程中投递消息,用于测试或同一JVM中的多个配置.
+ *
+ * @since 3.5.6
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+  private final Channel channel;
+  private volatile Consumer<byte[]> receiver;
+
+  public LoopbackTransport(Channel channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void open(Consumer<byte[]> receiver, Runnable messagesLost) {
+    this.receiver = receiver;
+    channel.members.add(this);
+  }
+
+  @Override
+  public void send(byte[] message) {
+    for (LoopbackTransport member : channel.members) {
+      if (member != this) {
+        member.receiver.accept(message.clone());
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    channel.members.remove(this);
+  }
+
+  /**
+   * 进程内通道
+   */
+  public static class Channel {
+    private final List<LoopbackTransport> members = new CopyOnWriteArrayList<>();
+  }
+
+}
@@ -0,0 +1,317 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 基于TCP的简单传输
+ * 监听本地地址接收消息,并与每个对端保持一条连接发送消息(长度+内容).
+ * 每个对端有独立的发送队列和发送线程,同一对端的消息按发送顺序到达,某个对端不可用不影响发送给其他对端;
+ * 连接断开时重连并重发尚未写入的消息,队列积压过多时丢弃最早的消息(对端收到后续消息时会发现序号不连续).
+ * 接收连接中断时,对端在中断前写入的消息可能没有到达,此时通知接收方清空全部缓存.
+ *
+ * @since 3.5.6
+ */
+public class SocketTransport implements InvalidationTransport {
+
+  private static final Log log = LogFactory.getLog(SocketTransport.class);
+
+  private static final int MAX_MESSAGE_SIZE = 1024 * 1024;
+  private static final int MAX_BACKLOG = 10000;
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+  private static final long RETRY_DELAY_MILLIS = 200;
+  private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+  private final InetSocketAddress bindAddress;
+  private final List<Peer> peers = new CopyOnWriteArrayList<>();
+  private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+  private volatile ServerSocket serverSocket;
+  private volatile boolean closed;
+
+  /**
+   * @param bindAddress 本地监听地址(端口为0时随机分配,见{@link #getLocalPort()})
+   * @param peers       其他节点的地址
+   */
+  public SocketTransport(InetSocketAddress bindAddress, List<InetSocketAddress> peers) {
+    this.bindAddress = bindAddress;
+    for (InetSocketAddress address : peers) {
+      this.peers.add(new Peer(address));
+    }
+  }
+
+  @Override
+  public synchronized void open(Consumer<byte[]> receiver, Runnable messagesLost) throws IOException {
+    if (serverSocket != null) {
+      return;
+    }
+    ServerSocket server = new ServerSocket();
+    server.setReuseAddress(true);
+    server.bind(bindAddress);
+    serverSocket = server;
+    Thread acceptor = new Thread(() -> accept(server, receiver, messagesLost), "SocketTransport-acceptor-" + server.getLocalPort());
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * @return 实际监听的端口(未打开时返回-1)
+   */
+  public int getLocalPort() {
+    ServerSocket server = serverSocket;
+    return server == null ? -1 : server.getLocalPort();
+  }
+
+  /**
+   * 增加对端(用于监听端口在创建后才确定的场景)
+   *
+   * @param address 对端地址
+   */
+  public void addPeer(InetSocketAddress address) {
+    peers.add(new Peer(address));
+  }
+
+  /**
+   * 将消息放入每个对端的发送队列,由各对端的发送线程送达
+   *
+   * @param message 消息
+   * @throws IOException 传输已关闭
+   */
+  @Override
+  public void send(byte[] message) throws IOException {
+    if (closed) {
+      throw new IOException("Cache invalidation transport is closed.");
+    }
+    for (Peer peer : peers) {
+      peer.enqueue(message);
+    }
+  }
+
+  /**
+   * @return 所有对端等待发送的消息数
+   */
+  public int getPendingMessages() {
+    int pending = 0;
+    for (Peer peer : peers) {
+      pending += peer.pending.get();
+    }
+    return pending;
+  }
+
+  /**
+   * 等待已发送的消息写出(最多{@value #CLOSE_TIMEOUT_MILLIS}毫秒)后关闭
+   */
+  @Override
+  public synchronized void close() {
+    long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+    while (getPendingMessages() > 0 && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    closed = true;
+    closeQuietly(serverSocket);
+    serverSocket = null;
+    for (Peer peer : peers) {
+      peer.close();
+    }
+    for (Socket socket : inboundSockets) {
+      closeQuietly(socket);
+    }
+    inboundSockets.clear();
+  }
+
+  private void accept(ServerSocket server, Consumer<byte[]> receiver, Runnable messagesLost) {
+    while (!closed && !server.isClosed()) {
+      try {
+        Socket socket = server.accept();
+        socket.setKeepAlive(true);
+        inboundSockets.add(socket);
+        Thread reader = new Thread(() -> read(socket, receiver, messagesLost), "SocketTransport-reader-" + socket.getRemoteSocketAddress());
+        reader.setDaemon(true);
+        reader.start();
+      } catch (IOException e) {
+        if (!closed && !server.isClosed()) {
+          log.warn("Failed to accept cache invalidation connection. Cause: " + e);
+        }
+      }
+    }
+  }
+
+  private void read(Socket socket, Consumer<byte[]> receiver, Runnable messagesLost) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+      for (;;) {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_MESSAGE_SIZE) {
+          throw new IOException("Invalid cache invalidation message length " + length + ".");
+        }
+        byte[] message = new byte[length];
+        in.readFully(message);
+        receiver.accept(message);
+      }
+    } catch (EOFException | SocketException e) {
+      // 对端关闭连接
+    } catch (IOException e) {
+      log.warn("Closing cache invalidation connection from " + socket.getRemoteSocketAddress() + ". Cause: " + e);
+    } finally {
+      inboundSockets.remove(socket);
+      closeQuietly(socket);
+    }
+    if (!closed) {
+      messagesLost.run();
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * 对端连接
+   * 发送线程按顺序发送队列中的消息,发送失败时关闭连接,重连后重发同一条消息.
+   */
+  private final class Peer implements Runnable {
+
+    private final InetSocketAddress address;
+    private final LinkedBlockingDeque<byte[]> backlog = new LinkedBlockingDeque<>(MAX_BACKLOG);
+    /**
+     * 尚未写出的消息数(包括发送线程正在发送的消息)
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private Thread sender;
+    private volatile Socket socket;
+    private DataOutputStream out;
+
+    private Peer(InetSocketAddress address) {
+      this.address = address;
+    }
+
+    private void enqueue(byte[] message) {
+      pending.incrementAndGet();
+      while (!backlog.offerLast(message)) {
+        if (backlog.pollFirst() != null) {
+          pending.decrementAndGet();
+          log.warn("Dropping cache invalidation for " + address + ", too many messages are waiting to be sent.");
+        }
+      }
+      start();
+    }
+
+    private synchronized void start() {
+      if (sender == null && !closed) {
+        sender = new Thread(this, "SocketTransport-sender-" + address);
+        sender.setDaemon(true);
+        sender.start();
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!closed) {
+          byte[] message = backlog.takeFirst();
+          try {
+            deliver(message);
+          } finally {
+            pending.decrementAndGet();
+          }
+        }
+      } catch (InterruptedException e) {
+        // 传输已关闭
+      } finally {
+        disconnect();
+      }
+    }
+
+    private void deliver(byte[] message) throws InterruptedException {
+      boolean failed = false;
+      while (!closed) {
+        try {
+          write(message);
+          return;
+        } catch (IOException e) {
+          disconnect();
+          if (!failed && !closed) {
+            log.warn("Failed to send cache invalidation to " + address + ", retrying until it is reachable. Cause: " + e);
+          }
+          failed = true;
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        }
+      }
+    }
+
+    private void write(byte[] message) throws IOException {
+      if (socket == null) {
+        Socket connection = new Socket();
+        try {
+          connection.setTcpNoDelay(true);
+          connection.connect(address, CONNECT_TIMEOUT_MILLIS);
+          out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        } catch (IOException e) {
+          closeQuietly(connection);
+          throw e;
+        }
+        socket = connection;
+      }
+      out.writeInt(message.length);
+      out.write(message);
+      out.flush();
+    }
+
+    private void disconnect() {
+      closeQuietly(socket);
+      socket = null;
+      out = null;
+    }
+
+    private synchronized void close() {
+      if (sender != null) {
+        sender.interrupt();
+      }
+      closeQuietly(socket);
+    }
+  }
+
+}
@@ -0,0 +1,307 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 连接池指标
+ * 计数器与直方图均为无锁实现,读取时不需要获取连接池锁,可以低成本地周期性采集.
+ * 活跃/空闲/等待数为连接池每次变更后发布的快照.
+ * 在连接池锁内发生的事件(创建连接、校验失败、超时等)先进入队列,由连接池释放锁后统一通知监听器,监听器不会在锁内被回调.
+ *
+ * @since 3.5.6
+ */
+public class PoolMetrics implements PoolMetricsMXBean {
+
+  private final LongAdder createdConnections = new LongAdder();
+  private final LongAdder creationFailures = new LongAdder();
+  private final LongAdder validationFailures = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final Histogram acquisitionTime = new Histogram();
+  private final Histogram usageTime = new Histogram();
+  private final List<PoolMetricsListener> listeners = new CopyOnWriteArrayList<>();
+  private final Queue<Consumer<PoolMetricsListener>> pendingEvents = new ConcurrentLinkedQueue<>();
+  private volatile int activeConnections;
+  private volatile int idleConnections;
+  private volatile int pendingThreads;
+
+  public void addListener(PoolMetricsListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(PoolMetricsListener listener) {
+    listeners.remove(listener);
+  }
+
+  void updateGauges(int active, int idle, int pending) {
+    this.activeConnections = active;
+    this.idleConnections = idle;
+    this.pendingThreads = pending;
+  }
+
+  void recordAcquired(long acquisitionMillis) {
+    acquisitionTime.record(acquisitionMillis);
+    fireEvents();
+    for (PoolMetricsListener listener : listeners) {
+      listener.connectionAcquired(acquisitionMillis);
+    }
+  }
+
+  void recordReleased(long usageMillis) {
+    usageTime.record(usageMillis);
+    fireEvents();
+    for (PoolMetricsListener listener : listeners) {
+      listener.connectionReleased(usageMillis);
+    }
+  }
+
+  void recordCreated() {
+    createdConnections.increment();
+    queueEvent(PoolMetricsListener::connectionCreated);
+  }
+
+  void recordCreationFailure(SQLException cause) {
+    creationFailures.increment();
+    queueEvent(listener -> listener.connectionCreationFailed(cause));
+  }
+
+  void recordValidationFailure() {
+    validationFailures.increment();
+    queueEvent(PoolMetricsListener::connectionValidationFailed);
+  }
+
+  void recordTimeout() {
+    timeouts.increment();
+    queueEvent(PoolMetricsListener::connectionTimedOut);
+  }
+
+  private void queueEvent(Consumer<PoolMetricsListener> event) {
+    if (!listeners.isEmpty()) {
+      pendingEvents.add(event);
+    }
+  }
+
+  /**
+   * 通知监听器队列中的事件,调用方不能持有连接池锁
+   */
+  void fireEvents() {
+    Consumer<PoolMetricsListener> event;
+    while ((event = pendingEvents.poll()) != null) {
+      for (PoolMetricsListener listener : listeners) {
+        event.accept(listener);
+      }
+    }
+  }
+
+  /**
+   * 获取连接耗时直方图(毫秒)
+   *
+   * @return 直方图
+   */
+  public Histogram getAcquisitionTime() {
+    return acquisitionTime;
+  }
+
+  /**
+   * 连接借出时长直方图(毫秒)
+   *
+   * @return 直方图
+   */
+  public Histogram getUsageTime() {
+    return usageTime;
+  }
+
+  @Override
+  public int getActiveConnections() {
+    return activeConnections;
+  }
+
+  @Override
+  public int getIdleConnections() {
+    return idleConnections;
+  }
+
+  @Override
+  public int getPendingThreads() {
+    return pendingThreads;
+  }
+
+  @Override
+  public long getCreatedConnections() {
+    return createdConnections.sum();
+  }
+
+  @Override
+  public long getCreationFailures() {
+    return creationFailures.sum();
+  }
+
+  @Override
+  public long getValidationFailures() {
+    return validationFailures.sum();
+  }
+
+  @Override
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  @Override
+  public long getAcquisitionCount() {
+    return acquisitionTime.getCount();
+  }
+
+  @Override
+  public long getAcquisitionTimeMean() {
+    return acquisitionTime.getMean();
+  }
+
+  @Override
+  public long getAcquisitionTimeP95() {
+    return acquisitionTime.getPercentile(0.95);
+  }
+
+  @Override
+  public long getAcquisitionTimeP99() {
+    return acquisitionTime.getPercentile(0.99);
+  }
+
+  @Override
+  public long getAcquisitionTimeMax() {
+    return acquisitionTime.getMax();
+  }
+
+  @Override
+  public long getUsageTimeMean() {
+    return usageTime.getMean();
+  }
+
+  @Override
+  public long getUsageTimeP95() {
+    return usageTime.getPercentile(0.95);
+  }
+
+  @Override
+  public long getUsageTimeP99() {
+    return usageTime.getPercentile(0.99);
+  }
+
+  @Override
+  public long getUsageTimeMax() {
+    return usageTime.getMax();
+  }
+
+  /**
+   * 固定分桶的无锁直方图
+   * 百分位数返回所在分桶的上界,超出最大分桶时返回最大值.
+   */
+  public static final class Histogram {
+
+    private static final long[] BUCKET_BOUNDS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public Histogram() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    public void record(long value) {
+      int index = 0;
+      while (index < BUCKET_BOUNDS.length && value > BUCKET_BOUNDS[index]) {
+        index++;
+      }
+      buckets[index].increment();
+      count.increment();
+      total.add(value);
+      max.accumulate(value);
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public long getTotal() {
+      return total.sum();
+    }
+
+    public long getMax() {
+      return max.get();
+    }
+
+    public long getMean() {
+      long n = count.sum();
+      return n == 0 ? 0 : total.sum() / n;
+    }
+
+    /**
+     * 估算百分位数
+     *
+     * @param percentile 百分位(0~1)
+     * @return 所在分桶的上界
+     */
+    public long getPercentile(double percentile) {
+      long[] counts = getBucketCounts();
+      long n = 0;
+      for (long c : counts) {
+        n += c;
+      }
+      if (n == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(percentile * n);
+      long cumulative = 0;
+      for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+        cumulative += counts[i];
+        if (cumulative >= rank) {
+          return Math.min(BUCKET_BOUNDS[i], getMax());
+        }
+      }
+      return getMax();
+    }
+
+    /**
+     * @return 各分桶的上界(最后一个分桶没有上界)
+     */
+    public long[] getBucketBounds() {
+      return BUCKET_BOUNDS.clone();
+    }
+
+    /**
+     * @return 各分桶的计数,长度比{@link #getBucketBounds()}多1
+     */
+    public long[] getBucketCounts() {
+      long[] counts = new long[buckets.length];
+      for (int i = 0; i < buckets.length; i++) {
+        counts[i] = buckets[i].sum();
+      }
+      return counts;
+    }
+  }
+
+}
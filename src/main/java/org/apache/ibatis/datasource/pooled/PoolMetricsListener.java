@@ -0,0 +1,77 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.SQLException;
+
+/**
+ * 连接池指标监听器
+ * 回调在获取/归还连接的路径上执行(不会在连接池锁内),实现应尽量轻量且不能阻塞.
+ *
+ * @since 3.5.6
+ * @see PooledDataSource#addPoolMetricsListener(PoolMetricsListener)
+ */
+public interface PoolMetricsListener {
+
+  /**
+   * 获取到连接
+   *
+   * @param acquisitionMillis 获取连接耗时(毫秒,包含等待时间)
+   */
+  default void connectionAcquired(long acquisitionMillis) {
+    // NOP
+  }
+
+  /**
+   * 连接归还到连接池
+   *
+   * @param usageMillis 连接被借出的时长(毫秒)
+   */
+  default void connectionReleased(long usageMillis) {
+    // NOP
+  }
+
+  /**
+   * 创建了新的物理连接
+   */
+  default void connectionCreated() {
+    // NOP
+  }
+
+  /**
+   * 创建物理连接失败
+   *
+   * @param cause 异常
+   */
+  default void connectionCreationFailed(SQLException cause) {
+    // NOP
+  }
+
+  /**
+   * 连接校验失败(借出、归还或后台校验时发现坏连接)
+   */
+  default void connectionValidationFailed() {
+    // NOP
+  }
+
+  /**
+   * 等待连接超时
+   */
+  default void connectionTimedOut() {
+    // NOP
+  }
+
+}
@@ -0,0 +1,58 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * 连接池指标的JMX视图
+ *
+ * @since 3.5.6
+ * @see PooledDataSource#setPoolJmxName(String)
+ */
+public interface PoolMetricsMXBean {
+
+  int getActiveConnections();
+
+  int getIdleConnections();
+
+  int getPendingThreads();
+
+  long getCreatedConnections();
+
+  long getCreationFailures();
+
+  long getValidationFailures();
+
+  long getTimeouts();
+
+  long getAcquisitionCount();
+
+  long getAcquisitionTimeMean();
+
+  long getAcquisitionTimeP95();
+
+  long getAcquisitionTimeP99();
+
+  long getAcquisitionTimeMax();
+
+  long getUsageTimeMean();
+
+  long getUsageTimeP95();
+
+  long getUsageTimeP99();
+
+  long getUsageTimeMax();
+
+}
@@ -15,7 +15,9 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 /**
@@ -27,6 +29,7 @@ public class PoolState {
 
   protected final List<PooledConnection> idleConnections = new ArrayList<>();
   protected final List<PooledConnection> activeConnections = new ArrayList<>();
+  protected final Deque<Waiter> waiters = new ArrayDeque<>();
   protected long requestCount = 0;
   protected long accumulatedRequestTime = 0;
   protected long accumulatedCheckoutTime = 0;
@@ -35,6 +38,14 @@ public class PoolState {
   protected long accumulatedWaitTime = 0;
   protected long hadToWaitCount = 0;
   protected long badConnectionCount = 0;
+  protected long retiredConnectionCount = 0;
+  protected long timedOutRequestCount = 0;
+  protected long leakedConnectionCount = 0;
+  /**
+   * Connections held by the housekeeping task while they are validated or created. They are in neither list but
+   * count toward the maximum number of active connections.
+   */
+  protected int maintainedConnectionCount = 0;
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
@@ -73,6 +84,47 @@ public class PoolState {
     return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
   }
 
+  /**
+   * Gets the number of idle connections closed by the housekeeping task because they exceeded
+   * the maximum lifetime or the idle timeout.
+   *
+   * @return the retired connection count
+   * @since 3.5.6
+   */
+  public synchronized long getRetiredConnectionCount() {
+    return retiredConnectionCount;
+  }
+
+  /**
+   * Gets the number of requests that gave up after waiting for the connection timeout.
+   *
+   * @return the timed out request count
+   * @since 3.5.6
+   */
+  public synchronized long getTimedOutRequestCount() {
+    return timedOutRequestCount;
+  }
+
+  /**
+   * Gets the number of checked out connections reported as possibly leaked.
+   *
+   * @return the leaked connection count
+   * @since 3.5.6
+   */
+  public synchronized long getLeakedConnectionCount() {
+    return leakedConnectionCount;
+  }
+
+  /**
+   * Gets the number of threads currently waiting for a connection.
+   *
+   * @return the waiting thread count
+   * @since 3.5.6
+   */
+  public synchronized int getWaitingThreadCount() {
+    return waiters.size();
+  }
+
   public synchronized int getIdleConnectionCount() {
     return idleConnections.size();
   }
@@ -96,6 +148,13 @@ public class PoolState {
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolMaintenanceInterval        ").append(dataSource.poolMaintenanceInterval);
+    builder.append("\n poolMaximumLifetime            ").append(dataSource.poolMaximumLifetime);
+    builder.append("\n poolIdleTimeout                ").append(dataSource.poolIdleTimeout);
+    builder.append("\n poolMinimumIdleConnections     ").append(dataSource.poolMinimumIdleConnections);
+    builder.append("\n poolValidationTimeout          ").append(dataSource.poolValidationTimeout);
+    builder.append("\n poolConnectionTimeout          ").append(dataSource.poolConnectionTimeout);
+    builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -107,8 +166,71 @@ public class PoolState {
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+    builder.append("\n retiredConnectionCount         ").append(getRetiredConnectionCount());
+    builder.append("\n waitingThreads                 ").append(getWaitingThreadCount());
+    builder.append("\n timedOutRequestCount           ").append(getTimedOutRequestCount());
+    builder.append("\n leakedConnectionCount          ").append(getLeakedConnectionCount());
     builder.append("\n===============================================================");
     return builder.toString();
   }
 
+  /**
+   * A thread waiting for a connection. Waiters are queued in arrival order and
+   * a returned connection is handed directly to the first one.
+   */
+  static final class Waiter {
+
+    private PooledConnection connection;
+    private boolean signalled;
+    // guarded by the pool state
+    boolean queued;
+    boolean requeue;
+
+    /**
+     * Hands a connection to the waiter, or wakes it up to retry when the connection is null.
+     */
+    synchronized void signal(PooledConnection connection) {
+      this.connection = connection;
+      this.signalled = true;
+      notify();
+    }
+
+    /**
+     * Waits until signalled or the given time has passed.
+     *
+     * @return false if the thread was interrupted, the interrupt status is restored in that case
+     */
+    synchronized boolean await(long millis) {
+      long end = System.currentTimeMillis() + millis;
+      try {
+        while (!signalled) {
+          if (millis <= 0) {
+            wait();
+          } else {
+            long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0) {
+              break;
+            }
+            wait(remaining);
+          }
+        }
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    synchronized boolean isSignalled() {
+      return signalled;
+    }
+
+    synchronized PooledConnection take() {
+      PooledConnection result = connection;
+      connection = null;
+      signalled = false;
+      return result;
+    }
+  }
+
 }
@@ -38,8 +38,11 @@ class PooledConnection implements InvocationHandler {
   private long checkoutTimestamp;
   private long createdTimestamp;
   private long lastUsedTimestamp;
+  private final long idleTimestamp;
   private int connectionTypeCode;
   private boolean valid;
+  private Throwable checkoutTrace;
+  private boolean leakReported;
 
   /**
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in.
@@ -55,6 +58,7 @@ class PooledConnection implements InvocationHandler {
     this.dataSource = dataSource;
     this.createdTimestamp = System.currentTimeMillis();
     this.lastUsedTimestamp = System.currentTimeMillis();
+    this.idleTimestamp = this.lastUsedTimestamp;
     this.valid = true;
     this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
   }
@@ -168,6 +172,16 @@ class PooledConnection implements InvocationHandler {
     return System.currentTimeMillis() - lastUsedTimestamp;
   }
 
+  /**
+   * Getter for the time since this connection was returned to the pool.
+   *
+   * @return the time since the connection became idle
+   * @since 3.5.6
+   */
+  public long getTimeElapsedSinceIdle() {
+    return System.currentTimeMillis() - idleTimestamp;
+  }
+
   /**
    * Getter for the age of the connection.
    *
@@ -205,6 +219,40 @@ class PooledConnection implements InvocationHandler {
     return System.currentTimeMillis() - checkoutTimestamp;
   }
 
+  /**
+   * Getter for the stack trace recorded when this connection was checked out (only with leak detection enabled).
+   *
+   * @return the stack trace or null
+   * @since 3.5.6
+   */
+  public Throwable getCheckoutTrace() {
+    return checkoutTrace;
+  }
+
+  /**
+   * Setter for the stack trace recorded when this connection was checked out.
+   *
+   * @param checkoutTrace
+   *          the stack trace
+   * @since 3.5.6
+   */
+  public void setCheckoutTrace(Throwable checkoutTrace) {
+    this.checkoutTrace = checkoutTrace;
+    this.leakReported = false;
+  }
+
+  /**
+   * Marks this connection as reported as possibly leaked.
+   *
+   * @return false if it was already reported
+   * @since 3.5.6
+   */
+  public boolean markLeakReported() {
+    boolean first = !leakReported;
+    leakReported = true;
+    return first;
+  }
+
   @Override
   public int hashCode() {
     return hashCode;
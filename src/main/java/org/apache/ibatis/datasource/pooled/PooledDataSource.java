@@ -16,17 +16,29 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
+import org.apache.ibatis.datasource.DataSourceException;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -42,6 +54,8 @@ public class PooledDataSource implements DataSource {
 
   private final PoolState state = new PoolState(this);
 
+  private final PoolMetrics metrics = new PoolMetrics();
+
   private final UnpooledDataSource dataSource;
 
   // OPTIONAL CONFIGURATION FIELDS
@@ -53,8 +67,17 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
+  protected int poolMaintenanceInterval;
+  protected int poolMaximumLifetime;
+  protected int poolIdleTimeout;
+  protected int poolMinimumIdleConnections;
+  protected int poolValidationTimeout = 5;
+  protected int poolConnectionTimeout;
+  protected int poolLeakDetectionThreshold;
 
   private int expectedConnectionTypeCode;
+  private ScheduledExecutorService maintenanceScheduler;
+  private ObjectName jmxName;
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
@@ -86,12 +109,20 @@ public class PooledDataSource implements DataSource {
 
   @Override
   public Connection getConnection() throws SQLException {
-    return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+    try {
+      return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+    } finally {
+      metrics.fireEvents();
+    }
   }
 
   @Override
   public Connection getConnection(String username, String password) throws SQLException {
-    return popConnection(username, password).getProxyConnection();
+    try {
+      return popConnection(username, password).getProxyConnection();
+    } finally {
+      metrics.fireEvents();
+    }
   }
 
   @Override
@@ -254,6 +285,122 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * The interval of the background housekeeping task. When enabled, idle connections are validated by
+   * {@link Connection#isValid(int)} in the background and the ping query is no longer executed on checkout.
+   * Unlike the connection properties, this and the other housekeeping settings can be changed without closing
+   * the open connections.
+   *
+   * @param milliseconds
+   *          the interval in milliseconds (0 disables the housekeeping task)
+   * @since 3.5.6
+   */
+  public void setPoolMaintenanceInterval(int milliseconds) {
+    synchronized (state) {
+      this.poolMaintenanceInterval = milliseconds;
+      // restarted with the new interval on the next checkout
+      stopMaintenance();
+    }
+  }
+
+  /**
+   * The maximum lifetime of a connection. Expired connections are retired when they are idle or returned to the pool.
+   *
+   * @param milliseconds
+   *          the maximum lifetime in milliseconds (0 means no limit)
+   * @since 3.5.6
+   */
+  public void setPoolMaximumLifetime(int milliseconds) {
+    this.poolMaximumLifetime = milliseconds;
+  }
+
+  /**
+   * The time an idle connection may sit in the pool before the housekeeping task closes it.
+   * Connections within {@link #setPoolMinimumIdleConnections(int)} are kept.
+   *
+   * @param milliseconds
+   *          the idle timeout in milliseconds (0 means no limit)
+   * @since 3.5.6
+   */
+  public void setPoolIdleTimeout(int milliseconds) {
+    this.poolIdleTimeout = milliseconds;
+  }
+
+  /**
+   * The number of idle connections the housekeeping task keeps open in advance.
+   *
+   * @param poolMinimumIdleConnections
+   *          the minimum number of idle connections
+   * @since 3.5.6
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+  }
+
+  /**
+   * The timeout passed to {@link Connection#isValid(int)} by the housekeeping task.
+   *
+   * @param seconds
+   *          the validation timeout in seconds
+   * @since 3.5.6
+   */
+  public void setPoolValidationTimeout(int seconds) {
+    this.poolValidationTimeout = seconds;
+  }
+
+  /**
+   * The total time a thread waits for a connection before an exception is thrown.
+   * Waiting threads are served in arrival order.
+   *
+   * @param milliseconds
+   *          the connection timeout in milliseconds (0 means wait without limit)
+   * @since 3.5.6
+   */
+  public void setPoolConnectionTimeout(int milliseconds) {
+    this.poolConnectionTimeout = milliseconds;
+  }
+
+  /**
+   * Enables the leak detection. Connections checked out longer than the threshold are reported
+   * with the stack trace of their checkout instead of being claimed by waiting threads
+   * (i.e. {@link #setPoolMaximumCheckoutTime(int)} is not applied).
+   *
+   * @param milliseconds
+   *          the leak detection threshold in milliseconds (0 disables the leak detection)
+   * @since 3.5.6
+   */
+  public void setPoolLeakDetectionThreshold(int milliseconds) {
+    this.poolLeakDetectionThreshold = milliseconds;
+  }
+
+  /**
+   * Publishes the pool metrics as a JMX MBean named
+   * <code>org.apache.ibatis.datasource:type=PooledDataSource,name=&lt;name&gt;</code> on the platform MBean server.
+   * Setting another name moves the MBean, setting null unregisters it.
+   *
+   * @param name
+   *          the name of the pool
+   * @since 3.5.6
+   */
+  public synchronized void setPoolJmxName(String name) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (jmxName != null) {
+        if (server.isRegistered(jmxName)) {
+          server.unregisterMBean(jmxName);
+        }
+        jmxName = null;
+      }
+      if (name != null) {
+        ObjectName objectName = new ObjectName("org.apache.ibatis.datasource:type=PooledDataSource,name=" + ObjectName.quote(name));
+        server.registerMBean(metrics, objectName);
+        jmxName = objectName;
+      }
+    } catch (JMException e) {
+      throw new DataSourceException("Error registering the pool metrics MBean '" + name + "'. Cause: " + e, e);
+    }
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -324,11 +471,44 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  public int getPoolMaintenanceInterval() {
+    return poolMaintenanceInterval;
+  }
+
+  public int getPoolMaximumLifetime() {
+    return poolMaximumLifetime;
+  }
+
+  public int getPoolIdleTimeout() {
+    return poolIdleTimeout;
+  }
+
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  public int getPoolValidationTimeout() {
+    return poolValidationTimeout;
+  }
+
+  public int getPoolConnectionTimeout() {
+    return poolConnectionTimeout;
+  }
+
+  public int getPoolLeakDetectionThreshold() {
+    return poolLeakDetectionThreshold;
+  }
+
+  public String getPoolJmxName() {
+    return jmxName == null ? null : ObjectName.unquote(jmxName.getKeyProperty("name"));
+  }
+
   /**
-   * Closes all active and idle connections in the pool.
+   * Closes all active and idle connections in the pool and stops the housekeeping task.
    */
   public void forceCloseAll() {
     synchronized (state) {
+      stopMaintenance();
       expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
       for (int i = state.activeConnections.size(); i > 0; i--) {
         try {
@@ -358,6 +538,11 @@ public class PooledDataSource implements DataSource {
           // ignore
         }
       }
+      // let the waiting threads create new connections
+      while (!state.waiters.isEmpty()) {
+        wakeUpFirstWaiter();
+      }
+      publishGauges();
     }
     if (log.isDebugEnabled()) {
       log.debug("PooledDataSource forcefully closed/removed all connections.");
@@ -368,29 +553,67 @@ public class PooledDataSource implements DataSource {
     return state;
   }
 
+  /**
+   * Gets the lock free metrics of this pool.
+   *
+   * @return the pool metrics
+   * @since 3.5.6
+   */
+  public PoolMetrics getPoolMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Adds a listener notified of the pool events.
+   *
+   * @param listener
+   *          the listener
+   * @since 3.5.6
+   */
+  public void addPoolMetricsListener(PoolMetricsListener listener) {
+    metrics.addListener(listener);
+  }
+
+  /**
+   * Removes a pool metrics listener.
+   *
+   * @param listener
+   *          the listener
+   * @since 3.5.6
+   */
+  public void removePoolMetricsListener(PoolMetricsListener listener) {
+    metrics.removeListener(listener);
+  }
+
   private int assembleConnectionTypeCode(String url, String username, String password) {
     return ("" + url + username + password).hashCode();
   }
 
   protected void pushConnection(PooledConnection conn) throws SQLException {
-
+    long usageTime = conn.getCheckoutTime();
     synchronized (state) {
       state.activeConnections.remove(conn);
       if (conn.isValid()) {
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+        boolean reusable = conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn, System.currentTimeMillis());
+        if (reusable && (!state.waiters.isEmpty() || state.idleConnections.size() < poolMaximumIdleConnections)) {
           state.accumulatedCheckoutTime += conn.getCheckoutTime();
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
           PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
-          state.idleConnections.add(newConn);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
           conn.invalidate();
-          if (log.isDebugEnabled()) {
-            log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+          if (handOff(newConn)) {
+            if (log.isDebugEnabled()) {
+              log.debug("Handed returned connection " + newConn.getRealHashCode() + " to a waiting thread.");
+            }
+          } else {
+            state.idleConnections.add(newConn);
+            if (log.isDebugEnabled()) {
+              log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+            }
           }
-          state.notifyAll();
         } else {
           state.accumulatedCheckoutTime += conn.getCheckoutTime();
           if (!conn.getRealConnection().getAutoCommit()) {
@@ -401,25 +624,115 @@ public class PooledDataSource implements DataSource {
             log.debug("Closed connection " + conn.getRealHashCode() + ".");
           }
           conn.invalidate();
+          wakeUpFirstWaiter();
         }
       } else {
         if (log.isDebugEnabled()) {
           log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
         }
         state.badConnectionCount++;
+        metrics.recordValidationFailure();
+        wakeUpFirstWaiter();
       }
+      publishGauges();
     }
+    metrics.recordReleased(usageTime);
+  }
+
+  /**
+   * Hands an idle connection directly to the first waiting thread. Must be called while holding the pool state.
+   *
+   * @param conn
+   *          the idle connection
+   * @return false if there is no waiting thread
+   */
+  private boolean handOff(PooledConnection conn) {
+    PoolState.Waiter waiter = state.waiters.pollFirst();
+    if (waiter == null) {
+      return false;
+    }
+    waiter.queued = false;
+    // the connection counts as active from now on so that the pool size is never exceeded
+    conn.setCheckoutTimestamp(System.currentTimeMillis());
+    state.activeConnections.add(conn);
+    waiter.signal(conn);
+    return true;
+  }
+
+  /**
+   * Wakes up the first waiting thread to retry after a slot of the pool has been freed.
+   * Must be called while holding the pool state.
+   */
+  private void wakeUpFirstWaiter() {
+    PoolState.Waiter waiter = state.waiters.pollFirst();
+    if (waiter != null) {
+      waiter.queued = false;
+      waiter.requeue = true;
+      waiter.signal(null);
+    }
+  }
+
+  /**
+   * A thread may take an idle connection or create a new one only if nobody is waiting before it.
+   */
+  private boolean isFirstInLine(PoolState.Waiter waiter) {
+    return state.waiters.isEmpty() || waiter != null && (waiter.requeue || state.waiters.peekFirst() == waiter);
+  }
+
+  private PooledConnection createConnection() throws SQLException {
+    Connection realConnection;
+    try {
+      realConnection = dataSource.getConnection();
+    } catch (SQLException e) {
+      metrics.recordCreationFailure(e);
+      throw e;
+    }
+    metrics.recordCreated();
+    return new PooledConnection(realConnection, this);
+  }
+
+  private void publishGauges() {
+    metrics.updateGauges(state.activeConnections.size(), state.idleConnections.size(), state.waiters.size());
+  }
+
+  /**
+   * Hands a connection held by the housekeeping task to the first waiting thread or puts it back to the idle list.
+   * Must be called while holding the pool state.
+   *
+   * @return false if nobody is waiting and the idle list is full, the caller must close the connection
+   */
+  private boolean addIdleConnection(PooledConnection conn) {
+    boolean added = handOff(conn);
+    if (!added && state.idleConnections.size() < poolMaximumIdleConnections) {
+      state.idleConnections.add(conn);
+      added = true;
+    }
+    publishGauges();
+    return added;
   }
 
   private PooledConnection popConnection(String username, String password) throws SQLException {
     boolean countedWait = false;
     PooledConnection conn = null;
     long t = System.currentTimeMillis();
+    long deadline = poolConnectionTimeout > 0 ? t + poolConnectionTimeout : 0;
     int localBadConnectionCount = 0;
+    PoolState.Waiter waiter = null;
+    PooledConnection handedOff = null;
 
     while (conn == null) {
+      boolean mustWait = false;
       synchronized (state) {
-        if (!state.idleConnections.isEmpty()) {
+        if (poolMaintenanceInterval > 0 && maintenanceScheduler == null) {
+          startMaintenance();
+        }
+        if (handedOff != null) {
+          // Connection was handed over by a returning thread
+          conn = handedOff;
+          if (log.isDebugEnabled()) {
+            log.debug("Received connection " + conn.getRealHashCode() + " from pool.");
+          }
+        } else if (!state.idleConnections.isEmpty() && isFirstInLine(waiter)) {
           // Pool has available connection
           conn = state.idleConnections.remove(0);
           if (log.isDebugEnabled()) {
@@ -427,17 +740,28 @@ public class PooledDataSource implements DataSource {
           }
         } else {
           // Pool does not have available connection
-          if (state.activeConnections.size() < poolMaximumActiveConnections) {
+          if (state.activeConnections.size() + state.maintainedConnectionCount < poolMaximumActiveConnections
+              && isFirstInLine(waiter)) {
             // Can create new connection
-            conn = new PooledConnection(dataSource.getConnection(), this);
+            try {
+              conn = createConnection();
+            } catch (SQLException | RuntimeException e) {
+              // the slot is still free, pass on the turn this thread did not use
+              leaveLine(waiter);
+              wakeUpFirstWaiter();
+              publishGauges();
+              throw e;
+            }
             if (log.isDebugEnabled()) {
               log.debug("Created connection " + conn.getRealHashCode() + ".");
             }
           } else {
             // Cannot create new connection
-            PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-            if (longestCheckoutTime > poolMaximumCheckoutTime) {
+            PooledConnection oldestActiveConnection = state.activeConnections.isEmpty() ? null : state.activeConnections.get(0);
+            long longestCheckoutTime = oldestActiveConnection == null ? 0 : oldestActiveConnection.getCheckoutTime();
+            if (poolLeakDetectionThreshold > 0) {
+              reportLeakedConnections();
+            } else if (longestCheckoutTime > poolMaximumCheckoutTime) {
               // Can claim overdue connection
               state.claimedOverdueConnectionCount++;
               state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
@@ -465,44 +789,80 @@ public class PooledDataSource implements DataSource {
               if (log.isDebugEnabled()) {
                 log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
               }
-            } else {
-              // Must wait
-              try {
-                if (!countedWait) {
-                  state.hadToWaitCount++;
-                  countedWait = true;
-                }
-                if (log.isDebugEnabled()) {
-                  log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+            }
+            if (conn == null) {
+              // Must wait, in arrival order
+              if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+                throw connectionTimeout(waiter);
+              }
+              if (!countedWait) {
+                state.hadToWaitCount++;
+                countedWait = true;
+              }
+              if (waiter == null) {
+                waiter = new PoolState.Waiter();
+              }
+              if (!waiter.queued) {
+                if (waiter.requeue) {
+                  state.waiters.addFirst(waiter);
+                } else {
+                  state.waiters.addLast(waiter);
                 }
-                long wt = System.currentTimeMillis();
-                state.wait(poolTimeToWait);
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
-              } catch (InterruptedException e) {
-                break;
+                waiter.queued = true;
               }
+              mustWait = true;
             }
           }
         }
+        if (conn != null && waiter != null) {
+          // A waiting thread got a connection, leave the line to the next one
+          if (waiter.queued) {
+            state.waiters.remove(waiter);
+            waiter.queued = false;
+          }
+          waiter.requeue = false;
+        }
         if (conn != null) {
           // ping to server and check the connection is valid or not
           if (conn.isValid()) {
-            if (!conn.getRealConnection().getAutoCommit()) {
-              conn.getRealConnection().rollback();
+            try {
+              if (!conn.getRealConnection().getAutoCommit()) {
+                conn.getRealConnection().rollback();
+              }
+            } catch (SQLException | RuntimeException e) {
+              // a handed off connection already occupies a slot, release it together with the broken connection
+              state.activeConnections.remove(conn);
+              closeQuietly(conn);
+              state.badConnectionCount++;
+              wakeUpFirstWaiter();
+              publishGauges();
+              throw e;
             }
             conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
             conn.setCheckoutTimestamp(System.currentTimeMillis());
             conn.setLastUsedTimestamp(System.currentTimeMillis());
-            state.activeConnections.add(conn);
+            if (poolLeakDetectionThreshold > 0) {
+              conn.setCheckoutTrace(new Exception("Connection " + conn.getRealHashCode() + " was checked out here"));
+            }
+            if (handedOff == null) {
+              state.activeConnections.add(conn);
+            }
             state.requestCount++;
             state.accumulatedRequestTime += System.currentTimeMillis() - t;
           } else {
             if (log.isDebugEnabled()) {
               log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
             }
+            if (handedOff != null) {
+              state.activeConnections.remove(conn);
+            }
             state.badConnectionCount++;
+            metrics.recordValidationFailure();
             localBadConnectionCount++;
             conn = null;
+            if (waiter != null) {
+              waiter.requeue = true;
+            }
             if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
               if (log.isDebugEnabled()) {
                 log.debug("PooledDataSource: Could not get a good connection to the database.");
@@ -510,9 +870,37 @@ public class PooledDataSource implements DataSource {
               throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
             }
           }
+          handedOff = null;
         }
+        publishGauges();
       }
 
+      if (mustWait) {
+        long wt = System.currentTimeMillis();
+        long timeToWait = poolTimeToWait;
+        if (deadline > 0) {
+          timeToWait = timeToWait > 0 ? Math.min(timeToWait, deadline - wt) : deadline - wt;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Waiting as long as " + timeToWait + " milliseconds for connection.");
+        }
+        boolean interrupted = !waiter.await(timeToWait);
+        synchronized (state) {
+          state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+          if (waiter.isSignalled()) {
+            handedOff = waiter.take();
+          } else if (interrupted) {
+            boolean requeued = waiter.requeue;
+            leaveLine(waiter);
+            if (requeued) {
+              // pass on the wake up this thread did not use
+              wakeUpFirstWaiter();
+            }
+            publishGauges();
+            throw new SQLException("PooledDataSource: Interrupted while waiting for a connection.");
+          }
+        }
+      }
     }
 
     if (conn == null) {
@@ -522,9 +910,59 @@ public class PooledDataSource implements DataSource {
       throw new SQLException("PooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
     }
 
+    metrics.recordAcquired(System.currentTimeMillis() - t);
     return conn;
   }
 
+  /**
+   * Removes the thread from the line of waiting threads. Must be called while holding the pool state.
+   */
+  private void leaveLine(PoolState.Waiter waiter) {
+    if (waiter != null) {
+      if (waiter.queued) {
+        state.waiters.remove(waiter);
+        waiter.queued = false;
+      }
+      waiter.requeue = false;
+    }
+  }
+
+  private SQLException connectionTimeout(PoolState.Waiter waiter) {
+    if (waiter != null && waiter.queued) {
+      state.waiters.remove(waiter);
+      waiter.queued = false;
+      if (waiter.requeue) {
+        // pass on the wake up this thread did not use
+        wakeUpFirstWaiter();
+      }
+    }
+    state.timedOutRequestCount++;
+    metrics.recordTimeout();
+    publishGauges();
+    String message = "PooledDataSource: Timed out after " + poolConnectionTimeout + " milliseconds waiting for a connection. "
+        + state.activeConnections.size() + " active, " + state.waiters.size() + " waiting.";
+    if (log.isDebugEnabled()) {
+      log.debug(message);
+    }
+    return new SQLException(message);
+  }
+
+  /**
+   * Logs the checkout stack trace of connections that have been checked out longer than the leak detection threshold.
+   * Must be called while holding the pool state.
+   */
+  private void reportLeakedConnections() {
+    for (PooledConnection conn : state.activeConnections) {
+      if (conn.getCheckoutTime() > poolLeakDetectionThreshold && conn.getCheckoutTrace() != null && conn.markLeakReported()) {
+        state.leakedConnectionCount++;
+        StringWriter trace = new StringWriter();
+        conn.getCheckoutTrace().printStackTrace(new PrintWriter(trace));
+        log.warn("Connection " + conn.getRealHashCode() + " has been checked out for " + conn.getCheckoutTime()
+            + " milliseconds, possible connection leak: " + trace);
+      }
+    }
+  }
+
   /**
    * Method to check to see if a connection is still usable
    *
@@ -544,7 +982,7 @@ public class PooledDataSource implements DataSource {
       result = false;
     }
 
-    if (result && poolPingEnabled && poolPingConnectionsNotUsedFor >= 0
+    if (result && poolPingEnabled && poolMaintenanceInterval <= 0 && poolPingConnectionsNotUsedFor >= 0
         && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
       try {
         if (log.isDebugEnabled()) {
@@ -577,6 +1015,181 @@ public class PooledDataSource implements DataSource {
     return result;
   }
 
+  /**
+   * Validates a connection with {@link Connection#isValid(int)}. Used by the housekeeping task.
+   *
+   * @param conn
+   *          - the connection to check
+   * @return True if the connection is still usable
+   * @since 3.5.6
+   */
+  protected boolean validateConnection(PooledConnection conn) {
+    try {
+      return conn.getRealConnection().isValid(poolValidationTimeout);
+    } catch (SQLException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Runs one round of housekeeping: retires expired and timed out idle connections, validates the remaining idle
+   * connections and creates new connections up to the minimum idle count.
+   * Invoked periodically by the background task when {@link #setPoolMaintenanceInterval(int)} is set.
+   *
+   * @since 3.5.6
+   */
+  public void maintain() {
+    List<PooledConnection> retired = new ArrayList<>();
+    List<PooledConnection> candidates;
+    int typeCode;
+    long now = System.currentTimeMillis();
+    synchronized (state) {
+      typeCode = expectedConnectionTypeCode;
+      int removable = state.idleConnections.size() - poolMinimumIdleConnections;
+      for (int i = 0; i < state.idleConnections.size(); i++) {
+        PooledConnection conn = state.idleConnections.get(i);
+        boolean idleTimedOut = removable > 0 && poolIdleTimeout > 0 && conn.getTimeElapsedSinceIdle() > poolIdleTimeout;
+        if (idleTimedOut || isExpired(conn, now)) {
+          state.idleConnections.remove(i--);
+          retired.add(conn);
+          removable--;
+        }
+      }
+      state.retiredConnectionCount += retired.size();
+      candidates = new ArrayList<>(state.idleConnections);
+      if (poolLeakDetectionThreshold > 0) {
+        reportLeakedConnections();
+      }
+      publishGauges();
+    }
+    for (PooledConnection conn : retired) {
+      closeQuietly(conn);
+    }
+    for (PooledConnection conn : candidates) {
+      synchronized (state) {
+        // skip connections that have been checked out in the meantime
+        if (!state.idleConnections.remove(conn)) {
+          continue;
+        }
+        // still counts toward the pool size while it is validated
+        state.maintainedConnectionCount++;
+      }
+      boolean valid;
+      try {
+        valid = validateConnection(conn);
+      } catch (RuntimeException e) {
+        valid = false;
+      }
+      synchronized (state) {
+        state.maintainedConnectionCount--;
+        if (valid && typeCode == expectedConnectionTypeCode && addIdleConnection(conn)) {
+          continue;
+        }
+        if (!valid) {
+          state.badConnectionCount++;
+          metrics.recordValidationFailure();
+        }
+        wakeUpFirstWaiter();
+        publishGauges();
+      }
+      if (!valid && log.isDebugEnabled()) {
+        log.debug("Idle connection " + conn.getRealHashCode() + " failed validation, discarding connection.");
+      }
+      closeQuietly(conn);
+    }
+    fillMinimumIdle();
+    metrics.fireEvents();
+  }
+
+  private void fillMinimumIdle() {
+    while (true) {
+      int typeCode;
+      synchronized (state) {
+        if (state.idleConnections.size() >= Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections)
+            || state.idleConnections.size() + state.activeConnections.size() + state.maintainedConnectionCount
+                >= poolMaximumActiveConnections) {
+          return;
+        }
+        typeCode = expectedConnectionTypeCode;
+        // reserve the slot so that checkouts do not create a connection for it at the same time
+        state.maintainedConnectionCount++;
+      }
+      PooledConnection conn;
+      try {
+        conn = createConnection();
+      } catch (SQLException | RuntimeException e) {
+        synchronized (state) {
+          state.maintainedConnectionCount--;
+          wakeUpFirstWaiter();
+        }
+        log.warn("Could not create idle connection: " + e.getMessage());
+        return;
+      }
+      synchronized (state) {
+        state.maintainedConnectionCount--;
+        if (typeCode == expectedConnectionTypeCode && addIdleConnection(conn)) {
+          if (log.isDebugEnabled()) {
+            log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+          }
+          continue;
+        }
+        wakeUpFirstWaiter();
+      }
+      closeQuietly(conn);
+      return;
+    }
+  }
+
+  private boolean isExpired(PooledConnection conn, long now) {
+    return poolMaximumLifetime > 0 && now - conn.getCreatedTimestamp() > poolMaximumLifetime;
+  }
+
+  private void closeQuietly(PooledConnection conn) {
+    conn.invalidate();
+    try {
+      Connection realConn = conn.getRealConnection();
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  private void startMaintenance() {
+    maintenanceScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "PooledDataSource-maintenance");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // hold a weak reference so that the background task does not keep the data source alive
+    WeakReference<PooledDataSource> reference = new WeakReference<>(this);
+    ScheduledExecutorService scheduler = maintenanceScheduler;
+    scheduler.scheduleWithFixedDelay(() -> {
+      PooledDataSource pooledDataSource = reference.get();
+      if (pooledDataSource == null) {
+        scheduler.shutdown();
+        return;
+      }
+      try {
+        pooledDataSource.maintain();
+      } catch (RuntimeException e) {
+        log.warn("Pool maintenance failed: " + e.getMessage());
+      }
+    }, 0, poolMaintenanceInterval, TimeUnit.MILLISECONDS);
+  }
+
+  private void stopMaintenance() {
+    if (maintenanceScheduler != null) {
+      maintenanceScheduler.shutdownNow();
+      maintenanceScheduler = null;
+    }
+  }
+
   /**
    * Unwraps a pooled connection to get to the 'real' connection
    *
@@ -20,14 +20,20 @@ import java.util.List;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.TransactionalCacheManager;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.listener.ExecutionListener;
+import org.apache.ibatis.executor.listener.ExecutionListener.CacheLevel;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -47,10 +53,26 @@ public class CachingExecutor implements Executor {
   /**
    * 事务缓存管理器
    */
-  private final TransactionalCacheManager tcm = new TransactionalCacheManager();
+  private final TransactionalCacheManager tcm;
+  /**
+   * 当前事务是否执行过更新(存在未提交更新时不参与合并查询,避免共享未提交的数据)
+   */
+  private boolean dirty;
 
   public CachingExecutor(Executor delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param delegate      执行器
+   * @param configuration 配置(用于获取缓存统计,为空时不统计)
+   * @since 3.5.6
+   */
+  public CachingExecutor(Executor delegate, Configuration configuration) {
     this.delegate = delegate;
+    this.tcm = configuration == null ? new TransactionalCacheManager()
+        : new TransactionalCacheManager(cache -> configuration.getCacheStatistics(cache.getId()), configuration.getTableVersions(),
+            configuration.getCacheInvalidationBroadcaster());
     delegate.setExecutorWrapper(this);
   }
 
@@ -82,6 +104,7 @@ public class CachingExecutor implements Executor {
 
   @Override
   public int update(MappedStatement ms, Object parameterObject) throws SQLException {
+    dirty = true;
     flushCacheIfRequired(ms);
     return delegate.update(ms, parameterObject);
   }
@@ -109,9 +132,19 @@ public class CachingExecutor implements Executor {
         ensureNoOutParams(ms, boundSql);
         @SuppressWarnings("unchecked")
         List<E> list = (List<E>) tcm.getObject(cache, key); //查询二级缓存
+        if (ms.getConfiguration().hasExecutionListeners()) {
+          for (ExecutionListener listener : ms.getConfiguration().getExecutionListeners()) {
+            listener.cacheAccessed(ms, CacheLevel.SECOND_LEVEL, list != null);
+          }
+        }
         if (list == null) {
-          list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);  //委托执行器查询
-          tcm.putObject(cache, key, list); // issue #578 and #116 放入本地事务缓存
+          TableVersions.Snapshot snapshot = tcm.snapshot(cache, ms.getCacheTables()); //查询前读取依赖表的版本
+          Configuration configuration = ms.getConfiguration();
+          if (configuration.isCacheMissCoalescingEnabled() && !dirty) {
+            return queryCoalesced(ms, parameterObject, rowBounds, key, boundSql, snapshot);
+          }
+          list = load(ms, parameterObject, rowBounds, key, boundSql);
+          tcm.putObject(cache, key, list, snapshot); // issue #578 and #116 放入本地事务缓存
         }
         return list;
       }
@@ -129,6 +162,7 @@ public class CachingExecutor implements Executor {
   public void commit(boolean required) throws SQLException {
     delegate.commit(required);
     tcm.commit(); //提交事务管理器数据
+    dirty = false;
   }
 
   @Override
@@ -139,6 +173,70 @@ public class CachingExecutor implements Executor {
       if (required) {
         tcm.rollback();  //回滚事务管理器数据
       }
+      dirty = false;
+    }
+  }
+
+  /**
+   * 合并并发的相同查询:首个会话查询数据库,其余会话等待并共享其结果
+   * 等待超时,加载失败或正在进行的加载已过期时自行查询数据库
+   */
+  private <E> List<E> queryCoalesced(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key, BoundSql boundSql,
+      TableVersions.Snapshot snapshot) throws SQLException {
+    Cache cache = ms.getCache();
+    SingleFlight singleFlight = ms.getConfiguration().getSingleFlight();
+    SingleFlight.Flight flight = singleFlight.begin(key, snapshot);
+    if (flight == null) {
+      SingleFlight.Flight current = singleFlight.get(key);
+      if (current != null && tcm.isCurrent(current.getSnapshot())) {
+        Object shared = current.await(ms.getConfiguration().getCacheMissCoalescingTimeout());
+        if (shared != SingleFlight.NO_RESULT) {
+          @SuppressWarnings("unchecked")
+          List<E> list = (List<E>) shared;
+          tcm.putObject(cache, key, list, current.getSnapshot());
+          return list;
+        }
+      }
+      List<E> list = load(ms, parameterObject, rowBounds, key, boundSql);
+      tcm.putObject(cache, key, list, snapshot);
+      return list;
+    }
+    boolean completed = false;
+    try {
+      List<E> list = load(ms, parameterObject, rowBounds, key, boundSql);
+      singleFlight.complete(flight, list);
+      completed = true;
+      tcm.putObject(cache, key, list, snapshot);
+      return list;
+    } finally {
+      if (!completed) {
+        singleFlight.abandon(flight);
+      }
+    }
+  }
+
+  /**
+   * 缓存未命中时查询数据库并记录加载耗时
+   */
+  private <E> List<E> load(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key, BoundSql boundSql)
+      throws SQLException {
+    Configuration configuration = ms.getConfiguration();
+    CacheStatistics statistics = configuration.isCacheStatisticsEnabled() ? configuration.getCacheStatistics(ms.getCache().getId()) : null;
+    boolean timed = statistics != null || configuration.hasExecutionListeners();
+    long start = timed ? System.nanoTime() : 0L;
+    List<E> list = delegate.query(ms, parameterObject, rowBounds, null, key, boundSql);  //委托执行器查询
+    if (timed) {
+      cacheLoaded(ms, statistics, System.nanoTime() - start);
+    }
+    return list;
+  }
+
+  private void cacheLoaded(MappedStatement ms, CacheStatistics statistics, long nanos) {
+    if (statistics != null) {
+      statistics.recordLoad(nanos);
+    }
+    for (ExecutionListener listener : ms.getConfiguration().getExecutionListeners()) {
+      listener.cacheLoaded(ms, nanos);
     }
   }
 
@@ -174,12 +272,18 @@ public class CachingExecutor implements Executor {
 
   /**
    * 强制刷新缓存
+   * 声明了cacheTables的更新语句只使依赖这些表的缓存失效,不清空命名空间缓存
    *
    * @param ms MappedStatement
    */
   private void flushCacheIfRequired(MappedStatement ms) {
     Cache cache = ms.getCache();
-    if (cache != null && ms.isFlushCacheRequired()) {
+    if (!ms.isFlushCacheRequired()) {
+      return;
+    }
+    if (ms.getCacheTables() != null && ms.getSqlCommandType() != SqlCommandType.SELECT) {
+      tcm.invalidate(cache, ms.getCacheTables());
+    } else if (cache != null) {
       tcm.clear(cache);
     }
   }
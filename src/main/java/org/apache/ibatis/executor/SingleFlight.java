@@ -0,0 +1,222 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.TableVersions;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+
+/**
+ * 合并并发的相同二级缓存未命中查询(single-flight)
+ * 同一{@link CacheKey}同时只由一个会话(首个加载者)查询数据库,其余会话等待并各自得到其结果的副本,与事务提交无关.
+ * 副本通过序列化生成,结果无法序列化时等待者不共享结果(避免多个会话修改同一实例),同样自行查询数据库.
+ * 首个加载者无论成功或失败都会在finally中结束加载,等待者最多等待指定时间,超时或加载失败时自行查询数据库,
+ * 因此不会因为会话异常而遗留等待.
+ *
+ * @since 3.5.6
+ */
+public class SingleFlight {
+
+  /**
+   * 未能获取共享结果
+   */
+  static final Object NO_RESULT = new Object();
+
+  private final ConcurrentHashMap<CacheKey, Flight> flights = new ConcurrentHashMap<>();
+  private final LongAdder coalescedCount = new LongAdder();
+  private final LongAdder timeoutCount = new LongAdder();
+
+  /**
+   * 开始加载
+   *
+   * @param key      缓存key
+   * @param snapshot 加载前读取的表版本快照(未开启时为null)
+   * @return 新建的加载(当前线程为首个加载者),已有相同key正在加载时返回null
+   */
+  public Flight begin(CacheKey key, TableVersions.Snapshot snapshot) {
+    Flight flight = new Flight(key, snapshot);
+    return flights.putIfAbsent(key, flight) == null ? flight : null;
+  }
+
+  /**
+   * @param key 缓存key
+   * @return 正在进行的加载(不存在时返回null)
+   */
+  public Flight get(CacheKey key) {
+    return flights.get(key);
+  }
+
+  /**
+   * 加载成功,唤醒等待者
+   *
+   * @param flight 加载
+   * @param value  结果
+   */
+  public void complete(Flight flight, Object value) {
+    flights.remove(flight.key, flight);
+    flight.finish(value);
+  }
+
+  /**
+   * 加载失败或未完成,等待者自行查询
+   *
+   * @param flight 加载
+   */
+  public void abandon(Flight flight) {
+    flights.remove(flight.key, flight);
+    flight.finish(NO_RESULT);
+  }
+
+  /**
+   * @return 正在进行的加载数
+   */
+  public int getInFlightCount() {
+    return flights.size();
+  }
+
+  /**
+   * @return 共享了其他会话加载结果的次数
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  /**
+   * @return 等待超时后自行查询的次数
+   */
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  /**
+   * 一次正在进行的加载
+   */
+  public final class Flight {
+
+    private final CacheKey key;
+    private final TableVersions.Snapshot snapshot;
+    private final Thread leader = Thread.currentThread();
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+    private int waiters;
+    private boolean done;
+    /**
+     * 结束时有等待者则由加载者序列化结果,等待者各自反序列化得到副本(无法序列化时为null,等待者自行查询)
+     */
+    private byte[] serialized;
+
+    private Flight(CacheKey key, TableVersions.Snapshot snapshot) {
+      this.key = key;
+      this.snapshot = snapshot;
+    }
+
+    public TableVersions.Snapshot getSnapshot() {
+      return snapshot;
+    }
+
+    private void finish(Object value) {
+      synchronized (this) {
+        done = true;
+        // 在加载者返回结果之前序列化,避免调用方修改结果时等待者读取到不一致的数据
+        if (waiters > 0 && value != NO_RESULT) {
+          serialized = serialize(value);
+        }
+      }
+      result.complete(value);
+    }
+
+    /**
+     * 等待加载结果
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return 结果副本,超时,加载失败,结果无法复制,加载已结束或当前线程即为加载者时返回{@link #NO_RESULT}
+     */
+    Object await(long timeoutMillis) {
+      if (leader == Thread.currentThread()) {
+        return NO_RESULT;
+      }
+      synchronized (this) {
+        if (done) {
+          return NO_RESULT;
+        }
+        waiters++;
+      }
+      Object value;
+      try {
+        value = result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        timeoutCount.increment();
+        return NO_RESULT;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return NO_RESULT;
+      } catch (ExecutionException e) {
+        return NO_RESULT;
+      }
+      if (value == NO_RESULT) {
+        return NO_RESULT;
+      }
+      Object copy = copy();
+      if (copy != NO_RESULT) {
+        coalescedCount.increment();
+      }
+      return copy;
+    }
+
+    private Object copy() {
+      byte[] bytes;
+      synchronized (this) {
+        bytes = serialized;
+      }
+      if (bytes == null) {
+        return NO_RESULT;
+      }
+      try (ObjectInputStream ois = new SerializedCache.CustomObjectInputStream(new ByteArrayInputStream(bytes))) {
+        return ois.readObject();
+      } catch (IOException | ClassNotFoundException e) {
+        return NO_RESULT;
+      }
+    }
+
+    private byte[] serialize(Object value) {
+      if (!(value instanceof Serializable)) {
+        return null;
+      }
+      try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+          ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+        oos.writeObject(value);
+        oos.flush();
+        return bos.toByteArray();
+      } catch (IOException e) {
+        // 只读缓存的结果不要求可序列化,不能共享同一实例,等待者自行查询
+        return null;
+      }
+    }
+  }
+
+}
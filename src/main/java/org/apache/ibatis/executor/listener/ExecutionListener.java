@@ -0,0 +1,112 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.listener;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 语句执行监听器
+ * 通过{@link org.apache.ibatis.session.Configuration#addExecutionListener(ExecutionListener)}注册,
+ * 在语句执行的各个阶段直接回调,不经过插件代理;未注册监听器时不会进行计时.
+ * 回调在执行线程中同步执行,实现需要线程安全且尽量轻量.时间单位均为纳秒.
+ * 批量执行(BatchExecutor)的语句在flush时统一执行,不回调{@link #statementExecuted}.
+ *
+ * @since 3.5.6
+ */
+public interface ExecutionListener {
+
+  /**
+   * 缓存级别
+   */
+  enum CacheLevel {
+    /**
+     * 一级缓存(会话级)
+     */
+    LOCAL,
+    /**
+     * 二级缓存(命名空间级)
+     */
+    SECOND_LEVEL
+  }
+
+  /**
+   * 生成BoundSql(动态sql解析)完成
+   *
+   * @param ms    语句
+   * @param nanos 耗时
+   */
+  default void sqlBuilt(MappedStatement ms, long nanos) {
+    // NOP
+  }
+
+  /**
+   * 创建Statement及设置参数完成
+   *
+   * @param ms    语句
+   * @param nanos 耗时
+   */
+  default void statementPrepared(MappedStatement ms, long nanos) {
+    // NOP
+  }
+
+  /**
+   * 语句执行完成
+   *
+   * @param ms           语句
+   * @param boundSql     执行的sql
+   * @param executeNanos 数据库执行耗时
+   * @param mappingNanos 结果集映射耗时(更新语句及游标查询为0)
+   * @param rowCount     查询返回的结果数或更新影响的行数(游标查询为-1,使用ResultHandler时为0)
+   */
+  default void statementExecuted(MappedStatement ms, BoundSql boundSql, long executeNanos, long mappingNanos, int rowCount) {
+    // NOP
+  }
+
+  /**
+   * 语句执行或结果映射失败(包括超时),{@link #statementExecuted}不会被回调
+   *
+   * @param ms       语句
+   * @param boundSql 执行的sql
+   * @param nanos    开始执行到失败的耗时
+   * @param cause    异常
+   */
+  default void statementFailed(MappedStatement ms, BoundSql boundSql, long nanos, Throwable cause) {
+    // NOP
+  }
+
+  /**
+   * 查询缓存
+   *
+   * @param ms    语句
+   * @param level 缓存级别
+   * @param hit   是否命中
+   */
+  default void cacheAccessed(MappedStatement ms, CacheLevel level, boolean hit) {
+    // NOP
+  }
+
+  /**
+   * 二级缓存未命中后从数据库加载完成(结果在事务提交后写入缓存)
+   *
+   * @param ms    语句
+   * @param nanos 加载耗时
+   */
+  default void cacheLoaded(MappedStatement ms, long nanos) {
+    // NOP
+  }
+
+}
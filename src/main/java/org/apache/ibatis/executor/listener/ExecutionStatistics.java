@@ -0,0 +1,208 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.listener;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 按语句聚合的执行统计
+ * 每个MappedStatement分别记录各阶段耗时直方图、返回行数及两级缓存的命中情况,
+ * 通过设置项executionStatisticsEnabled启用,使用{@link org.apache.ibatis.session.Configuration#getExecutionStatistics()}获取.
+ *
+ * @since 3.5.6
+ */
+public class ExecutionStatistics implements ExecutionListener {
+
+  private final Map<String, StatementStatistics> statistics = new ConcurrentHashMap<>();
+
+  @Override
+  public void sqlBuilt(MappedStatement ms, long nanos) {
+    statisticsOf(ms).buildTime.record(nanos);
+  }
+
+  @Override
+  public void statementPrepared(MappedStatement ms, long nanos) {
+    statisticsOf(ms).prepareTime.record(nanos);
+  }
+
+  @Override
+  public void statementExecuted(MappedStatement ms, BoundSql boundSql, long executeNanos, long mappingNanos, int rowCount) {
+    StatementStatistics stats = statisticsOf(ms);
+    stats.executeTime.record(executeNanos);
+    stats.mappingTime.record(mappingNanos);
+    stats.totalTime.record(executeNanos + mappingNanos);
+    if (rowCount > 0) {
+      stats.rows.add(rowCount);
+    }
+  }
+
+  @Override
+  public void statementFailed(MappedStatement ms, BoundSql boundSql, long nanos, Throwable cause) {
+    statisticsOf(ms).failureTime.record(nanos);
+  }
+
+  @Override
+  public void cacheAccessed(MappedStatement ms, CacheLevel level, boolean hit) {
+    StatementStatistics stats = statisticsOf(ms);
+    if (level == CacheLevel.LOCAL) {
+      (hit ? stats.localCacheHits : stats.localCacheMisses).increment();
+    } else {
+      (hit ? stats.secondLevelCacheHits : stats.secondLevelCacheMisses).increment();
+    }
+  }
+
+  private StatementStatistics statisticsOf(MappedStatement ms) {
+    StatementStatistics stats = statistics.get(ms.getId());
+    if (stats == null) {
+      stats = statistics.computeIfAbsent(ms.getId(), StatementStatistics::new);
+    }
+    return stats;
+  }
+
+  /**
+   * 获取语句的统计
+   *
+   * @param statementId 语句id
+   * @return 统计(未执行过返回null)
+   */
+  public StatementStatistics getStatistics(String statementId) {
+    return statistics.get(statementId);
+  }
+
+  /**
+   * @return 全部语句的统计(语句id -> 统计)
+   */
+  public Map<String, StatementStatistics> getAllStatistics() {
+    return Collections.unmodifiableMap(statistics);
+  }
+
+  public void reset() {
+    statistics.clear();
+  }
+
+  /**
+   * 单个语句的统计
+   */
+  public static class StatementStatistics {
+
+    private final String statementId;
+    private final LatencyHistogram buildTime = new LatencyHistogram();
+    private final LatencyHistogram prepareTime = new LatencyHistogram();
+    private final LatencyHistogram executeTime = new LatencyHistogram();
+    private final LatencyHistogram mappingTime = new LatencyHistogram();
+    private final LatencyHistogram totalTime = new LatencyHistogram();
+    /**
+     * 执行失败(包括超时)的语句从开始执行到失败的耗时
+     */
+    private final LatencyHistogram failureTime = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder localCacheHits = new LongAdder();
+    private final LongAdder localCacheMisses = new LongAdder();
+    private final LongAdder secondLevelCacheHits = new LongAdder();
+    private final LongAdder secondLevelCacheMisses = new LongAdder();
+
+    public StatementStatistics(String statementId) {
+      this.statementId = statementId;
+    }
+
+    public String getStatementId() {
+      return statementId;
+    }
+
+    /**
+     * @return 执行成功的次数(不含命中缓存的查询)
+     */
+    public long getExecutionCount() {
+      return executeTime.getCount();
+    }
+
+    /**
+     * @return 执行失败的次数
+     */
+    public long getFailureCount() {
+      return failureTime.getCount();
+    }
+
+    /**
+     * @return 执行失败的语句从开始执行到失败的耗时
+     */
+    public LatencyHistogram getFailureTime() {
+      return failureTime;
+    }
+
+    public LatencyHistogram getBuildTime() {
+      return buildTime;
+    }
+
+    public LatencyHistogram getPrepareTime() {
+      return prepareTime;
+    }
+
+    public LatencyHistogram getExecuteTime() {
+      return executeTime;
+    }
+
+    public LatencyHistogram getMappingTime() {
+      return mappingTime;
+    }
+
+    /**
+     * @return 执行与结果映射的总耗时
+     */
+    public LatencyHistogram getTotalTime() {
+      return totalTime;
+    }
+
+    /**
+     * @return 累计返回行数或影响行数
+     */
+    public long getRows() {
+      return rows.sum();
+    }
+
+    public long getLocalCacheHits() {
+      return localCacheHits.sum();
+    }
+
+    public long getLocalCacheMisses() {
+      return localCacheMisses.sum();
+    }
+
+    public long getSecondLevelCacheHits() {
+      return secondLevelCacheHits.sum();
+    }
+
+    public long getSecondLevelCacheMisses() {
+      return secondLevelCacheMisses.sum();
+    }
+
+    @Override
+    public String toString() {
+      return statementId + " {executions=" + getExecutionCount() + ", failures=" + getFailureCount()
+          + ", meanMicros=" + totalTime.getMeanMicros()
+          + ", p99Micros=" + totalTime.getPercentileMicros(0.99) + ", maxMicros=" + totalTime.getMaxMicros()
+          + ", rows=" + getRows() + ", localCacheHits=" + getLocalCacheHits()
+          + ", secondLevelCacheHits=" + getSecondLevelCacheHits() + "}";
+    }
+  }
+
+}
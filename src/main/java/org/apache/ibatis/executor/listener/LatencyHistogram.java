@@ -0,0 +1,116 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.listener;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图
+ * 以微秒为单位按2的幂分桶(第i个分桶的上界为2^i微秒),记录无锁,百分位数返回所在分桶的上界.
+ *
+ * @since 3.5.6
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKET_COUNT = 40;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * 记录一次耗时
+   *
+   * @param nanos 耗时(纳秒)
+   */
+  public void record(long nanos) {
+    long micros = Math.max(nanos, 0) / 1000;
+    buckets[bucketOf(micros)].increment();
+    count.increment();
+    total.add(micros);
+    max.accumulate(micros);
+  }
+
+  private static int bucketOf(long micros) {
+    if (micros <= 1) {
+      return 0;
+    }
+    // ceil(log2(micros))
+    return Math.min(64 - Long.numberOfLeadingZeros(micros - 1), BUCKET_COUNT - 1);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return 总耗时(微秒)
+   */
+  public long getTotalMicros() {
+    return total.sum();
+  }
+
+  /**
+   * @return 平均耗时(微秒)
+   */
+  public long getMeanMicros() {
+    long n = count.sum();
+    return n == 0 ? 0 : total.sum() / n;
+  }
+
+  /**
+   * @return 最大耗时(微秒)
+   */
+  public long getMaxMicros() {
+    return max.get();
+  }
+
+  /**
+   * 估算百分位数
+   *
+   * @param percentile 百分位(0~1)
+   * @return 耗时(微秒)
+   */
+  public long getPercentileMicros(double percentile) {
+    long[] counts = new long[BUCKET_COUNT];
+    long n = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets[i].sum();
+      n += counts[i];
+    }
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile * n);
+    long cumulative = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulative += counts[i];
+      if (cumulative >= rank) {
+        return Math.min(1L << i, getMaxMicros());
+      }
+    }
+    return getMaxMicros();
+  }
+
+}
@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.listener;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 慢查询日志
+ * 执行与结果映射总耗时超过阈值的语句以warn级别输出语句id、耗时及sql,执行失败(如超时)前已超过阈值的语句同样输出.
+ * 通过设置项slowQueryThreshold(毫秒)启用.
+ *
+ * @since 3.5.6
+ */
+public class SlowQueryLogger implements ExecutionListener {
+
+  private static final Log log = LogFactory.getLog(SlowQueryLogger.class);
+
+  private final long thresholdNanos;
+
+  /**
+   * @param thresholdMillis 阈值(毫秒)
+   */
+  public SlowQueryLogger(long thresholdMillis) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+  }
+
+  public long getThresholdMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+  }
+
+  @Override
+  public void statementExecuted(MappedStatement ms, BoundSql boundSql, long executeNanos, long mappingNanos, int rowCount) {
+    long total = executeNanos + mappingNanos;
+    if (total >= thresholdNanos) {
+      log.warn("Slow statement '" + ms.getId() + "' took " + TimeUnit.NANOSECONDS.toMillis(total) + " ms (execute "
+          + TimeUnit.NANOSECONDS.toMillis(executeNanos) + " ms, mapping " + TimeUnit.NANOSECONDS.toMillis(mappingNanos)
+          + " ms, rows " + rowCount + "): " + boundSql.getSql());
+    }
+  }
+
+  @Override
+  public void statementFailed(MappedStatement ms, BoundSql boundSql, long nanos, Throwable cause) {
+    if (nanos >= thresholdNanos) {
+      log.warn("Slow statement '" + ms.getId() + "' failed after " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms ("
+          + cause + "): " + boundSql.getSql());
+    }
+  }
+
+}
@@ -0,0 +1,419 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.result;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * 列式结果集
+ * 将整个结果集按列存储到基本类型数组中(整数->int[],长整数->long[],浮点->double[],字符串->字典编码),
+ * 不再为每行创建对象或Map,适用于大批量数值导出类查询.
+ * 语句的resultType指定为该类型(别名:columnar)即可,或mapper方法直接返回该类型.
+ * 结果集读取完成后不再变化,读取过程通过{@link Builder}完成.
+ *
+ * @since 3.5.6
+ */
+public class ColumnarResult implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int DEFAULT_CAPACITY = 64;
+
+  private final List<String> columnNames;
+  private final Column[] columns;
+  private int rowCount;
+
+  ColumnarResult(List<String> columnNames, List<Column> columns) {
+    this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+    this.columns = columns.toArray(new Column[0]);
+  }
+
+  /**
+   * 读取当前行数据追加到各列
+   *
+   * @param rs ResultSet
+   * @throws SQLException SQLException
+   */
+  void addRow(ResultSet rs) throws SQLException {
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].read(rs, i + 1, rowCount);
+    }
+    rowCount++;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  /**
+   * 按下标获取列
+   *
+   * @param index 列下标(从0开始)
+   * @return 列数据
+   */
+  public Column getColumn(int index) {
+    return columns[index];
+  }
+
+  /**
+   * 按名称获取列(忽略大小写)
+   *
+   * @param columnName 列名
+   * @return 列数据(不存在返回null)
+   */
+  public Column getColumn(String columnName) {
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+        return columns[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 根据jdbc类型创建对应的列存储
+   * 整数类型使用int[]/long[],浮点类型使用double[],字符类型使用字典编码,其余类型通过类型处理器读取为对象.
+   * 驱动报告的java类型超出对应基本类型范围时(如无符号INT报告为Long,无符号BIGINT报告为BigInteger)改用更宽的存储,避免溢出.
+   *
+   * @param jdbcType    jdbc类型
+   * @param className   驱动报告的列java类型(ResultSetMetaData#getColumnClassName,可为null)
+   * @param typeHandler 读取对象列时使用的类型处理器
+   * @return 列存储
+   */
+  public static Column createColumn(JdbcType jdbcType, String className, TypeHandler<?> typeHandler) {
+    if (jdbcType != null) {
+      boolean wide = "java.math.BigInteger".equals(className) || "java.math.BigDecimal".equals(className);
+      switch (jdbcType) {
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+          if (wide) {
+            break;
+          }
+          return "java.lang.Long".equals(className) ? new LongColumn() : new IntColumn();
+        case BIGINT:
+          if (wide) {
+            break;
+          }
+          return new LongColumn();
+        case FLOAT:
+        case REAL:
+        case DOUBLE:
+          return new DoubleColumn();
+        case CHAR:
+        case VARCHAR:
+        case LONGVARCHAR:
+        case NCHAR:
+        case NVARCHAR:
+          return new StringColumn();
+        default:
+          break;
+      }
+    }
+    return new ObjectColumn(typeHandler);
+  }
+
+  /**
+   * 列式结果集构建器,按行读取结果集,构建后不能再追加
+   */
+  public static class Builder {
+
+    private final ColumnarResult result;
+    private boolean built;
+
+    public Builder(List<String> columnNames, List<Column> columns) {
+      this.result = new ColumnarResult(columnNames, columns);
+    }
+
+    /**
+     * 读取当前行数据追加到各列
+     *
+     * @param rs ResultSet
+     * @return 构建器
+     * @throws SQLException SQLException
+     */
+    public Builder addRow(ResultSet rs) throws SQLException {
+      if (built) {
+        throw new IllegalStateException("The columnar result has already been built.");
+      }
+      result.addRow(rs);
+      return this;
+    }
+
+    /**
+     * @return 已读取的行数
+     */
+    public int getRowCount() {
+      return result.getRowCount();
+    }
+
+    public ColumnarResult build() {
+      built = true;
+      return result;
+    }
+  }
+
+  /**
+   * 列存储基类,空值通过位图记录
+   */
+  public abstract static class Column implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BitSet nulls = new BitSet();
+
+    public boolean isNull(int row) {
+      return nulls.get(row);
+    }
+
+    protected void setNull(int row) {
+      nulls.set(row);
+    }
+
+    /**
+     * 获取装箱后的值(空值返回null)
+     *
+     * @param row 行下标
+     * @return 值
+     */
+    public abstract Object getObject(int row);
+
+    protected abstract void read(ResultSet rs, int columnIndex, int row) throws SQLException;
+
+    protected static int newCapacity(int length) {
+      return Math.max(DEFAULT_CAPACITY, length + (length >> 1));
+    }
+  }
+
+  public static class IntColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private int[] values = new int[0];
+    private int size;
+
+    @Override
+    protected void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+      int value = rs.getInt(columnIndex);
+      if (value == 0 && rs.wasNull()) {
+        setNull(row);
+      }
+      if (row >= values.length) {
+        values = Arrays.copyOf(values, newCapacity(values.length));
+      }
+      values[row] = value;
+      size = row + 1;
+    }
+
+    public int getInt(int row) {
+      return values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return isNull(row) ? null : values[row];
+    }
+
+    public int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  public static class LongColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private long[] values = new long[0];
+    private int size;
+
+    @Override
+    protected void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+      long value = rs.getLong(columnIndex);
+      if (value == 0L && rs.wasNull()) {
+        setNull(row);
+      }
+      if (row >= values.length) {
+        values = Arrays.copyOf(values, newCapacity(values.length));
+      }
+      values[row] = value;
+      size = row + 1;
+    }
+
+    public long getLong(int row) {
+      return values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return isNull(row) ? null : values[row];
+    }
+
+    public long[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  public static class DoubleColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private double[] values = new double[0];
+    private int size;
+
+    @Override
+    protected void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+      double value = rs.getDouble(columnIndex);
+      if (value == 0D && rs.wasNull()) {
+        setNull(row);
+      }
+      if (row >= values.length) {
+        values = Arrays.copyOf(values, newCapacity(values.length));
+      }
+      values[row] = value;
+      size = row + 1;
+    }
+
+    public double getDouble(int row) {
+      return values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return isNull(row) ? null : values[row];
+    }
+
+    public double[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  /**
+   * 字典编码的字符串列,每行只存储字典下标,空值下标为-1
+   */
+  public static class StringColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+    private int[] codes = new int[0];
+    private int size;
+
+    @Override
+    protected void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+      String value = rs.getString(columnIndex);
+      int code = -1;
+      if (value == null) {
+        setNull(row);
+      } else {
+        Integer existing = dictionaryIndex.get(value);
+        if (existing == null) {
+          code = dictionary.size();
+          dictionary.add(value);
+          dictionaryIndex.put(value, code);
+        } else {
+          code = existing;
+        }
+      }
+      if (row >= codes.length) {
+        codes = Arrays.copyOf(codes, newCapacity(codes.length));
+      }
+      codes[row] = code;
+      size = row + 1;
+    }
+
+    public String getString(int row) {
+      int code = codes[row];
+      return code < 0 ? null : dictionary.get(code);
+    }
+
+    public int getCode(int row) {
+      return codes[row];
+    }
+
+    public List<String> getDictionary() {
+      return Collections.unmodifiableList(dictionary);
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return getString(row);
+    }
+
+    public int[] toCodeArray() {
+      return Arrays.copyOf(codes, size);
+    }
+  }
+
+  /**
+   * 其余类型的列,通过类型处理器读取
+   */
+  public static class ObjectColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient TypeHandler<?> typeHandler;
+    private Object[] values = new Object[0];
+    private int size;
+
+    public ObjectColumn(TypeHandler<?> typeHandler) {
+      this.typeHandler = typeHandler;
+    }
+
+    @Override
+    protected void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+      Object value = typeHandler.getResult(rs, columnIndex);
+      if (value == null) {
+        setNull(row);
+      }
+      if (row >= values.length) {
+        values = Arrays.copyOf(values, newCapacity(values.length));
+      }
+      values[row] = value;
+      size = row + 1;
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return values[row];
+    }
+
+    public Object[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+}
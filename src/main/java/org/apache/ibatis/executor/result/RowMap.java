@@ -0,0 +1,162 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.result;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 只读的行结果Map
+ * 同一结果集的所有行共享一份字段名索引({@link Columns}),每行只保存一个值数组,
+ * 用来替代resultType="map"时每行一个HashMap的开销.
+ * 值为空且未开启callSettersOnNulls时,与HashMap一致不包含该key.
+ *
+ * @since 3.5.6
+ */
+public final class RowMap extends AbstractMap<String, Object> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final Columns columns;
+  private final Object[] values;
+  /**
+   * 是否包含值为空的key(callSettersOnNulls)
+   */
+  private final boolean includeNulls;
+  private final int size;
+  private transient Set<Entry<String, Object>> entrySet;
+
+  public RowMap(Columns columns, Object[] values, boolean includeNulls) {
+    this.columns = columns;
+    this.values = values;
+    this.includeNulls = includeNulls;
+    int count = 0;
+    for (Object value : values) {
+      if (includeNulls || value != null) {
+        count++;
+      }
+    }
+    this.size = count;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    int index = columns.indexOf(key);
+    return index >= 0 && (includeNulls || values[index] != null);
+  }
+
+  @Override
+  public Object get(Object key) {
+    int index = columns.indexOf(key);
+    return index < 0 ? null : values[index];
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+    }
+    return entrySet;
+  }
+
+  private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+    private int next = advance(0);
+
+    private int advance(int from) {
+      int index = from;
+      while (index < values.length && !includeNulls && values[index] == null) {
+        index++;
+      }
+      return index;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < values.length;
+    }
+
+    @Override
+    public Entry<String, Object> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int index = next;
+      next = advance(index + 1);
+      return new SimpleImmutableEntry<>(columns.keys[index], values[index]);
+    }
+  }
+
+  /**
+   * 结果集共享的字段名索引
+   */
+  public static final class Columns implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] keys;
+    private final Map<String, Integer> indexes;
+
+    /**
+     * @param keys 字段名列表(不能重复)
+     */
+    public Columns(List<String> keys) {
+      this.keys = keys.toArray(new String[0]);
+      this.indexes = new HashMap<>();
+      for (int i = 0; i < this.keys.length; i++) {
+        if (indexes.put(this.keys[i], i) != null) {
+          throw new IllegalArgumentException("Duplicate key '" + this.keys[i] + "' in row map columns.");
+        }
+      }
+    }
+
+    public int size() {
+      return keys.length;
+    }
+
+    public String getKey(int index) {
+      return keys[index];
+    }
+
+    public int indexOf(Object key) {
+      Integer index = indexes.get(key);
+      return index == null ? -1 : index;
+    }
+  }
+
+}
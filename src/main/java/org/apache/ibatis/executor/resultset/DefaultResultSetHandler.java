@@ -22,11 +22,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.ibatis.annotations.AutomapConstructor;
 import org.apache.ibatis.binding.MapperMethod.ParamMap;
@@ -39,9 +37,11 @@ import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.result.ColumnarResult;
 import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
 import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.executor.result.RowMap;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.Discriminator;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -61,6 +61,7 @@ import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.apache.ibatis.type.UnknownTypeHandler;
 
 /**
  * @author Clinton Begin
@@ -84,8 +85,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private final ReflectorFactory reflectorFactory;
 
   // nested resultmaps
-  private final Map<CacheKey, Object> nestedResultObjects = new HashMap<>();
+  private final Map<RowKey, Object> nestedResultObjects = new HashMap<>();
   private final Map<String, Object> ancestorObjects = new HashMap<>();
+  /**
+   * 按嵌套层级复用的行key
+   */
+  private final List<RowKey> rowKeyProbes = new ArrayList<>();
+  /**
+   * 鉴别器解析时经过的resultMap
+   */
+  private final List<ResultMap> pastDiscriminatedResultMaps = new ArrayList<>();
   private Object previousRowValue;
 
   // multiple resultsets
@@ -94,6 +103,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
   // Cached Automappings
   private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
+  // Cached row map columns (compactMapResults)
+  private final Map<String, RowMapColumns> rowMapColumnsCache = new HashMap<>();
 
   // temporary marking flag that indicate using constructor mapping (use field to reduce memory usage)
   /**
@@ -135,6 +146,25 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
+  /**
+   * 只读行Map的字段信息(自动映射对应的值下标)
+   */
+  private static class RowMapColumns {
+    /**
+     * 共享字段名索引(为空表示无法使用只读行Map)
+     */
+    private final RowMap.Columns columns;
+    /**
+     * 自动映射对应的值下标
+     */
+    private final int[] slots;
+
+    RowMapColumns(RowMap.Columns columns, int[] slots) {
+      this.columns = columns;
+      this.slots = slots;
+    }
+  }
+
   public DefaultResultSetHandler(Executor executor, MappedStatement mappedStatement, ParameterHandler parameterHandler, ResultHandler<?> resultHandler, BoundSql boundSql,
                                  RowBounds rowBounds) {
     this.executor = executor;
@@ -385,7 +415,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
    * @throws SQLException
    */
   public void handleRowValues(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds, ResultMapping parentMapping) throws SQLException {
-    if (resultMap.hasNestedResultMaps()) {
+    if (parentMapping == null && ColumnarResult.class.equals(resultMap.getType())) {
+      handleRowValuesForColumnarResult(rsw, resultMap, resultHandler, rowBounds);
+    } else if (resultMap.hasNestedResultMaps()) {
       ensureNoRowBounds();
       checkResultHandler();
       handleRowValuesForNestedResultMap(rsw, resultMap, resultHandler, rowBounds, parentMapping);
@@ -431,6 +463,38 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
+  /**
+   * 处理列式结果集,整个结果集按列读取为一个{@link ColumnarResult}对象
+   *
+   * @param rsw           ResultSetWrapper
+   * @param resultMap     ResultMap
+   * @param resultHandler 结果集处理器
+   * @param rowBounds     边界对象
+   * @throws SQLException SQLException
+   */
+  private void handleRowValuesForColumnarResult(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds)
+      throws SQLException {
+    if (resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries()) {
+      throw new ExecutorException("Columnar results cannot be mapped with nested result maps or nested queries. "
+          + "Check result map '" + resultMap.getId() + "'.");
+    }
+    final List<String> columnNames = rsw.getColumnNames();
+    final List<JdbcType> jdbcTypes = rsw.getJdbcTypes();
+    final List<String> classNames = rsw.getClassNames();
+    final List<ColumnarResult.Column> columns = new ArrayList<>(columnNames.size());
+    for (int i = 0; i < columnNames.size(); i++) {
+      final String columnName = columnNames.get(i);
+      columns.add(ColumnarResult.createColumn(jdbcTypes.get(i), classNames.get(i), rsw.getTypeHandler(Object.class, columnName)));
+    }
+    final ColumnarResult.Builder builder = new ColumnarResult.Builder(columnNames, columns);
+    final ResultSet resultSet = rsw.getResultSet();
+    skipRows(resultSet, rowBounds);
+    while (builder.getRowCount() < rowBounds.getLimit() && !resultSet.isClosed() && resultSet.next()) {
+      builder.addRow(resultSet);
+    }
+    callResultHandler(resultHandler, new DefaultResultContext<>(), builder.build());
+  }
+
   /**
    * 存储单个结果集对象
    *
@@ -505,6 +569,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   //
 
   private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) throws SQLException {
+    if (shouldUseRowMap(rsw, resultMap)) {
+      final RowMapColumns rowMapColumns = getRowMapColumns(rsw, resultMap, columnPrefix);
+      if (rowMapColumns.columns != null) {
+        return getRowMapValue(rsw, resultMap, columnPrefix, rowMapColumns);
+      }
+    }
     final ResultLoaderMap lazyLoader = new ResultLoaderMap(); //记录懒加载属性
     Object rowValue = createResultObject(rsw, resultMap, lazyLoader, columnPrefix);
     if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
@@ -528,7 +598,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // GET VALUE FROM ROW FOR NESTED RESULT MAP
   //
 
-  private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, CacheKey combinedKey, String columnPrefix, Object partialObject) throws SQLException {
+  private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, RowKey combinedKey, String columnPrefix, Object partialObject) throws SQLException {
     final String resultMapId = resultMap.getId();
     Object rowValue = partialObject;
     if (rowValue != null) {
@@ -552,13 +622,94 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         foundValues = lazyLoader.size() > 0 || foundValues;
         rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
       }
-      if (combinedKey != CacheKey.NULL_CACHE_KEY) {
-        nestedResultObjects.put(combinedKey, rowValue);
+      if (!combinedKey.isNull()) {
+        // 探测key会被后续行复用,保存时复制
+        nestedResultObjects.put(combinedKey.copy(), rowValue);
       }
     }
     return rowValue;
   }
 
+  /**
+   * 是否使用只读行Map(开启了compactMapResults,返回类型为Map且只有自动映射)
+   *
+   * @param rsw       ResultSetWrapper
+   * @param resultMap ResultMap
+   * @return 是否使用
+   */
+  private boolean shouldUseRowMap(ResultSetWrapper rsw, ResultMap resultMap) {
+    return configuration.isCompactMapResults()
+      && Map.class.equals(resultMap.getType())
+      && resultMap.getResultMappings().isEmpty()
+      && resultMap.getDiscriminator() == null
+      && shouldApplyAutomaticMappings(resultMap, false)
+      && !hasTypeHandlerForResultObject(rsw, resultMap.getType());
+  }
+
+  /**
+   * 获取只读行Map的字段信息,同一结果集的所有行共享
+   *
+   * @param rsw          ResultSetWrapper
+   * @param resultMap    ResultMap
+   * @param columnPrefix 字段前缀
+   * @return 字段信息
+   * @throws SQLException SQLException
+   */
+  private RowMapColumns getRowMapColumns(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) throws SQLException {
+    final String mapKey = resultMap.getId() + ":" + columnPrefix;
+    RowMapColumns rowMapColumns = rowMapColumnsCache.get(mapKey);
+    if (rowMapColumns == null) {
+      final MetaObject metaObject = configuration.newMetaObject(new HashMap<String, Object>());
+      final List<UnMappedColumnAutoMapping> autoMapping = createAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
+      final List<String> keys = new ArrayList<>();
+      final int[] slots = new int[autoMapping.size()];
+      boolean nestedProperty = false;
+      for (int i = 0; i < autoMapping.size(); i++) {
+        final String property = autoMapping.get(i).property;
+        // 含有'.'或'['的字段名在HashMap中会创建嵌套Map,这种情况仍使用HashMap
+        nestedProperty = nestedProperty || property.indexOf('.') >= 0 || property.indexOf('[') >= 0;
+        // 同名字段与HashMap一致,共用一个key
+        int slot = keys.indexOf(property);
+        if (slot < 0) {
+          slot = keys.size();
+          keys.add(property);
+        }
+        slots[i] = slot;
+      }
+      rowMapColumns = new RowMapColumns(nestedProperty ? null : new RowMap.Columns(keys), slots);
+      rowMapColumnsCache.put(mapKey, rowMapColumns);
+    }
+    return rowMapColumns;
+  }
+
+  /**
+   * 通过自动映射创建只读行Map
+   *
+   * @param rsw           ResultSetWrapper
+   * @param resultMap     ResultMap
+   * @param columnPrefix  字段前缀
+   * @param rowMapColumns 字段信息
+   * @return 行Map(无值且未开启returnInstanceForEmptyRow时返回null)
+   * @throws SQLException SQLException
+   */
+  private Object getRowMapValue(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix, RowMapColumns rowMapColumns) throws SQLException {
+    final List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(resultMap.getId() + ":" + columnPrefix);
+    final boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+    final Object[] values = new Object[rowMapColumns.columns.size()];
+    boolean foundValues = false;
+    for (int i = 0; i < autoMapping.size(); i++) {
+      final UnMappedColumnAutoMapping mapping = autoMapping.get(i);
+      final Object value = getColumnResult(rsw, mapping.typeHandler, mapping.column);
+      if (value != null) {
+        foundValues = true;
+      }
+      if (value != null || callSettersOnNulls) {
+        values[rowMapColumns.slots[i]] = value;
+      }
+    }
+    return foundValues || configuration.isReturnInstanceForEmptyRow() ? new RowMap(rowMapColumns.columns, values, callSettersOnNulls) : null;
+  }
+
   private void putAncestor(Object resultObject, String resultMapId) {
     ancestorObjects.put(resultMapId, resultObject);
   }
@@ -619,7 +770,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (propertyMapping.isCompositeResult()
           || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
           || propertyMapping.getResultSet() != null) {
-        Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
+        Object value = getPropertyMappingValue(rsw, metaObject, propertyMapping, lazyLoader, columnPrefix);
         // issue #541 make property optional
         final String property = propertyMapping.getProperty();
         if (property == null) {
@@ -647,7 +798,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   /**
    * 获取属性值
    *
-   * @param rs               ResultSet
+   * @param rsw              ResultSetWrapper
    * @param metaResultObject 元数据对象信息
    * @param propertyMapping  属性映射
    * @param lazyLoader       ResultLoaderMap
@@ -655,8 +806,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
    * @return 属性值
    * @throws SQLException SQLException
    */
-  private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
+  private Object getPropertyMappingValue(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
     throws SQLException {
+    final ResultSet rs = rsw.getResultSet();
     if (propertyMapping.getNestedQueryId() != null) {
       return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
     } else if (propertyMapping.getResultSet() != null) {
@@ -664,10 +816,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       return DEFERRED;
     } else {
       //处理属性映射 <result column="username" jdbcType="VARCHAR" property="username"/>
-      final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
       final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
+      final TypeHandler<?> typeHandler = getColumnTypeHandler(rsw, propertyMapping.getTypeHandler(), column);
       //通过类型转换器获取结果
-      return typeHandler.getResult(rs, column);
+      return getColumnResult(rsw, typeHandler, column);
     }
   }
 
@@ -742,7 +894,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     boolean foundValues = false;
     if (!autoMapping.isEmpty()) {
       for (UnMappedColumnAutoMapping mapping : autoMapping) {
-        final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+        final Object value = getColumnResult(rsw, mapping.typeHandler, mapping.column);
         if (value != null) {
           foundValues = true;
         }
@@ -902,8 +1054,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           value = getRowValue(rsw, resultMap, getColumnPrefix(columnPrefix, constructorMapping));
         } else {
           //处理普通情况  <arg resultMap="authorRM" columnPrefix="author_"/>
-          final TypeHandler<?> typeHandler = constructorMapping.getTypeHandler();
-          value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
+          final String prefixedColumn = prependPrefix(column, columnPrefix);
+          final TypeHandler<?> typeHandler = getColumnTypeHandler(rsw, constructorMapping.getTypeHandler(), prefixedColumn);
+          value = getColumnResult(rsw, typeHandler, prefixedColumn);
         }
       } catch (ResultMapException | SQLException e) {
         throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
@@ -964,7 +1117,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       Class<?> parameterType = constructor.getParameterTypes()[i];
       String columnName = rsw.getColumnNames().get(i);
       TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-      Object value = typeHandler.getResult(rsw.getResultSet(), columnName);
+      Object value = configuration.isUseColumnIndex() ? typeHandler.getResult(rsw.getResultSet(), i + 1)
+          : typeHandler.getResult(rsw.getResultSet(), columnName);
       constructorArgTypes.add(parameterType);
       constructorArgs.add(value);
       foundValues = value != null || foundValues;
@@ -1036,7 +1190,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       columnName = rsw.getColumnNames().get(0);
     }
     final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
-    return typeHandler.getResult(rsw.getResultSet(), columnName);
+    return getColumnResult(rsw, typeHandler, columnName);
   }
 
   //
@@ -1137,29 +1291,77 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   //
 
   public ResultMap resolveDiscriminatedResultMap(ResultSet rs, ResultMap resultMap, String columnPrefix) throws SQLException {
-    Set<String> pastDiscriminators = new HashSet<>();
     Discriminator discriminator = resultMap.getDiscriminator();
+    if (discriminator == null) {
+      return resultMap;
+    }
+    // 已经过的resultMap(防止循环),复用同一个列表
+    final List<ResultMap> pastResultMaps = pastDiscriminatedResultMaps;
+    pastResultMaps.clear();
     while (discriminator != null) {
       final Object value = getDiscriminatorValue(rs, discriminator, columnPrefix);
-      final String discriminatedMapId = discriminator.getMapIdFor(String.valueOf(value));
-      if (configuration.hasResultMap(discriminatedMapId)) {
-        resultMap = configuration.getResultMap(discriminatedMapId);
-        Discriminator lastDiscriminator = discriminator;
-        discriminator = resultMap.getDiscriminator();
-        if (discriminator == lastDiscriminator || !pastDiscriminators.add(discriminatedMapId)) {
-          break;
-        }
-      } else {
+      final ResultMap discriminatedResultMap = discriminator.getResultMapFor(value);
+      if (discriminatedResultMap == null) {
+        break;
+      }
+      resultMap = discriminatedResultMap;
+      Discriminator lastDiscriminator = discriminator;
+      discriminator = resultMap.getDiscriminator();
+      if (discriminator == lastDiscriminator || containsResultMap(pastResultMaps, resultMap)) {
         break;
       }
+      pastResultMaps.add(resultMap);
     }
     return resultMap;
   }
 
+  private static boolean containsResultMap(List<ResultMap> resultMaps, ResultMap resultMap) {
+    for (ResultMap past : resultMaps) {
+      if (past == resultMap) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 获取字段读取使用的类型处理器(UnknownTypeHandler替换为按字段缓存的解析结果)
+   *
+   * @param rsw         ResultSetWrapper
+   * @param typeHandler 映射指定的类型处理器
+   * @param column      字段名
+   * @return 类型处理器
+   */
+  private TypeHandler<?> getColumnTypeHandler(ResultSetWrapper rsw, TypeHandler<?> typeHandler, String column) {
+    if (typeHandler != null && typeHandler.getClass() == UnknownTypeHandler.class) {
+      return rsw.getUnknownColumnTypeHandler(column);
+    }
+    return typeHandler;
+  }
+
+  /**
+   * 通过类型处理器读取字段值
+   * 开启了按下标读取且字段存在时按下标读取,否则按字段名读取
+   *
+   * @param rsw         ResultSetWrapper
+   * @param typeHandler 类型处理器
+   * @param column      字段名
+   * @return 字段值
+   * @throws SQLException SQLException
+   */
+  private Object getColumnResult(ResultSetWrapper rsw, TypeHandler<?> typeHandler, String column) throws SQLException {
+    if (configuration.isUseColumnIndex() && column != null) {
+      final int columnIndex = rsw.getColumnIndex(column);
+      if (columnIndex > 0) {
+        return typeHandler.getResult(rsw.getResultSet(), columnIndex);
+      }
+    }
+    return typeHandler.getResult(rsw.getResultSet(), column);
+  }
+
   private Object getDiscriminatorValue(ResultSet rs, Discriminator discriminator, String columnPrefix) throws SQLException {
-    final ResultMapping resultMapping = discriminator.getResultMapping();
-    final TypeHandler<?> typeHandler = resultMapping.getTypeHandler();
-    return typeHandler.getResult(rs, prependPrefix(resultMapping.getColumn(), columnPrefix));
+    final TypeHandler<?> typeHandler = discriminator.getResultMapping().getTypeHandler();
+    return typeHandler.getResult(rs, discriminator.getColumn(columnPrefix));
   }
 
   /**
@@ -1187,8 +1389,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     Object rowValue = previousRowValue;
     while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
       final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
-      final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
-      Object partialObject = nestedResultObjects.get(rowKey);
+      final RowKey rowKey = createRowKey(discriminatedResultMap, rsw, null, null);
+      Object partialObject = rowKey.isNull() ? null : nestedResultObjects.get(rowKey);
       // issue #577 && #542
       if (mappedStatement.isResultOrdered()) {
         if (partialObject == null && rowValue != null) {
@@ -1215,40 +1417,38 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // NESTED RESULT MAP (JOIN MAPPING)
   //
 
-  private boolean applyNestedResultMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String parentPrefix, CacheKey parentRowKey, boolean newObject) {
+  private boolean applyNestedResultMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String parentPrefix, RowKey parentRowKey, boolean newObject) {
     boolean foundValues = false;
-    for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
-      final String nestedResultMapId = resultMapping.getNestedResultMapId();
-      if (nestedResultMapId != null && resultMapping.getResultSet() == null) {
-        try {
-          final String columnPrefix = getColumnPrefix(parentPrefix, resultMapping);
-          final ResultMap nestedResultMap = getNestedResultMap(rsw.getResultSet(), nestedResultMapId, columnPrefix);
-          if (resultMapping.getColumnPrefix() == null) {
-            // try to fill circular reference only when columnPrefix
-            // is not specified for the nested result map (issue #215)
-            Object ancestorObject = ancestorObjects.get(nestedResultMapId);
-            if (ancestorObject != null) {
-              if (newObject) {
-                linkObjects(metaObject, resultMapping, ancestorObject); // issue #385
-              }
-              continue;
+    // 嵌套映射,前缀和被引用的resultMap都已在ResultMap中预先计算
+    for (ResultMap.NestedResultMapping nestedResultMapping : resultMap.getNestedResultMappings()) {
+      final ResultMapping resultMapping = nestedResultMapping.getResultMapping();
+      try {
+        final String columnPrefix = nestedResultMapping.getColumnPrefix(parentPrefix);
+        final ResultMap nestedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), nestedResultMapping.getResultMap(), columnPrefix);
+        if (resultMapping.getColumnPrefix() == null) {
+          // try to fill circular reference only when columnPrefix
+          // is not specified for the nested result map (issue #215)
+          Object ancestorObject = ancestorObjects.get(resultMapping.getNestedResultMapId());
+          if (ancestorObject != null) {
+            if (newObject) {
+              linkObjects(metaObject, resultMapping, ancestorObject); // issue #385
             }
+            continue;
           }
-          final CacheKey rowKey = createRowKey(nestedResultMap, rsw, columnPrefix);
-          final CacheKey combinedKey = combineKeys(rowKey, parentRowKey);
-          Object rowValue = nestedResultObjects.get(combinedKey);
-          boolean knownValue = rowValue != null;
-          instantiateCollectionPropertyIfAppropriate(resultMapping, metaObject); // mandatory
-          if (anyNotNullColumnHasValue(resultMapping, columnPrefix, rsw)) {
-            rowValue = getRowValue(rsw, nestedResultMap, combinedKey, columnPrefix, rowValue);
-            if (rowValue != null && !knownValue) {
-              linkObjects(metaObject, resultMapping, rowValue);
-              foundValues = true;
-            }
+        }
+        final RowKey combinedKey = createRowKey(nestedResultMap, rsw, columnPrefix, parentRowKey);
+        Object rowValue = combinedKey.isNull() ? null : nestedResultObjects.get(combinedKey);
+        boolean knownValue = rowValue != null;
+        instantiateCollectionPropertyIfAppropriate(resultMapping, metaObject); // mandatory
+        if (anyNotNullColumnHasValue(nestedResultMapping, columnPrefix, rsw)) {
+          rowValue = getRowValue(rsw, nestedResultMap, combinedKey, columnPrefix, rowValue);
+          if (rowValue != null && !knownValue) {
+            linkObjects(metaObject, resultMapping, rowValue);
+            foundValues = true;
           }
-        } catch (SQLException e) {
-          throw new ExecutorException("Error getting nested result map values for '" + resultMapping.getProperty() + "'.  Cause: " + e, e);
         }
+      } catch (SQLException e) {
+        throw new ExecutorException("Error getting nested result map values for '" + resultMapping.getProperty() + "'.  Cause: " + e, e);
       }
     }
     return foundValues;
@@ -1265,118 +1465,95 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return columnPrefixBuilder.length() == 0 ? null : columnPrefixBuilder.toString().toUpperCase(Locale.ENGLISH);
   }
 
-  private boolean anyNotNullColumnHasValue(ResultMapping resultMapping, String columnPrefix, ResultSetWrapper rsw) throws SQLException {
-    Set<String> notNullColumns = resultMapping.getNotNullColumns();
-    if (notNullColumns != null && !notNullColumns.isEmpty()) {
+  private boolean anyNotNullColumnHasValue(ResultMap.NestedResultMapping nestedResultMapping, String columnPrefix, ResultSetWrapper rsw) throws SQLException {
+    String[] notNullColumns = nestedResultMapping.getNotNullColumns(columnPrefix);
+    if (notNullColumns.length > 0) {
       ResultSet rs = rsw.getResultSet();
       for (String column : notNullColumns) {
-        rs.getObject(prependPrefix(column, columnPrefix));
+        rs.getObject(column);
         if (!rs.wasNull()) {
           return true;
         }
       }
       return false;
     } else if (columnPrefix != null) {
-      for (String columnName : rsw.getColumnNames()) {
-        if (columnName.toUpperCase().startsWith(columnPrefix.toUpperCase())) {
-          return true;
-        }
-      }
-      return false;
+      return rsw.hasColumnWithPrefix(columnPrefix);
     }
     return true;
   }
 
-  private ResultMap getNestedResultMap(ResultSet rs, String nestedResultMapId, String columnPrefix) throws SQLException {
-    ResultMap nestedResultMap = configuration.getResultMap(nestedResultMapId);
-    return resolveDiscriminatedResultMap(rs, nestedResultMap, columnPrefix);
-  }
-
   //
   // UNIQUE RESULT KEY
   //
   
   /**
-   * 创建缓存key
+   * 创建行key
+   * 返回的是当前嵌套层级复用的探测key,需要保存时调用{@link RowKey#copy()}.
    *
    * @param resultMap    resultMap
    * @param rsw          ResultSet包装
    * @param columnPrefix 字段前缀
-   * @return 缓存key
+   * @param parentRowKey 上级行key(顶层为null)
+   * @return 行key(包含上级行key)
    * @throws SQLException SQLException
    */
-  private CacheKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
-    final CacheKey cacheKey = new CacheKey();
-    cacheKey.update(resultMap.getId());
-    List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
+  private RowKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix, RowKey parentRowKey) throws SQLException {
+    final RowKey rowKey = getRowKeyProbe(parentRowKey == null ? 0 : parentRowKey.getDepth() + 1);
+    List<ResultMapping> resultMappings = resultMap.getRowKeyResultMappings();
     if (resultMappings.isEmpty()) {
       if (Map.class.isAssignableFrom(resultMap.getType())) {
-        createRowKeyForMap(rsw, cacheKey);
+        createRowKeyForMap(resultMap, rsw, rowKey, parentRowKey);
       } else {
-        createRowKeyForUnmappedProperties(resultMap, rsw, cacheKey, columnPrefix);
+        createRowKeyForUnmappedProperties(resultMap, rsw, rowKey, columnPrefix, parentRowKey);
       }
     } else {
-      createRowKeyForMappedProperties(resultMap, rsw, cacheKey, resultMappings, columnPrefix);
-    }
-    if (cacheKey.getUpdateCount() < 2) {  //如果未包含字段的话，返回空缓存key值 （resultMap.getId() + column + value），所以如果出现过一次必然是大于2的
-      return CacheKey.NULL_CACHE_KEY;
+      createRowKeyForMappedProperties(resultMap, rsw, rowKey, resultMappings, columnPrefix, parentRowKey);
     }
-    return cacheKey;
+    return rowKey;
   }
 
-  private CacheKey combineKeys(CacheKey rowKey, CacheKey parentRowKey) {
-    if (rowKey.getUpdateCount() > 1 && parentRowKey.getUpdateCount() > 1) {
-      CacheKey combinedKey;
-      try {
-        combinedKey = rowKey.clone();
-      } catch (CloneNotSupportedException e) {
-        throw new ExecutorException("Error cloning cache key.  Cause: " + e, e);
-      }
-      combinedKey.update(parentRowKey);
-      return combinedKey;
+  private RowKey getRowKeyProbe(int depth) {
+    while (rowKeyProbes.size() <= depth) {
+      rowKeyProbes.add(new RowKey(rowKeyProbes.size()));
     }
-    return CacheKey.NULL_CACHE_KEY;
+    return rowKeyProbes.get(depth);
   }
 
-  private List<ResultMapping> getResultMappingsForRowKey(ResultMap resultMap) {
-    List<ResultMapping> resultMappings = resultMap.getIdResultMappings();
-    if (resultMappings.isEmpty()) {
-      resultMappings = resultMap.getPropertyResultMappings();
-    }
-    return resultMappings;
-  }
-  
   /**
-   * 根据结果集映射创建缓存key
+   * 根据结果集映射创建行key
    *
    * @param resultMap      ResultMap
    * @param rsw            ResultSetWrapper
-   * @param cacheKey       CacheKey
+   * @param rowKey         行key
    * @param resultMappings 结果集映射
    * @param columnPrefix   字段前缀
+   * @param parentRowKey   上级行key
    * @throws SQLException SQLException
    */
-  private void createRowKeyForMappedProperties(ResultMap resultMap, ResultSetWrapper rsw, CacheKey cacheKey, List<ResultMapping> resultMappings, String columnPrefix) throws SQLException {
-    for (ResultMapping resultMapping : resultMappings) {
-      if (resultMapping.isSimple()) { //只处理简单映射，跳过关联查询和嵌套的resultMap
-        final String column = prependPrefix(resultMapping.getColumn(), columnPrefix);
-        final TypeHandler<?> th = resultMapping.getTypeHandler();
-        List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
-        // Issue #114
-        if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) { //如果映射字段包含当前字段，获取当前字段值
-          final Object value = th.getResult(rsw.getResultSet(), column);
-          if (value != null || configuration.isReturnInstanceForEmptyRow()) { //值不为空或者开启了返回空实例，需要计算缓存key值
-            cacheKey.update(column);
-            cacheKey.update(value);
-          }
+  private void createRowKeyForMappedProperties(ResultMap resultMap, ResultSetWrapper rsw, RowKey rowKey, List<ResultMapping> resultMappings, String columnPrefix, RowKey parentRowKey) throws SQLException {
+    //拼接前缀后的字段名已预先计算,只处理简单映射，跳过关联查询和嵌套的resultMap(字段名为null)
+    final ResultMap.RowKeyColumns rowKeyColumns = resultMap.getRowKeyColumns(columnPrefix);
+    final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
+    rowKey.reset(resultMap, rowKeyColumns, resultMappings.size(), parentRowKey);
+    for (int i = 0; i < resultMappings.size(); i++) {
+      final String column = rowKeyColumns.getColumn(i);
+      // Issue #114
+      if (column != null && mappedColumnNames.contains(rowKeyColumns.getUpperColumn(i))) { //如果映射字段包含当前字段，获取当前字段值
+        final TypeHandler<?> th = getColumnTypeHandler(rsw, resultMappings.get(i).getTypeHandler(), column);
+        final Object value = getColumnResult(rsw, th, column);
+        if (value != null || configuration.isReturnInstanceForEmptyRow()) { //值不为空或者开启了返回空实例，需要计算行key
+          rowKey.add(value);
+          continue;
         }
       }
+      rowKey.skip();
     }
   }
 
-  private void createRowKeyForUnmappedProperties(ResultMap resultMap, ResultSetWrapper rsw, CacheKey cacheKey, String columnPrefix) throws SQLException {
+  private void createRowKeyForUnmappedProperties(ResultMap resultMap, ResultSetWrapper rsw, RowKey rowKey, String columnPrefix, RowKey parentRowKey) throws SQLException {
     final MetaClass metaType = MetaClass.forClass(resultMap.getType(), reflectorFactory);
     List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
+    rowKey.reset(resultMap, unmappedColumnNames, unmappedColumnNames.size(), parentRowKey);
     for (String column : unmappedColumnNames) {
       String property = column;
       if (columnPrefix != null && !columnPrefix.isEmpty()) {
@@ -1384,26 +1561,31 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         if (column.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
           property = column.substring(columnPrefix.length());
         } else {
+          rowKey.skip();
           continue;
         }
       }
+      String value = null;
       if (metaType.findProperty(property, configuration.isMapUnderscoreToCamelCase()) != null) {
-        String value = rsw.getResultSet().getString(column);
-        if (value != null) {
-          cacheKey.update(column);
-          cacheKey.update(value);
-        }
+        value = rsw.getResultSet().getString(column);
+      }
+      if (value != null) {
+        rowKey.add(value);
+      } else {
+        rowKey.skip();
       }
     }
   }
 
-  private void createRowKeyForMap(ResultSetWrapper rsw, CacheKey cacheKey) throws SQLException {
+  private void createRowKeyForMap(ResultMap resultMap, ResultSetWrapper rsw, RowKey rowKey, RowKey parentRowKey) throws SQLException {
     List<String> columnNames = rsw.getColumnNames();
+    rowKey.reset(resultMap, columnNames, columnNames.size(), parentRowKey);
     for (String columnName : columnNames) {
       final String value = rsw.getResultSet().getString(columnName);
       if (value != null) {
-        cacheKey.update(columnName);
-        cacheKey.update(value);
+        rowKey.add(value);
+      } else {
+        rowKey.skip();
       }
     }
   }
@@ -43,6 +43,11 @@ import org.apache.ibatis.type.UnknownTypeHandler;
  */
 public class ResultSetWrapper {
 
+  /**
+   * 无法解析字段类型时共享的类型处理器(无状态)
+   */
+  private static final ObjectTypeHandler OBJECT_TYPE_HANDLER = new ObjectTypeHandler();
+
   private final ResultSet resultSet;
   private final TypeHandlerRegistry typeHandlerRegistry;
   private final List<String> columnNames = new ArrayList<>();
@@ -51,6 +56,22 @@ public class ResultSetWrapper {
   private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<>();
   private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<>();
   private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<>();
+  /**
+   * 是否存在指定前缀的字段
+   */
+  private final Map<String, Boolean> columnPrefixMap = new HashMap<>();
+  /**
+   * UnknownTypeHandler按字段下标解析后的类型处理器(延迟初始化)
+   */
+  private TypeHandler<?>[] unknownColumnTypeHandlers;
+  /**
+   * 字段标签列表(ResultSet按名称读取时使用的是标签),用于计算字段下标
+   */
+  private final List<String> columnLabels;
+  /**
+   * 字段名称->字段下标缓存(从1开始,0表示结果集中不存在该字段)
+   */
+  private final Map<String, Integer> columnIndexMap = new HashMap<>();
 
   public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
     super();
@@ -63,6 +84,14 @@ public class ResultSetWrapper {
       jdbcTypes.add(JdbcType.forCode(metaData.getColumnType(i)));
       classNames.add(metaData.getColumnClassName(i));
     }
+    if (!configuration.isUseColumnIndex() || configuration.isUseColumnLabel()) {
+      this.columnLabels = columnNames;
+    } else {
+      this.columnLabels = new ArrayList<>(columnCount);
+      for (int i = 1; i <= columnCount; i++) {
+        columnLabels.add(metaData.getColumnLabel(i));
+      }
+    }
   }
 
   public ResultSet getResultSet() {
@@ -90,6 +119,29 @@ public class ResultSetWrapper {
     return null;
   }
 
+  /**
+   * 获取字段在结果集中的下标.
+   * 与{@link ResultSet#findColumn(String)}一致,忽略大小写且同名字段取第一个,结果按字段名缓存,
+   * 后续读取时直接按下标访问,避免驱动每次按名称查找字段.
+   *
+   * @param columnName 字段名
+   * @return 字段下标(从1开始),不存在时返回0
+   */
+  public int getColumnIndex(String columnName) {
+    Integer columnIndex = columnIndexMap.get(columnName);
+    if (columnIndex == null) {
+      columnIndex = 0;
+      for (int i = 0; i < columnLabels.size(); i++) {
+        if (columnLabels.get(i).equalsIgnoreCase(columnName)) {
+          columnIndex = i + 1;
+          break;
+        }
+      }
+      columnIndexMap.put(columnName, columnIndex);
+    }
+    return columnIndex;
+  }
+
   /**
    * Gets the type handler to use when reading the result set.
    * Tries to get from the TypeHandlerRegistry by searching for the property type.
@@ -116,24 +168,61 @@ public class ResultSetWrapper {
       // Replicate logic of UnknownTypeHandler#resolveTypeHandler
       // See issue #59 comment 10
       if (handler == null || handler instanceof UnknownTypeHandler) {
-        final int index = columnNames.indexOf(columnName);
-        final Class<?> javaType = resolveClass(classNames.get(index));
-        if (javaType != null && jdbcType != null) {
-          handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
-        } else if (javaType != null) {
-          handler = typeHandlerRegistry.getTypeHandler(javaType);
-        } else if (jdbcType != null) {
-          handler = typeHandlerRegistry.getTypeHandler(jdbcType);
-        }
-      }
-      if (handler == null || handler instanceof UnknownTypeHandler) {
-        handler = new ObjectTypeHandler();
+        handler = resolveColumnTypeHandler(columnNames.indexOf(columnName));
       }
       columnHandlers.put(propertyType, handler);
     }
     return handler;
   }
 
+  /**
+   * 获取UnknownTypeHandler映射字段实际使用的类型处理器.
+   * 按字段下标缓存根据元数据解析出的类型处理器,避免UnknownTypeHandler每行每次都重新读取ResultSetMetaData解析.
+   *
+   * @param columnName 字段名
+   * @return 类型处理器
+   */
+  public TypeHandler<?> getUnknownColumnTypeHandler(String columnName) {
+    // 与UnknownTypeHandler一致,同名字段取最后一个
+    final int index = columnNames.lastIndexOf(columnName);
+    if (index < 0) {
+      return OBJECT_TYPE_HANDLER;
+    }
+    if (unknownColumnTypeHandlers == null) {
+      unknownColumnTypeHandlers = new TypeHandler<?>[columnNames.size()];
+    }
+    TypeHandler<?> handler = unknownColumnTypeHandlers[index];
+    if (handler == null) {
+      handler = resolveColumnTypeHandler(index);
+      unknownColumnTypeHandlers[index] = handler;
+    }
+    return handler;
+  }
+
+  /**
+   * 根据字段元数据(java类型和jdbc类型)解析类型处理器
+   * Replicate logic of UnknownTypeHandler#resolveTypeHandler
+   *
+   * @param index 字段下标
+   * @return 类型处理器(无法解析时返回ObjectTypeHandler)
+   */
+  private TypeHandler<?> resolveColumnTypeHandler(int index) {
+    TypeHandler<?> handler = null;
+    final JdbcType jdbcType = jdbcTypes.get(index);
+    final Class<?> javaType = resolveClass(classNames.get(index));
+    if (javaType != null && jdbcType != null) {
+      handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
+    } else if (javaType != null) {
+      handler = typeHandlerRegistry.getTypeHandler(javaType);
+    } else if (jdbcType != null) {
+      handler = typeHandlerRegistry.getTypeHandler(jdbcType);
+    }
+    if (handler == null || handler instanceof UnknownTypeHandler) {
+      handler = OBJECT_TYPE_HANDLER;
+    }
+    return handler;
+  }
+
   private Class<?> resolveClass(String className) {
     try {
       // #699 className could be null
@@ -217,6 +306,28 @@ public class ResultSetWrapper {
     return unMappedColumnNames;
   }
 
+  /**
+   * 判断结果集中是否存在指定前缀的字段(忽略大小写)
+   *
+   * @param columnPrefix 字段前缀
+   * @return 是否存在
+   * @since 3.5.6
+   */
+  public boolean hasColumnWithPrefix(String columnPrefix) {
+    Boolean found = columnPrefixMap.get(columnPrefix);
+    if (found == null) {
+      found = Boolean.FALSE;
+      for (String columnName : columnNames) {
+        if (columnName.toUpperCase().startsWith(columnPrefix.toUpperCase())) {
+          found = Boolean.TRUE;
+          break;
+        }
+      }
+      columnPrefixMap.put(columnPrefix, found);
+    }
+    return found;
+  }
+
   /**
    * 获取缓存key值
    *
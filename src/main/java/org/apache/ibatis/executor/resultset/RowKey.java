@@ -0,0 +1,174 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.Arrays;
+
+import org.apache.ibatis.reflection.ArrayUtil;
+
+/**
+ * 嵌套结果映射去重使用的行key
+ * 由resultMap,字段结构(字段列表对象)和各字段的值组成,字段名由字段结构确定,比较时只比较值;哈希值在写入值时计算.
+ * 按嵌套层级复用同一个实例作为查找用的探测key,只有需要保存到{@code nestedResultObjects}时才通过{@link #copy()}复制为不可变实例,
+ * 替代每行每层创建并复制{@link org.apache.ibatis.cache.CacheKey}.
+ *
+ * @since 3.5.6
+ */
+final class RowKey {
+
+  /**
+   * 未参与计算的字段(值为空且未开启returnInstanceForEmptyRow,或结果集中不存在该字段)
+   */
+  private static final Object SKIPPED = new Object();
+
+  private final boolean mutable;
+  private final int depth;
+  private Object resultMap;
+  private Object shape;
+  private Object[] values;
+  private int size;
+  /**
+   * 参与计算的字段数
+   */
+  private int count;
+  private RowKey parent;
+  private int hashcode;
+
+  RowKey(int depth) {
+    this.mutable = true;
+    this.depth = depth;
+    this.values = new Object[8];
+  }
+
+  private RowKey(RowKey key) {
+    this.mutable = false;
+    this.depth = key.depth;
+    this.resultMap = key.resultMap;
+    this.shape = key.shape;
+    this.values = Arrays.copyOf(key.values, key.size);
+    this.size = key.size;
+    this.count = key.count;
+    this.parent = key.parent == null ? null : key.parent.copy();
+    this.hashcode = key.hashcode;
+  }
+
+  /**
+   * 重置探测key
+   *
+   * @param resultMap resultMap
+   * @param shape     字段结构(同一结果集中同一resultMap和前缀对应同一个对象)
+   * @param slots     字段数
+   * @param parent    上级行key(没有时为null)
+   */
+  void reset(Object resultMap, Object shape, int slots, RowKey parent) {
+    if (!mutable) {
+      throw new IllegalStateException("Row key is immutable.");
+    }
+    this.resultMap = resultMap;
+    this.shape = shape;
+    if (values.length < slots) {
+      values = new Object[Math.max(slots, values.length * 2)];
+    }
+    this.size = 0;
+    this.count = 0;
+    this.parent = parent;
+    // 上级行key此时已经写入完成,哈希值直接包含上级的哈希值
+    int seed = 31 * System.identityHashCode(resultMap) + System.identityHashCode(shape);
+    this.hashcode = parent == null ? seed : 31 * parent.hashcode + seed;
+  }
+
+  /**
+   * 写入字段值
+   *
+   * @param value 值
+   */
+  void add(Object value) {
+    values[size++] = value;
+    count++;
+    hashcode = 31 * hashcode + (value == null ? 1 : ArrayUtil.hashCode(value));
+  }
+
+  /**
+   * 跳过字段
+   */
+  void skip() {
+    values[size++] = SKIPPED;
+    hashcode = 31 * hashcode;
+  }
+
+  /**
+   * 没有任何字段参与计算,或上级行key为空时为空key,空key不参与去重
+   *
+   * @return 是否空key
+   */
+  boolean isNull() {
+    return count == 0 || parent != null && parent.isNull();
+  }
+
+  int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return 不可变的副本(自身不可变时返回自身)
+   */
+  RowKey copy() {
+    return mutable ? new RowKey(this) : this;
+  }
+
+  @Override
+  public int hashCode() {
+    return hashcode;
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    }
+    if (!(object instanceof RowKey)) {
+      return false;
+    }
+    RowKey that = (RowKey) object;
+    if (hashcode != that.hashcode || resultMap != that.resultMap || shape != that.shape
+        || size != that.size || count != that.count) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (!ArrayUtil.equals(values[i], that.values[i])) {
+        return false;
+      }
+    }
+    return parent == null ? that.parent == null : parent.equals(that.parent);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    if (parent != null) {
+      builder.append(parent).append(" > ");
+    }
+    builder.append('[');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(values[i] == SKIPPED ? "-" : ArrayUtil.toString(values[i]));
+    }
+    return builder.append(']').toString();
+  }
+
+}
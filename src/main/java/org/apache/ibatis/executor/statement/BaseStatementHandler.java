@@ -23,8 +23,10 @@ import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.listener.ExecutionListener;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.logging.jdbc.SqlLog;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
@@ -75,6 +77,18 @@ public abstract class BaseStatementHandler implements StatementHandler {
    * BoundSql
    */
   protected BoundSql boundSql;
+  /**
+   * 创建Statement的耗时,设置参数后一并通知执行监听器
+   */
+  private long prepareNanos;
+  /**
+   * 直接记录的语句日志(未记录时为null)
+   */
+  private final SqlLog sqlLog;
+  /**
+   * 查询结果是否由返回的列表承载(指定ResultHandler时列表为空,不记录结果数)
+   */
+  private final boolean resultsReturned;
 
   protected BaseStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
     this.configuration = mappedStatement.getConfiguration();
@@ -91,6 +105,9 @@ public abstract class BaseStatementHandler implements StatementHandler {
     }
 
     this.boundSql = boundSql;
+    this.sqlLog = SqlLog.open(mappedStatement, boundSql);
+    this.resultsReturned = resultHandler == null;
+    boundSql.setSqlLog(sqlLog);
 
     this.parameterHandler = configuration.newParameterHandler(mappedStatement, parameterObject, boundSql);
     this.resultSetHandler = configuration.newResultSetHandler(executor, mappedStatement, rowBounds, parameterHandler, resultHandler, boundSql);
@@ -109,6 +126,7 @@ public abstract class BaseStatementHandler implements StatementHandler {
   @Override
   public Statement prepare(Connection connection, Integer transactionTimeout) throws SQLException {
     ErrorContext.instance().sql(boundSql.getSql());
+    long start = startTiming();
     Statement statement = null;
     try {
       statement = instantiateStatement(connection);
@@ -116,6 +134,9 @@ public abstract class BaseStatementHandler implements StatementHandler {
       setStatementTimeout(statement, transactionTimeout);
       //设置批量返回行数(只select有效)
       setFetchSize(statement);
+      if (start != 0L) {
+        prepareNanos = System.nanoTime() - start;
+      }
       return statement;
     } catch (SQLException e) {
       closeStatement(statement);
@@ -178,6 +199,85 @@ public abstract class BaseStatementHandler implements StatementHandler {
     }
   }
 
+  /**
+   * 开始计时
+   *
+   * @return 当前时间(纳秒),未注册执行监听器时返回0
+   */
+  protected long startTiming() {
+    return configuration.hasExecutionListeners() ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * 设置参数完成后记录语句日志并通知执行监听器(耗时包括创建Statement)
+   *
+   * @param start 开始设置参数的时间
+   */
+  protected void statementPrepared(long start) {
+    if (sqlLog != null) {
+      sqlLog.executing();
+    }
+    if (start != 0L) {
+      long elapsed = prepareNanos + System.nanoTime() - start;
+      prepareNanos = 0L;
+      for (ExecutionListener listener : configuration.getExecutionListeners()) {
+        listener.statementPrepared(mappedStatement, elapsed);
+      }
+    }
+  }
+
+  /**
+   * 查询完成后记录语句日志并通知执行监听器
+   *
+   * @param start    开始执行的时间
+   * @param executed 执行完成(开始映射结果集)的时间
+   * @param rowCount 结果数
+   */
+  protected void statementExecuted(long start, long executed, int rowCount) {
+    if (sqlLog != null && resultsReturned) {
+      sqlLog.total(rowCount);
+    }
+    if (start != 0L && executed != 0L) {
+      long mapped = System.nanoTime();
+      for (ExecutionListener listener : configuration.getExecutionListeners()) {
+        listener.statementExecuted(mappedStatement, boundSql, executed - start, mapped - executed, rowCount);
+      }
+    }
+  }
+
+  /**
+   * 执行完成后记录语句日志并通知执行监听器(无结果集映射)
+   *
+   * @param start    开始执行的时间
+   * @param rowCount 影响行数(游标查询为-1)
+   */
+  protected void statementExecuted(long start, int rowCount) {
+    if (sqlLog != null && rowCount >= 0) {
+      sqlLog.updates(rowCount);
+    }
+    if (start != 0L) {
+      long executed = System.nanoTime();
+      for (ExecutionListener listener : configuration.getExecutionListeners()) {
+        listener.statementExecuted(mappedStatement, boundSql, executed - start, 0L, rowCount);
+      }
+    }
+  }
+
+  /**
+   * 执行或结果映射失败时通知执行监听器
+   *
+   * @param start 开始执行的时间
+   * @param cause 异常
+   */
+  protected void statementFailed(long start, Throwable cause) {
+    if (start != 0L) {
+      long failed = System.nanoTime();
+      for (ExecutionListener listener : configuration.getExecutionListeners()) {
+        listener.statementFailed(mappedStatement, boundSql, failed - start, cause);
+      }
+    }
+  }
+
   /**
    * 关闭Statement
    *
@@ -47,8 +47,16 @@ public class CallableStatementHandler extends BaseStatementHandler {
   @Override
   public int update(Statement statement) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
-    cs.execute();
-    int rows = cs.getUpdateCount();
+    long start = startTiming();
+    int rows;
+    try {
+      cs.execute();
+      rows = cs.getUpdateCount();
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, rows);
     Object parameterObject = boundSql.getParameterObject();
     KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
     keyGenerator.processAfter(executor, mappedStatement, cs, parameterObject);
@@ -65,16 +73,33 @@ public class CallableStatementHandler extends BaseStatementHandler {
   @Override
   public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
-    cs.execute();
-    List<E> resultList = resultSetHandler.handleResultSets(cs);
-    resultSetHandler.handleOutputParameters(cs);
+    long start = startTiming();
+    long executed;
+    List<E> resultList;
+    try {
+      cs.execute();
+      executed = startTiming();
+      resultList = resultSetHandler.handleResultSets(cs);
+      resultSetHandler.handleOutputParameters(cs);
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, executed, resultList.size());
     return resultList;
   }
 
   @Override
   public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
-    cs.execute();
+    long start = startTiming();
+    try {
+      cs.execute();
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, -1);
     Cursor<E> resultList = resultSetHandler.handleCursorResultSets(cs);
     resultSetHandler.handleOutputParameters(cs);
     return resultList;
@@ -93,8 +118,10 @@ public class CallableStatementHandler extends BaseStatementHandler {
   @Override
   public void parameterize(Statement statement) throws SQLException {
     //存储过程特殊点,存在返回值的时候需要注册返回参数.
+    long start = startTiming();
     registerOutputParameters((CallableStatement) statement);
     parameterHandler.setParameters((CallableStatement) statement);
+    statementPrepared(start);
   }
 
   /**
@@ -44,8 +44,16 @@ public class PreparedStatementHandler extends BaseStatementHandler {
   @Override
   public int update(Statement statement) throws SQLException {
     PreparedStatement ps = (PreparedStatement) statement;
-    ps.execute();
-    int rows = ps.getUpdateCount();
+    long start = startTiming();
+    int rows;
+    try {
+      ps.execute();
+      rows = ps.getUpdateCount();
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, rows);
     Object parameterObject = boundSql.getParameterObject();
     KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
     keyGenerator.processAfter(executor, mappedStatement, ps, parameterObject);
@@ -61,14 +69,32 @@ public class PreparedStatementHandler extends BaseStatementHandler {
   @Override
   public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
     PreparedStatement ps = (PreparedStatement) statement;
-    ps.execute();
-    return resultSetHandler.handleResultSets(ps);
+    long start = startTiming();
+    long executed;
+    List<E> resultList;
+    try {
+      ps.execute();
+      executed = startTiming();
+      resultList = resultSetHandler.handleResultSets(ps);
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, executed, resultList.size());
+    return resultList;
   }
 
   @Override
   public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
     PreparedStatement ps = (PreparedStatement) statement;
-    ps.execute();
+    long start = startTiming();
+    try {
+      ps.execute();
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, -1);
     return resultSetHandler.handleCursorResultSets(ps);
   }
 
@@ -92,7 +118,9 @@ public class PreparedStatementHandler extends BaseStatementHandler {
 
   @Override
   public void parameterize(Statement statement) throws SQLException {
+    long start = startTiming();
     parameterHandler.setParameters((PreparedStatement) statement);
+    statementPrepared(start);
   }
 
 }
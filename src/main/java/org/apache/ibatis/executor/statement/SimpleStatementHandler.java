@@ -47,17 +47,21 @@ public class SimpleStatementHandler extends BaseStatementHandler {
     Object parameterObject = boundSql.getParameterObject();
     KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
     int rows;
-    if (keyGenerator instanceof Jdbc3KeyGenerator) {
-      statement.execute(sql, Statement.RETURN_GENERATED_KEYS);
-      rows = statement.getUpdateCount();
-      keyGenerator.processAfter(executor, mappedStatement, statement, parameterObject);
-    } else if (keyGenerator instanceof SelectKeyGenerator) {
-      statement.execute(sql);
+    long start = startTiming();
+    try {
+      if (keyGenerator instanceof Jdbc3KeyGenerator) {
+        statement.execute(sql, Statement.RETURN_GENERATED_KEYS);
+      } else {
+        statement.execute(sql);
+      }
       rows = statement.getUpdateCount();
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, rows);
+    if (keyGenerator instanceof Jdbc3KeyGenerator || keyGenerator instanceof SelectKeyGenerator) {
       keyGenerator.processAfter(executor, mappedStatement, statement, parameterObject);
-    } else {
-      statement.execute(sql);
-      rows = statement.getUpdateCount();
     }
     return rows;
   }
@@ -71,14 +75,32 @@ public class SimpleStatementHandler extends BaseStatementHandler {
   @Override
   public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
     String sql = boundSql.getSql();
-    statement.execute(sql);
-    return resultSetHandler.handleResultSets(statement);
+    long start = startTiming();
+    long executed;
+    List<E> resultList;
+    try {
+      statement.execute(sql);
+      executed = startTiming();
+      resultList = resultSetHandler.handleResultSets(statement);
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, executed, resultList.size());
+    return resultList;
   }
 
   @Override
   public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
     String sql = boundSql.getSql();
-    statement.execute(sql);
+    long start = startTiming();
+    try {
+      statement.execute(sql);
+    } catch (SQLException | RuntimeException e) {
+      statementFailed(start, e);
+      throw e;
+    }
+    statementExecuted(start, -1);
     return resultSetHandler.handleCursorResultSets(statement);
   }
 
@@ -95,6 +117,7 @@ public class SimpleStatementHandler extends BaseStatementHandler {
   @Override
   public void parameterize(Statement statement) {
     // 普通sql,无任何参数
+    statementPrepared(startTiming());
   }
 
 }
@@ -0,0 +1,239 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * class文件头信息
+ * 直接从字节码中读取类名、父类、接口和运行时可见的类注解,用于在不加载类的情况下判断类是否符合扫描条件.
+ *
+ * @since 3.5.6
+ */
+public class ClassFileHeader {
+
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final int ACC_INTERFACE = 0x0200;
+  private static final int ACC_ANNOTATION = 0x2000;
+
+  private final int accessFlags;
+  private final String className;
+  private final String superClassName;
+  private final List<String> interfaceNames;
+  private final List<String> annotationNames;
+
+  private ClassFileHeader(int accessFlags, String className, String superClassName, List<String> interfaceNames,
+      List<String> annotationNames) {
+    this.accessFlags = accessFlags;
+    this.className = className;
+    this.superClassName = superClassName;
+    this.interfaceNames = Collections.unmodifiableList(interfaceNames);
+    this.annotationNames = Collections.unmodifiableList(annotationNames);
+  }
+
+  /**
+   * 通过类加载器读取指定类的文件头
+   *
+   * @param loader    类加载器
+   * @param className 类全限定名
+   * @return 文件头(类文件不存在或无法解析时返回null)
+   */
+  public static ClassFileHeader read(ClassLoader loader, String className) {
+    try (InputStream inputStream = loader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+      return inputStream == null ? null : read(inputStream);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * 读取class文件头
+   *
+   * @param inputStream class文件流
+   * @return 文件头
+   * @throws IOException 读取失败或不是有效的class文件
+   */
+  public static ClassFileHeader read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a class file");
+    }
+    in.readUnsignedShort(); // minor_version
+    in.readUnsignedShort(); // major_version
+    int constantCount = in.readUnsignedShort();
+    String[] utf8 = new String[constantCount];
+    int[] classNameIndexes = new int[constantCount];
+    for (int i = 1; i < constantCount; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case 1: // Utf8
+          utf8[i] = in.readUTF();
+          break;
+        case 7: // Class
+          classNameIndexes[i] = in.readUnsignedShort();
+          break;
+        case 8: // String
+        case 16: // MethodType
+        case 19: // Module
+        case 20: // Package
+          skip(in, 2);
+          break;
+        case 15: // MethodHandle
+          skip(in, 3);
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 12: // NameAndType
+        case 17: // Dynamic
+        case 18: // InvokeDynamic
+          skip(in, 4);
+          break;
+        case 5: // Long
+        case 6: // Double
+          skip(in, 8);
+          i++;
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+    int accessFlags = in.readUnsignedShort();
+    String className = toClassName(utf8, classNameIndexes, in.readUnsignedShort());
+    String superClassName = toClassName(utf8, classNameIndexes, in.readUnsignedShort());
+    int interfaceCount = in.readUnsignedShort();
+    List<String> interfaceNames = new ArrayList<>(interfaceCount);
+    for (int i = 0; i < interfaceCount; i++) {
+      interfaceNames.add(toClassName(utf8, classNameIndexes, in.readUnsignedShort()));
+    }
+    skipMembers(in); // fields
+    skipMembers(in); // methods
+    List<String> annotationNames = new ArrayList<>();
+    int attributeCount = in.readUnsignedShort();
+    for (int i = 0; i < attributeCount; i++) {
+      String attributeName = utf8[in.readUnsignedShort()];
+      int length = in.readInt();
+      if ("RuntimeVisibleAnnotations".equals(attributeName)) {
+        int annotationCount = in.readUnsignedShort();
+        for (int j = 0; j < annotationCount; j++) {
+          String descriptor = utf8[in.readUnsignedShort()];
+          annotationNames.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+          skipElementValuePairs(in);
+        }
+      } else {
+        skip(in, length);
+      }
+    }
+    return new ClassFileHeader(accessFlags, className, superClassName, interfaceNames, annotationNames);
+  }
+
+  private static String toClassName(String[] utf8, int[] classNameIndexes, int classIndex) {
+    return classIndex == 0 ? null : utf8[classNameIndexes[classIndex]].replace('/', '.');
+  }
+
+  private static void skipMembers(DataInputStream in) throws IOException {
+    int count = in.readUnsignedShort();
+    for (int i = 0; i < count; i++) {
+      skip(in, 6); // access_flags, name_index, descriptor_index
+      int attributeCount = in.readUnsignedShort();
+      for (int j = 0; j < attributeCount; j++) {
+        skip(in, 2);
+        skip(in, in.readInt());
+      }
+    }
+  }
+
+  private static void skipElementValuePairs(DataInputStream in) throws IOException {
+    int pairCount = in.readUnsignedShort();
+    for (int i = 0; i < pairCount; i++) {
+      skip(in, 2); // element_name_index
+      skipElementValue(in);
+    }
+  }
+
+  private static void skipElementValue(DataInputStream in) throws IOException {
+    int tag = in.readUnsignedByte();
+    switch (tag) {
+      case 'e':
+        skip(in, 4);
+        break;
+      case '@':
+        skip(in, 2);
+        skipElementValuePairs(in);
+        break;
+      case '[': {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+          skipElementValue(in);
+        }
+        break;
+      }
+      default:
+        skip(in, 2);
+        break;
+    }
+  }
+
+  private static void skip(DataInputStream in, int length) throws IOException {
+    int remaining = length;
+    while (remaining > 0) {
+      int skipped = in.skipBytes(remaining);
+      if (skipped <= 0) {
+        throw new IOException("Unexpected end of class file");
+      }
+      remaining -= skipped;
+    }
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * @return 父类全限定名(java.lang.Object与接口的父类为java.lang.Object,java.lang.Object本身为null)
+   */
+  public String getSuperClassName() {
+    return superClassName;
+  }
+
+  public List<String> getInterfaceNames() {
+    return interfaceNames;
+  }
+
+  /**
+   * @return 运行时可见的类注解全限定名
+   */
+  public List<String> getAnnotationNames() {
+    return annotationNames;
+  }
+
+  public boolean isInterface() {
+    return (accessFlags & ACC_INTERFACE) != 0;
+  }
+
+  public boolean isAnnotation() {
+    return (accessFlags & ACC_ANNOTATION) != 0;
+  }
+
+}
@@ -16,10 +16,18 @@
 package org.apache.ibatis.io;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -84,12 +92,30 @@ public class ResolverUtil<T> {
     boolean matches(Class<?> type);
   }
 
+  /**
+   * 可以根据class文件头预先判断的条件
+   * 扫描时先读取class文件头,只有可能匹配的类才会被加载并调用{@link #matches(Class)}.
+   *
+   * @since 3.5.6
+   */
+  public interface ClassFileTest extends Test {
+
+    /**
+     * 根据class文件头判断类是否可能匹配,无法确定时必须返回true
+     *
+     * @param header       class文件头
+     * @param headerLoader 根据类全限定名读取其他类(父类、接口)的文件头,无法读取时返回null
+     * @return 是否可能匹配
+     */
+    boolean mayMatch(ClassFileHeader header, Function<String, ClassFileHeader> headerLoader);
+  }
+
   /**
    * 判断是否为指定接口的子类
    * A Test that checks to see if each class is assignable to the provided class. Note
    * that this test will match the parent type itself if it is presented for matching.
    */
-  public static class IsA implements Test {
+  public static class IsA implements ClassFileTest {
 
     /**
      * 父类类型
@@ -115,6 +141,35 @@ public class ResolverUtil<T> {
       return type != null && parent.isAssignableFrom(type);
     }
 
+    @Override
+    public boolean mayMatch(ClassFileHeader header, Function<String, ClassFileHeader> headerLoader) {
+      return parent == Object.class || isSubtype(header, parent.getName(), headerLoader);
+    }
+
+    private static boolean isSubtype(ClassFileHeader header, String parentName, Function<String, ClassFileHeader> headerLoader) {
+      if (header.getClassName().equals(parentName)) {
+        return true;
+      }
+      List<String> supertypes = new ArrayList<>(header.getInterfaceNames());
+      if (header.getSuperClassName() != null) {
+        supertypes.add(header.getSuperClassName());
+      }
+      for (String supertype : supertypes) {
+        if (supertype.equals(parentName)) {
+          return true;
+        }
+        //jdk中的类不会继承jdk以外的类型
+        if (supertype.startsWith("java.") && !parentName.startsWith("java.")) {
+          continue;
+        }
+        ClassFileHeader supertypeHeader = headerLoader.apply(supertype);
+        if (supertypeHeader == null || isSubtype(supertypeHeader, parentName, headerLoader)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
     @Override
     public String toString() {
       return "is assignable to " + parent.getSimpleName();
@@ -126,7 +181,7 @@ public class ResolverUtil<T> {
    * A Test that checks to see if each class is annotated with a specific annotation. If it
    * is, then the test returns true, otherwise false.
    */
-  public static class AnnotatedWith implements Test {
+  public static class AnnotatedWith implements ClassFileTest {
 
     /**
      * 注解信息
@@ -152,12 +207,60 @@ public class ResolverUtil<T> {
       return type != null && type.isAnnotationPresent(annotation);
     }
 
+    @Override
+    public boolean mayMatch(ClassFileHeader header, Function<String, ClassFileHeader> headerLoader) {
+      if (header.getAnnotationNames().contains(annotation.getName())) {
+        return true;
+      }
+      //可继承的注解还需要检查父类
+      if (!annotation.isAnnotationPresent(Inherited.class) || header.isInterface() || header.getSuperClassName() == null) {
+        return false;
+      }
+      ClassFileHeader superClassHeader = headerLoader.apply(header.getSuperClassName());
+      return superClassHeader == null || mayMatch(superClassHeader, headerLoader);
+    }
+
     @Override
     public String toString() {
       return "annotated with @" + annotation.getSimpleName();
     }
   }
 
+  /**
+   * 只匹配同时满足指定条件的接口
+   * 常用于mapper扫描(接口且继承指定父接口或标注指定注解),根据class文件头先排除非接口,
+   * 指定条件也支持文件头判断时再按其判断,均不需要加载类.
+   *
+   * @since 3.5.6
+   */
+  public static class IsInterface implements ClassFileTest {
+
+    private final Test test;
+
+    /**
+     * @param test 接口还需满足的条件(如{@link IsA}或{@link AnnotatedWith})
+     */
+    public IsInterface(Test test) {
+      this.test = test;
+    }
+
+    @Override
+    public boolean matches(Class<?> type) {
+      return type != null && type.isInterface() && test.matches(type);
+    }
+
+    @Override
+    public boolean mayMatch(ClassFileHeader header, Function<String, ClassFileHeader> headerLoader) {
+      return header.isInterface()
+          && (!(test instanceof ClassFileTest) || ((ClassFileTest) test).mayMatch(header, headerLoader));
+    }
+
+    @Override
+    public String toString() {
+      return "is an interface and " + test;
+    }
+  }
+
   /**
    * 匹配的类集合信息
    * The set of matches being accumulated.
@@ -266,6 +369,9 @@ public class ResolverUtil<T> {
 
     try {
       List<String> children = VFS.getInstance().list(path);
+      if (test instanceof ClassFileTest) {
+        children = filterByClassFile((ClassFileTest) test, children);
+      }
       for (String child : children) {
         if (child.endsWith(".class")) {
           addIfMatching(test, child);
@@ -278,6 +384,34 @@ public class ResolverUtil<T> {
     return this;
   }
 
+  /**
+   * 并行读取class文件头,过滤掉肯定不匹配的类,避免加载包下的所有类
+   *
+   * @param test     条件
+   * @param children 包下的资源列表
+   * @return 可能匹配的class文件
+   */
+  private List<String> filterByClassFile(ClassFileTest test, List<String> children) {
+    ClassLoader loader = getClassLoader();
+    Map<String, Optional<ClassFileHeader>> headers = new ConcurrentHashMap<>();
+    Function<String, ClassFileHeader> headerLoader = className -> headers
+        .computeIfAbsent(className, name -> Optional.ofNullable(ClassFileHeader.read(loader, name))).orElse(null);
+    return children.parallelStream().filter(child -> child.endsWith(".class")).filter(child -> {
+      ClassFileHeader header;
+      try (InputStream inputStream = loader.getResourceAsStream(child)) {
+        if (inputStream == null) {
+          return true;
+        }
+        header = ClassFileHeader.read(inputStream);
+      } catch (IOException | RuntimeException e) {
+        //无法解析的交由类加载判断
+        return true;
+      }
+      headers.putIfAbsent(header.getClassName(), Optional.of(header));
+      return test.mayMatch(header, headerLoader);
+    }).collect(Collectors.toList());
+  }
+
   /**
    * 将包名转换类路径访问信息
    * Converts a Java package name to a path that can be looked up with a call to
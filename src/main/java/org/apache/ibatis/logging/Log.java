@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.logging;
 
+import java.util.function.Supplier;
+
 /**
  * 日志接口，实现类记得要提供一个String构造
  *
@@ -36,4 +38,79 @@ public interface Log {
 
   void warn(String s);
 
+  /**
+   * 是否在其他线程输出日志
+   * 为true时调用方应使用Supplier或参数化方法,把字符串拼接留给输出线程.
+   *
+   * @return 是否异步输出
+   * @since 3.5.6
+   */
+  default boolean isAsynchronous() {
+    return false;
+  }
+
+  /**
+   * 输出debug日志,未开启debug时不调用message
+   *
+   * @param message 日志内容
+   * @since 3.5.6
+   */
+  default void debug(Supplier<String> message) {
+    if (isDebugEnabled()) {
+      debug(message.get());
+    }
+  }
+
+  /**
+   * 输出trace日志,未开启trace时不调用message
+   *
+   * @param message 日志内容
+   * @since 3.5.6
+   */
+  default void trace(Supplier<String> message) {
+    if (isTraceEnabled()) {
+      trace(message.get());
+    }
+  }
+
+  /**
+   * 输出参数化的debug日志,pattern中的{}依次替换为参数
+   *
+   * @param pattern   日志模板
+   * @param arguments 参数
+   * @since 3.5.6
+   * @see LogMessage#format(String, Object...)
+   */
+  default void debug(String pattern, Object... arguments) {
+    if (isDebugEnabled()) {
+      debug(LogMessage.format(pattern, arguments));
+    }
+  }
+
+  /**
+   * 输出参数化的trace日志,pattern中的{}依次替换为参数
+   *
+   * @param pattern   日志模板
+   * @param arguments 参数
+   * @since 3.5.6
+   * @see LogMessage#format(String, Object...)
+   */
+  default void trace(String pattern, Object... arguments) {
+    if (isTraceEnabled()) {
+      trace(LogMessage.format(pattern, arguments));
+    }
+  }
+
+  /**
+   * 输出参数化的warn日志,pattern中的{}依次替换为参数
+   *
+   * @param pattern   日志模板
+   * @param arguments 参数
+   * @since 3.5.6
+   * @see LogMessage#format(String, Object...)
+   */
+  default void warn(String pattern, Object... arguments) {
+    warn(LogMessage.format(pattern, arguments));
+  }
+
 }
@@ -17,6 +17,8 @@ package org.apache.ibatis.logging;
 
 import java.lang.reflect.Constructor;
 
+import org.apache.ibatis.logging.async.AsyncLogImpl;
+
 /**
  * @author Clinton Begin
  * @author Eduardo Macarron
@@ -107,6 +109,26 @@ public final class LogFactory {
   public static synchronized void useNoLogging() {
     setImplementation(org.apache.ibatis.logging.nologging.NoLoggingImpl.class);
   }
+
+  /**
+   * 使用异步日志,由当前使用的日志实现在后台线程输出
+   *
+   * @since 3.5.6
+   */
+  public static synchronized void useAsyncLogging() {
+    setImplementation(AsyncLogImpl.class);
+  }
+
+  /**
+   * 使用异步日志
+   *
+   * @param targetClass 实际输出日志的实现
+   * @since 3.5.6
+   */
+  public static synchronized void useAsyncLogging(Class<? extends Log> targetClass) {
+    AsyncLogImpl.setTargetImplementation(targetClass);
+    setImplementation(AsyncLogImpl.class);
+  }
   
   /**
    * 检查实现类
@@ -129,6 +151,11 @@ public final class LogFactory {
    * @param implClass 实现类，必须提供一个string构造方法
    */
   private static void setImplementation(Class<? extends Log> implClass) {
+    if (AsyncLogImpl.class.isAssignableFrom(implClass) && AsyncLogImpl.getTargetImplementation() == null
+        && logConstructor != null && !AsyncLogImpl.class.isAssignableFrom(logConstructor.getDeclaringClass())) {
+      // 异步日志默认由切换前的实现输出
+      AsyncLogImpl.setTargetImplementation(logConstructor.getDeclaringClass());
+    }
     try {
       Constructor<? extends Log> candidate = implClass.getConstructor(String.class);
       Log log = candidate.newInstance(LogFactory.class.getName());
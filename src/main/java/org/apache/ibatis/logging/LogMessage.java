@@ -0,0 +1,57 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.logging;
+
+import org.apache.ibatis.reflection.ArrayUtil;
+
+/**
+ * 参数化日志的格式化
+ *
+ * @since 3.5.6
+ */
+public final class LogMessage {
+
+  private static final String PLACEHOLDER = "{}";
+
+  private LogMessage() {
+    // Prevent Instantiation of Static Class
+  }
+
+  /**
+   * 将pattern中的{}依次替换为参数(数组参数输出其元素),多余的参数忽略,缺少参数的{}原样保留
+   *
+   * @param pattern   日志模板
+   * @param arguments 参数
+   * @return 日志内容
+   */
+  public static String format(String pattern, Object... arguments) {
+    if (pattern == null || arguments == null || arguments.length == 0) {
+      return pattern;
+    }
+    StringBuilder builder = new StringBuilder(pattern.length() + 16 * arguments.length);
+    int start = 0;
+    for (Object argument : arguments) {
+      int index = pattern.indexOf(PLACEHOLDER, start);
+      if (index < 0) {
+        break;
+      }
+      builder.append(pattern, start, index).append(ArrayUtil.toString(argument));
+      start = index + PLACEHOLDER.length();
+    }
+    return builder.append(pattern, start, pattern.length()).toString();
+  }
+
+}
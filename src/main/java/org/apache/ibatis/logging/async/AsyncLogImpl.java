@@ -0,0 +1,183 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.logging.async;
+
+import java.lang.reflect.Constructor;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogException;
+import org.apache.ibatis.logging.nologging.NoLoggingImpl;
+
+/**
+ * 异步日志实现
+ * 包装另一个日志实现(由{@link org.apache.ibatis.logging.LogFactory#useAsyncLogging()}指定,默认为切换前使用的实现),
+ * 级别判断在调用线程进行,日志内容的拼接(Supplier及参数化方法)与输出在后台线程按顺序进行.
+ * 所有实例共用一个环形缓冲区,缓冲区已满时由调用线程直接输出.
+ *
+ * @since 3.5.6
+ */
+public class AsyncLogImpl implements Log {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static volatile Constructor<? extends Log> targetConstructor;
+
+  private final Log delegate;
+
+  public AsyncLogImpl(String clazz) {
+    Constructor<? extends Log> constructor = targetConstructor;
+    if (constructor == null) {
+      delegate = new NoLoggingImpl(clazz);
+    } else {
+      try {
+        delegate = constructor.newInstance(clazz);
+      } catch (Exception e) {
+        throw new LogException("Error creating logger for logger " + clazz + ".  Cause: " + e, e);
+      }
+    }
+  }
+
+  /**
+   * 设置实际输出日志的实现
+   *
+   * @param implClass 日志实现,必须提供一个string构造方法
+   */
+  public static void setTargetImplementation(Class<? extends Log> implClass) {
+    if (AsyncLogImpl.class.isAssignableFrom(implClass)) {
+      throw new LogException("The target of the asynchronous logging cannot be " + implClass + ".");
+    }
+    try {
+      targetConstructor = implClass.getConstructor(String.class);
+    } catch (NoSuchMethodException e) {
+      throw new LogException("Error setting Log implementation.  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * 获取实际输出日志的实现
+   *
+   * @return 日志实现(未设置时返回null)
+   */
+  public static Class<? extends Log> getTargetImplementation() {
+    Constructor<? extends Log> constructor = targetConstructor;
+    return constructor == null ? null : constructor.getDeclaringClass();
+  }
+
+  /**
+   * 等待已提交的日志全部输出
+   *
+   * @param timeoutMillis 最长等待时间(毫秒)
+   * @return 是否全部输出
+   */
+  public static boolean flush(long timeoutMillis) {
+    return Buffer.INSTANCE.flush(timeoutMillis);
+  }
+
+  /**
+   * 获取缓冲区已满由调用线程直接输出的次数
+   *
+   * @return 次数
+   */
+  public static long getOverflowCount() {
+    return Buffer.INSTANCE.getOverflowCount();
+  }
+
+  @Override
+  public boolean isAsynchronous() {
+    return true;
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return delegate.isDebugEnabled();
+  }
+
+  @Override
+  public boolean isTraceEnabled() {
+    return delegate.isTraceEnabled();
+  }
+
+  @Override
+  public void error(String s, Throwable e) {
+    Buffer.INSTANCE.publish(delegate, LogRingBuffer.ERROR, s, null, null, e);
+  }
+
+  @Override
+  public void error(String s) {
+    Buffer.INSTANCE.publish(delegate, LogRingBuffer.ERROR, s, null, null, null);
+  }
+
+  @Override
+  public void debug(String s) {
+    if (delegate.isDebugEnabled()) {
+      Buffer.INSTANCE.publish(delegate, LogRingBuffer.DEBUG, s, null, null, null);
+    }
+  }
+
+  @Override
+  public void trace(String s) {
+    if (delegate.isTraceEnabled()) {
+      Buffer.INSTANCE.publish(delegate, LogRingBuffer.TRACE, s, null, null, null);
+    }
+  }
+
+  @Override
+  public void warn(String s) {
+    Buffer.INSTANCE.publish(delegate, LogRingBuffer.WARN, s, null, null, null);
+  }
+
+  @Override
+  public void debug(Supplier<String> message) {
+    if (delegate.isDebugEnabled()) {
+      Buffer.INSTANCE.publish(delegate, LogRingBuffer.DEBUG, null, message, null, null);
+    }
+  }
+
+  @Override
+  public void trace(Supplier<String> message) {
+    if (delegate.isTraceEnabled()) {
+      Buffer.INSTANCE.publish(delegate, LogRingBuffer.TRACE, null, message, null, null);
+    }
+  }
+
+  @Override
+  public void debug(String pattern, Object... arguments) {
+    if (delegate.isDebugEnabled()) {
+      Buffer.INSTANCE.publish(delegate, LogRingBuffer.DEBUG, pattern, null, arguments, null);
+    }
+  }
+
+  @Override
+  public void trace(String pattern, Object... arguments) {
+    if (delegate.isTraceEnabled()) {
+      Buffer.INSTANCE.publish(delegate, LogRingBuffer.TRACE, pattern, null, arguments, null);
+    }
+  }
+
+  @Override
+  public void warn(String pattern, Object... arguments) {
+    Buffer.INSTANCE.publish(delegate, LogRingBuffer.WARN, pattern, null, arguments, null);
+  }
+
+  /**
+   * 第一次输出日志时才创建缓冲区及输出线程
+   */
+  private static final class Buffer {
+    private static final LogRingBuffer INSTANCE = new LogRingBuffer(BUFFER_SIZE, "AsyncLog-writer");
+  }
+
+}
@@ -0,0 +1,220 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.logging.async;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogMessage;
+
+/**
+ * 异步日志使用的环形缓冲区(多生产者,单消费者)
+ * 槽位预先分配并循环使用,写入只需一次CAS;由一个守护线程按写入顺序格式化并输出.
+ * 缓冲区已满时由调用线程直接输出(不阻塞业务线程,但此时不再保证与缓冲区中日志的先后顺序).
+ *
+ * @since 3.5.6
+ */
+final class LogRingBuffer {
+
+  static final int TRACE = 0;
+  static final int DEBUG = 1;
+  static final int WARN = 2;
+  static final int ERROR = 3;
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final Event[] events;
+  /**
+   * 槽位序号:等于写入位置时可写,等于写入位置+1时可读
+   */
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  private final LongAdder overflowCount = new LongAdder();
+  private final Thread consumer;
+  private volatile boolean sleeping;
+
+  LogRingBuffer(int capacity, String threadName) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Ring buffer capacity must be a power of two but was " + capacity + ".");
+    }
+    this.events = new Event[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    this.mask = capacity - 1;
+    for (int i = 0; i < capacity; i++) {
+      events[i] = new Event();
+      sequences.set(i, i);
+    }
+    this.consumer = new Thread(this::consume, threadName);
+    this.consumer.setDaemon(true);
+    this.consumer.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(TimeUnit.SECONDS.toMillis(1)), threadName + "-shutdown"));
+  }
+
+  /**
+   * 写入一条日志,message,supplier及pattern三者只有一个有值
+   */
+  void publish(Log target, int level, String message, Supplier<String> supplier, Object[] arguments, Throwable throwable) {
+    long position = tail.get();
+    for (;;) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        // 已满,由调用线程直接输出
+        overflowCount.increment();
+        write(target, level, message, supplier, arguments, throwable);
+        return;
+      } else {
+        position = tail.get();
+      }
+    }
+    int index = (int) (position & mask);
+    Event event = events[index];
+    event.target = target;
+    event.level = level;
+    event.message = message;
+    event.supplier = supplier;
+    event.arguments = arguments;
+    event.throwable = throwable;
+    sequences.set(index, position + 1);
+    if (sleeping) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  /**
+   * 等待已写入的日志全部输出
+   *
+   * @param timeoutMillis 最长等待时间
+   * @return 是否全部输出
+   */
+  boolean flush(long timeoutMillis) {
+    long target = tail.get();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (head.get() < target) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      LockSupport.unpark(consumer);
+      Thread.yield();
+    }
+    return true;
+  }
+
+  /**
+   * @return 缓冲区已满由调用线程直接输出的次数
+   */
+  long getOverflowCount() {
+    return overflowCount.sum();
+  }
+
+  private void consume() {
+    for (;;) {
+      long position = head.get();
+      int index = (int) (position & mask);
+      if (sequences.get(index) == position + 1) {
+        Event event = events[index];
+        Log target = event.target;
+        int level = event.level;
+        String message = event.message;
+        Supplier<String> supplier = event.supplier;
+        Object[] arguments = event.arguments;
+        Throwable throwable = event.throwable;
+        event.clear();
+        sequences.set(index, position + mask + 1);
+        write(target, level, message, supplier, arguments, throwable);
+        head.set(position + 1);
+      } else {
+        sleeping = true;
+        if (sequences.get(index) != position + 1) {
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        sleeping = false;
+      }
+    }
+  }
+
+  private static void write(Log target, int level, String message, Supplier<String> supplier, Object[] arguments, Throwable throwable) {
+    try {
+      String text;
+      if (supplier != null) {
+        text = supplier.get();
+      } else if (arguments != null) {
+        text = LogMessage.format(message, arguments);
+      } else {
+        text = message;
+      }
+      switch (level) {
+        case TRACE:
+          target.trace(text);
+          break;
+        case DEBUG:
+          target.debug(text);
+          break;
+        case WARN:
+          target.warn(text);
+          break;
+        default:
+          if (throwable == null) {
+            target.error(text);
+          } else {
+            target.error(text, throwable);
+          }
+          break;
+      }
+    } catch (RuntimeException e) {
+      // 拼接或输出失败不能中断输出线程,通过目标日志实现报告(Error不捕获)
+      reportFailure(target, e);
+    }
+  }
+
+  private static void reportFailure(Log target, RuntimeException e) {
+    try {
+      target.error("Error writing asynchronous log message.  Cause: " + e, e);
+    } catch (RuntimeException ignored) {
+      // 目标日志实现无法输出时只能丢弃
+    }
+  }
+
+  private static final class Event {
+    private Log target;
+    private int level;
+    private String message;
+    private Supplier<String> supplier;
+    private Object[] arguments;
+    private Throwable throwable;
+
+    private void clear() {
+      target = null;
+      message = null;
+      supplier = null;
+      arguments = null;
+      throwable = null;
+    }
+  }
+
+}
@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.apache.ibatis.builder.SqlSourceBuilder;
@@ -87,8 +88,24 @@ public abstract class BaseJdbcLogger {
   }
 
   protected String getParameterValueString() {
-    List<Object> typeList = new ArrayList<>(columnValues.size());
-    for (Object value : columnValues) {
+    return parameterValueString(columnValues);
+  }
+
+  /**
+   * 获取参数值的延迟格式化
+   * 日志异步输出时复制当前参数值,供输出线程格式化(参数值清空后仍可使用).
+   *
+   * @return 参数值字符串
+   * @since 3.5.6
+   */
+  protected Supplier<String> getParameterValueSupplier() {
+    List<Object> values = statementLog.isAsynchronous() ? new ArrayList<>(columnValues) : columnValues;
+    return () -> parameterValueString(values);
+  }
+
+  private String parameterValueString(List<Object> values) {
+    List<Object> typeList = new ArrayList<>(values.size());
+    for (Object value : values) {
       if (value == null) {
         typeList.add("null");
       } else {
@@ -138,6 +155,24 @@ public abstract class BaseJdbcLogger {
     }
   }
 
+  /**
+   * 输出debug日志,日志异步输出时由输出线程拼接日志内容
+   *
+   * @param text  日志内容
+   * @param input 是否为输入
+   * @since 3.5.6
+   */
+  protected void debug(Supplier<String> text, boolean input) {
+    if (statementLog.isDebugEnabled()) {
+      String prefix = prefix(input);
+      if (statementLog.isAsynchronous()) {
+        statementLog.debug(() -> prefix + text.get());
+      } else {
+        statementLog.debug(prefix + text.get());
+      }
+    }
+  }
+
   protected void trace(String text, boolean input) {
     if (statementLog.isTraceEnabled()) {
       statementLog.trace(prefix(input) + text);
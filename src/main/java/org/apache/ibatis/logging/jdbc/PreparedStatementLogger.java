@@ -21,6 +21,7 @@ import java.lang.reflect.Proxy;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.function.Supplier;
 
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.reflection.ExceptionUtil;
@@ -49,7 +50,8 @@ public final class PreparedStatementLogger extends BaseJdbcLogger implements Inv
       }
       if (EXECUTE_METHODS.contains(method.getName())) {
         if (isDebugEnabled()) {
-          debug("Parameters: " + getParameterValueString(), true);
+          Supplier<String> parameters = getParameterValueSupplier();
+          debug(() -> "Parameters: " + parameters.get(), true);
         }
         clearColumnInfo();
         if ("executeQuery".equals(method.getName())) {
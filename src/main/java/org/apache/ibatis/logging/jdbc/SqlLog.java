@@ -0,0 +1,224 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.logging.jdbc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Array;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.ArrayUtil;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.StatementLogMode;
+
+/**
+ * 直接记录的语句日志({@link StatementLogMode#DIRECT})
+ * 每次执行创建一个实例,参数由参数处理器设置时直接记录,不代理jdbc对象.
+ * 日志格式与代理方式一致,参数按类型处理器转换前的值记录.
+ * 开启异步时由配置持有的输出线程({@link Configuration#getStatementLogWriter()})格式化并输出;日志实现本身异步输出({@link Log#isAsynchronous()})时同样在输出线程格式化.
+ * 延迟格式化时,不可变的参数值(字符串、数值、枚举、java.time等)在输出时才调用toString,其余参数值(如{@link Array}、Date、数组)在调用线程转换为字符串,
+ * 避免输出时读取到被修改或已释放的值.
+ *
+ * @since 3.5.6
+ */
+public final class SqlLog {
+
+  private static final Object[] NO_VALUES = new Object[0];
+
+  private final Log log;
+  private final String sql;
+  private final boolean prepared;
+  private final Executor writer;
+  private final boolean deferred;
+  private Object[] values = NO_VALUES;
+  private int count;
+
+  SqlLog(Log log, String sql, boolean prepared, Executor writer) {
+    this.log = log;
+    this.sql = sql;
+    this.prepared = prepared;
+    this.writer = writer;
+    this.deferred = writer != null || log.isAsynchronous();
+  }
+
+  /**
+   * 创建一次执行的语句日志
+   *
+   * @param ms       语句
+   * @param boundSql 执行的sql
+   * @return 语句日志,未开启直接记录,语句日志未开启debug或未被采样时返回null
+   */
+  public static SqlLog open(MappedStatement ms, BoundSql boundSql) {
+    Configuration configuration = ms.getConfiguration();
+    if (configuration.getStatementLogMode() != StatementLogMode.DIRECT) {
+      return null;
+    }
+    Log statementLog = ms.getStatementLog();
+    if (!statementLog.isDebugEnabled()) {
+      return null;
+    }
+    double sampleRate = configuration.getStatementLogSampleRate();
+    if (sampleRate < 1D && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return null;
+    }
+    return new SqlLog(statementLog, boundSql.getSql(), ms.getStatementType() != StatementType.STATEMENT,
+        configuration.getStatementLogWriter());
+  }
+
+  /**
+   * 创建异步输出线程池,队列满或已关闭时由调用线程直接输出,空闲一段时间后线程自动退出
+   *
+   * @return 线程池
+   */
+  public static ExecutorService newAsyncWriter() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(8192), runnable -> {
+          Thread thread = new Thread(runnable, "SqlLog-writer");
+          thread.setDaemon(true);
+          return thread;
+        }, (task, pool) -> task.run());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * 记录下一个参数值
+   *
+   * @param value 参数值
+   */
+  public void parameter(Object value) {
+    if (count == values.length) {
+      values = Arrays.copyOf(values, Math.max(8, count * 2));
+    }
+    values[count++] = deferred && !isImmutable(value) ? new FormattedValue(value) : value;
+  }
+
+  /**
+   * 参数设置完成,记录sql及参数
+   */
+  public void executing() {
+    final Object[] parameters = count == 0 ? NO_VALUES : Arrays.copyOf(values, count);
+    count = 0;
+    write(() -> {
+      if (prepared) {
+        debug(() -> "==>  Preparing: " + SqlSourceBuilder.removeExtraWhitespaces(sql));
+        debug(() -> "==> Parameters: " + parameterValueString(parameters));
+      } else {
+        debug(() -> "==>  Executing: " + SqlSourceBuilder.removeExtraWhitespaces(sql));
+      }
+    });
+  }
+
+  /**
+   * 记录查询结果数
+   *
+   * @param total 结果数
+   */
+  public void total(int total) {
+    write(() -> debug(() -> "<==      Total: " + total));
+  }
+
+  /**
+   * 记录更新行数
+   *
+   * @param updates 影响行数
+   */
+  public void updates(int updates) {
+    write(() -> debug(() -> "<==    Updates: " + updates));
+  }
+
+  private void debug(Supplier<String> line) {
+    if (log.isAsynchronous()) {
+      log.debug(line);
+    } else {
+      log.debug(line.get());
+    }
+  }
+
+  private void write(Runnable task) {
+    if (writer != null) {
+      writer.execute(task);
+    } else {
+      task.run();
+    }
+  }
+
+  static String parameterValueString(Object[] parameters) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < parameters.length; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      Object value = parameters[i];
+      if (value == null) {
+        builder.append("null");
+      } else if (value instanceof FormattedValue) {
+        FormattedValue formatted = (FormattedValue) value;
+        builder.append(formatted.value).append('(').append(formatted.type).append(')');
+      } else {
+        builder.append(objectValueString(value)).append('(').append(value.getClass().getSimpleName()).append(')');
+      }
+    }
+    return builder.toString();
+  }
+
+  private static String objectValueString(Object value) {
+    if (value instanceof Array) {
+      try {
+        return ArrayUtil.toString(((Array) value).getArray());
+      } catch (SQLException e) {
+        return value.toString();
+      }
+    }
+    return value.toString();
+  }
+
+  private static boolean isImmutable(Object value) {
+    return value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+        || value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+        || value instanceof Double || value instanceof Float || value instanceof BigDecimal || value instanceof BigInteger
+        || value instanceof Enum || value instanceof UUID || value.getClass().getName().startsWith("java.time.");
+  }
+
+  /**
+   * 在调用线程转换好的参数值
+   */
+  private static final class FormattedValue {
+
+    private final String value;
+    private final String type;
+
+    FormattedValue(Object value) {
+      this.value = objectValueString(value);
+      this.type = value.getClass().getSimpleName();
+    }
+  }
+
+}
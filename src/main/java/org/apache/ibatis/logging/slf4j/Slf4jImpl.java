@@ -82,4 +82,19 @@ public class Slf4jImpl implements Log {
     log.warn(s);
   }
 
+  @Override
+  public void debug(String pattern, Object... arguments) {
+    log.debug(pattern, arguments);
+  }
+
+  @Override
+  public void trace(String pattern, Object... arguments) {
+    log.trace(pattern, arguments);
+  }
+
+  @Override
+  public void warn(String pattern, Object... arguments) {
+    log.warn(pattern, arguments);
+  }
+
 }
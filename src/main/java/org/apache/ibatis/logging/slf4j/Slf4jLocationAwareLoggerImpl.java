@@ -71,4 +71,19 @@ class Slf4jLocationAwareLoggerImpl implements Log {
     logger.log(MARKER, FQCN, LocationAwareLogger.WARN_INT, s, null, null);
   }
 
+  @Override
+  public void debug(String pattern, Object... arguments) {
+    logger.log(MARKER, FQCN, LocationAwareLogger.DEBUG_INT, pattern, arguments, null);
+  }
+
+  @Override
+  public void trace(String pattern, Object... arguments) {
+    logger.log(MARKER, FQCN, LocationAwareLogger.TRACE_INT, pattern, arguments, null);
+  }
+
+  @Override
+  public void warn(String pattern, Object... arguments) {
+    logger.log(MARKER, FQCN, LocationAwareLogger.WARN_INT, pattern, arguments, null);
+  }
+
 }
@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.ibatis.logging.jdbc.SqlLog;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.property.PropertyTokenizer;
 import org.apache.ibatis.session.Configuration;
@@ -55,6 +56,10 @@ public class BoundSql {
    * 附加参数元数据对象
    */
   private final MetaObject metaParameters;
+  /**
+   * 本次执行的语句日志(直接记录语句日志且被采样时才有值)
+   */
+  private SqlLog sqlLog;
 
   public BoundSql(Configuration configuration, String sql, List<ParameterMapping> parameterMappings, Object parameterObject) {
     this.sql = sql;
@@ -88,4 +93,24 @@ public class BoundSql {
   public Object getAdditionalParameter(String name) {
     return metaParameters.getValue(name);
   }
+
+  /**
+   * 获取本次执行的语句日志,参数处理器通过它记录设置的参数值
+   *
+   * @return 语句日志(未记录时返回null)
+   * @since 3.5.6
+   */
+  public SqlLog getSqlLog() {
+    return sqlLog;
+  }
+
+  /**
+   * 设置本次执行的语句日志
+   *
+   * @param sqlLog 语句日志
+   * @since 3.5.6
+   */
+  public void setSqlLog(SqlLog sqlLog) {
+    this.sqlLog = sqlLog;
+  }
 }
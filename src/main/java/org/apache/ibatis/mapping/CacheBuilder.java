@@ -24,11 +24,13 @@ import java.util.Properties;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.cache.decorators.BlockingCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
@@ -72,6 +74,10 @@ public class CacheBuilder {
    * 是否阻塞
    */
   private boolean blocking;
+  /**
+   * 缓存统计(为空时不统计)
+   */
+  private CacheStatistics statistics;
 
   public CacheBuilder(String id) {
     this.id = id;
@@ -115,6 +121,18 @@ public class CacheBuilder {
     this.properties = properties;
     return this;
   }
+
+  /**
+   * 设置缓存统计,构建时加入{@link StatisticsCache}装饰者
+   *
+   * @param statistics 缓存统计
+   * @return this
+   * @since 3.5.6
+   */
+  public CacheBuilder statistics(CacheStatistics statistics) {
+    this.statistics = statistics;
+    return this;
+  }
   //-----------------build构建属性结束---------------------------
 
   /**
@@ -139,8 +157,15 @@ public class CacheBuilder {
         setCacheProperties(cache);
       }
       cache = setStandardDecorators(cache);
-    } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {  //如果没有日志的装饰，强制装饰个。
-      cache = new LoggingCache(cache);
+    } else {
+      boolean logging = LoggingCache.class.isAssignableFrom(cache.getClass());
+      if (statistics != null) {
+        // 自定义缓存获取条目数可能开销较大(如远程缓存),不统计淘汰
+        cache = new StatisticsCache(cache, statistics, false);
+      }
+      if (!logging) {  //如果没有日志的装饰，强制装饰个。
+        cache = new LoggingCache(cache);
+      }
     }
     return cache;
   }
@@ -169,6 +194,10 @@ public class CacheBuilder {
       if (size != null && metaCache.hasSetter("size")) {
         metaCache.setValue("size", size);
       }
+      if (statistics != null) {
+        // 位于淘汰策略之上,序列化之下,以便统计淘汰及序列化后的大小
+        cache = new StatisticsCache(cache, statistics, true);
+      }
       if (clearInterval != null) {
         cache = new ScheduledCache(cache);
         ((ScheduledCache) cache).setClearInterval(clearInterval);
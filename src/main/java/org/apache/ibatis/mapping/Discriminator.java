@@ -15,8 +15,11 @@
  */
 package org.apache.ibatis.mapping;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.session.Configuration;
 
@@ -25,8 +28,23 @@ import org.apache.ibatis.session.Configuration;
  */
 public class Discriminator {
 
+  /**
+   * 缓存的最大字段值数量,避免高基数字段无限增长
+   */
+  private static final int MAX_CACHED_VALUES = 256;
+  private static final Object NO_MATCH = new Object();
+
+  private Configuration configuration;
   private ResultMapping resultMapping;
   private Map<String, String> discriminatorMap;
+  /**
+   * 按原始字段值缓存的目标resultMap(没有匹配的case时为NO_MATCH)
+   */
+  private final Map<Object, Object> resultMaps = new ConcurrentHashMap<>();
+  /**
+   * 按字段前缀缓存的字段名
+   */
+  private final Map<String, String> columns = new ConcurrentHashMap<>();
 
   Discriminator() {
   }
@@ -35,6 +53,7 @@ public class Discriminator {
     private Discriminator discriminator = new Discriminator();
 
     public Builder(Configuration configuration, ResultMapping resultMapping, Map<String, String> discriminatorMap) {
+      discriminator.configuration = configuration;
       discriminator.resultMapping = resultMapping;
       discriminator.discriminatorMap = discriminatorMap;
     }
@@ -61,4 +80,60 @@ public class Discriminator {
     return discriminatorMap.get(s);
   }
 
+  /**
+   * 获取字段值对应的resultMap
+   * 字符串,数值包装类,BigDecimal,BigInteger,布尔,字符和枚举类型按原始值缓存解析结果,命中时不再转换字符串和查找配置;
+   * case对应的resultMap尚未注册时不缓存.
+   *
+   * @param value 鉴别器字段值
+   * @return resultMap(没有匹配的case或resultMap不存在时返回null)
+   * @since 3.5.6
+   */
+  public ResultMap getResultMapFor(Object value) {
+    final boolean cacheable = isCacheable(value);
+    if (cacheable) {
+      Object cached = resultMaps.get(value);
+      if (cached != null) {
+        return cached == NO_MATCH ? null : (ResultMap) cached;
+      }
+    }
+    final String mapId = getMapIdFor(String.valueOf(value));
+    ResultMap resultMap = null;
+    if (mapId != null && configuration.hasResultMap(mapId)) {
+      resultMap = configuration.getResultMap(mapId);
+    }
+    if (cacheable && (resultMap != null || mapId == null) && resultMaps.size() < MAX_CACHED_VALUES) {
+      resultMaps.put(value, resultMap == null ? NO_MATCH : resultMap);
+    }
+    return resultMap;
+  }
+
+  /**
+   * 获取拼接前缀后的鉴别器字段名
+   *
+   * @param columnPrefix 字段前缀
+   * @return 字段名
+   * @since 3.5.6
+   */
+  public String getColumn(String columnPrefix) {
+    final String column = resultMapping.getColumn();
+    if (column == null || column.isEmpty() || columnPrefix == null || columnPrefix.isEmpty()) {
+      return column;
+    }
+    return columns.computeIfAbsent(columnPrefix, prefix -> prefix + column);
+  }
+
+  /**
+   * 只缓存不可变且按值比较的类型,AtomicInteger等可变数值类型按引用比较,不能作为缓存key
+   */
+  private static boolean isCacheable(Object value) {
+    if (value == null) {
+      return false;
+    }
+    final Class<?> type = value.getClass();
+    return type == String.class || type == Integer.class || type == Long.class || type == Short.class
+      || type == Byte.class || type == Double.class || type == Float.class || type == BigDecimal.class
+      || type == BigInteger.class || type == Boolean.class || type == Character.class || value instanceof Enum;
+  }
+
 }
@@ -18,11 +18,13 @@ package org.apache.ibatis.mapping;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.listener.ExecutionListener;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
@@ -102,6 +104,10 @@ public final class MappedStatement {
    */
   private LanguageDriver lang;
   private String[] resultSets;
+  /**
+   * 语句读写的表名(小写,未声明时为null),二级缓存据此按表版本失效
+   */
+  private String[] cacheTables;
 
   //这里私有了构造，要求使用下面的构建者来构建MappedStatement
   MappedStatement() {
@@ -233,6 +239,24 @@ public final class MappedStatement {
       return this;
     }
 
+    /**
+     * 语句读写的表名
+     *
+     * @param cacheTables 表名,多个用,分隔开来
+     * @return the builder
+     * @since 3.5.6
+     */
+    public Builder cacheTables(String cacheTables) {
+      String[] tables = delimitedStringToArray(cacheTables);
+      if (tables != null) {
+        for (int i = 0; i < tables.length; i++) {
+          tables[i] = tables[i].trim().toLowerCase(Locale.ENGLISH);
+        }
+      }
+      mappedStatement.cacheTables = tables;
+      return this;
+    }
+
     /**
      * Resul sets.
      *
@@ -356,6 +380,14 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  /**
+   * @return 语句读写的表名(小写,未声明时为null)
+   * @since 3.5.6
+   */
+  public String[] getCacheTables() {
+    return cacheTables;
+  }
+
   /**
    * Gets the resul sets.
    *
@@ -368,6 +400,7 @@ public final class MappedStatement {
   }
 
   public BoundSql getBoundSql(Object parameterObject) {
+    long start = configuration.hasExecutionListeners() ? System.nanoTime() : 0L;
     BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     if (parameterMappings == null || parameterMappings.isEmpty()) {
@@ -385,6 +418,12 @@ public final class MappedStatement {
       }
     }
 
+    if (start != 0L) {
+      long elapsed = System.nanoTime() - start;
+      for (ExecutionListener listener : configuration.getExecutionListeners()) {
+        listener.sqlBuilt(this, elapsed);
+      }
+    }
     return boundSql;
   }
 
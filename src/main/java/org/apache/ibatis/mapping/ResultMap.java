@@ -22,7 +22,9 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.builder.BuilderException;
@@ -91,6 +93,18 @@ public class ResultMap {
    * 是否启用自动映射
    */
   private Boolean autoMapping;
+  /**
+   * 生成行key使用的映射(主键映射,没有主键映射时为属性映射)
+   */
+  private List<ResultMapping> rowKeyResultMappings;
+  /**
+   * 按字段前缀缓存的行key字段名
+   */
+  private Map<String, RowKeyColumns> rowKeyColumns;
+  /**
+   * 嵌套resultMap(join)的属性映射
+   */
+  private List<NestedResultMapping> nestedResultMappings;
 
   private ResultMap() {
   }
@@ -194,6 +208,16 @@ public class ResultMap {
       resultMap.constructorResultMappings = Collections.unmodifiableList(resultMap.constructorResultMappings);
       resultMap.propertyResultMappings = Collections.unmodifiableList(resultMap.propertyResultMappings);
       resultMap.mappedColumns = Collections.unmodifiableSet(resultMap.mappedColumns);
+      // 预先计算结果集处理时需要的结构信息,避免逐行计算
+      resultMap.rowKeyResultMappings = resultMap.idResultMappings.isEmpty() ? resultMap.propertyResultMappings : resultMap.idResultMappings;
+      resultMap.rowKeyColumns = new ConcurrentHashMap<>();
+      List<NestedResultMapping> nestedResultMappings = new ArrayList<>();
+      for (ResultMapping resultMapping : resultMap.propertyResultMappings) {
+        if (resultMapping.getNestedResultMapId() != null && resultMapping.getResultSet() == null) {
+          nestedResultMappings.add(new NestedResultMapping(resultMap.configuration, resultMapping));
+        }
+      }
+      resultMap.nestedResultMappings = Collections.unmodifiableList(nestedResultMappings);
       return resultMap;
     }
 
@@ -330,4 +354,164 @@ public class ResultMap {
     return autoMapping;
   }
 
+  /**
+   * @return 生成行key使用的映射(主键映射,没有主键映射时为属性映射)
+   * @since 3.5.6
+   */
+  public List<ResultMapping> getRowKeyResultMappings() {
+    return rowKeyResultMappings;
+  }
+
+  /**
+   * 获取拼接前缀后的行key字段名
+   *
+   * @param columnPrefix 字段前缀(大写)
+   * @return 与{@link #getRowKeyResultMappings()}一一对应的字段名
+   * @since 3.5.6
+   */
+  public RowKeyColumns getRowKeyColumns(String columnPrefix) {
+    String key = columnPrefix == null ? "" : columnPrefix;
+    RowKeyColumns columns = rowKeyColumns.get(key);
+    if (columns == null) {
+      columns = rowKeyColumns.computeIfAbsent(key, k -> new RowKeyColumns(rowKeyResultMappings, k));
+    }
+    return columns;
+  }
+
+  /**
+   * @return 嵌套resultMap(join)的属性映射,顺序与{@link #getPropertyResultMappings()}一致
+   * @since 3.5.6
+   */
+  public List<NestedResultMapping> getNestedResultMappings() {
+    return nestedResultMappings;
+  }
+
+  /**
+   * 拼接字段前缀
+   *
+   * @param columnName 字段名
+   * @param prefix     前缀
+   * @return 拼接后的字段名
+   */
+  private static String prependPrefix(String columnName, String prefix) {
+    if (columnName == null || columnName.isEmpty() || prefix == null || prefix.isEmpty()) {
+      return columnName;
+    }
+    return prefix + columnName;
+  }
+
+  /**
+   * 行key字段名
+   * 非简单映射(嵌套查询,嵌套resultMap)或未指定字段的映射对应位置为null.
+   *
+   * @since 3.5.6
+   */
+  public static final class RowKeyColumns {
+
+    private final String[] columns;
+    private final String[] upperColumns;
+
+    private RowKeyColumns(List<ResultMapping> resultMappings, String columnPrefix) {
+      columns = new String[resultMappings.size()];
+      upperColumns = new String[resultMappings.size()];
+      for (int i = 0; i < columns.length; i++) {
+        ResultMapping resultMapping = resultMappings.get(i);
+        String column = resultMapping.isSimple() ? prependPrefix(resultMapping.getColumn(), columnPrefix) : null;
+        if (column != null) {
+          columns[i] = column;
+          upperColumns[i] = column.toUpperCase(Locale.ENGLISH);
+        }
+      }
+    }
+
+    /**
+     * @param index 映射下标
+     * @return 拼接前缀后的字段名
+     */
+    public String getColumn(int index) {
+      return columns[index];
+    }
+
+    /**
+     * @param index 映射下标
+     * @return 拼接前缀后的大写字段名
+     */
+    public String getUpperColumn(int index) {
+      return upperColumns[index];
+    }
+  }
+
+  /**
+   * 嵌套resultMap(join)映射的执行信息
+   * 被引用的resultMap在首次使用时解析并保存,拼接后的字段前缀和非空字段名按上级前缀缓存.
+   *
+   * @since 3.5.6
+   */
+  public static final class NestedResultMapping {
+
+    private static final String NO_PREFIX = "";
+
+    private final Configuration configuration;
+    private final ResultMapping resultMapping;
+    private final Map<String, String> columnPrefixes = new ConcurrentHashMap<>();
+    private final Map<String, String[]> notNullColumns = new ConcurrentHashMap<>();
+    private volatile ResultMap resultMap;
+
+    private NestedResultMapping(Configuration configuration, ResultMapping resultMapping) {
+      this.configuration = configuration;
+      this.resultMapping = resultMapping;
+    }
+
+    public ResultMapping getResultMapping() {
+      return resultMapping;
+    }
+
+    /**
+     * @return 嵌套的resultMap(未处理鉴别器)
+     */
+    public ResultMap getResultMap() {
+      ResultMap nested = resultMap;
+      if (nested == null) {
+        nested = configuration.getResultMap(resultMapping.getNestedResultMapId());
+        resultMap = nested;
+      }
+      return nested;
+    }
+
+    /**
+     * 获取嵌套映射使用的字段前缀(上级前缀+映射前缀,大写)
+     *
+     * @param parentPrefix 上级前缀
+     * @return 字段前缀(都为空时返回null)
+     */
+    public String getColumnPrefix(String parentPrefix) {
+      String key = parentPrefix == null ? NO_PREFIX : parentPrefix;
+      String columnPrefix = columnPrefixes.get(key);
+      if (columnPrefix == null) {
+        String prefix = resultMapping.getColumnPrefix();
+        columnPrefix = columnPrefixes.computeIfAbsent(key,
+            k -> (k + (prefix == null ? "" : prefix)).toUpperCase(Locale.ENGLISH));
+      }
+      return columnPrefix.isEmpty() ? null : columnPrefix;
+    }
+
+    /**
+     * 获取拼接前缀后的非空字段名(notNullColumn)
+     *
+     * @param columnPrefix 字段前缀
+     * @return 字段名(未配置时为空数组)
+     */
+    public String[] getNotNullColumns(String columnPrefix) {
+      String key = columnPrefix == null ? NO_PREFIX : columnPrefix;
+      String[] columns = notNullColumns.get(key);
+      if (columns == null) {
+        columns = notNullColumns.computeIfAbsent(key, k -> {
+          Set<String> names = resultMapping.getNotNullColumns();
+          return names == null ? new String[0] : names.stream().map(name -> prependPrefix(name, k)).toArray(String[]::new);
+        });
+      }
+      return columns;
+    }
+  }
+
 }
@@ -0,0 +1,144 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * 基于StAX的流式文档构建器
+ * 一次顺序读取xml事件直接构建DOM,不加载DTD也不进行校验,生成的文档与{@link XPathParser}非校验模式下的结构一致
+ * (忽略注释、保留空白文本、CDATA保持独立节点),可直接交给{@link XPathParser#XPathParser(Document, boolean, java.util.Properties, org.xml.sax.EntityResolver)}使用.
+ *
+ * @since 3.5.6
+ */
+public final class StaxDocumentBuilder {
+
+  /**
+   * JDK内置实现默认把CDATA当作普通文本上报,需要开启该属性才能保留CDATA节点
+   */
+  private static final String REPORT_CDATA_EVENT = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+  private static final DocumentBuilderFactory DOCUMENT_FACTORY = DocumentBuilderFactory.newInstance();
+
+  private StaxDocumentBuilder() {
+    // Prevent Instantiation of Static Class
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    if (factory.isPropertySupported(REPORT_CDATA_EVENT)) {
+      factory.setProperty(REPORT_CDATA_EVENT, true);
+    }
+    return factory;
+  }
+
+  /**
+   * 解析xml流构建文档
+   *
+   * @param inputStream xml流
+   * @return 文档
+   */
+  public static Document parse(InputStream inputStream) {
+    XMLStreamReader reader = null;
+    try {
+      Document document = newDocument();
+      reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+      Deque<Node> parents = new ArrayDeque<>();
+      parents.push(document);
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            Element element = document.createElement(toName(reader.getName()));
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+              element.setAttribute(toName(reader.getAttributeName(i)), reader.getAttributeValue(i));
+            }
+            parents.peek().appendChild(element);
+            parents.push(element);
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            parents.pop();
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.SPACE:
+            appendText(document, parents.peek(), reader.getText());
+            break;
+          case XMLStreamConstants.CDATA:
+            parents.peek().appendChild(document.createCDATASection(reader.getText()));
+            break;
+          default:
+            // comments, processing instructions and the doctype are not part of the model
+            break;
+        }
+      }
+      return document;
+    } catch (Exception e) {
+      throw new BuilderException("Error creating document instance.  Cause: " + e, e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  private static Document newDocument() throws ParserConfigurationException {
+    synchronized (DOCUMENT_FACTORY) {
+      return DOCUMENT_FACTORY.newDocumentBuilder().newDocument();
+    }
+  }
+
+  private static void appendText(Document document, Node parent, String text) {
+    if (parent.getNodeType() == Node.DOCUMENT_NODE) {
+      return;
+    }
+    // 与DOM解析一致,相邻的文本合并为一个节点
+    Node last = parent.getLastChild();
+    if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+      ((Text) last).appendData(text);
+    } else {
+      parent.appendChild(document.createTextNode(text));
+    }
+  }
+
+  private static String toName(QName name) {
+    String prefix = name.getPrefix();
+    return prefix == null || prefix.isEmpty() ? name.getLocalPart() : prefix + ":" + name.getLocalPart();
+  }
+
+}
@@ -19,6 +19,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
@@ -200,6 +201,13 @@ public class XPathParser {
 
   public List<XNode> evalNodes(Object root, String expression) {
     List<XNode> xnodes = new ArrayList<>();
+    List<Node> children = selectElements(root, expression, false);
+    if (children != null) {
+      for (Node child : children) {
+        xnodes.add(new XNode(this, child, variables));
+      }
+      return xnodes;
+    }
     NodeList nodes = (NodeList) evaluate(expression, root, XPathConstants.NODESET);
     for (int i = 0; i < nodes.getLength(); i++) {
       xnodes.add(new XNode(this, nodes.item(i), variables));
@@ -212,13 +220,80 @@ public class XPathParser {
   }
 
   public XNode evalNode(Object root, String expression) {
-    Node node = (Node) evaluate(expression, root, XPathConstants.NODE);
+    List<Node> children = selectElements(root, expression, true);
+    Node node = children == null ? (Node) evaluate(expression, root, XPathConstants.NODE)
+        : children.isEmpty() ? null : children.get(0);
     if (node == null) {
       return null;
     }
     return new XNode(this, node, variables);
   }
 
+  /**
+   * 直接遍历子元素处理简单的元素路径表达式,避免XPath的编译和求值开销
+   * 支持按名称的路径(如/mapper/resultMap、selectKey)以及按名称的并集(如select|insert|update|delete),
+   * 结果与XPath一致按文档顺序排列.
+   *
+   * @param root       上下文节点
+   * @param expression 表达式
+   * @param firstOnly  是否只需要第一个结果
+   * @return 匹配的元素(表达式不是简单路径时返回null,交由XPath处理)
+   */
+  private List<Node> selectElements(Object root, String expression, boolean firstOnly) {
+    if (!(root instanceof Node) || !isSimplePath(expression)) {
+      return null;
+    }
+    List<Node> current = new ArrayList<>();
+    String path = expression;
+    if (path.startsWith("/")) {
+      Node node = (Node) root;
+      current.add(node.getNodeType() == Node.DOCUMENT_NODE ? node : node.getOwnerDocument());
+      path = path.substring(1);
+    } else {
+      current.add((Node) root);
+    }
+    String[] steps = path.split("/");
+    for (int i = 0; i < steps.length; i++) {
+      boolean last = i == steps.length - 1;
+      List<String> names = Arrays.asList(steps[i].split("\\|"));
+      List<Node> next = new ArrayList<>();
+      for (Node parent : current) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+          if (child.getNodeType() == Node.ELEMENT_NODE && names.contains(child.getNodeName())) {
+            next.add(child);
+            if (last && firstOnly) {
+              return next;
+            }
+          }
+        }
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  private static boolean isSimplePath(String expression) {
+    if (expression.isEmpty() || expression.endsWith("/") || expression.contains("//")) {
+      return false;
+    }
+    boolean union = expression.indexOf('|') >= 0;
+    if (union && expression.indexOf('/') >= 0) {
+      return false;
+    }
+    String names = union ? expression : expression.startsWith("/") ? expression.substring(1) : expression;
+    for (int i = 0; i < names.length(); i++) {
+      char c = names.charAt(i);
+      boolean separator = union ? c == '|' : c == '/';
+      if (!separator && !Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+        return false;
+      }
+      if (separator && (i == 0 || i == names.length() - 1 || names.charAt(i - 1) == c)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private Object evaluate(String expression, Object root, QName returnType) {
     try {
       return xpath.evaluate(expression, root, returnType);
@@ -90,10 +90,12 @@ public class Reflector {
     type = clazz;
     // 添加默认构造方法
     addDefaultConstructor(clazz);
+    // 类方法列表只获取一次,get和set方法共用
+    Method[] classMethods = getClassMethods(clazz);
     // 添加get方法
-    addGetMethods(clazz);
+    addGetMethods(classMethods);
     // 添加set方法
-    addSetMethods(clazz);
+    addSetMethods(classMethods);
     // 添加属性字段
     addFields(clazz);
     // 记录可读属性(含未提供get方法的)
@@ -116,19 +118,18 @@ public class Reflector {
    */
   private void addDefaultConstructor(Class<?> clazz) {
     Constructor<?>[] constructors = clazz.getDeclaredConstructors();
-    Arrays.stream(constructors).filter(constructor -> constructor.getParameterTypes().length == 0)
+    Arrays.stream(constructors).filter(constructor -> constructor.getParameterCount() == 0)
       .findAny().ifPresent(constructor -> this.defaultConstructor = constructor);
   }
 
   /**
    * 获取get方法
    *
-   * @param clazz 类型信息
+   * @param methods 类方法列表
    */
-  private void addGetMethods(Class<?> clazz) {
+  private void addGetMethods(Method[] methods) {
     Map<String, List<Method>> conflictingGetters = new HashMap<>();
-    Method[] methods = getClassMethods(clazz);
-    Arrays.stream(methods).filter(m -> m.getParameterTypes().length == 0 && PropertyNamer.isGetter(m.getName()))
+    Arrays.stream(methods).filter(m -> m.getParameterCount() == 0 && PropertyNamer.isGetter(m.getName()))
       .forEach(m -> addMethodConflict(conflictingGetters, PropertyNamer.methodToProperty(m.getName()), m));
     resolveGetterConflicts(conflictingGetters);
   }
@@ -201,12 +202,11 @@ public class Reflector {
   /**
    * 添加set方法记录
    *
-   * @param clazz 类信息
+   * @param methods 类方法列表
    */
-  private void addSetMethods(Class<?> clazz) {
+  private void addSetMethods(Method[] methods) {
     Map<String, List<Method>> conflictingSetters = new HashMap<>();
-    Method[] methods = getClassMethods(clazz);
-    Arrays.stream(methods).filter(m -> m.getParameterTypes().length == 1 && PropertyNamer.isSetter(m.getName()))
+    Arrays.stream(methods).filter(m -> m.getParameterCount() == 1 && PropertyNamer.isSetter(m.getName()))
       .forEach(m -> addMethodConflict(conflictingSetters, PropertyNamer.methodToProperty(m.getName()), m));
     resolveSetterConflicts(conflictingSetters);
   }
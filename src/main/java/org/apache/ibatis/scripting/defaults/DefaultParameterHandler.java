@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.logging.jdbc.SqlLog;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
@@ -62,6 +63,7 @@ public class DefaultParameterHandler implements ParameterHandler {
   public void setParameters(PreparedStatement ps) {
     ErrorContext.instance().activity("setting parameters").object(mappedStatement.getParameterMap().getId());
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    SqlLog sqlLog = boundSql.getSqlLog();
     if (parameterMappings != null) {
       for (int i = 0; i < parameterMappings.size(); i++) {
         ParameterMapping parameterMapping = parameterMappings.get(i);
@@ -88,6 +90,9 @@ public class DefaultParameterHandler implements ParameterHandler {
             //当参数值为空且未配置jdbc类型处理器时，使用全局空值处理器类型
             jdbcType = configuration.getJdbcTypeForNull();
           }
+          if (sqlLog != null) {
+            sqlLog.parameter(value);
+          }
           try {
             //交由对应类型处理器进行ps赋值绑定(ps第一个参数索引为1,所以需要下标+1)
             typeHandler.setParameter(ps, i + 1, value, jdbcType);
@@ -17,16 +17,23 @@ package org.apache.ibatis.session;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.function.BiFunction;
 
 import org.apache.ibatis.binding.MapperRegistry;
@@ -36,10 +43,13 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBroadcaster;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
@@ -49,7 +59,11 @@ import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ReuseExecutor;
 import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.executor.SingleFlight;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.listener.ExecutionListener;
+import org.apache.ibatis.executor.listener.ExecutionStatistics;
+import org.apache.ibatis.executor.listener.SlowQueryLogger;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
@@ -61,7 +75,9 @@ import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.io.VFS;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.logging.async.AsyncLogImpl;
 import org.apache.ibatis.logging.commons.JakartaCommonsLoggingImpl;
+import org.apache.ibatis.logging.jdbc.SqlLog;
 import org.apache.ibatis.logging.jdk14.Jdk14LoggingImpl;
 import org.apache.ibatis.logging.log4j.Log4jImpl;
 import org.apache.ibatis.logging.log4j2.Log4j2Impl;
@@ -73,6 +89,7 @@ import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMap;
 import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.mapping.ResultSetType;
 import org.apache.ibatis.mapping.VendorDatabaseIdProvider;
 import org.apache.ibatis.parsing.XNode;
@@ -124,6 +141,12 @@ public class Configuration {
    * 主要出现在as语句的情况，比如 select name as userName ... 使用getColumnLabel返回的会是userName，而使用getColumnName就返回的是name了
    */
   protected boolean useColumnLabel = true;
+  /**
+   * 是否按字段下标读取结果
+   * 开启后每个结果集只解析一次字段下标,映射时调用类型处理器的{@link TypeHandler#getResult(java.sql.ResultSet, int)},
+   * 避免驱动每次按字段名查找(自定义类型处理器需正确实现按下标读取的方法)
+   */
+  protected boolean useColumnIndex;
   /**
    * 二级缓存总开关,只是用来控制下执行器模式.
    * 最终的二级缓存还要配合在xml中配置<cache/>或使用{@link org.apache.ibatis.annotations.CacheNamespace}
@@ -136,6 +159,11 @@ public class Configuration {
    * 返回值为null是否调用对象set方法，例如返回值为map的时候，如果设置为false，当这列值为空的时候，不会调用put方法。
    */
   protected boolean callSettersOnNulls;
+  /**
+   * resultType为map时是否返回只读的行Map({@link org.apache.ibatis.executor.result.RowMap})
+   * 同一结果集共享字段名索引,每行只保存值数组,减少每行一个HashMap的内存开销
+   */
+  protected boolean compactMapResults;
   /**
    * 使用参数名称作为变量参数（jdk1.8特性，编译可以保留原参数名称）
    */
@@ -201,6 +229,70 @@ public class Configuration {
    * 反射工厂实例
    */
   protected ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+  /**
+   * 构建SqlSessionFactory时是否预热反射信息(并行解析语句参数和结果类型的Reflector)
+   */
+  protected boolean reflectorWarmUpEnabled;
+  /**
+   * 是否并行解析mapper文件(并行构建xml文档,按声明顺序合并,最后统一解析未完成的元素)
+   */
+  protected boolean parallelMapperParsingEnabled;
+  /**
+   * 构建期生成的mapper快照资源路径(摘要未变化的mapper文件不再进行DTD校验)
+   */
+  protected String mapperSnapshot;
+  /**
+   * 是否延迟构建xml中的语句(启动时只登记语句,首次获取时再构建MappedStatement)
+   */
+  protected boolean lazyStatementBuildingEnabled;
+  /**
+   * 延迟构建模式下是否在构建SqlSessionFactory时校验(构建)全部语句,一般用于CI环境
+   */
+  protected boolean lazyStatementValidationEnabled;
+  /**
+   * 是否使用StAX流式解析mapper文件(不进行DTD校验)
+   */
+  protected boolean streamingMapperParsingEnabled;
+  /**
+   * 慢查询阈值(毫秒),执行与结果映射总耗时超过该值的语句输出warn日志
+   */
+  protected Integer slowQueryThreshold;
+  /**
+   * 是否按语句统计执行耗时及缓存命中情况
+   */
+  protected boolean executionStatisticsEnabled;
+  /**
+   * 是否统计二级缓存(命中,写入,淘汰,占用及加载耗时等)
+   */
+  protected boolean cacheStatisticsEnabled;
+  /**
+   * 缓存统计注册到JMX时使用的名称(为空时不注册)
+   */
+  protected String cacheStatisticsJmxName;
+  /**
+   * 语句日志的记录方式
+   */
+  protected StatementLogMode statementLogMode = StatementLogMode.PROXY;
+  /**
+   * 语句日志采样率(0~1,仅直接记录时有效)
+   */
+  protected double statementLogSampleRate = 1D;
+  /**
+   * 是否异步格式化并输出语句日志(仅直接记录时有效)
+   */
+  protected boolean statementLogAsync;
+  /**
+   * 异步输出语句日志的线程池,开启异步时创建,关闭异步时关闭
+   */
+  protected volatile ExecutorService statementLogWriter;
+  /**
+   * 是否合并并发的相同二级缓存未命中查询
+   */
+  protected boolean cacheMissCoalescingEnabled;
+  /**
+   * 等待其他会话加载结果的最长时间(毫秒)
+   */
+  protected int cacheMissCoalescingTimeout = 10000;
   /**
    * 对象工厂实例
    */
@@ -237,6 +329,12 @@ public class Configuration {
    * 拦截器调用链
    */
   protected final InterceptorChain interceptorChain = new InterceptorChain();
+  /**
+   * 语句执行监听器
+   */
+  protected final List<ExecutionListener> executionListeners = new CopyOnWriteArrayList<>();
+  private SlowQueryLogger slowQueryLogger;
+  private ExecutionStatistics executionStatistics;
   /**
    * 类型处理器注册对象
    */
@@ -254,6 +352,22 @@ public class Configuration {
       .conflictMessageProducer((savedValue, targetValue) ->
           ". please check " + savedValue.getResource() + " and " + targetValue.getResource());
   protected final Map<String, Cache> caches = new StrictMap<>("Caches collection");
+  /**
+   * 缓存统计(key为缓存Id)
+   */
+  protected final Map<String, CacheStatistics> cacheStatistics = new ConcurrentHashMap<>();
+  /**
+   * 表版本号(二级缓存按表失效)
+   */
+  protected final TableVersions tableVersions = new TableVersions();
+  /**
+   * 缓存失效广播(多节点部署时通知其他节点)
+   */
+  protected CacheInvalidationBroadcaster cacheInvalidationBroadcaster;
+  /**
+   * 正在进行的二级缓存加载(合并并发的相同查询)
+   */
+  protected final SingleFlight singleFlight = new SingleFlight();
   protected final Map<String, ResultMap> resultMaps = new StrictMap<>("Result Maps collection");
   protected final Map<String, ParameterMap> parameterMaps = new StrictMap<>("Parameter Maps collection");
   /**
@@ -283,6 +397,44 @@ public class Configuration {
    * 缓存解析失败的方法（注解情况）
    */
   protected final Collection<MethodResolver> incompleteMethods = new LinkedList<>();
+  /**
+   * 延迟构建的语句(尚未构建)
+   */
+  protected final Map<String, XMLStatementBuilder> lazyStatements = new StrictMap<>("Lazy Mapped Statements collection");
+  /**
+   * 延迟构建模式下已获取过的语句,用于无锁查找
+   * 只缓存全限定id,短名称在之后加入同名语句时会变为歧义,每次都需要从原集合查找.
+   */
+  protected final Map<String, MappedStatement> lazyStatementCache = new ConcurrentHashMap<>();
+  /**
+   * 封存后的映射元素(语句,resultMap,缓存)只读快照
+   * 封存后查找语句不再调用buildAllStatements,直接读取该快照.
+   * 快照只在注册锁内生成并通过一次volatile写整体发布,查找线程只读取快照,快照中不存在的元素即视为不存在.
+   */
+  protected volatile SealedMappings sealedMappings;
+  /**
+   * 快照发布后映射元素是否又发生了变化,下次查找时在注册锁内重新封存
+   * 注册多个元素(如运行期逐个加入mapper)时只在之后的首次查找时复制一次.
+   */
+  private volatile boolean sealedMappingsStale;
+  /**
+   * 映射元素注册锁
+   * 映射元素(语句,延迟语句,resultMap,parameterMap,主键生成器,缓存及未完成元素)的注册和解析,
+   * 以及快照的重新封存都在该锁内进行,封存前的查找也在该锁内读取原集合.
+   */
+  protected final Object registryLock = new Object();
+  /**
+   * 是否已封存过,封存后注册语句或未完成元素时需要重新封存(由注册锁保护)
+   */
+  private boolean sealingEnabled;
+  /**
+   * 封存后是否注册过语句,resultMap,缓存或未完成元素(由注册锁保护)
+   */
+  private boolean mappingsChanged;
+  /**
+   * 正在执行的注册操作层数,大于0时推迟到最外层操作结束再重新封存(由注册锁保护)
+   */
+  private int registrationDepth;
 
   /*
    * A map holds cache-ref relationship. The key is the namespace that
@@ -293,6 +445,18 @@ public class Configuration {
    * 缓存引用列表
    */
   protected final Map<String, String> cacheRefMap = new HashMap<>();
+  /**
+   * 命名空间对应的mapper文件资源
+   */
+  protected final Map<String, String> namespaceResources = new HashMap<>();
+  /**
+   * 按url(而非类路径)加载的mapper文件资源
+   */
+  protected final Set<String> urlResources = ConcurrentHashMap.newKeySet();
+  /**
+   * 命名空间的引用关系,key为被引用的命名空间,value为引用了它(resultMap,sql片段,缓存引用等)的命名空间
+   */
+  protected final Map<String, Set<String>> namespaceReferences = new HashMap<>();
 
   public Configuration(Environment environment) {
     this();
@@ -325,6 +489,7 @@ public class Configuration {
     typeAliasRegistry.registerAlias("LOG4J2", Log4j2Impl.class);
     typeAliasRegistry.registerAlias("JDK_LOGGING", Jdk14LoggingImpl.class);
     typeAliasRegistry.registerAlias("STDOUT_LOGGING", StdOutImpl.class);
+    typeAliasRegistry.registerAlias("ASYNC_LOGGING", AsyncLogImpl.class);
     typeAliasRegistry.registerAlias("NO_LOGGING", NoLoggingImpl.class);
     //代理对象工厂别名注册
     typeAliasRegistry.registerAlias("CGLIB", CglibProxyFactory.class);
@@ -395,6 +560,26 @@ public class Configuration {
     }
   }
 
+  /**
+   * resultType为map时是否返回只读的行Map
+   *
+   * @return 是否返回只读行Map
+   * @since 3.5.6
+   */
+  public boolean isCompactMapResults() {
+    return compactMapResults;
+  }
+
+  /**
+   * 设置resultType为map时是否返回只读的行Map
+   *
+   * @param compactMapResults 是否返回只读行Map
+   * @since 3.5.6
+   */
+  public void setCompactMapResults(boolean compactMapResults) {
+    this.compactMapResults = compactMapResults;
+  }
+
   /**
    * 返回值为null是否调用对象set方法
    *
@@ -768,6 +953,26 @@ public class Configuration {
     this.useColumnLabel = useColumnLabel;
   }
 
+  /**
+   * 是否按字段下标读取结果
+   *
+   * @return 是否按下标读取
+   * @since 3.5.6
+   */
+  public boolean isUseColumnIndex() {
+    return useColumnIndex;
+  }
+
+  /**
+   * 设置是否按字段下标读取结果
+   *
+   * @param useColumnIndex 是否按下标读取
+   * @since 3.5.6
+   */
+  public void setUseColumnIndex(boolean useColumnIndex) {
+    this.useColumnIndex = useColumnIndex;
+  }
+
   /**
    * 获取一级缓存作用范围
    *
@@ -865,297 +1070,753 @@ public class Configuration {
   }
 
   /**
-   * 获取反射工厂
+   * 构建SqlSessionFactory时是否预热反射信息
    *
-   * @return 反射工厂
+   * @return 是否预热
+   * @since 3.5.6
    */
-  public ReflectorFactory getReflectorFactory() {
-    return reflectorFactory;
+  public boolean isReflectorWarmUpEnabled() {
+    return reflectorWarmUpEnabled;
   }
 
   /**
-   * 设置反射工厂
+   * 设置构建SqlSessionFactory时是否预热反射信息
    *
-   * @param reflectorFactory 反射工厂
+   * @param reflectorWarmUpEnabled 是否预热
+   * @since 3.5.6
    */
-  public void setReflectorFactory(ReflectorFactory reflectorFactory) {
-    this.reflectorFactory = reflectorFactory;
+  public void setReflectorWarmUpEnabled(boolean reflectorWarmUpEnabled) {
+    this.reflectorWarmUpEnabled = reflectorWarmUpEnabled;
   }
 
   /**
-   * 获取对象创建工厂
+   * 是否并行解析mapper文件
    *
-   * @return 对象工厂
+   * @return 是否并行解析
+   * @since 3.5.6
    */
-  public ObjectFactory getObjectFactory() {
-    return objectFactory;
+  public boolean isParallelMapperParsingEnabled() {
+    return parallelMapperParsingEnabled;
   }
 
   /**
-   * 设置对象创建工厂
+   * 设置是否并行解析mapper文件
    *
-   * @param objectFactory 对象工厂
+   * @param parallelMapperParsingEnabled 是否并行解析
+   * @since 3.5.6
    */
-  public void setObjectFactory(ObjectFactory objectFactory) {
-    this.objectFactory = objectFactory;
+  public void setParallelMapperParsingEnabled(boolean parallelMapperParsingEnabled) {
+    this.parallelMapperParsingEnabled = parallelMapperParsingEnabled;
   }
 
   /**
-   * 获取对象包装工厂
+   * 获取mapper快照资源路径
    *
-   * @return 对象包装工厂
+   * @return 快照资源路径
+   * @since 3.5.6
    */
-  public ObjectWrapperFactory getObjectWrapperFactory() {
-    return objectWrapperFactory;
+  public String getMapperSnapshot() {
+    return mapperSnapshot;
   }
 
   /**
-   * 设置对象包装工厂
+   * 设置mapper快照资源路径
    *
-   * @param objectWrapperFactory 包装工厂
+   * @param mapperSnapshot 快照资源路径(由{@link org.apache.ibatis.builder.xml.MapperSnapshot}生成)
+   * @since 3.5.6
    */
-  public void setObjectWrapperFactory(ObjectWrapperFactory objectWrapperFactory) {
-    this.objectWrapperFactory = objectWrapperFactory;
+  public void setMapperSnapshot(String mapperSnapshot) {
+    this.mapperSnapshot = mapperSnapshot;
   }
 
   /**
-   * 获取所有注册插件集合
+   * 是否延迟构建xml中的语句
    *
-   * @return the interceptors 插件集合
-   * @since 3.2.2
+   * @return 是否延迟构建
+   * @since 3.5.6
    */
-  public List<Interceptor> getInterceptors() {
-    return interceptorChain.getInterceptors();
+  public boolean isLazyStatementBuildingEnabled() {
+    return lazyStatementBuildingEnabled;
   }
 
   /**
-   * 获取动态脚本处理语言注册对象
+   * 设置是否延迟构建xml中的语句
    *
-   * @return 注册对象
+   * @param lazyStatementBuildingEnabled 是否延迟构建
+   * @since 3.5.6
    */
-  public LanguageDriverRegistry getLanguageRegistry() {
-    return languageRegistry;
+  public void setLazyStatementBuildingEnabled(boolean lazyStatementBuildingEnabled) {
+    this.lazyStatementBuildingEnabled = lazyStatementBuildingEnabled;
   }
 
   /**
-   * 设置默认动态SQL脚本处理语言
+   * 延迟构建模式下是否在构建SqlSessionFactory时校验全部语句
    *
-   * @param driver driver
+   * @return 是否校验
+   * @since 3.5.6
    */
-  public void setDefaultScriptingLanguage(Class<? extends LanguageDriver> driver) {
-    if (driver == null) {
-      driver = XMLLanguageDriver.class;
-    }
-    getLanguageRegistry().setDefaultDriverClass(driver);
+  public boolean isLazyStatementValidationEnabled() {
+    return lazyStatementValidationEnabled;
   }
 
   /**
-   * 获取默认动态SQL脚本处理语言
+   * 设置延迟构建模式下是否在构建SqlSessionFactory时校验全部语句
    *
-   * @return 默认动态sql处理脚本语言
+   * @param lazyStatementValidationEnabled 是否校验
+   * @since 3.5.6
    */
-  public LanguageDriver getDefaultScriptingLanguageInstance() {
-    return languageRegistry.getDefaultDriver();
+  public void setLazyStatementValidationEnabled(boolean lazyStatementValidationEnabled) {
+    this.lazyStatementValidationEnabled = lazyStatementValidationEnabled;
   }
 
   /**
-   * 获取动态SQL脚本处理语言
-   * Gets the language driver.
+   * 是否使用StAX流式解析mapper文件
    *
-   * @param langClass the lang class
-   * @return the language driver
-   * @since 3.5.1
+   * @return 是否流式解析
+   * @since 3.5.6
    */
-  public LanguageDriver getLanguageDriver(Class<? extends LanguageDriver> langClass) {
-    if (langClass == null) {
-      //返回默认处理语言
-      return languageRegistry.getDefaultDriver();
-    }
-    //注册脚本语言
-    languageRegistry.register(langClass);
-    //返回注册的实例
-    return languageRegistry.getDriver(langClass);
+  public boolean isStreamingMapperParsingEnabled() {
+    return streamingMapperParsingEnabled;
   }
 
   /**
-   * Gets the default scripting lanuage instance.
+   * 设置是否使用StAX流式解析mapper文件
    *
-   * @return the default scripting lanuage instance
-   * @deprecated Use {@link #getDefaultScriptingLanguageInstance()}
+   * @param streamingMapperParsingEnabled 是否流式解析
+   * @since 3.5.6
    */
-  @Deprecated
-  public LanguageDriver getDefaultScriptingLanuageInstance() {
-    return getDefaultScriptingLanguageInstance();
+  public void setStreamingMapperParsingEnabled(boolean streamingMapperParsingEnabled) {
+    this.streamingMapperParsingEnabled = streamingMapperParsingEnabled;
   }
 
-  public MetaObject newMetaObject(Object object) {
-    return MetaObject.forObject(object, objectFactory, objectWrapperFactory, reflectorFactory);
+  /**
+   * 获取慢查询阈值
+   *
+   * @return 阈值(毫秒)
+   * @since 3.5.6
+   */
+  public Integer getSlowQueryThreshold() {
+    return slowQueryThreshold;
   }
 
-  public ParameterHandler newParameterHandler(MappedStatement mappedStatement, Object parameterObject, BoundSql boundSql) {
-    ParameterHandler parameterHandler = mappedStatement.getLang().createParameterHandler(mappedStatement, parameterObject, boundSql);
-    //创建ParameterHandler后执行拦截器调用链处理
-    parameterHandler = (ParameterHandler) interceptorChain.pluginAll(parameterHandler);
-    return parameterHandler;
+  /**
+   * 设置慢查询阈值,大于0时注册{@link SlowQueryLogger}
+   *
+   * @param slowQueryThreshold 阈值(毫秒),为空或不大于0时关闭
+   * @since 3.5.6
+   */
+  public void setSlowQueryThreshold(Integer slowQueryThreshold) {
+    this.slowQueryThreshold = slowQueryThreshold;
+    if (slowQueryLogger != null) {
+      executionListeners.remove(slowQueryLogger);
+      slowQueryLogger = null;
+    }
+    if (slowQueryThreshold != null && slowQueryThreshold > 0) {
+      slowQueryLogger = new SlowQueryLogger(slowQueryThreshold);
+      executionListeners.add(slowQueryLogger);
+    }
   }
 
-  public ResultSetHandler newResultSetHandler(Executor executor, MappedStatement mappedStatement, RowBounds rowBounds, ParameterHandler parameterHandler,
-      ResultHandler resultHandler, BoundSql boundSql) {
-    ResultSetHandler resultSetHandler = new DefaultResultSetHandler(executor, mappedStatement, parameterHandler, resultHandler, boundSql, rowBounds);
-    //创建ResultSetHandler后执行拦截器调用链处理
-    resultSetHandler = (ResultSetHandler) interceptorChain.pluginAll(resultSetHandler);
-    return resultSetHandler;
+  /**
+   * 是否按语句统计执行情况
+   *
+   * @return 是否统计
+   * @since 3.5.6
+   */
+  public boolean isExecutionStatisticsEnabled() {
+    return executionStatisticsEnabled;
   }
 
-  public StatementHandler newStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
-    StatementHandler statementHandler = new RoutingStatementHandler(executor, mappedStatement, parameterObject, rowBounds, resultHandler, boundSql);
-    //创建StatementHandler后执行拦截器调用链处理
-    statementHandler = (StatementHandler) interceptorChain.pluginAll(statementHandler);
-    return statementHandler;
+  /**
+   * 设置是否按语句统计执行情况,开启时注册{@link ExecutionStatistics}
+   *
+   * @param executionStatisticsEnabled 是否统计
+   * @since 3.5.6
+   */
+  public void setExecutionStatisticsEnabled(boolean executionStatisticsEnabled) {
+    this.executionStatisticsEnabled = executionStatisticsEnabled;
+    if (executionStatisticsEnabled && executionStatistics == null) {
+      executionStatistics = new ExecutionStatistics();
+      executionListeners.add(executionStatistics);
+    } else if (!executionStatisticsEnabled && executionStatistics != null) {
+      executionListeners.remove(executionStatistics);
+      executionStatistics = null;
+    }
   }
 
   /**
-   * 创建默认执行器
+   * 获取执行统计
    *
-   * @param transaction 事务对象
-   * @return 执行器对象
+   * @return 执行统计(未开启时返回null)
+   * @since 3.5.6
    */
-  public Executor newExecutor(Transaction transaction) {
-    return newExecutor(transaction, defaultExecutorType);
+  public ExecutionStatistics getExecutionStatistics() {
+    return executionStatistics;
   }
 
   /**
-   * 创建执行器
+   * 是否统计二级缓存
    *
-   * @param transaction  事务对象
-   * @param executorType 执行器类型
-   * @return 执行器对象
+   * @return 是否统计
+   * @since 3.5.6
    */
-  public Executor newExecutor(Transaction transaction, ExecutorType executorType) {
-    executorType = executorType == null ? defaultExecutorType : executorType;
-    executorType = executorType == null ? ExecutorType.SIMPLE : executorType;
-    //上面这两行代码忽略不管，当做没看到
-    Executor executor;
-    if (ExecutorType.BATCH == executorType) {
-      executor = new BatchExecutor(this, transaction);
-    } else if (ExecutorType.REUSE == executorType) {
-      executor = new ReuseExecutor(this, transaction);
-    } else {
-      executor = new SimpleExecutor(this, transaction);
-    }
-    if (cacheEnabled) {
-      //通过CachingExecutor来装饰执行器实现二级缓存
-      executor = new CachingExecutor(executor);
-    }
-    //创建执行器后执行拦截器调用链处理
-    executor = (Executor) interceptorChain.pluginAll(executor);
-    return executor;
+  public boolean isCacheStatisticsEnabled() {
+    return cacheStatisticsEnabled;
   }
 
   /**
-   * 注册主键生成器
+   * 设置是否统计二级缓存,只对之后创建的缓存生效
    *
-   * @param id           命名空间.方法名!selectKey。
-   * @param keyGenerator 生成器
+   * @param cacheStatisticsEnabled 是否统计
+   * @since 3.5.6
    */
-  public void addKeyGenerator(String id, KeyGenerator keyGenerator) {
-    keyGenerators.put(id, keyGenerator);
+  public void setCacheStatisticsEnabled(boolean cacheStatisticsEnabled) {
+    this.cacheStatisticsEnabled = cacheStatisticsEnabled;
   }
 
   /**
-   * 获取所有生成器Id
+   * 获取缓存统计注册到JMX时使用的名称
    *
-   * @return 生成器集合ID列表
+   * @return 名称
+   * @since 3.5.6
    */
-  public Collection<String> getKeyGeneratorNames() {
-    return keyGenerators.keySet();
+  public String getCacheStatisticsJmxName() {
+    return cacheStatisticsJmxName;
   }
 
   /**
-   * 获取生成器集合
+   * 设置缓存统计注册到JMX时使用的名称,已有的缓存统计按新名称重新注册,为空时全部注销
    *
-   * @return 生成器集合
+   * @param cacheStatisticsJmxName 名称
+   * @since 3.5.6
    */
-  public Collection<KeyGenerator> getKeyGenerators() {
-    return keyGenerators.values();
+  public void setCacheStatisticsJmxName(String cacheStatisticsJmxName) {
+    this.cacheStatisticsJmxName = cacheStatisticsJmxName;
+    for (CacheStatistics statistics : cacheStatistics.values()) {
+      if (cacheStatisticsJmxName == null) {
+        statistics.unregisterMBean();
+      } else {
+        statistics.registerMBean(cacheStatisticsJmxName);
+      }
+    }
   }
 
   /**
-   * 获取生成器
+   * 获取语句日志的记录方式
    *
-   * @param id id
-   * @return 生成器
+   * @return 记录方式
+   * @since 3.5.6
    */
-  public KeyGenerator getKeyGenerator(String id) {
-    return keyGenerators.get(id);
+  public StatementLogMode getStatementLogMode() {
+    return statementLogMode;
   }
 
   /**
-   * 判断是否存在集合
+   * 设置语句日志的记录方式
    *
-   * @param id 生成器Id
-   * @return 是否存在
+   * @param statementLogMode 记录方式
+   * @since 3.5.6
    */
-  public boolean hasKeyGenerator(String id) {
-    return keyGenerators.containsKey(id);
+  public void setStatementLogMode(StatementLogMode statementLogMode) {
+    this.statementLogMode = statementLogMode;
   }
 
   /**
-   * 注册缓存
+   * 获取语句日志采样率
    *
-   * @param cache 缓存对象
+   * @return 采样率
+   * @since 3.5.6
    */
-  public void addCache(Cache cache) {
-    caches.put(cache.getId(), cache);
+  public double getStatementLogSampleRate() {
+    return statementLogSampleRate;
   }
 
   /**
-   * 获取所有缓存命名空间
+   * 设置语句日志采样率,每次执行按该比例随机决定是否记录(仅{@link StatementLogMode#DIRECT}时有效)
    *
-   * @return 命名空间集合
+   * @param statementLogSampleRate 采样率(0~1)
+   * @since 3.5.6
    */
-  public Collection<String> getCacheNames() {
-    return caches.keySet();
+  public void setStatementLogSampleRate(double statementLogSampleRate) {
+    if (statementLogSampleRate < 0D || statementLogSampleRate > 1D) {
+      throw new IllegalArgumentException("The statementLogSampleRate must be between 0 and 1 but was " + statementLogSampleRate + ".");
+    }
+    this.statementLogSampleRate = statementLogSampleRate;
   }
 
   /**
-   * 获取缓存所有值
+   * 是否异步输出语句日志
    *
-   * @return 缓存值集合
+   * @return 是否异步
+   * @since 3.5.6
    */
-  public Collection<Cache> getCaches() {
-    return caches.values();
+  public boolean isStatementLogAsync() {
+    return statementLogAsync;
   }
 
   /**
-   * 通过命名空间获取缓存
+   * 设置是否异步格式化并输出语句日志(仅{@link StatementLogMode#DIRECT}时有效)
    *
-   * @param id 命名空间
-   * @return 缓存对象
+   * @param statementLogAsync 是否异步
+   * @since 3.5.6
    */
-  public Cache getCache(String id) {
-    return caches.get(id);
+  public void setStatementLogAsync(boolean statementLogAsync) {
+    this.statementLogAsync = statementLogAsync;
+    ExecutorService writer = statementLogWriter;
+    if (statementLogAsync && writer == null) {
+      statementLogWriter = SqlLog.newAsyncWriter();
+    } else if (!statementLogAsync && writer != null) {
+      statementLogWriter = null;
+      writer.shutdown();
+    }
   }
 
   /**
-   * 判断命名空间是否有缓存
+   * 获取异步输出语句日志的线程池
+   * 线程池随当前配置创建和关闭,线程空闲后自动退出,不会在配置废弃后常驻;关闭后提交的日志由调用线程直接输出.
    *
-   * @param id 命名空间
-   * @return 是否有缓存
+   * @return 线程池,未开启异步时返回null
+   * @since 3.5.6
    */
-  public boolean hasCache(String id) {
-    return caches.containsKey(id);
+  public java.util.concurrent.Executor getStatementLogWriter() {
+    return statementLogWriter;
   }
 
   /**
-   * 添加resultMap映射
+   * 是否合并并发的相同二级缓存未命中查询
    *
-   * @param rm resultMap
+   * @return 是否合并
+   * @since 3.5.6
    */
-  public void addResultMap(ResultMap rm) {
-    resultMaps.put(rm.getId(), rm);
-    checkLocallyForDiscriminatedNestedResultMaps(rm);
-    checkGloballyForDiscriminatedNestedResultMaps(rm);
+  public boolean isCacheMissCoalescingEnabled() {
+    return cacheMissCoalescingEnabled;
+  }
+
+  /**
+   * 设置是否合并并发的相同二级缓存未命中查询
+   * 开启后同一缓存key同时只有一个会话查询数据库,其余会话等待并共享其结果(存在未提交更新的会话不参与合并).
+   *
+   * @param cacheMissCoalescingEnabled 是否合并
+   * @since 3.5.6
+   */
+  public void setCacheMissCoalescingEnabled(boolean cacheMissCoalescingEnabled) {
+    this.cacheMissCoalescingEnabled = cacheMissCoalescingEnabled;
+  }
+
+  /**
+   * @return 等待其他会话加载结果的最长时间(毫秒)
+   * @since 3.5.6
+   */
+  public int getCacheMissCoalescingTimeout() {
+    return cacheMissCoalescingTimeout;
+  }
+
+  /**
+   * 设置等待其他会话加载结果的最长时间,超时后自行查询数据库
+   *
+   * @param cacheMissCoalescingTimeout 最长等待时间(毫秒)
+   * @since 3.5.6
+   */
+  public void setCacheMissCoalescingTimeout(int cacheMissCoalescingTimeout) {
+    if (cacheMissCoalescingTimeout < 0) {
+      throw new IllegalArgumentException("The cacheMissCoalescingTimeout must not be negative but was " + cacheMissCoalescingTimeout + ".");
+    }
+    this.cacheMissCoalescingTimeout = cacheMissCoalescingTimeout;
+  }
+
+  /**
+   * @return 正在进行的二级缓存加载
+   * @since 3.5.6
+   */
+  public SingleFlight getSingleFlight() {
+    return singleFlight;
+  }
+
+  /**
+   * 获取反射工厂
+   *
+   * @return 反射工厂
+   */
+  public ReflectorFactory getReflectorFactory() {
+    return reflectorFactory;
+  }
+
+  /**
+   * 设置反射工厂
+   *
+   * @param reflectorFactory 反射工厂
+   */
+  public void setReflectorFactory(ReflectorFactory reflectorFactory) {
+    this.reflectorFactory = reflectorFactory;
+  }
+
+  /**
+   * 获取对象创建工厂
+   *
+   * @return 对象工厂
+   */
+  public ObjectFactory getObjectFactory() {
+    return objectFactory;
+  }
+
+  /**
+   * 设置对象创建工厂
+   *
+   * @param objectFactory 对象工厂
+   */
+  public void setObjectFactory(ObjectFactory objectFactory) {
+    this.objectFactory = objectFactory;
+  }
+
+  /**
+   * 获取对象包装工厂
+   *
+   * @return 对象包装工厂
+   */
+  public ObjectWrapperFactory getObjectWrapperFactory() {
+    return objectWrapperFactory;
+  }
+
+  /**
+   * 设置对象包装工厂
+   *
+   * @param objectWrapperFactory 包装工厂
+   */
+  public void setObjectWrapperFactory(ObjectWrapperFactory objectWrapperFactory) {
+    this.objectWrapperFactory = objectWrapperFactory;
+  }
+
+  /**
+   * 获取所有注册插件集合
+   *
+   * @return the interceptors 插件集合
+   * @since 3.2.2
+   */
+  public List<Interceptor> getInterceptors() {
+    return interceptorChain.getInterceptors();
+  }
+
+  /**
+   * 获取动态脚本处理语言注册对象
+   *
+   * @return 注册对象
+   */
+  public LanguageDriverRegistry getLanguageRegistry() {
+    return languageRegistry;
+  }
+
+  /**
+   * 设置默认动态SQL脚本处理语言
+   *
+   * @param driver driver
+   */
+  public void setDefaultScriptingLanguage(Class<? extends LanguageDriver> driver) {
+    if (driver == null) {
+      driver = XMLLanguageDriver.class;
+    }
+    getLanguageRegistry().setDefaultDriverClass(driver);
+  }
+
+  /**
+   * 获取默认动态SQL脚本处理语言
+   *
+   * @return 默认动态sql处理脚本语言
+   */
+  public LanguageDriver getDefaultScriptingLanguageInstance() {
+    return languageRegistry.getDefaultDriver();
+  }
+
+  /**
+   * 获取动态SQL脚本处理语言
+   * Gets the language driver.
+   *
+   * @param langClass the lang class
+   * @return the language driver
+   * @since 3.5.1
+   */
+  public LanguageDriver getLanguageDriver(Class<? extends LanguageDriver> langClass) {
+    if (langClass == null) {
+      //返回默认处理语言
+      return languageRegistry.getDefaultDriver();
+    }
+    //注册脚本语言
+    languageRegistry.register(langClass);
+    //返回注册的实例
+    return languageRegistry.getDriver(langClass);
+  }
+
+  /**
+   * Gets the default scripting lanuage instance.
+   *
+   * @return the default scripting lanuage instance
+   * @deprecated Use {@link #getDefaultScriptingLanguageInstance()}
+   */
+  @Deprecated
+  public LanguageDriver getDefaultScriptingLanuageInstance() {
+    return getDefaultScriptingLanguageInstance();
+  }
+
+  public MetaObject newMetaObject(Object object) {
+    return MetaObject.forObject(object, objectFactory, objectWrapperFactory, reflectorFactory);
+  }
+
+  public ParameterHandler newParameterHandler(MappedStatement mappedStatement, Object parameterObject, BoundSql boundSql) {
+    ParameterHandler parameterHandler = mappedStatement.getLang().createParameterHandler(mappedStatement, parameterObject, boundSql);
+    //创建ParameterHandler后执行拦截器调用链处理
+    parameterHandler = (ParameterHandler) interceptorChain.pluginAll(parameterHandler);
+    return parameterHandler;
+  }
+
+  public ResultSetHandler newResultSetHandler(Executor executor, MappedStatement mappedStatement, RowBounds rowBounds, ParameterHandler parameterHandler,
+      ResultHandler resultHandler, BoundSql boundSql) {
+    ResultSetHandler resultSetHandler = new DefaultResultSetHandler(executor, mappedStatement, parameterHandler, resultHandler, boundSql, rowBounds);
+    //创建ResultSetHandler后执行拦截器调用链处理
+    resultSetHandler = (ResultSetHandler) interceptorChain.pluginAll(resultSetHandler);
+    return resultSetHandler;
+  }
+
+  public StatementHandler newStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+    StatementHandler statementHandler = new RoutingStatementHandler(executor, mappedStatement, parameterObject, rowBounds, resultHandler, boundSql);
+    //创建StatementHandler后执行拦截器调用链处理
+    statementHandler = (StatementHandler) interceptorChain.pluginAll(statementHandler);
+    return statementHandler;
+  }
+
+  /**
+   * 创建默认执行器
+   *
+   * @param transaction 事务对象
+   * @return 执行器对象
+   */
+  public Executor newExecutor(Transaction transaction) {
+    return newExecutor(transaction, defaultExecutorType);
+  }
+
+  /**
+   * 创建执行器
+   *
+   * @param transaction  事务对象
+   * @param executorType 执行器类型
+   * @return 执行器对象
+   */
+  public Executor newExecutor(Transaction transaction, ExecutorType executorType) {
+    executorType = executorType == null ? defaultExecutorType : executorType;
+    executorType = executorType == null ? ExecutorType.SIMPLE : executorType;
+    //上面这两行代码忽略不管，当做没看到
+    Executor executor;
+    if (ExecutorType.BATCH == executorType) {
+      executor = new BatchExecutor(this, transaction);
+    } else if (ExecutorType.REUSE == executorType) {
+      executor = new ReuseExecutor(this, transaction);
+    } else {
+      executor = new SimpleExecutor(this, transaction);
+    }
+    if (cacheEnabled) {
+      //通过CachingExecutor来装饰执行器实现二级缓存
+      executor = new CachingExecutor(executor, this);
+    }
+    //创建执行器后执行拦截器调用链处理
+    executor = (Executor) interceptorChain.pluginAll(executor);
+    return executor;
+  }
+
+  /**
+   * 注册主键生成器
+   *
+   * @param id           命名空间.方法名!selectKey。
+   * @param keyGenerator 生成器
+   */
+  public void addKeyGenerator(String id, KeyGenerator keyGenerator) {
+    synchronized (registryLock) {
+      keyGenerators.put(id, keyGenerator);
+    }
+  }
+
+  /**
+   * 获取所有生成器Id
+   *
+   * @return 生成器集合ID列表
+   */
+  public Collection<String> getKeyGeneratorNames() {
+    return keyGenerators.keySet();
+  }
+
+  /**
+   * 获取生成器集合
+   *
+   * @return 生成器集合
+   */
+  public Collection<KeyGenerator> getKeyGenerators() {
+    return keyGenerators.values();
+  }
+
+  /**
+   * 获取生成器
+   *
+   * @param id id
+   * @return 生成器
+   */
+  public KeyGenerator getKeyGenerator(String id) {
+    return keyGenerators.get(id);
+  }
+
+  /**
+   * 判断是否存在集合
+   *
+   * @param id 生成器Id
+   * @return 是否存在
+   */
+  public boolean hasKeyGenerator(String id) {
+    return keyGenerators.containsKey(id);
+  }
+
+  /**
+   * 注册缓存
+   *
+   * @param cache 缓存对象
+   */
+  public void addCache(Cache cache) {
+    synchronized (registryLock) {
+      caches.put(cache.getId(), cache);
+      mappingsChanged();
+    }
+  }
+
+  /**
+   * 获取所有缓存命名空间(封存后返回快照中的命名空间)
+   *
+   * @return 命名空间集合
+   */
+  public Collection<String> getCacheNames() {
+    SealedMappings sealed = readableMappings();
+    return sealed != null ? sealed.caches.keySet() : caches.keySet();
+  }
+
+  /**
+   * 获取缓存所有值(封存后返回快照中的缓存)
+   *
+   * @return 缓存值集合
+   */
+  public Collection<Cache> getCaches() {
+    SealedMappings sealed = readableMappings();
+    return sealed != null ? sealed.caches.values() : caches.values();
+  }
+
+  /**
+   * 通过命名空间获取缓存
+   *
+   * @param id 命名空间
+   * @return 缓存对象
+   */
+  public Cache getCache(String id) {
+    SealedMappings sealed = readableMappings();
+    if (sealed != null) {
+      return sealed.caches.get(id);
+    }
+    synchronized (registryLock) {
+      return caches.get(id);
+    }
+  }
+
+  /**
+   * 判断命名空间是否有缓存
+   *
+   * @param id 命名空间
+   * @return 是否有缓存
+   */
+  public boolean hasCache(String id) {
+    SealedMappings sealed = readableMappings();
+    if (sealed != null) {
+      return sealed.caches.containsKey(id);
+    }
+    synchronized (registryLock) {
+      return caches.containsKey(id);
+    }
+  }
+
+  /**
+   * 注册缓存统计,设置了{@link #getCacheStatisticsJmxName()}时同时注册到JMX
+   *
+   * @param statistics 缓存统计
+   * @since 3.5.6
+   */
+  public void addCacheStatistics(CacheStatistics statistics) {
+    CacheStatistics previous = cacheStatistics.put(statistics.getId(), statistics);
+    if (previous != null && previous != statistics) {
+      previous.unregisterMBean();
+    }
+    if (cacheStatisticsJmxName != null) {
+      statistics.registerMBean(cacheStatisticsJmxName);
+    }
+  }
+
+  /**
+   * 通过缓存Id获取缓存统计
+   *
+   * @param id 缓存Id(命名空间)
+   * @return 缓存统计(未开启统计时返回null)
+   * @since 3.5.6
+   */
+  public CacheStatistics getCacheStatistics(String id) {
+    return cacheStatistics.get(id);
+  }
+
+  /**
+   * 获取所有缓存统计
+   *
+   * @return 缓存统计集合
+   * @since 3.5.6
+   */
+  public Collection<CacheStatistics> getCacheStatistics() {
+    return Collections.unmodifiableCollection(cacheStatistics.values());
+  }
+
+  /**
+   * 获取表版本号
+   * 存在声明了cacheTables的语句的缓存,其条目按表版本失效
+   *
+   * @return 表版本号
+   * @since 3.5.6
+   */
+  public TableVersions getTableVersions() {
+    return tableVersions;
+  }
+
+  /**
+   * @return 缓存失效广播(未配置时为null)
+   * @since 3.5.6
+   */
+  public CacheInvalidationBroadcaster getCacheInvalidationBroadcaster() {
+    return cacheInvalidationBroadcaster;
+  }
+
+  /**
+   * 设置缓存失效广播
+   * 设置后二级缓存条目(自定义缓存实现除外)都会记录表版本快照,以便其他节点的失效消息能够拒绝正在加载的过期结果.
+   * 只对之后打开的会话生效.
+   *
+   * @param cacheInvalidationBroadcaster 缓存失效广播(如{@link org.apache.ibatis.cache.invalidation.CacheInvalidationBus})
+   * @since 3.5.6
+   */
+  public void setCacheInvalidationBroadcaster(CacheInvalidationBroadcaster cacheInvalidationBroadcaster) {
+    this.cacheInvalidationBroadcaster = cacheInvalidationBroadcaster;
+    if (cacheInvalidationBroadcaster != null) {
+      tableVersions.enableAll();
+    }
+  }
+
+  /**
+   * 添加resultMap映射
+   *
+   * @param rm resultMap
+   */
+  public void addResultMap(ResultMap rm) {
+    synchronized (registryLock) {
+      resultMaps.put(rm.getId(), rm);
+      checkLocallyForDiscriminatedNestedResultMaps(rm);
+      checkGloballyForDiscriminatedNestedResultMaps(rm);
+      mappingsChanged();
+    }
   }
 
   public Collection<String> getResultMapNames() {
@@ -1167,16 +1828,30 @@ public class Configuration {
   }
 
   public ResultMap getResultMap(String id) {
-    return resultMaps.get(id);
+    SealedMappings sealed = readableMappings();
+    if (sealed != null) {
+      return sealed.resultMaps.get(id);
+    }
+    synchronized (registryLock) {
+      return resultMaps.get(id);
+    }
   }
 
   public boolean hasResultMap(String id) {
-    return resultMaps.containsKey(id);
+    SealedMappings sealed = readableMappings();
+    if (sealed != null) {
+      return sealed.resultMaps.containsKey(id);
+    }
+    synchronized (registryLock) {
+      return resultMaps.containsKey(id);
+    }
   }
 
   @Deprecated
   public void addParameterMap(ParameterMap pm) {
-    parameterMaps.put(pm.getId(), pm);
+    synchronized (registryLock) {
+      parameterMaps.put(pm.getId(), pm);
+    }
   }
 
   public Collection<String> getParameterMapNames() {
@@ -1196,25 +1871,306 @@ public class Configuration {
   }
 
   public void addMappedStatement(MappedStatement ms) {
-    mappedStatements.put(ms.getId(), ms);
+    if (ms.getCacheTables() != null && ms.getCache() != null) {
+      //只对声明了cacheTables的语句所在缓存开启表版本
+      tableVersions.enable(ms.getCache().getId());
+    }
+    synchronized (registryLock) {
+      if (lazyStatements.containsKey(ms.getId())) {
+        throw new IllegalArgumentException("Mapped Statements collection already contains value for " + ms.getId());
+      }
+      mappedStatements.put(ms.getId(), ms);
+      mappingsChanged();
+    }
+  }
+
+  /**
+   * 封存语句
+   * 所有未完成元素都已解析时,生成语句的只读快照,之后的语句查找不再检查未完成元素.
+   * 快照保留存在歧义的短名称,查找时与原集合一样抛出异常.
+   * 延迟构建模式下语句由自身的缓存提供无锁查找,不进行封存.
+   *
+   * @return 是否封存成功
+   * @since 3.5.6
+   */
+  public boolean sealMappedStatements() {
+    synchronized (registryLock) {
+      sealingEnabled = true;
+      return resealMappedStatements();
+    }
+  }
+
+  /**
+   * 在注册锁内执行一组映射元素的注册(如解析一个mapper),全部完成后才标记快照需要重新封存.
+   * 注册期间其他线程读取注册前的快照;快照已过期时查找等待注册完成后重新封存.
+   *
+   * @param registration 注册操作
+   * @since 3.5.6
+   */
+  public void registerMappings(Runnable registration) {
+    synchronized (registryLock) {
+      registrationDepth++;
+      try {
+        registration.run();
+      } finally {
+        registrationDepth--;
+        // 解析未完成元素后即使没有新增语句也可能可以重新封存了
+        if (registrationDepth == 0 && (mappingsChanged || sealingEnabled && !isMappedStatementsSealed())) {
+          sealedMappingsStale = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * 记录映射元素发生了变化,不在注册操作中时标记快照需要重新封存(需要持有注册锁)
+   */
+  private void mappingsChanged() {
+    if (!sealingEnabled) {
+      return;
+    }
+    mappingsChanged = true;
+    if (registrationDepth == 0) {
+      sealedMappingsStale = true;
+    }
+  }
+
+  /**
+   * 重新生成快照并整体发布(需要持有注册锁)
+   * 存在未完成元素或延迟构建时只封存resultMap和缓存.
+   *
+   * @return 语句是否封存成功
+   */
+  private boolean resealMappedStatements() {
+    mappingsChanged = false;
+    sealedMappingsStale = false;
+    boolean statementsSealable = !lazyStatementBuildingEnabled && incompleteResultMaps.isEmpty()
+        && incompleteCacheRefs.isEmpty() && incompleteStatements.isEmpty() && incompleteMethods.isEmpty();
+    sealedMappings = new SealedMappings(statementsSealable ? seal(mappedStatements) : null, seal(resultMaps), seal(caches));
+    return statementsSealable;
+  }
+
+  private static <V> SealedMap<V> seal(Map<String, V> map) {
+    return new SealedMap<>((StrictMap<V>) map);
+  }
+
+  /**
+   * 获取查找使用的快照,快照已过期时先重新封存
+   * 正在注册映射的线程(持有注册锁)需要看到尚未发布的修改,直接查找原集合.
+   *
+   * @return 快照,未封存或当前线程正在注册映射时返回null
+   */
+  private SealedMappings readableMappings() {
+    SealedMappings sealed = sealedMappings;
+    if (sealed == null || Thread.holdsLock(registryLock)) {
+      return null;
+    }
+    if (sealedMappingsStale) {
+      synchronized (registryLock) {
+        if (sealedMappingsStale) {
+          resealMappedStatements();
+        }
+        sealed = sealedMappings;
+      }
+    }
+    return sealed;
   }
 
+  /**
+   * @return 语句是否已封存
+   * @since 3.5.6
+   */
+  public boolean isMappedStatementsSealed() {
+    SealedMappings sealed = sealedMappings;
+    return sealed != null && sealed.mappedStatements != null;
+  }
+
+  /**
+   * 获取全部语句名称,开启延迟构建时包含尚未构建的延迟语句名称,不会触发延迟语句的构建.
+   *
+   * @return 语句名称
+   */
   public Collection<String> getMappedStatementNames() {
     buildAllStatements();
-    return mappedStatements.keySet();
+    if (!lazyStatementBuildingEnabled) {
+      return mappedStatements.keySet();
+    }
+    synchronized (registryLock) {
+      Set<String> names = new LinkedHashSet<>(mappedStatements.keySet());
+      names.addAll(lazyStatements.keySet());
+      return Collections.unmodifiableSet(names);
+    }
   }
 
+  /**
+   * 获取全部语句.
+   * 开启延迟构建时会先构建全部尚未构建的延迟语句,代价与关闭延迟构建时启动阶段的构建相同,任意语句构建失败将直接抛出异常;
+   * 只需要语句名称时请使用{@link #getMappedStatementNames()}.
+   *
+   * @return 语句
+   */
   public Collection<MappedStatement> getMappedStatements() {
     buildAllStatements();
+    buildLazyStatements();
     return mappedStatements.values();
   }
 
+  /**
+   * 登记延迟构建的语句
+   *
+   * @param id      语句全限定id
+   * @param builder 语句构建器
+   * @since 3.5.6
+   */
+  public void addLazyStatement(String id, XMLStatementBuilder builder) {
+    synchronized (registryLock) {
+      if (mappedStatements.containsKey(id)) {
+        throw new IllegalArgumentException("Mapped Statements collection already contains value for " + id);
+      }
+      lazyStatements.put(id, builder);
+    }
+  }
+
+  /**
+   * 获取尚未构建的延迟语句
+   *
+   * @param id 语句id
+   * @return 语句构建器(不存在或已构建返回null)
+   * @since 3.5.6
+   */
+  public XMLStatementBuilder getLazyStatement(String id) {
+    synchronized (registryLock) {
+      return lazyStatements.containsKey(id) ? lazyStatements.get(id) : null;
+    }
+  }
+
+  /**
+   * 构建全部尚未构建的延迟语句,任意语句构建失败将直接抛出异常
+   *
+   * @since 3.5.6
+   */
+  public void buildLazyStatements() {
+    if (!lazyStatementBuildingEnabled) {
+      return;
+    }
+    synchronized (registryLock) {
+      // 短key冲突时存放的是Ambiguity,这里需要过滤掉
+      final Map<String, ?> statements = lazyStatements;
+      Set<XMLStatementBuilder> builders = new LinkedHashSet<>();
+      for (Object value : statements.values()) {
+        if (value instanceof XMLStatementBuilder) {
+          builders.add((XMLStatementBuilder) value);
+        }
+      }
+      registerMappings(() -> builders.forEach(this::buildLazyStatement));
+    }
+  }
+
+  private MappedStatement getLazyMappedStatement(String id) {
+    MappedStatement ms = Thread.holdsLock(registryLock) ? null : lazyStatementCache.get(id);
+    if (ms != null) {
+      return ms;
+    }
+    synchronized (registryLock) {
+      if (lazyStatements.containsKey(id)) {
+        XMLStatementBuilder builder = lazyStatements.get(id);
+        registerMappings(() -> buildLazyStatement(builder));
+      }
+      ms = mappedStatements.get(id);
+      if (id.indexOf('.') >= 0) {
+        lazyStatementCache.put(id, ms);
+      }
+      return ms;
+    }
+  }
+
+  private void buildLazyStatement(XMLStatementBuilder builder) {
+    String id = builder.getStatementId();
+    lazyStatements.remove(id);
+    lazyStatements.remove(id.substring(id.lastIndexOf('.') + 1), builder);
+    try {
+      builder.buildStatementNode();
+    } catch (RuntimeException e) {
+      lazyStatements.put(id, builder);
+      throw e;
+    }
+  }
+
+  /**
+   * 预热反射信息
+   * 收集已构建语句的参数类型、已注册的ParameterMap及ResultMap类型和映射属性类型,并行创建Reflector放入反射工厂缓存,
+   * 避免首次请求时才去解析类的方法和字段.
+   * 不会构建延迟构建或未完成的语句,这些语句的构建错误仍在首次使用时报告.
+   *
+   * @since 3.5.6
+   */
+  public void warmUpReflectors() {
+    if (!reflectorFactory.isClassCacheEnabled()) {
+      return;
+    }
+    final Set<Class<?>> types = new HashSet<>();
+    synchronized (registryLock) {
+      // 短key冲突时存放的是Ambiguity,这里需要过滤掉
+      final Map<String, ?> statements = mappedStatements;
+      for (Object value : statements.values()) {
+        if (value instanceof MappedStatement) {
+          MappedStatement ms = (MappedStatement) value;
+          if (ms.getParameterMap() != null) {
+            addReflectorType(types, ms.getParameterMap().getType());
+          }
+          for (ResultMap resultMap : ms.getResultMaps()) {
+            addReflectorTypes(types, resultMap);
+          }
+        }
+      }
+      final Map<String, ?> allParameterMaps = parameterMaps;
+      for (Object value : allParameterMaps.values()) {
+        if (value instanceof ParameterMap) {
+          addReflectorType(types, ((ParameterMap) value).getType());
+        }
+      }
+      final Map<String, ?> allResultMaps = resultMaps;
+      for (Object value : allResultMaps.values()) {
+        if (value instanceof ResultMap) {
+          addReflectorTypes(types, (ResultMap) value);
+        }
+      }
+    }
+    types.parallelStream().forEach(type -> {
+      try {
+        reflectorFactory.findForClass(type);
+      } catch (RuntimeException e) {
+        // ignore, the same error will be reported when the type is actually used
+      }
+    });
+  }
+
+  private void addReflectorTypes(Set<Class<?>> types, ResultMap resultMap) {
+    addReflectorType(types, resultMap.getType());
+    for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+      addReflectorType(types, resultMapping.getJavaType());
+    }
+  }
+
+  private void addReflectorType(Set<Class<?>> types, Class<?> type) {
+    // 简单类型、集合、Map不会通过Reflector访问属性
+    if (type == null || type.isPrimitive() || type.isArray()
+        || Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+        || typeHandlerRegistry.hasTypeHandler(type)) {
+      return;
+    }
+    types.add(type);
+  }
+
   public Collection<XMLStatementBuilder> getIncompleteStatements() {
     return incompleteStatements;
   }
 
   public void addIncompleteStatement(XMLStatementBuilder incompleteStatement) {
-    incompleteStatements.add(incompleteStatement);
+    synchronized (registryLock) {
+      incompleteStatements.add(incompleteStatement);
+      mappingsChanged();
+    }
   }
 
   public Collection<CacheRefResolver> getIncompleteCacheRefs() {
@@ -1222,7 +2178,10 @@ public class Configuration {
   }
 
   public void addIncompleteCacheRef(CacheRefResolver incompleteCacheRef) {
-    incompleteCacheRefs.add(incompleteCacheRef);
+    synchronized (registryLock) {
+      incompleteCacheRefs.add(incompleteCacheRef);
+      mappingsChanged();
+    }
   }
 
   public Collection<ResultMapResolver> getIncompleteResultMaps() {
@@ -1230,11 +2189,17 @@ public class Configuration {
   }
 
   public void addIncompleteResultMap(ResultMapResolver resultMapResolver) {
-    incompleteResultMaps.add(resultMapResolver);
+    synchronized (registryLock) {
+      incompleteResultMaps.add(resultMapResolver);
+      mappingsChanged();
+    }
   }
 
   public void addIncompleteMethod(MethodResolver builder) {
-    incompleteMethods.add(builder);
+    synchronized (registryLock) {
+      incompleteMethods.add(builder);
+      mappingsChanged();
+    }
   }
 
   public Collection<MethodResolver> getIncompleteMethods() {
@@ -1246,10 +2211,19 @@ public class Configuration {
   }
 
   public MappedStatement getMappedStatement(String id, boolean validateIncompleteStatements) {
+    SealedMappings sealed = readableMappings();
+    if (sealed != null && sealed.mappedStatements != null) {
+      return sealed.mappedStatements.get(id);
+    }
     if (validateIncompleteStatements) {
       buildAllStatements();
     }
-    return mappedStatements.get(id);
+    if (lazyStatementBuildingEnabled) {
+      return getLazyMappedStatement(id);
+    }
+    synchronized (registryLock) {
+      return mappedStatements.get(id);
+    }
   }
 
   public Map<String, XNode> getSqlFragments() {
@@ -1264,6 +2238,46 @@ public class Configuration {
     interceptorChain.addInterceptor(interceptor);
   }
 
+  /**
+   * 注册语句执行监听器
+   *
+   * @param listener 监听器
+   * @since 3.5.6
+   */
+  public void addExecutionListener(ExecutionListener listener) {
+    executionListeners.add(listener);
+  }
+
+  /**
+   * 移除语句执行监听器
+   *
+   * @param listener 监听器
+   * @since 3.5.6
+   */
+  public void removeExecutionListener(ExecutionListener listener) {
+    executionListeners.remove(listener);
+  }
+
+  /**
+   * 获取语句执行监听器(包括内置的慢查询日志及执行统计)
+   *
+   * @return 监听器列表
+   * @since 3.5.6
+   */
+  public List<ExecutionListener> getExecutionListeners() {
+    return Collections.unmodifiableList(executionListeners);
+  }
+
+  /**
+   * 是否注册了语句执行监听器,未注册时执行过程中不进行计时
+   *
+   * @return 是否有监听器
+   * @since 3.5.6
+   */
+  public boolean hasExecutionListeners() {
+    return !executionListeners.isEmpty();
+  }
+
   /**
    * 按包注册mapper（mapper实现特定的接口）
    *
@@ -1320,10 +2334,19 @@ public class Configuration {
   }
 
   public boolean hasStatement(String statementName, boolean validateIncompleteStatements) {
+    SealedMappings sealed = readableMappings();
+    if (sealed != null && sealed.mappedStatements != null) {
+      return sealed.mappedStatements.containsKey(statementName);
+    }
     if (validateIncompleteStatements) {
       buildAllStatements();
     }
-    return mappedStatements.containsKey(statementName);
+    if (lazyStatementBuildingEnabled && !Thread.holdsLock(registryLock) && lazyStatementCache.containsKey(statementName)) {
+      return true;
+    }
+    synchronized (registryLock) {
+      return mappedStatements.containsKey(statementName) || lazyStatements.containsKey(statementName);
+    }
   }
 
   /**
@@ -1336,12 +2359,223 @@ public class Configuration {
     cacheRefMap.put(namespace, referencedNamespace);
   }
 
+  /**
+   * 记录命名空间对应的mapper文件资源
+   *
+   * @param namespace 命名空间
+   * @param resource  mapper文件资源
+   * @since 3.5.6
+   */
+  public void addNamespaceResource(String namespace, String resource) {
+    namespaceResources.put(namespace, resource);
+  }
+
+  /**
+   * 获取命名空间对应的mapper文件资源
+   *
+   * @param namespace 命名空间
+   * @return mapper文件资源(非xml声明的命名空间返回null)
+   * @since 3.5.6
+   */
+  public String getNamespaceResource(String namespace) {
+    return namespaceResources.get(namespace);
+  }
+
+  /**
+   * 获取所有由mapper文件声明的命名空间及其资源
+   *
+   * @return 命名空间与mapper文件资源
+   * @since 3.5.6
+   */
+  public Map<String, String> getNamespaceResources() {
+    return Collections.unmodifiableMap(namespaceResources);
+  }
+
+  /**
+   * 记录按url加载的mapper文件资源,热加载时按同样的方式读取
+   *
+   * @param url mapper文件url
+   * @since 3.5.6
+   */
+  public void addUrlResource(String url) {
+    urlResources.add(url);
+  }
+
+  /**
+   * mapper文件资源是否按url加载
+   *
+   * @param resource mapper文件资源
+   * @return 按url加载返回true,按类路径加载返回false
+   * @since 3.5.6
+   */
+  public boolean isUrlResource(String resource) {
+    return urlResources.contains(resource);
+  }
+
+  /**
+   * 记录命名空间之间的引用关系
+   *
+   * @param namespace            被引用的命名空间
+   * @param referencingNamespace 引用方命名空间
+   * @since 3.5.6
+   */
+  public void addNamespaceReference(String namespace, String referencingNamespace) {
+    if (referencingNamespace != null && !referencingNamespace.equals(namespace)) {
+      namespaceReferences.computeIfAbsent(namespace, k -> new LinkedHashSet<>()).add(referencingNamespace);
+    }
+  }
+
+  /**
+   * 获取引用了指定命名空间的命名空间
+   *
+   * @param namespace 被引用的命名空间
+   * @return 引用方命名空间
+   * @since 3.5.6
+   */
+  public Set<String> getReferencingNamespaces(String namespace) {
+    Set<String> referencing = namespaceReferences.get(namespace);
+    return referencing == null ? Collections.emptySet() : Collections.unmodifiableSet(referencing);
+  }
+
+  /**
+   * 移除命名空间下注册的所有元素(语句,resultMap,parameterMap,主键生成器,sql片段,缓存及未完成元素),并清除其资源的加载标记,用于重新加载mapper.
+   * 已经获取到旧元素的会话不受影响,继续使用旧版本.
+   * 需要在{@link #replaceMappers(Runnable)}中调用,移除与重新解析完成后才整体发布.
+   *
+   * @param namespace 命名空间
+   * @since 3.5.6
+   */
+  public void removeNamespace(String namespace) {
+    synchronized (registryLock) {
+      ((StrictMap<MappedStatement>) mappedStatements).removeNamespace(namespace);
+      ((StrictMap<XMLStatementBuilder>) lazyStatements).removeNamespace(namespace);
+      if (registrationDepth == 0) {
+        // 在replaceMappers中时替换完成后统一清除,替换期间仍然返回旧语句
+        lazyStatementCache.values().removeIf(ms -> StrictMap.isInNamespace(ms.getId(), namespace));
+      }
+      ((StrictMap<ResultMap>) resultMaps).removeNamespace(namespace);
+      ((StrictMap<ParameterMap>) parameterMaps).removeNamespace(namespace);
+      ((StrictMap<KeyGenerator>) keyGenerators).removeNamespace(namespace);
+      ((StrictMap<XNode>) sqlFragments).removeNamespace(namespace);
+      ((StrictMap<Cache>) caches).removeKey(namespace);
+      CacheStatistics removedStatistics = cacheStatistics.remove(namespace);
+      if (removedStatistics != null) {
+        removedStatistics.unregisterMBean();
+      }
+      cacheRefMap.remove(namespace);
+      synchronized (incompleteStatements) {
+        incompleteStatements.removeIf(x -> StrictMap.isInNamespace(x.getStatementId(), namespace));
+      }
+      synchronized (incompleteCacheRefs) {
+        incompleteCacheRefs.removeIf(x -> namespace.equals(x.getNamespace()));
+      }
+      synchronized (incompleteResultMaps) {
+        incompleteResultMaps.removeIf(x -> namespace.equals(x.getNamespace()));
+      }
+      synchronized (incompleteMethods) {
+        incompleteMethods.removeIf(x -> namespace.equals(x.getNamespace()));
+      }
+      // 引用关系在重新解析时重新记录
+      namespaceReferences.values().forEach(referencing -> referencing.remove(namespace));
+      String resource = namespaceResources.remove(namespace);
+      if (resource != null) {
+        loadedResources.remove(resource);
+      }
+      loadedResources.remove("namespace:" + namespace);
+      loadedResources.remove("interface " + namespace);
+      mappingsChanged();
+    }
+  }
+
+  /**
+   * 替换mapper
+   * 替换在注册锁内对原集合进行,其他线程查找语句,resultMap和缓存时读取替换前封存的快照,
+   * 替换完成后重新封存,新的快照通过一次volatile写整体发布;替换失败时恢复替换前的全部映射元素,其他线程看不到替换的中间状态.
+   * 同一时间只有一个替换在执行.
+   *
+   * @param replacement 替换操作(移除并重新解析mapper)
+   * @since 3.5.6
+   */
+  public void replaceMappers(Runnable replacement) {
+    synchronized (registryLock) {
+      sealMappedStatements();
+      List<Runnable> restores = snapshotMappers();
+      registrationDepth++;
+      try {
+        replacement.run();
+      } catch (RuntimeException | Error e) {
+        restores.forEach(Runnable::run);
+        throw e;
+      } finally {
+        registrationDepth--;
+        lazyStatementCache.clear();
+        resealMappedStatements();
+      }
+    }
+  }
+
+  private List<Runnable> snapshotMappers() {
+    List<Runnable> restores = new ArrayList<>();
+    restores.add(snapshot(mappedStatements));
+    restores.add(snapshot(lazyStatements));
+    restores.add(snapshot(resultMaps));
+    restores.add(snapshot(parameterMaps));
+    restores.add(snapshot(keyGenerators));
+    restores.add(snapshot(sqlFragments));
+    restores.add(snapshot(caches));
+    List<CacheStatistics> statistics = new ArrayList<>(cacheStatistics.values());
+    restores.add(() -> {
+      cacheStatistics.values().forEach(CacheStatistics::unregisterMBean);
+      cacheStatistics.clear();
+      statistics.forEach(this::addCacheStatistics);
+    });
+    restores.add(snapshot(cacheRefMap));
+    restores.add(snapshot(namespaceResources));
+    restores.add(snapshot(loadedResources));
+    restores.add(snapshot(incompleteStatements));
+    restores.add(snapshot(incompleteCacheRefs));
+    restores.add(snapshot(incompleteResultMaps));
+    restores.add(snapshot(incompleteMethods));
+    Map<String, Set<String>> references = new HashMap<>();
+    namespaceReferences.forEach((namespace, referencing) -> references.put(namespace, new LinkedHashSet<>(referencing)));
+    restores.add(() -> {
+      namespaceReferences.clear();
+      namespaceReferences.putAll(references);
+    });
+    return restores;
+  }
+
+  private static <V> Runnable snapshot(Map<String, V> map) {
+    // HashMap的复制与putAll不经过StrictMap.put,短key和Ambiguity原样保留
+    Map<String, V> copy = new HashMap<>(map);
+    return () -> {
+      map.clear();
+      map.putAll(copy);
+    };
+  }
+
+  private static <E> Runnable snapshot(Collection<E> collection) {
+    List<E> copy = new ArrayList<>(collection);
+    return () -> {
+      collection.clear();
+      collection.addAll(copy);
+    };
+  }
+
   /*
    * Parses all the unprocessed statement nodes in the cache. It is recommended
    * to call this method once all the mappers are added as it provides fail-fast
    * statement validation.
    */
   protected void buildAllStatements() {
+    if (incompleteResultMaps.isEmpty() && incompleteCacheRefs.isEmpty() && incompleteStatements.isEmpty()
+        && incompleteMethods.isEmpty()) {
+      return;
+    }
+    registerMappings(this::resolveIncompleteElements);
+  }
+
+  private void resolveIncompleteElements() {
     parsePendingResultMaps();
     if (!incompleteCacheRefs.isEmpty()) {
       synchronized (incompleteCacheRefs) {
@@ -1460,6 +2694,80 @@ public class Configuration {
     }
   }
 
+  /**
+   * 封存的映射元素只读快照,三类元素总是一起发布
+   *
+   * @since 3.5.6
+   */
+  protected static final class SealedMappings {
+    /**
+     * 语句快照(存在未完成元素或延迟构建时为null)
+     */
+    final SealedMap<MappedStatement> mappedStatements;
+    final SealedMap<ResultMap> resultMaps;
+    final SealedMap<Cache> caches;
+
+    SealedMappings(SealedMap<MappedStatement> mappedStatements, SealedMap<ResultMap> resultMaps, SealedMap<Cache> caches) {
+      this.mappedStatements = mappedStatements;
+      this.resultMaps = resultMaps;
+      this.caches = caches;
+    }
+  }
+
+  /**
+   * {@link StrictMap}的只读副本,用于封存后的无锁查找
+   * 保留短名称的歧义标记,查找不存在或存在歧义的key时与{@link StrictMap#get(Object)}抛出相同的异常.
+   *
+   * @param <V> 元素类型
+   * @since 3.5.6
+   */
+  protected static final class SealedMap<V> {
+    private final String name;
+    private final Map<String, Object> entries;
+    private final Collection<V> values;
+
+    @SuppressWarnings("unchecked")
+    SealedMap(StrictMap<V> map) {
+      this.name = map.name;
+      this.entries = new HashMap<>(map);
+      Set<V> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Object value : entries.values()) {
+        if (!(value instanceof StrictMap.Ambiguity)) {
+          distinct.add((V) value);
+        }
+      }
+      this.values = Collections.unmodifiableCollection(new ArrayList<>(distinct));
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+      Object value = entries.get(key);
+      if (value == null) {
+        throw new IllegalArgumentException(name + " does not contain value for " + key);
+      }
+      if (value instanceof StrictMap.Ambiguity) {
+        throw new IllegalArgumentException(((StrictMap.Ambiguity) value).getSubject() + " is ambiguous in " + name
+            + " (try using the full name including the namespace, or rename one of the entries)");
+      }
+      return (V) value;
+    }
+
+    boolean containsKey(String key) {
+      return entries.containsKey(key);
+    }
+
+    Set<String> keySet() {
+      return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @return 所有元素(不包含短名称重复指向的元素)
+     */
+    Collection<V> values() {
+      return values;
+    }
+  }
+
   protected static class StrictMap<V> extends HashMap<String, V> {
 
     private static final long serialVersionUID = -4950446264854982944L;
@@ -1538,6 +2846,54 @@ public class Configuration {
       return value;
     }
 
+    /**
+     * 判断key是否为命名空间下的元素(命名空间.id,id中不包含.)
+     *
+     * @param key       key
+     * @param namespace 命名空间
+     * @return 是否属于该命名空间
+     * @since 3.5.6
+     */
+    static boolean isInNamespace(String key, String namespace) {
+      return key.length() > namespace.length() + 1 && key.startsWith(namespace)
+        && key.charAt(namespace.length()) == '.' && key.indexOf('.', namespace.length() + 1) < 0;
+    }
+
+    /**
+     * 移除命名空间下的所有元素,同时移除指向这些元素的短key
+     *
+     * @param namespace 命名空间
+     * @since 3.5.6
+     */
+    void removeNamespace(String namespace) {
+      Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+      Iterator<Map.Entry<String, V>> iterator = entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, V> entry = iterator.next();
+        if (isInNamespace(entry.getKey(), namespace)) {
+          removed.add(entry.getValue());
+          iterator.remove();
+        }
+      }
+      if (!removed.isEmpty()) {
+        // 存在歧义的短key保留Ambiguity,重新加入时仍然是歧义的
+        values().removeIf(removed::contains);
+      }
+    }
+
+    /**
+     * 移除元素,同时移除指向该元素的短key
+     *
+     * @param key 完整key
+     * @since 3.5.6
+     */
+    void removeKey(String key) {
+      V value = remove(key);
+      if (value != null) {
+        values().removeIf(v -> v == value);
+      }
+    }
+
     protected static class Ambiguity {
       private final String subject;
 
@@ -117,6 +117,12 @@ public class SqlSessionFactoryBuilder {
    * @return sqlSessionFactory
    */
   public SqlSessionFactory build(Configuration config) {
+    if (config.isLazyStatementBuildingEnabled() && config.isLazyStatementValidationEnabled()) {
+      config.buildLazyStatements();
+    }
+    if (config.isReflectorWarmUpEnabled()) {
+      config.warmUpReflectors();
+    }
     return new DefaultSqlSessionFactory(config);
   }
 
@@ -0,0 +1,32 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * 语句日志(sql,参数及结果数)的记录方式
+ *
+ * @since 3.5.6
+ */
+public enum StatementLogMode {
+  /**
+   * 开启debug日志时通过代理Connection,Statement及ResultSet记录(trace级别可记录每行结果)
+   */
+  PROXY,
+  /**
+   * 不代理jdbc对象,由语句处理器直接记录sql,参数处理器设置的参数值及结果数,支持采样与异步格式化
+   */
+  DIRECT
+}
@@ -46,6 +46,8 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
 
   public DefaultSqlSessionFactory(Configuration configuration) {
     this.configuration = configuration;
+    //封存语句,之后的查找读取快照,不再加锁
+    configuration.sealMappedStatements();
   }
 
   @Override
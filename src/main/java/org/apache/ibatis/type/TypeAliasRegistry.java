@@ -28,7 +28,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
+import org.apache.ibatis.executor.result.ColumnarResult;
+import org.apache.ibatis.io.ClassFileHeader;
 import org.apache.ibatis.io.ResolverUtil;
 import org.apache.ibatis.io.Resources;
 
@@ -98,6 +101,7 @@ public class TypeAliasRegistry {
     registerAlias("iterator", Iterator.class);
 
     registerAlias("ResultSet", ResultSet.class);
+    registerAlias("columnar", ColumnarResult.class);
   }
 
   @SuppressWarnings("unchecked")
@@ -127,7 +131,13 @@ public class TypeAliasRegistry {
 
   public void registerAliases(String packageName, Class<?> superType) {
     ResolverUtil<Class<?>> resolverUtil = new ResolverUtil<>();
-    resolverUtil.find(new ResolverUtil.IsA(superType), packageName);
+    resolverUtil.find(new ResolverUtil.IsA(superType) {
+      @Override
+      public boolean mayMatch(ClassFileHeader header, Function<String, ClassFileHeader> headerLoader) {
+        //接口不会注册别名,无需加载
+        return !header.isInterface() && super.mayMatch(header, headerLoader);
+      }
+    }, packageName);
     Set<Class<? extends Class<?>>> typeSet = resolverUtil.getClasses();
     for (Class<?> type : typeSet) {
       // Ignore inner classes and interfaces (including package-info.java)
@@ -42,6 +42,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.ibatis.binding.MapperMethod.ParamMap;
 import org.apache.ibatis.io.ResolverUtil;
@@ -68,6 +69,18 @@ public final class TypeHandlerRegistry {
 
   private static final Map<JdbcType, TypeHandler<?>> NULL_TYPE_HANDLER_MAP = Collections.emptyMap();
 
+  /**
+   * 解析结果缓存的未命中标记(负缓存)
+   */
+  private static final Object NO_TYPE_HANDLER = new Object();
+
+  /**
+   * 已解析的类型处理器缓存 java类型->(jdbc类型->类型处理器)
+   * 二级用数组按JdbcType序号存储(下标0为空jdbc类型),未命中也会记录下来,避免重复走父类/枚举接口查找
+   * 注册新的类型处理器时整体替换为新的缓存实例(相当于换代),注册前开始的解析只会写入被废弃的旧实例,不会留下过期结果
+   */
+  private volatile Map<Type, AtomicReferenceArray<Object>> resolvedTypeHandlerCache = new ConcurrentHashMap<>();
+
   /**
    * 默认枚举处理器(枚举名称处理)
    */
@@ -326,6 +339,26 @@ public final class TypeHandlerRegistry {
     if (ParamMap.class.equals(type)) {
       return null;
     }
+    AtomicReferenceArray<Object> resolvedHandlers = resolvedTypeHandlerCache.computeIfAbsent(type,
+        k -> new AtomicReferenceArray<>(JdbcType.values().length + 1));
+    int slot = jdbcType == null ? 0 : jdbcType.ordinal() + 1;
+    Object resolved = resolvedHandlers.get(slot);
+    if (resolved == null) {
+      TypeHandler<?> handler = resolveTypeHandler(type, jdbcType);
+      resolved = handler == null ? NO_TYPE_HANDLER : handler;
+      resolvedHandlers.set(slot, resolved);
+    }
+    return resolved == NO_TYPE_HANDLER ? null : (TypeHandler<T>) resolved;
+  }
+
+  /**
+   * 解析类型处理器(未缓存)
+   *
+   * @param type     java类型
+   * @param jdbcType jdbc类型
+   * @return 类型转换器
+   */
+  private TypeHandler<?> resolveTypeHandler(Type type, JdbcType jdbcType) {
     Map<JdbcType, TypeHandler<?>> jdbcHandlerMap = getJdbcHandlerMap(type); //获取到java类型所有jdbc类型信息
     TypeHandler<?> handler = null;
     if (jdbcHandlerMap != null) {
@@ -340,8 +373,7 @@ public final class TypeHandlerRegistry {
         handler = pickSoleHandler(jdbcHandlerMap);
       }
     }
-    // type drives generics here
-    return (TypeHandler<T>) handler;
+    return handler;
   }
 
   /**
@@ -590,6 +622,8 @@ public final class TypeHandlerRegistry {
       map.put(jdbcType, handler);
       //写入java->jdbc类型的绑定关系
       typeHandlerMap.put(javaType, map);
+      //注册关系发生变化,已解析的结果(包括未命中记录)全部失效,须在写入绑定关系之后替换
+      resolvedTypeHandlerCache = new ConcurrentHashMap<>();
     }
     //记录类型处理器到具体实例绑定信息(会一直覆盖掉前面的)
     allTypeHandlersMap.put(handler.getClass(), handler);
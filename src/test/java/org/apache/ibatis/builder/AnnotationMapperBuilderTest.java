@@ -49,6 +49,9 @@ class AnnotationMapperBuilderTest {
     assertThat(mappedStatement.getKeyGenerator()).isInstanceOf(Jdbc3KeyGenerator.class);
     assertThat(mappedStatement.getKeyColumns()).containsExactly("key_column");
     assertThat(mappedStatement.getKeyProperties()).containsExactly("keyProperty");
+    assertThat(mappedStatement.getCacheTables()).containsExactly("test", "audit");
+    // versions are kept per cache and the mapper has none
+    assertThat(configuration.getTableVersions().isEnabled()).isFalse();
   }
 
   @Test
@@ -97,7 +100,7 @@ class AnnotationMapperBuilderTest {
   interface Mapper {
 
     @Insert("insert into test (name) values(#{name})")
-    @Options(useGeneratedKeys = true, keyColumn = "key_column", keyProperty = "keyProperty")
+    @Options(useGeneratedKeys = true, keyColumn = "key_column", keyProperty = "keyProperty", cacheTables = "TEST, audit")
     void insertWithOptions(String name);
 
     @Select("select * from test")
@@ -57,6 +57,7 @@ import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.StatementLogMode;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.apache.ibatis.type.BaseTypeHandler;
 import org.apache.ibatis.type.EnumOrdinalTypeHandler;
@@ -83,6 +84,7 @@ class XmlConfigBuilderTest {
       assertThat(config.isAggressiveLazyLoading()).isFalse();
       assertThat(config.isMultipleResultSetsEnabled()).isTrue();
       assertThat(config.isUseColumnLabel()).isTrue();
+      assertThat(config.isUseColumnIndex()).isFalse();
       assertThat(config.isUseGeneratedKeys()).isFalse();
       assertThat(config.getDefaultExecutorType()).isEqualTo(ExecutorType.SIMPLE);
       assertNull(config.getDefaultStatementTimeout());
@@ -96,11 +98,28 @@ class XmlConfigBuilderTest {
       assertThat(config.isSafeResultHandlerEnabled()).isTrue();
       assertThat(config.getDefaultScriptingLanuageInstance()).isInstanceOf(XMLLanguageDriver.class);
       assertThat(config.isCallSettersOnNulls()).isFalse();
+      assertThat(config.isCompactMapResults()).isFalse();
       assertNull(config.getLogPrefix());
       assertNull(config.getLogImpl());
       assertNull(config.getConfigurationFactory());
       assertThat(config.getTypeHandlerRegistry().getTypeHandler(RoundingMode.class)).isInstanceOf(EnumTypeHandler.class);
       assertThat(config.isShrinkWhitespacesInSql()).isFalse();
+      assertThat(config.isReflectorWarmUpEnabled()).isFalse();
+      assertThat(config.isParallelMapperParsingEnabled()).isFalse();
+      assertThat(config.getMapperSnapshot()).isNull();
+      assertThat(config.isLazyStatementBuildingEnabled()).isFalse();
+      assertThat(config.isLazyStatementValidationEnabled()).isFalse();
+      assertThat(config.isStreamingMapperParsingEnabled()).isFalse();
+      assertThat(config.getSlowQueryThreshold()).isNull();
+      assertThat(config.isExecutionStatisticsEnabled()).isFalse();
+      assertThat(config.getExecutionListeners()).isEmpty();
+      assertThat(config.isCacheStatisticsEnabled()).isFalse();
+      assertThat(config.getCacheStatisticsJmxName()).isNull();
+      assertThat(config.getStatementLogMode()).isEqualTo(StatementLogMode.PROXY);
+      assertThat(config.getStatementLogSampleRate()).isEqualTo(1D);
+      assertThat(config.isStatementLogAsync()).isFalse();
+      assertThat(config.isCacheMissCoalescingEnabled()).isFalse();
+      assertThat(config.getCacheMissCoalescingTimeout()).isEqualTo(10000);
     }
   }
 
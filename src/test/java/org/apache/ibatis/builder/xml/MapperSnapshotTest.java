@@ -0,0 +1,103 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MapperSnapshotTest {
+
+  private static final String CONFIG = "org/apache/ibatis/submitted/parallel_mapper_parsing/mybatis-config.xml";
+  private static final String USER_MAPPER = "org/apache/ibatis/submitted/parallel_mapper_parsing/UserMapper.xml";
+
+  @Test
+  void shouldRecordParsedMapperHashes() throws Exception {
+    MapperSnapshot snapshot = new MapperSnapshot();
+    try (Reader reader = Resources.getResourceAsReader(CONFIG)) {
+      XMLConfigBuilder builder = new XMLConfigBuilder(reader);
+      builder.setRecordedMappers(snapshot);
+      builder.parse();
+    }
+    assertEquals(2, snapshot.size());
+    assertTrue(snapshot.isValidated(USER_MAPPER, hashOf(USER_MAPPER)));
+    assertFalse(snapshot.isValidated(USER_MAPPER, MapperSnapshot.hash(new byte[0])));
+  }
+
+  @Test
+  void shouldRestoreStoredSnapshot() throws Exception {
+    MapperSnapshot snapshot = new MapperSnapshot();
+    String hash = hashOf(USER_MAPPER);
+    snapshot.addValidated(USER_MAPPER, hash);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    snapshot.store(out);
+
+    Properties properties = new Properties();
+    properties.load(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(hash, properties.getProperty(USER_MAPPER));
+    assertEquals(64, hash.length());
+  }
+
+  @Test
+  void shouldValidateOnlyMappersChangedSinceSnapshot(@TempDir Path dir) throws Exception {
+    // the unknown attribute is only rejected by DTD validation
+    Path mapper = dir.resolve("SnapshotMapper.xml");
+    Files.write(mapper, ("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+        + "<!DOCTYPE mapper PUBLIC \"-//mybatis.org//DTD Mapper 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-mapper.dtd\">\n"
+        + "<mapper namespace=\"snapshot\">\n"
+        + "  <select id=\"selectOne\" resultType=\"int\" unknownAttribute=\"true\">select 1</select>\n"
+        + "</mapper>\n").getBytes(StandardCharsets.UTF_8));
+    String location = mapper.toUri().toString();
+
+    MapperSnapshot snapshot = new MapperSnapshot();
+    snapshot.addValidated(location, MapperSnapshot.hash(Files.readAllBytes(mapper)));
+    assertTrue(parseWithSnapshot(location, snapshot).hasStatement("snapshot.selectOne"));
+
+    MapperSnapshot stale = new MapperSnapshot();
+    stale.addValidated(location, MapperSnapshot.hash(new byte[0]));
+    assertThrows(BuilderException.class, () -> parseWithSnapshot(location, stale));
+    assertThrows(BuilderException.class, () -> parseWithSnapshot(location, new MapperSnapshot()));
+  }
+
+  private static Configuration parseWithSnapshot(String location, MapperSnapshot snapshot) {
+    String config = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+        + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+        + "<configuration><mappers><mapper url=\"" + location + "\"/></mappers></configuration>";
+    XMLConfigBuilder builder = new XMLConfigBuilder(new StringReader(config));
+    builder.setMapperSnapshot(snapshot);
+    return builder.parse();
+  }
+
+  private static String hashOf(String resource) throws Exception {
+    try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+      return MapperSnapshot.hash(MapperSnapshot.readContent(inputStream));
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.CacheRefResolver;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.builder.ResultMapResolver;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class PendingElementResolutionTest {
+
+  @Test
+  void shouldResolveEachElementOnceItsDependencyIsResolved() {
+    Configuration configuration = new Configuration();
+    MapperBuilderAssistant assistant = newAssistant(configuration, "chain");
+    AtomicInteger attempts = new AtomicInteger();
+    int length = 100;
+    // every result map extends the next one, so a pass in declaration order resolves only the last one
+    for (int i = 0; i < length; i++) {
+      String extend = i + 1 < length ? "rm" + (i + 1) : null;
+      configuration.addIncompleteResultMap(new ResultMapResolver(assistant, "rm" + i, Object.class, extend, null,
+          new ArrayList<>(), null) {
+        @Override
+        public ResultMap resolve() {
+          attempts.incrementAndGet();
+          return super.resolve();
+        }
+      });
+    }
+    configuration.registerMappings(() -> XMLMapperBuilder.resolvePendingElements(configuration));
+
+    assertTrue(configuration.getIncompleteResultMaps().isEmpty());
+    assertTrue(configuration.hasResultMap("chain.rm0"));
+    assertEquals(2 * length - 1, attempts.get());
+  }
+
+  @Test
+  void shouldKeepUnresolvableElementsPending() {
+    Configuration configuration = new Configuration();
+    MapperBuilderAssistant a = newAssistant(configuration, "a");
+    MapperBuilderAssistant b = newAssistant(configuration, "b");
+    Cache cache = newAssistant(configuration, "c").useNewCache(null, null, null, null, true, false, new Properties());
+    CacheRefResolver missingCache = new CacheRefResolver(b, "none");
+    configuration.addIncompleteCacheRef(missingCache);
+    configuration.addIncompleteCacheRef(new CacheRefResolver(a, "c"));
+    ResultMapResolver orphan = new ResultMapResolver(a, "orphan", Object.class, "missing", null,
+        Collections.emptyList(), null);
+    configuration.addIncompleteResultMap(orphan);
+    configuration.registerMappings(() -> XMLMapperBuilder.resolvePendingElements(configuration));
+
+    assertEquals(Collections.singletonList(missingCache), new ArrayList<>(configuration.getIncompleteCacheRefs()));
+    assertEquals(Collections.singletonList(orphan), new ArrayList<>(configuration.getIncompleteResultMaps()));
+    assertSame(cache, new CacheRefResolver(a, "c").resolveCacheRef());
+  }
+
+  private static MapperBuilderAssistant newAssistant(Configuration configuration, String namespace) {
+    MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, namespace + ".xml");
+    assistant.setCurrentNamespace(namespace);
+    return assistant;
+  }
+
+}
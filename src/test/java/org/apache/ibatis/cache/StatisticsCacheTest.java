@@ -0,0 +1,108 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class StatisticsCacheTest {
+
+  @Test
+  void shouldCountHitsMissesPutsAndEvictions() {
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(3);
+    StatisticsCache cache = new StatisticsCache(lru);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNull(cache.getObject(0));
+    assertEquals(4, cache.getObject(4));
+    cache.removeObject(4);
+    cache.clear();
+
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(1, statistics.getHits());
+    assertEquals(1, statistics.getMisses());
+    assertEquals(0.5D, statistics.getHitRatio());
+    assertEquals(5, statistics.getPuts());
+    assertEquals(2, statistics.getEvictions());
+    assertEquals(1, statistics.getRemovals());
+    assertEquals(1, statistics.getClears());
+    assertEquals(0, statistics.getEntryCount());
+    assertEquals(-1, statistics.getEstimatedBytes());
+  }
+
+  @Test
+  void shouldEstimateBytesOfSerializedValues() {
+    CacheStatistics statistics = new CacheStatistics("default");
+    Cache cache = new SerializedCache(new StatisticsCache(new PerpetualCache("default"), statistics, true));
+    cache.putObject(1, "value");
+    cache.putObject(2, "value");
+    assertEquals(2, statistics.getEntryCount());
+    assertTrue(statistics.getEstimatedBytes() > 0);
+    assertEquals(0, statistics.getEvictions());
+  }
+
+  @Test
+  void shouldCountEntriesDiscardedByTransactions() {
+    CacheStatistics statistics = new CacheStatistics("default");
+    Cache cache = new CacheBuilder("default").statistics(statistics).build();
+    TransactionalCache transactionalCache = new TransactionalCache(cache, statistics);
+    transactionalCache.putObject(1, "one");
+    transactionalCache.putObject(2, "two");
+    transactionalCache.clear();
+    transactionalCache.putObject(3, "three");
+    transactionalCache.commit();
+    transactionalCache.putObject(4, "four");
+    transactionalCache.rollback();
+
+    assertEquals(2, statistics.getDiscardedOnClear());
+    assertEquals(1, statistics.getDiscardedOnRollback());
+    assertEquals(1, statistics.getPuts());
+    assertEquals(1, statistics.getClears());
+    assertEquals(1, statistics.getEntryCount());
+  }
+
+  @Test
+  void shouldRegisterStatisticsThroughJmx() throws Exception {
+    CacheStatistics statistics = new CacheStatistics("default");
+    statistics.recordHit();
+    statistics.recordLoad(2_000_000L);
+    statistics.registerMBean("statisticsCacheTest");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.apache.ibatis.cache:type=CacheStatistics,name=\"statisticsCacheTest\",id=\"default\"");
+    try {
+      assertEquals(1L, server.getAttribute(name, "Hits"));
+      assertEquals(2.0D, server.getAttribute(name, "LoadMeanMillis"));
+    } finally {
+      statistics.unregisterMBean();
+    }
+    assertFalse(server.isRegistered(name));
+  }
+
+}
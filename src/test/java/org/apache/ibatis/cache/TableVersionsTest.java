@@ -0,0 +1,174 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.submitted.cache.CustomCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TableVersionsTest {
+
+  private TableVersions tableVersions;
+  private Cache blogCache;
+  private Cache authorCache;
+  private CacheKey blogKey;
+  private CacheKey postKey;
+
+  @BeforeEach
+  void setUp() {
+    tableVersions = new TableVersions();
+    tableVersions.enable("blog");
+    blogCache = new PerpetualCache("blog");
+    authorCache = new PerpetualCache("author");
+    blogKey = new CacheKey(new Object[] {"selectBlog", 1});
+    postKey = new CacheKey(new Object[] {"selectPosts", 1});
+  }
+
+  @Test
+  void shouldInvalidateOnlyEntriesDependingOnWrittenTables() {
+    TransactionalCacheManager reader = newManager();
+    reader.putObject(blogCache, blogKey, "blog", reader.snapshot(blogCache, new String[] {"blog", "author"}));
+    reader.putObject(blogCache, postKey, "posts", reader.snapshot(blogCache, new String[] {"post"}));
+    reader.commit();
+
+    TransactionalCacheManager writer = newManager();
+    writer.invalidate(authorCache, new String[] {"author"});
+    assertEquals("blog", reader.getObject(blogCache, blogKey));
+    writer.commit();
+
+    assertNull(reader.getObject(blogCache, blogKey));
+    assertEquals("posts", reader.getObject(blogCache, postKey));
+    assertEquals(1, tableVersions.getVersion("author"));
+    assertEquals(1, tableVersions.getVersion(TableVersions.namespaceTable("author")));
+    assertEquals(0, tableVersions.getVersion("post"));
+  }
+
+  @Test
+  void shouldHideEntriesInvalidatedByCurrentTransaction() {
+    TransactionalCacheManager reader = newManager();
+    reader.putObject(blogCache, blogKey, "blog", reader.snapshot(blogCache, new String[] {"blog"}));
+    reader.commit();
+
+    TransactionalCacheManager writer = newManager();
+    writer.invalidate(null, new String[] {"blog"});
+    assertNull(writer.getObject(blogCache, blogKey));
+    writer.rollback();
+
+    assertEquals("blog", writer.getObject(blogCache, blogKey));
+    assertEquals(0, tableVersions.getVersion("blog"));
+  }
+
+  @Test
+  void shouldNotCacheResultsLoadedBeforeConcurrentCommit() {
+    TransactionalCacheManager reader = newManager();
+    TableVersions.Snapshot snapshot = reader.snapshot(blogCache, new String[] {"blog"});
+
+    tableVersions.increment(Collections.singleton("blog"));
+
+    reader.putObject(blogCache, blogKey, "stale", snapshot);
+    reader.commit();
+    assertNull(reader.getObject(blogCache, blogKey));
+  }
+
+  @Test
+  void shouldDependOnNamespaceWhenNoTablesDeclared() {
+    TransactionalCacheManager reader = newManager();
+    reader.putObject(blogCache, blogKey, "blog", reader.snapshot(blogCache, null));
+    reader.commit();
+
+    TransactionalCacheManager writer = newManager();
+    writer.invalidate(authorCache, new String[] {"author"});
+    writer.commit();
+    assertEquals("blog", reader.getObject(blogCache, blogKey));
+
+    writer.invalidate(blogCache, new String[] {"author"});
+    writer.commit();
+    assertNull(reader.getObject(blogCache, blogKey));
+  }
+
+  @Test
+  void shouldTreatUnversionedEntriesAsMissesOnceEnabled() {
+    blogCache.putObject(blogKey, "blog");
+    assertNull(newManager().getObject(blogCache, blogKey));
+  }
+
+  @Test
+  void shouldNotVersionCachesWithoutCacheTables() {
+    TransactionalCacheManager reader = newManager();
+    assertNull(reader.snapshot(authorCache, null));
+    reader.putObject(authorCache, blogKey, "author", reader.snapshot(authorCache, null));
+    reader.commit();
+    assertEquals("author", authorCache.getObject(blogKey));
+    assertEquals("author", reader.getObject(authorCache, blogKey));
+  }
+
+  @Test
+  void shouldRejectSnapshotsTakenByAnotherInstance() {
+    TableVersions restarted = new TableVersions();
+    restarted.enable("blog");
+    TransactionalCacheManager before = new TransactionalCacheManager(cache -> null, restarted);
+    before.putObject(blogCache, blogKey, "blog", before.snapshot(blogCache, new String[] {"blog"}));
+    before.commit();
+    assertEquals("blog", before.getObject(blogCache, blogKey));
+    // both counters are still at 0, only the instance tells the snapshots apart
+    assertNull(newManager().getObject(blogCache, blogKey));
+  }
+
+  @Test
+  void shouldCountStaleEntriesAsMisses() {
+    CacheStatistics statistics = new CacheStatistics("blog");
+    Cache cache = new StatisticsCache(blogCache, statistics, false);
+    TransactionalCacheManager reader = new TransactionalCacheManager(c -> statistics, tableVersions);
+    reader.putObject(cache, blogKey, "blog", reader.snapshot(cache, new String[] {"blog"}));
+    reader.commit();
+    assertEquals("blog", reader.getObject(cache, blogKey));
+
+    tableVersions.increment(Collections.singleton("blog"));
+    assertNull(reader.getObject(cache, blogKey));
+    assertEquals(1, statistics.getHits());
+    assertEquals(1, statistics.getMisses());
+    assertEquals(1, statistics.getStaleHits());
+    assertEquals(0.5, statistics.getHitRatio());
+  }
+
+  @Test
+  void shouldRefuseCustomCacheImplementations() {
+    Configuration configuration = new Configuration();
+    MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "custom");
+    assistant.setCurrentNamespace("custom");
+    assistant.useNewCache(CustomCache.class, null, null, null, true, false, new Properties());
+    assertThrows(CacheException.class, () -> configuration.getTableVersions().enable("custom"));
+    configuration.getTableVersions().enableAll();
+    assertFalse(configuration.getTableVersions().isEnabled("custom"));
+  }
+
+  private TransactionalCacheManager newManager() {
+    return new TransactionalCacheManager(cache -> null, tableVersions);
+  }
+
+}
@@ -0,0 +1,310 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.TableVersions;
+import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class CacheInvalidationBusTest {
+
+  private static final String NAMESPACE = "blog";
+
+  private final CacheKey key = new CacheKey(new Object[] {"selectBlog", 1});
+
+  @Test
+  void shouldClearRemoteCacheOnCommittedClear() throws Exception {
+    LoopbackTransport.Channel channel = new LoopbackTransport.Channel();
+    Node a = new Node(new LoopbackTransport(channel), 0);
+    Node b = new Node(new LoopbackTransport(channel), 0);
+    try {
+      b.load(null, "blog");
+      assertEquals("blog", b.newManager().getObject(b.cache, key));
+
+      TransactionalCacheManager writer = a.newManager();
+      writer.clear(a.cache);
+      writer.commit();
+
+      assertEquals(0, b.cache.getSize());
+      assertNull(b.newManager().getObject(b.cache, key));
+      assertEquals(1, a.bus.getSentMessages());
+      assertEquals(1, b.bus.getReceivedMessages());
+    } finally {
+      a.bus.close();
+      b.bus.close();
+    }
+  }
+
+  @Test
+  void shouldRejectResultsLoadedBeforeRemoteInvalidation() throws Exception {
+    LoopbackTransport.Channel channel = new LoopbackTransport.Channel();
+    Node a = new Node(new LoopbackTransport(channel), 0);
+    Node b = new Node(new LoopbackTransport(channel), 0);
+    try {
+      TransactionalCacheManager reader = b.newManager();
+      TableVersions.Snapshot snapshot = reader.snapshot(b.cache, new String[] {"author"});
+
+      TransactionalCacheManager writer = a.newManager();
+      writer.invalidate(null, new String[] {"author"});
+      writer.commit();
+
+      reader.putObject(b.cache, key, "stale", snapshot);
+      reader.commit();
+      assertNull(b.newManager().getObject(b.cache, key));
+      assertEquals(1, b.configuration.getTableVersions().getVersion("author"));
+    } finally {
+      a.bus.close();
+      b.bus.close();
+    }
+  }
+
+  @Test
+  void shouldBatchInvalidationsAndIgnoreDuplicates() throws Exception {
+    LoopbackTransport.Channel channel = new LoopbackTransport.Channel();
+    Node a = new Node(new LoopbackTransport(channel), 60000);
+    Node b = new Node(new LoopbackTransport(channel), 0);
+    try {
+      a.bus.invalidated(Collections.emptySet(), Collections.singleton("author"));
+      a.bus.invalidated(Collections.singleton(NAMESPACE), Collections.singleton("post"));
+      assertEquals(0, b.bus.getReceivedMessages());
+
+      a.bus.flush();
+      assertEquals(1, a.bus.getSentMessages());
+      assertEquals(1, b.bus.getReceivedMessages());
+      TableVersions versions = b.configuration.getTableVersions();
+      assertEquals(1, versions.getVersion("author"));
+      assertEquals(1, versions.getVersion("post"));
+      assertEquals(1, versions.getVersion(TableVersions.namespaceStamp(NAMESPACE)));
+
+      byte[] message = new InvalidationMessage(a.bus.getNodeId(), 1, Collections.emptySet(),
+          Collections.singleton("author")).encode();
+      b.bus.receive(message);
+      b.bus.receive(new byte[] {42});
+      assertEquals(1, b.bus.getReceivedMessages());
+      assertEquals(1, versions.getVersion("author"));
+    } finally {
+      a.bus.close();
+      b.bus.close();
+    }
+  }
+
+  @Test
+  void shouldDeliverOverSockets() throws Exception {
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    SocketTransport transportA = new SocketTransport(new InetSocketAddress(loopback, 0), Collections.emptyList());
+    SocketTransport transportB = new SocketTransport(new InetSocketAddress(loopback, 0), Collections.emptyList());
+    Node a = new Node(transportA, 0);
+    Node b = new Node(transportB, 0);
+    try {
+      transportA.addPeer(new InetSocketAddress(loopback, transportB.getLocalPort()));
+      transportB.addPeer(new InetSocketAddress(loopback, transportA.getLocalPort()));
+      b.load(null, "blog");
+
+      TransactionalCacheManager writer = a.newManager();
+      writer.clear(a.cache);
+      writer.commit();
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (b.bus.getReceivedMessages() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, b.bus.getReceivedMessages());
+      assertEquals(0, b.cache.getSize());
+      assertTrue(transportB.getLocalPort() > 0);
+    } finally {
+      a.bus.close();
+      b.bus.close();
+    }
+  }
+
+  @Test
+  void shouldResyncOnSequenceGap() throws Exception {
+    LoopbackTransport.Channel channel = new LoopbackTransport.Channel();
+    Node b = new Node(new LoopbackTransport(channel), 0);
+    try {
+      b.load(null, "blog");
+      b.bus.receive(new InvalidationMessage("a", 1, Collections.emptySet(), Collections.singleton("author")).encode());
+      assertEquals(0, b.bus.getResyncs());
+      assertEquals(1, b.cache.getSize());
+
+      // message 2 was lost
+      b.bus.receive(new InvalidationMessage("a", 3, Collections.emptySet(), Collections.singleton("author")).encode());
+      assertEquals(1, b.bus.getResyncs());
+      assertEquals(0, b.cache.getSize());
+      assertEquals(1, b.configuration.getTableVersions().getVersion(TableVersions.namespaceStamp(NAMESPACE)));
+
+      // the first message seen from a node must start the sequence
+      b.bus.receive(new InvalidationMessage("c", 2, Collections.emptySet(), Collections.singleton("author")).encode());
+      assertEquals(2, b.bus.getResyncs());
+    } finally {
+      b.bus.close();
+    }
+  }
+
+  @Test
+  void shouldResendFailedBatches() throws Exception {
+    LoopbackTransport.Channel channel = new LoopbackTransport.Channel();
+    FailingTransport transportA = new FailingTransport(new LoopbackTransport(channel));
+    Node a = new Node(transportA, 0);
+    Node b = new Node(new LoopbackTransport(channel), 0);
+    try {
+      transportA.failures = 2;
+      a.bus.invalidated(Collections.emptySet(), Collections.singleton("author"));
+      a.bus.invalidated(Collections.emptySet(), Collections.singleton("post"));
+      assertEquals(2, a.bus.getUnsentMessages());
+      assertEquals(0, b.bus.getReceivedMessages());
+
+      a.bus.flush();
+      assertEquals(0, a.bus.getUnsentMessages());
+      assertEquals(2, a.bus.getSentMessages());
+      assertEquals(2, b.bus.getReceivedMessages());
+      assertEquals(0, b.bus.getResyncs());
+      assertEquals(1, b.configuration.getTableVersions().getVersion("post"));
+    } finally {
+      a.bus.close();
+      b.bus.close();
+    }
+  }
+
+  @Test
+  void shouldResendToPeerThatWasUnreachable() throws Exception {
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    SocketTransport transportB = new SocketTransport(new InetSocketAddress(loopback, 0), Collections.emptyList());
+    Node b = new Node(transportB, 0);
+    int portB = transportB.getLocalPort();
+    b.bus.close();
+
+    SocketTransport transportA = new SocketTransport(new InetSocketAddress(loopback, 0),
+        Collections.singletonList(new InetSocketAddress(loopback, portB)));
+    Node a = new Node(transportA, 0);
+    Node restarted = null;
+    try {
+      TransactionalCacheManager writer = a.newManager();
+      writer.clear(a.cache);
+      writer.commit();
+      Thread.sleep(100);
+      assertEquals(1, transportA.getPendingMessages());
+
+      restarted = new Node(new SocketTransport(new InetSocketAddress(loopback, portB), Collections.emptyList()), 0);
+      long deadline = System.currentTimeMillis() + 5000;
+      while (restarted.bus.getReceivedMessages() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, restarted.bus.getReceivedMessages());
+      assertEquals(0, transportA.getPendingMessages());
+    } finally {
+      a.bus.close();
+      if (restarted != null) {
+        restarted.bus.close();
+      }
+    }
+  }
+
+  @Test
+  void shouldResyncWhenPeerConnectionDrops() throws Exception {
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    SocketTransport transportB = new SocketTransport(new InetSocketAddress(loopback, 0), Collections.emptyList());
+    Node b = new Node(transportB, 0);
+    SocketTransport transportA = new SocketTransport(new InetSocketAddress(loopback, 0),
+        Collections.singletonList(new InetSocketAddress(loopback, transportB.getLocalPort())));
+    Node a = new Node(transportA, 0);
+    try {
+      a.bus.invalidated(Collections.emptySet(), Collections.singleton("author"));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (b.bus.getReceivedMessages() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      b.load(null, "blog");
+
+      a.bus.close();
+      deadline = System.currentTimeMillis() + 5000;
+      while (b.bus.getResyncs() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, b.bus.getResyncs());
+      assertEquals(0, b.cache.getSize());
+    } finally {
+      b.bus.close();
+    }
+  }
+
+  private static class FailingTransport implements InvalidationTransport {
+    private final InvalidationTransport delegate;
+    private int failures;
+
+    private FailingTransport(InvalidationTransport delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void open(Consumer<byte[]> receiver, Runnable messagesLost) throws IOException {
+      delegate.open(receiver, messagesLost);
+    }
+
+    @Override
+    public void send(byte[] message) throws IOException {
+      if (failures > 0) {
+        failures--;
+        throw new IOException("Simulated failure");
+      }
+      delegate.send(message);
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+
+  private class Node {
+    private final Configuration configuration = new Configuration();
+    private final Cache cache = new PerpetualCache(NAMESPACE);
+    private final CacheInvalidationBus bus;
+
+    private Node(InvalidationTransport transport, long batchIntervalMillis) throws Exception {
+      configuration.addCache(cache);
+      bus = new CacheInvalidationBus(configuration, transport, batchIntervalMillis);
+      configuration.setCacheInvalidationBroadcaster(bus);
+      bus.start();
+    }
+
+    private TransactionalCacheManager newManager() {
+      return new TransactionalCacheManager(c -> null, configuration.getTableVersions(),
+          configuration.getCacheInvalidationBroadcaster());
+    }
+
+    private void load(String[] tables, Object value) {
+      TransactionalCacheManager manager = newManager();
+      manager.putObject(cache, key, value, manager.snapshot(cache, tables));
+      manager.commit();
+    }
+  }
+
+}
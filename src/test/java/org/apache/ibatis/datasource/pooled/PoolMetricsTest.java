@@ -0,0 +1,122 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.junit.jupiter.api.Test;
+
+class PoolMetricsTest {
+
+  @Test
+  void shouldEstimatePercentilesFromBuckets() {
+    PoolMetrics.Histogram histogram = new PoolMetrics.Histogram();
+    for (int i = 0; i < 90; i++) {
+      histogram.record(1);
+    }
+    for (int i = 0; i < 9; i++) {
+      histogram.record(40);
+    }
+    histogram.record(700);
+    assertEquals(100, histogram.getCount());
+    assertEquals(700, histogram.getMax());
+    assertEquals((90 + 360 + 700) / 100, histogram.getMean());
+    assertEquals(1, histogram.getPercentile(0.5));
+    assertEquals(50, histogram.getPercentile(0.95));
+    assertEquals(50, histogram.getPercentile(0.99));
+    assertEquals(700, histogram.getPercentile(1));
+  }
+
+  @Test
+  void shouldCountOverflowInLastBucket() {
+    PoolMetrics.Histogram histogram = new PoolMetrics.Histogram();
+    histogram.record(60000);
+    long[] counts = histogram.getBucketCounts();
+    assertEquals(histogram.getBucketBounds().length + 1, counts.length);
+    assertEquals(1, counts[counts.length - 1]);
+    assertEquals(60000, histogram.getPercentile(0.5));
+  }
+
+  @Test
+  void shouldNotifyListeners() {
+    PoolMetrics metrics = new PoolMetrics();
+    long[] events = new long[3];
+    metrics.addListener(new PoolMetricsListener() {
+      @Override
+      public void connectionAcquired(long acquisitionMillis) {
+        events[0] += acquisitionMillis;
+      }
+
+      @Override
+      public void connectionCreated() {
+        events[1]++;
+      }
+
+      @Override
+      public void connectionTimedOut() {
+        events[2]++;
+      }
+    });
+    metrics.recordCreated();
+    metrics.recordAcquired(3);
+    metrics.recordAcquired(4);
+    metrics.recordTimeout();
+    metrics.fireEvents();
+    assertArrayEquals(new long[] { 7, 1, 1 }, events);
+    assertEquals(1, metrics.getCreatedConnections());
+    assertEquals(2, metrics.getAcquisitionCount());
+    assertEquals(1, metrics.getTimeouts());
+  }
+
+  @Test
+  void shouldNotifyListenersOutsidePoolLock() throws Exception {
+    Properties props = Resources.getResourceAsProperties(BaseDataTest.JPETSTORE_PROPERTIES);
+    PooledDataSource ds = new PooledDataSource(props.getProperty("driver"), props.getProperty("url"),
+        props.getProperty("username"), props.getProperty("password"));
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolConnectionTimeout(50);
+    List<String> events = new ArrayList<>();
+    ds.addPoolMetricsListener(new PoolMetricsListener() {
+      @Override
+      public void connectionCreated() {
+        events.add("created " + Thread.holdsLock(ds.getPoolState()));
+      }
+
+      @Override
+      public void connectionTimedOut() {
+        events.add("timedOut " + Thread.holdsLock(ds.getPoolState()));
+      }
+    });
+    try (Connection ignored = ds.getConnection()) {
+      assertThrows(SQLException.class, ds::getConnection);
+    } finally {
+      ds.forceCloseAll();
+    }
+    assertEquals(Arrays.asList("created false", "timedOut false"), events);
+  }
+
+}
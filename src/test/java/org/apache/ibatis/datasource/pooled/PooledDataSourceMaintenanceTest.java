@@ -0,0 +1,118 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.junit.jupiter.api.Test;
+
+class PooledDataSourceMaintenanceTest extends BaseDataTest {
+
+  @Test
+  void shouldCountConnectionsUnderValidationTowardPoolSize() throws Exception {
+    BlockingValidationDataSource ds = new BlockingValidationDataSource(Resources.getResourceAsProperties(JPETSTORE_PROPERTIES));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolConnectionTimeout(10000);
+      Connection c = ds.getConnection();
+      Connection realConnection = PooledDataSource.unwrapConnection(c);
+      c.close();
+      Future<?> maintenance = executor.submit(() -> {
+        ds.maintain();
+        return null;
+      });
+      assertTrue(ds.validating.await(5, TimeUnit.SECONDS));
+      Future<Connection> checkout = executor.submit(() -> PooledDataSource.unwrapConnection(ds.getConnection()));
+      while (ds.getPoolState().getWaitingThreadCount() < 1) {
+        Thread.sleep(5);
+      }
+      ds.release.countDown();
+      maintenance.get(5, TimeUnit.SECONDS);
+      // the validated connection is handed to the waiting thread instead of a second one being created
+      assertSame(realConnection, checkout.get(5, TimeUnit.SECONDS));
+      assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.release.countDown();
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldNotExceedMaximumIdleConnectionsAfterValidation() throws Exception {
+    BlockingValidationDataSource ds = new BlockingValidationDataSource(Resources.getResourceAsProperties(JPETSTORE_PROPERTIES));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ds.setPoolMaximumIdleConnections(1);
+      Connection a = ds.getConnection();
+      Connection b = ds.getConnection();
+      a.close();
+      Future<?> maintenance = executor.submit(() -> {
+        ds.maintain();
+        return null;
+      });
+      assertTrue(ds.validating.await(5, TimeUnit.SECONDS));
+      // the idle list looks empty while the other connection is validated
+      b.close();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+      ds.release.countDown();
+      maintenance.get(5, TimeUnit.SECONDS);
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.release.countDown();
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  private static class BlockingValidationDataSource extends PooledDataSource {
+    private final CountDownLatch validating = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    BlockingValidationDataSource(Properties properties) {
+      super(properties.getProperty("driver"), properties.getProperty("url"), properties.getProperty("username"),
+          properties.getProperty("password"));
+    }
+
+    @Override
+    protected boolean validateConnection(PooledConnection conn) {
+      validating.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      return super.validateConnection(conn);
+    }
+  }
+
+}
@@ -0,0 +1,273 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CachingExecutorCoalescingTest {
+
+  private Configuration configuration;
+  private MappedStatement select;
+  private MappedStatement update;
+  private DatabaseExecutor database;
+  private ExecutorService threads;
+
+  @BeforeEach
+  void setUp() {
+    configuration = new Configuration();
+    configuration.setCacheMissCoalescingEnabled(true);
+    PerpetualCache cache = new PerpetualCache("blog");
+    select = new MappedStatement.Builder(configuration, "blog.select", new StaticSqlSource(configuration, "select"),
+        SqlCommandType.SELECT).cache(cache).useCache(true).build();
+    update = new MappedStatement.Builder(configuration, "blog.update", new StaticSqlSource(configuration, "update"),
+        SqlCommandType.UPDATE).cache(cache).flushCacheRequired(false).build();
+    database = new DatabaseExecutor();
+    threads = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  void tearDown() {
+    database.release.countDown();
+    threads.shutdownNow();
+  }
+
+  @Test
+  void shouldShareConcurrentLoad() throws Exception {
+    Future<List<Object>> leader = threads.submit(() -> new CachingExecutor(database, configuration).query(select, 1, RowBounds.DEFAULT, null));
+    assertTrue(database.started.await(5, TimeUnit.SECONDS));
+    List<Thread> follower = new ArrayList<>();
+    Future<List<Object>> followerResult = threads.submit(() -> {
+      follower.add(Thread.currentThread());
+      return new CachingExecutor(database, configuration).query(select, 1, RowBounds.DEFAULT, null);
+    });
+    awaitWaiting(follower);
+    database.release.countDown();
+
+    List<Object> leaderList = leader.get(5, TimeUnit.SECONDS);
+    List<Object> followerList = followerResult.get(5, TimeUnit.SECONDS);
+    assertEquals(1, database.queries.get());
+    assertEquals(leaderList, followerList);
+    assertNotSame(leaderList, followerList);
+    assertEquals(1, configuration.getSingleFlight().getCoalescedCount());
+    assertEquals(0, configuration.getSingleFlight().getInFlightCount());
+  }
+
+  @Test
+  void shouldQueryItselfAfterTimeout() throws Exception {
+    configuration.setCacheMissCoalescingTimeout(50);
+    Future<List<Object>> leader = threads.submit(() -> new CachingExecutor(database, configuration).query(select, 1, RowBounds.DEFAULT, null));
+    assertTrue(database.started.await(5, TimeUnit.SECONDS));
+
+    List<Object> list = new CachingExecutor(database, configuration).query(select, 1, RowBounds.DEFAULT, null);
+    assertEquals(Collections.singletonList("row2"), list);
+    assertEquals(1, configuration.getSingleFlight().getTimeoutCount());
+
+    database.release.countDown();
+    leader.get(5, TimeUnit.SECONDS);
+    assertEquals(0, configuration.getSingleFlight().getInFlightCount());
+  }
+
+  @Test
+  void shouldNotLeakFlightWhenLoadFails() throws Exception {
+    database.failFirst = true;
+    database.release.countDown();
+    CachingExecutor executor = new CachingExecutor(database, configuration);
+    assertThrows(SQLException.class, () -> executor.query(select, 1, RowBounds.DEFAULT, null));
+    assertEquals(0, configuration.getSingleFlight().getInFlightCount());
+
+    assertEquals(Collections.singletonList("row2"), executor.query(select, 1, RowBounds.DEFAULT, null));
+  }
+
+  @Test
+  void shouldNotCoalesceSessionWithUncommittedUpdates() throws Exception {
+    Future<List<Object>> leader = threads.submit(() -> new CachingExecutor(database, configuration).query(select, 1, RowBounds.DEFAULT, null));
+    assertTrue(database.started.await(5, TimeUnit.SECONDS));
+
+    CachingExecutor dirty = new CachingExecutor(database, configuration);
+    dirty.update(update, 1);
+    assertEquals(Collections.singletonList("row2"), dirty.query(select, 1, RowBounds.DEFAULT, null));
+    assertEquals(0, configuration.getSingleFlight().getCoalescedCount());
+
+    database.release.countDown();
+    leader.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void shouldQueryItselfWhenResultCannotBeCopied() throws Exception {
+    database.unserializableRows = true;
+    Future<List<Object>> leader = threads.submit(() -> new CachingExecutor(database, configuration).query(select, 1, RowBounds.DEFAULT, null));
+    assertTrue(database.started.await(5, TimeUnit.SECONDS));
+    List<Thread> follower = new ArrayList<>();
+    Future<List<Object>> followerResult = threads.submit(() -> {
+      follower.add(Thread.currentThread());
+      return new CachingExecutor(database, configuration).query(select, 1, RowBounds.DEFAULT, null);
+    });
+    awaitWaiting(follower);
+    database.release.countDown();
+
+    List<Object> leaderList = leader.get(5, TimeUnit.SECONDS);
+    List<Object> followerList = followerResult.get(5, TimeUnit.SECONDS);
+    assertEquals(2, database.queries.get());
+    assertNotSame(leaderList.get(0), followerList.get(0));
+    assertEquals(0, configuration.getSingleFlight().getCoalescedCount());
+  }
+
+  private void awaitWaiting(List<Thread> holder) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      if (!holder.isEmpty() && holder.get(0).getState() == Thread.State.TIMED_WAITING) {
+        return;
+      }
+      Thread.sleep(5);
+    }
+    throw new AssertionError("Follower did not start waiting.");
+  }
+
+  /**
+   * The first query blocks until released, the following ones return immediately.
+   */
+  private static class DatabaseExecutor implements Executor {
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean failFirst;
+    private volatile boolean unserializableRows;
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+        CacheKey cacheKey, BoundSql boundSql) throws SQLException {
+      int query = queries.incrementAndGet();
+      if (query == 1) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new SQLException(e);
+        }
+        if (failFirst) {
+          throw new SQLException("Connection lost");
+        }
+      }
+      List<E> list = new ArrayList<>();
+      @SuppressWarnings("unchecked")
+      E row = (E) (unserializableRows ? new Object() : "row" + query);
+      list.add(row);
+      return list;
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+      return new CacheKey(new Object[] {ms.getId(), parameterObject});
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter) {
+      return 1;
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void commit(boolean required) {
+      // nothing to commit
+    }
+
+    @Override
+    public void rollback(boolean required) {
+      // nothing to roll back
+    }
+
+    @Override
+    public boolean isCached(MappedStatement ms, CacheKey key) {
+      return false;
+    }
+
+    @Override
+    public void clearLocalCache() {
+      // no local cache
+    }
+
+    @Override
+    public void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Transaction getTransaction() {
+      return null;
+    }
+
+    @Override
+    public void close(boolean forceRollback) {
+      // nothing to close
+    }
+
+    @Override
+    public boolean isClosed() {
+      return false;
+    }
+
+    @Override
+    public void setExecutorWrapper(Executor executor) {
+      // not needed
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class RowKeyTest {
+
+  private final Object resultMap = new Object();
+  private final Object shape = new Object();
+
+  @Test
+  void shouldMatchStoredCopyWithReusedProbe() {
+    RowKey probe = new RowKey(0);
+    probe.reset(resultMap, shape, 2, null);
+    probe.add(1);
+    probe.add("a");
+    Map<RowKey, Object> objects = new HashMap<>();
+    objects.put(probe.copy(), "row1");
+
+    probe.reset(resultMap, shape, 2, null);
+    probe.add(2);
+    probe.add("a");
+    assertNull(objects.get(probe));
+
+    probe.reset(resultMap, shape, 2, null);
+    probe.add(1);
+    probe.add("a");
+    assertEquals("row1", objects.get(probe));
+  }
+
+  @Test
+  void shouldDistinguishSkippedColumnsFromNullValues() {
+    RowKey skipped = new RowKey(0);
+    skipped.reset(resultMap, shape, 2, null);
+    skipped.add(1);
+    skipped.skip();
+    RowKey nullValue = new RowKey(0);
+    nullValue.reset(resultMap, shape, 2, null);
+    nullValue.add(1);
+    nullValue.add(null);
+    assertNotEquals(skipped, nullValue);
+  }
+
+  @Test
+  void shouldDistinguishShapes() {
+    RowKey key = new RowKey(0);
+    key.reset(resultMap, shape, 1, null);
+    key.add(1);
+    RowKey other = new RowKey(0);
+    other.reset(resultMap, new Object(), 1, null);
+    other.add(1);
+    assertNotEquals(key, other);
+  }
+
+  @Test
+  void shouldIncludeParentAndKeepItInCopies() {
+    RowKey parent = new RowKey(0);
+    parent.reset(resultMap, shape, 1, null);
+    parent.add(1);
+    RowKey child = new RowKey(1);
+    child.reset(resultMap, shape, 1, parent);
+    child.add(10);
+    RowKey stored = child.copy();
+    assertEquals(child, stored);
+    assertEquals(child.hashCode(), stored.hashCode());
+
+    // reusing the parent probe must not change the stored copy
+    parent.reset(resultMap, shape, 1, null);
+    parent.add(2);
+    child.reset(resultMap, shape, 1, parent);
+    child.add(10);
+    assertNotEquals(child, stored);
+  }
+
+  @Test
+  void shouldBeNullWithoutValuesOrWithNullParent() {
+    RowKey parent = new RowKey(0);
+    parent.reset(resultMap, shape, 1, null);
+    parent.skip();
+    assertTrue(parent.isNull());
+    RowKey child = new RowKey(1);
+    child.reset(resultMap, shape, 1, parent);
+    child.add(1);
+    assertTrue(child.isNull());
+  }
+
+  @Test
+  void shouldCompareArrayValuesByContent() {
+    RowKey key = new RowKey(0);
+    key.reset(resultMap, shape, 1, null);
+    key.add(new byte[] {1, 2});
+    RowKey other = new RowKey(0);
+    other.reset(resultMap, shape, 1, null);
+    other.add(new byte[] {1, 2});
+    assertEquals(key, other);
+    assertEquals(key.hashCode(), other.hashCode());
+  }
+}
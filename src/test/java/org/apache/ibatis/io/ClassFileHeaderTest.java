@@ -0,0 +1,88 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.function.Function;
+
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Mapper;
+import org.junit.jupiter.api.Test;
+
+class ClassFileHeaderTest {
+
+  private final ClassLoader loader = getClass().getClassLoader();
+  private final Function<String, ClassFileHeader> headerLoader = name -> ClassFileHeader.read(loader, name);
+
+  // reuses ResolverUtilTest.TestMapper so that package scans over org.apache.ibatis.io keep finding one mapper
+  private static final String ANNOTATED_MAPPER = ResolverUtilTest.class.getName() + "$TestMapper";
+
+  @Test
+  void shouldReadClassHierarchyAndAnnotations() {
+    ClassFileHeader header = ClassFileHeader.read(loader, ANNOTATED_MAPPER);
+    assertNotNull(header);
+    assertEquals(ANNOTATED_MAPPER, header.getClassName());
+    assertEquals(Object.class.getName(), header.getSuperClassName());
+    assertTrue(header.getAnnotationNames().contains(CacheNamespace.class.getName()));
+    assertTrue(header.isInterface());
+    assertFalse(header.isAnnotation());
+
+    ClassFileHeader isA = ClassFileHeader.read(loader, ResolverUtil.IsA.class.getName());
+    assertTrue(isA.getInterfaceNames().contains(ResolverUtil.ClassFileTest.class.getName()));
+
+    ClassFileHeader vfs = ClassFileHeader.read(loader, DefaultVFS.class.getName());
+    assertEquals(VFS.class.getName(), vfs.getSuperClassName());
+    assertFalse(vfs.isInterface());
+  }
+
+  @Test
+  void shouldReturnNullForMissingClass() {
+    assertNull(ClassFileHeader.read(loader, "org.apache.ibatis.io.Xxx"));
+    assertThrows(IOException.class, () -> ClassFileHeader.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4})));
+  }
+
+  @Test
+  void shouldPreFilterByClassFile() {
+    ResolverUtil.IsA isA = new ResolverUtil.IsA(VFS.class);
+    assertTrue(isA.mayMatch(headerLoader.apply(JBoss6VFS.class.getName()), headerLoader));
+    assertTrue(isA.mayMatch(headerLoader.apply(VFS.class.getName()), headerLoader));
+    assertFalse(isA.mayMatch(headerLoader.apply(ResolverUtil.class.getName()), headerLoader));
+    assertTrue(new ResolverUtil.IsA(ResolverUtil.Test.class).mayMatch(headerLoader.apply(ResolverUtil.IsA.class.getName()), headerLoader));
+
+    ResolverUtil.AnnotatedWith annotatedWith = new ResolverUtil.AnnotatedWith(CacheNamespace.class);
+    assertTrue(annotatedWith.mayMatch(headerLoader.apply(ANNOTATED_MAPPER), headerLoader));
+    assertFalse(annotatedWith.mayMatch(headerLoader.apply(DefaultVFS.class.getName()), headerLoader));
+    assertFalse(new ResolverUtil.AnnotatedWith(Mapper.class).mayMatch(headerLoader.apply(ANNOTATED_MAPPER), headerLoader));
+  }
+
+  @Test
+  void shouldPreFilterInterfacesByClassFile() {
+    ResolverUtil.IsInterface subInterface = new ResolverUtil.IsInterface(new ResolverUtil.IsA(ResolverUtil.Test.class));
+    assertTrue(subInterface.mayMatch(headerLoader.apply(ResolverUtil.ClassFileTest.class.getName()), headerLoader));
+    assertFalse(subInterface.mayMatch(headerLoader.apply(ResolverUtil.IsA.class.getName()), headerLoader));
+    assertTrue(subInterface.matches(ResolverUtil.ClassFileTest.class));
+    assertFalse(subInterface.matches(ResolverUtil.IsA.class));
+
+    ResolverUtil.IsInterface annotatedInterface = new ResolverUtil.IsInterface(new ResolverUtil.AnnotatedWith(CacheNamespace.class));
+    assertTrue(annotatedInterface.mayMatch(headerLoader.apply(ANNOTATED_MAPPER), headerLoader));
+    assertFalse(annotatedInterface.mayMatch(headerLoader.apply(VFS.class.getName()), headerLoader));
+    assertFalse(annotatedInterface.mayMatch(headerLoader.apply(ResolverUtil.Test.class.getName()), headerLoader));
+  }
+
+}
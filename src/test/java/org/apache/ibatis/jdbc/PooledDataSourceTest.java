@@ -17,17 +17,35 @@ package org.apache.ibatis.jdbc;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PoolMetrics;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.io.Resources;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -91,6 +109,312 @@ class PooledDataSourceTest extends BaseDataTest {
     c.close();
   }
 
+  @Test
+  void shouldKeepMinimumIdleConnectionsWarm() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(3);
+      ds.setPoolMaximumIdleConnections(3);
+      ds.setPoolMinimumIdleConnections(2);
+      ds.maintain();
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+
+      Connection c = ds.getConnection();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+      ds.maintain();
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      c.close();
+      assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRetireExpiredAndIdleTimedOutConnections() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumIdleConnections(3);
+      ds.setPoolIdleTimeout(50);
+      ds.setPoolMinimumIdleConnections(1);
+      List<Connection> connections = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+      Thread.sleep(100);
+      ds.maintain();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(2, ds.getPoolState().getRetiredConnectionCount());
+
+      ds.setPoolMaximumLifetime(50);
+      ds.setPoolMinimumIdleConnections(0);
+      // changing the settings keeps the open connection, which has already expired and is retired on return
+      ds.getConnection().close();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      ds.getConnection().close();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+      Thread.sleep(100);
+      ds.maintain();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldKeepOpenConnectionsWhenTuningHousekeeping() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      Connection c = ds.getConnection();
+      ds.setPoolMaintenanceInterval(1000);
+      ds.setPoolMaximumLifetime(60000);
+      ds.setPoolIdleTimeout(60000);
+      ds.setPoolMinimumIdleConnections(0);
+      ds.setPoolValidationTimeout(1);
+      ds.setPoolConnectionTimeout(10000);
+      ds.setPoolLeakDetectionThreshold(60000);
+      assertFalse(PooledDataSource.unwrapConnection(c).isClosed());
+      assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+      c.close();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldValidateIdleConnectionsInBackground() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumIdleConnections(3);
+      ds.setPoolMinimumIdleConnections(2);
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("THIS IS NOT SQL");
+      ds.setPoolMaintenanceInterval(20);
+      // the invalid ping query is not executed on checkout when the housekeeping task is enabled
+      Connection c = ds.getConnection();
+      Connection realConnection = PooledDataSource.unwrapConnection(c);
+      c.close();
+      realConnection.close();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (ds.getPoolState().getBadConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertEquals(1, ds.getPoolState().getBadConnectionCount());
+      while (ds.getPoolState().getIdleConnectionCount() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldTimeOutAfterConnectionTimeout() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolTimeToWait(50);
+      ds.setPoolConnectionTimeout(200);
+      Connection c = ds.getConnection();
+      long start = System.currentTimeMillis();
+      SQLException e = assertThrows(SQLException.class, ds::getConnection);
+      assertTrue(e.getMessage().contains("Timed out"));
+      assertTrue(System.currentTimeMillis() - start >= 200);
+      assertEquals(1, ds.getPoolState().getTimedOutRequestCount());
+      assertEquals(0, ds.getPoolState().getWaitingThreadCount());
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldHandOffReturnedConnectionsInArrivalOrder() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolConnectionTimeout(10000);
+      Connection c = ds.getConnection();
+      List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        int id = i;
+        futures.add(executor.submit(() -> {
+          try (Connection connection = ds.getConnection()) {
+            order.add(id);
+          }
+          return null;
+        }));
+        while (ds.getPoolState().getWaitingThreadCount() < i + 1) {
+          Thread.sleep(5);
+        }
+      }
+      c.close();
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+      assertEquals(Arrays.asList(0, 1, 2), order);
+      assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldPassOnWakeUpWhenCreatingConnectionFails() throws Exception {
+    FlakyDataSource flaky = new FlakyDataSource(Resources.getResourceAsProperties(JPETSTORE_PROPERTIES));
+    PooledDataSource ds = new PooledDataSource(flaky);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolConnectionTimeout(10000);
+      Connection c = ds.getConnection();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        futures.add(executor.submit(() -> {
+          try (Connection connection = ds.getConnection()) {
+            return null;
+          }
+        }));
+        while (ds.getPoolState().getWaitingThreadCount() < i + 1) {
+          Thread.sleep(5);
+        }
+      }
+      // returning a broken connection frees the slot and wakes the first waiter, whose creation fails
+      flaky.creationFailures.set(1);
+      PooledDataSource.unwrapConnection(c).close();
+      c.close();
+      ExecutionException e = assertThrows(ExecutionException.class, () -> futures.get(0).get(5, TimeUnit.SECONDS));
+      assertEquals("Simulated creation failure", e.getCause().getMessage());
+      futures.get(1).get(5, TimeUnit.SECONDS);
+      assertEquals(0, ds.getPoolState().getWaitingThreadCount());
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRestoreInterruptWhenInterruptedWhileWaiting() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolConnectionTimeout(10000);
+      Connection c = ds.getConnection();
+      AtomicReference<SQLException> failure = new AtomicReference<>();
+      AtomicBoolean interrupted = new AtomicBoolean();
+      Thread waiter = new Thread(() -> {
+        try {
+          ds.getConnection().close();
+        } catch (SQLException e) {
+          failure.set(e);
+          interrupted.set(Thread.currentThread().isInterrupted());
+        }
+      });
+      waiter.start();
+      while (ds.getPoolState().getWaitingThreadCount() < 1) {
+        Thread.sleep(5);
+      }
+      waiter.interrupt();
+      waiter.join(5000);
+      assertNotNull(failure.get());
+      assertTrue(failure.get().getMessage().contains("Interrupted"));
+      assertTrue(interrupted.get());
+      assertEquals(0, ds.getPoolState().getWaitingThreadCount());
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldReleaseSlotWhenHandedOffConnectionCannotBeRolledBack() throws Exception {
+    FlakyDataSource flaky = new FlakyDataSource(Resources.getResourceAsProperties(JPETSTORE_PROPERTIES));
+    PooledDataSource ds = new PooledDataSource(flaky);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolConnectionTimeout(10000);
+      Connection c = ds.getConnection();
+      c.setAutoCommit(false);
+      Future<?> future = executor.submit(() -> {
+        try (Connection connection = ds.getConnection()) {
+          return null;
+        }
+      });
+      while (ds.getPoolState().getWaitingThreadCount() < 1) {
+        Thread.sleep(5);
+      }
+      // the rollback on return succeeds, the one on hand off fails
+      flaky.failingRollback = flaky.rollbacks.get() + 2;
+      c.close();
+      ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+      assertEquals("Simulated rollback failure", e.getCause().getMessage());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      try (Connection again = ds.getConnection()) {
+        assertFalse(again.isClosed());
+      }
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldReportLeakedConnectionsInsteadOfClaimingThem() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumCheckoutTime(10);
+      ds.setPoolLeakDetectionThreshold(50);
+      ds.setPoolConnectionTimeout(200);
+      Connection c = ds.getConnection();
+      Thread.sleep(100);
+      assertThrows(SQLException.class, ds::getConnection);
+      assertEquals(1, ds.getPoolState().getLeakedConnectionCount());
+      assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
+      // the leaked connection is still usable by its owner
+      assertFalse(c.isClosed());
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldPublishMetricsThroughJmx() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolJmxName("jpetstore");
+      Connection c = ds.getConnection();
+      PoolMetrics metrics = ds.getPoolMetrics();
+      assertEquals(1, metrics.getActiveConnections());
+      assertEquals(1, metrics.getCreatedConnections());
+      c.close();
+      assertEquals(0, metrics.getActiveConnections());
+      assertEquals(1, metrics.getIdleConnections());
+      assertEquals(1, metrics.getAcquisitionCount());
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("org.apache.ibatis.datasource:type=PooledDataSource,name=\"jpetstore\"");
+      assertEquals(1, server.getAttribute(name, "IdleConnections"));
+      ds.setPoolJmxName(null);
+      assertFalse(server.isRegistered(name));
+    } finally {
+      ds.setPoolJmxName(null);
+      ds.forceCloseAll();
+    }
+  }
+
   @Disabled("See the comments")
   @Test
   void shouldReconnectWhenServerKilledLeakedConnection() throws Exception {
@@ -144,4 +468,34 @@ class PooledDataSourceTest extends BaseDataTest {
       }
     }
   }
+
+  private static class FlakyDataSource extends UnpooledDataSource {
+    private final AtomicInteger creationFailures = new AtomicInteger();
+    private final AtomicInteger rollbacks = new AtomicInteger();
+    private volatile int failingRollback = -1;
+
+    FlakyDataSource(Properties properties) {
+      super(properties.getProperty("driver"), properties.getProperty("url"), properties.getProperty("username"),
+          properties.getProperty("password"));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      if (creationFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+        throw new SQLException("Simulated creation failure");
+      }
+      Connection connection = super.getConnection();
+      return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+          (proxy, method, args) -> {
+            if ("rollback".equals(method.getName()) && rollbacks.incrementAndGet() == failingRollback) {
+              throw new SQLException("Simulated rollback failure");
+            }
+            try {
+              return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          });
+    }
+  }
 }
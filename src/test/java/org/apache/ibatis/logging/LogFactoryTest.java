@@ -16,10 +16,12 @@
 package org.apache.ibatis.logging;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.Reader;
 
 import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.async.AsyncLogImpl;
 import org.apache.ibatis.logging.commons.JakartaCommonsLoggingImpl;
 import org.apache.ibatis.logging.jdk14.Jdk14LoggingImpl;
 import org.apache.ibatis.logging.log4j.Log4jImpl;
@@ -88,6 +90,27 @@ class LogFactoryTest {
     assertEquals(log.getClass().getName(), NoLoggingImpl.class.getName());
   }
 
+  @Test
+  void shouldUseAsyncLogging() {
+    LogFactory.useAsyncLogging(StdOutImpl.class);
+    Log log = LogFactory.getLog(Object.class);
+    logSomething(log);
+    log.debug(() -> "Supplied message.");
+    log.debug("Parameterized {} message.", "debug");
+    assertEquals(log.getClass().getName(), AsyncLogImpl.class.getName());
+    assertEquals(StdOutImpl.class, AsyncLogImpl.getTargetImplementation());
+    assertTrue(log.isAsynchronous());
+    assertTrue(AsyncLogImpl.flush(5000));
+  }
+
+  @Test
+  void shouldFormatParameterizedMessages() {
+    assertEquals("a 1 b [2, 3] c", LogMessage.format("a {} b {} c", 1, new int[] {2, 3}));
+    assertEquals("a null b {}", LogMessage.format("a {} b {}", (Object) null));
+    assertEquals("no placeholder", LogMessage.format("no placeholder", 1));
+    assertEquals("plain", LogMessage.format("plain"));
+  }
+
   @Test
   void shouldReadLogImplFromSettings() throws Exception {
     try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/logging/mybatis-config.xml")) {
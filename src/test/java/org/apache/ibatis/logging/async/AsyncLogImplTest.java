@@ -0,0 +1,154 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.logging.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.logging.Log;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AsyncLogImplTest {
+
+  private static final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+  private static final Map<String, String> threads = new ConcurrentHashMap<>();
+
+  @BeforeEach
+  void setUp() {
+    AsyncLogImpl.setTargetImplementation(RecordingLog.class);
+    messages.clear();
+    threads.clear();
+  }
+
+  @AfterEach
+  void tearDown() {
+    AsyncLogImpl.flush(5000);
+  }
+
+  @Test
+  void shouldBuildMessagesOnWriterThread() {
+    Log log = new AsyncLogImpl("test");
+    log.debug(() -> {
+      threads.put("supplier", Thread.currentThread().getName());
+      return "supplied";
+    });
+    log.trace("{} + {} = {}", 1, 2, 3);
+    log.warn("warning");
+    assertTrue(AsyncLogImpl.flush(5000));
+
+    assertEquals("AsyncLog-writer", threads.get("supplier"));
+    assertEquals(3, messages.size());
+    assertEquals("DEBUG supplied", messages.get(0));
+    assertEquals("TRACE 1 + 2 = 3", messages.get(1));
+    assertEquals("WARN warning", messages.get(2));
+  }
+
+  @Test
+  void shouldKeepOrderOfEachThread() throws Exception {
+    Log log = new AsyncLogImpl("test");
+    int threadCount = 4;
+    int messageCount = 1000;
+    List<Thread> producers = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      String name = "producer" + t;
+      Thread producer = new Thread(() -> {
+        for (int i = 0; i < messageCount; i++) {
+          log.debug("{} {}", name, i);
+        }
+      });
+      producers.add(producer);
+      producer.start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    assertTrue(AsyncLogImpl.flush(10000));
+
+    assertEquals(threadCount * messageCount, messages.size());
+    int[] next = new int[threadCount];
+    for (String message : messages) {
+      String[] parts = message.split(" ");
+      int producer = Integer.parseInt(parts[1].substring("producer".length()));
+      assertEquals(next[producer]++, Integer.parseInt(parts[2]));
+    }
+  }
+
+  @Test
+  void shouldReportFailedMessagesAndKeepWriting() {
+    Log log = new AsyncLogImpl("test");
+    log.debug(() -> {
+      throw new IllegalStateException("broken supplier");
+    });
+    log.debug("after");
+    assertTrue(AsyncLogImpl.flush(5000));
+
+    assertEquals(2, messages.size());
+    assertTrue(messages.get(0).startsWith("ERROR Error writing asynchronous log message."));
+    assertTrue(messages.get(0).contains("broken supplier"));
+    assertEquals("DEBUG after", messages.get(1));
+  }
+
+  public static class RecordingLog implements Log {
+
+    public RecordingLog(String clazz) {
+      // Do Nothing
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+      return true;
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+      return true;
+    }
+
+    @Override
+    public void error(String s, Throwable e) {
+      messages.add("ERROR " + s);
+    }
+
+    @Override
+    public void error(String s) {
+      messages.add("ERROR " + s);
+    }
+
+    @Override
+    public void debug(String s) {
+      messages.add("DEBUG " + s);
+    }
+
+    @Override
+    public void trace(String s) {
+      messages.add("TRACE " + s);
+    }
+
+    @Override
+    public void warn(String s) {
+      messages.add("WARN " + s);
+    }
+  }
+
+}
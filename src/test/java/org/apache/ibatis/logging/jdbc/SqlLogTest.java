@@ -0,0 +1,151 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.logging.jdbc;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.StatementLogMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SqlLogTest {
+
+  @Mock
+  Log log;
+
+  @Test
+  void shouldPrintStatementParametersAndTotal() {
+    SqlLog sqlLog = new SqlLog(log, "select * from test\n  where id = ? and name = ?", true, null);
+    sqlLog.parameter(10);
+    sqlLog.parameter(null);
+    sqlLog.executing();
+    sqlLog.total(3);
+
+    InOrder inOrder = inOrder(log);
+    inOrder.verify(log).debug("==>  Preparing: select * from test where id = ? and name = ?");
+    inOrder.verify(log).debug("==> Parameters: 10(Integer), null");
+    inOrder.verify(log).debug("<==      Total: 3");
+  }
+
+  @Test
+  void shouldPrintPlainStatementAndUpdates() {
+    SqlLog sqlLog = new SqlLog(log, "update test set name = 'a'", false, null);
+    sqlLog.executing();
+    sqlLog.updates(2);
+
+    InOrder inOrder = inOrder(log);
+    inOrder.verify(log).debug("==>  Executing: update test set name = 'a'");
+    inOrder.verify(log).debug("<==    Updates: 2");
+  }
+
+  @Test
+  void shouldStartOverAfterEachExecution() {
+    SqlLog sqlLog = new SqlLog(log, "insert into test values (?)", true, null);
+    sqlLog.parameter("a");
+    sqlLog.executing();
+    sqlLog.parameter("b");
+    sqlLog.executing();
+
+    verify(log).debug("==> Parameters: a(String)");
+    verify(log).debug("==> Parameters: b(String)");
+  }
+
+  @Test
+  void shouldWriteAsynchronously() {
+    ExecutorService writer = SqlLog.newAsyncWriter();
+    try {
+      SqlLog sqlLog = new SqlLog(log, "select 1", true, writer);
+      sqlLog.executing();
+      sqlLog.total(1);
+
+      verify(log, timeout(5000).times(3)).debug(anyString());
+    } finally {
+      writer.shutdown();
+    }
+  }
+
+  @Test
+  void shouldFormatMutableParametersOnCallingThread() {
+    List<Runnable> pending = new ArrayList<>();
+    SqlLog sqlLog = new SqlLog(log, "select * from test where id = ? and tags = ?", true, pending::add);
+    List<String> tags = new ArrayList<>();
+    tags.add("a");
+    sqlLog.parameter(1);
+    sqlLog.parameter(tags);
+    sqlLog.executing();
+    tags.add("b");
+    pending.forEach(Runnable::run);
+
+    verify(log).debug("==> Parameters: 1(Integer), [a](ArrayList)");
+  }
+
+  @Test
+  void shouldTieAsyncWriterToConfiguration() {
+    Configuration configuration = new Configuration();
+    Assertions.assertNull(configuration.getStatementLogWriter());
+    configuration.setStatementLogAsync(true);
+    ExecutorService writer = (ExecutorService) configuration.getStatementLogWriter();
+    Assertions.assertNotNull(writer);
+    configuration.setStatementLogAsync(true);
+    Assertions.assertSame(writer, configuration.getStatementLogWriter());
+    configuration.setStatementLogAsync(false);
+    Assertions.assertNull(configuration.getStatementLogWriter());
+    Assertions.assertTrue(writer.isShutdown());
+
+    // a log opened before the writer was shut down still gets written
+    SqlLog sqlLog = new SqlLog(log, "select 1", false, writer);
+    sqlLog.executing();
+    verify(log).debug("==>  Executing: select 1");
+  }
+
+  @Test
+  void shouldNotOpenWhenProxyModeOrNotSampled() {
+    Configuration configuration = new Configuration();
+    MappedStatement ms = new MappedStatement.Builder(configuration, "test",
+        new StaticSqlSource(configuration, "select 1", new ArrayList<>()), SqlCommandType.SELECT).build();
+    Assertions.assertNull(SqlLog.open(ms, ms.getBoundSql(null)));
+
+    configuration.setStatementLogMode(StatementLogMode.DIRECT);
+    configuration.setStatementLogSampleRate(0D);
+    Assertions.assertNull(SqlLog.open(ms, ms.getBoundSql(null)));
+    verify(log, times(0)).debug(anyString());
+  }
+
+  @Test
+  void shouldRejectInvalidSampleRate() {
+    Configuration configuration = new Configuration();
+    Assertions.assertThrows(IllegalArgumentException.class, () -> configuration.setStatementLogSampleRate(1.5D));
+  }
+
+}
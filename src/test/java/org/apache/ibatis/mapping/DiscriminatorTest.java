@@ -0,0 +1,88 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.mapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class DiscriminatorTest {
+
+  private final Configuration configuration = new Configuration();
+
+  @Test
+  void shouldResolveResultMapsByRawValue() {
+    ResultMap car = addResultMap("car");
+    Discriminator discriminator = newDiscriminator("1", "car", "2", "truck");
+
+    assertSame(car, discriminator.getResultMapFor(1));
+    assertSame(car, discriminator.getResultMapFor(1));
+    assertSame(car, discriminator.getResultMapFor("1"));
+    assertNull(discriminator.getResultMapFor(3));
+    assertNull(discriminator.getResultMapFor(null));
+  }
+
+  @Test
+  void shouldNotCacheResultMapsRegisteredLater() {
+    Discriminator discriminator = newDiscriminator("2", "truck");
+    assertNull(discriminator.getResultMapFor(2));
+
+    ResultMap truck = addResultMap("truck");
+    assertSame(truck, discriminator.getResultMapFor(2));
+  }
+
+  @Test
+  void shouldNotCacheMutableNumbers() {
+    ResultMap car = addResultMap("car");
+    ResultMap truck = addResultMap("truck");
+    Discriminator discriminator = newDiscriminator("1", "car", "2", "truck");
+
+    AtomicInteger value = new AtomicInteger(1);
+    assertSame(car, discriminator.getResultMapFor(value));
+    value.set(2);
+    assertSame(truck, discriminator.getResultMapFor(value));
+    assertSame(truck, discriminator.getResultMapFor(new BigDecimal("2")));
+  }
+
+  @Test
+  void shouldPrependColumnPrefix() {
+    Discriminator discriminator = newDiscriminator("1", "car");
+    assertEquals("vehicle_type", discriminator.getColumn(null));
+    assertEquals("V_vehicle_type", discriminator.getColumn("V_"));
+  }
+
+  private ResultMap addResultMap(String id) {
+    ResultMap resultMap = new ResultMap.Builder(configuration, id, HashMap.class, Collections.emptyList()).build();
+    configuration.addResultMap(resultMap);
+    return resultMap;
+  }
+
+  private Discriminator newDiscriminator(String... cases) {
+    Map<String, String> discriminatorMap = new HashMap<>();
+    for (int i = 0; i < cases.length; i += 2) {
+      discriminatorMap.put(cases[i], cases[i + 1]);
+    }
+    ResultMapping resultMapping = new ResultMapping.Builder(configuration, null, "vehicle_type", Integer.class).build();
+    return new Discriminator.Builder(configuration, resultMapping, discriminatorMap).build();
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.mapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class ResultMapTest {
+
+  private final Configuration configuration = new Configuration();
+
+  @Test
+  void shouldPrecomputeRowKeyColumns() {
+    ResultMapping id = new ResultMapping.Builder(configuration, "id", "id", Integer.class)
+        .flags(Collections.singletonList(ResultFlag.ID)).build();
+    ResultMapping name = new ResultMapping.Builder(configuration, "name", "name", String.class).build();
+    ResultMap resultMap = new ResultMap.Builder(configuration, "user", HashMap.class, Arrays.asList(id, name)).build();
+
+    assertEquals(Collections.singletonList(id), resultMap.getRowKeyResultMappings());
+    ResultMap.RowKeyColumns columns = resultMap.getRowKeyColumns("U_");
+    assertEquals("U_id", columns.getColumn(0));
+    assertEquals("U_ID", columns.getUpperColumn(0));
+    assertSame(columns, resultMap.getRowKeyColumns("U_"));
+    assertEquals("id", resultMap.getRowKeyColumns(null).getColumn(0));
+  }
+
+  @Test
+  void shouldPrecomputeNestedResultMappings() {
+    ResultMap author = new ResultMap.Builder(configuration, "author", HashMap.class, Collections.emptyList()).build();
+    configuration.addResultMap(author);
+    ResultMapping nested = new ResultMapping.Builder(configuration, "author")
+        .nestedResultMapId("author")
+        .columnPrefix("author_")
+        .notNullColumns(new HashSet<>(Collections.singletonList("id")))
+        .build();
+    ResultMapping title = new ResultMapping.Builder(configuration, "title", "title", String.class).build();
+    ResultMap blog = new ResultMap.Builder(configuration, "blog", HashMap.class, Arrays.asList(title, nested)).build();
+
+    assertEquals(1, blog.getNestedResultMappings().size());
+    ResultMap.NestedResultMapping nestedMapping = blog.getNestedResultMappings().get(0);
+    assertSame(nested, nestedMapping.getResultMapping());
+    assertSame(author, nestedMapping.getResultMap());
+    assertEquals("AUTHOR_", nestedMapping.getColumnPrefix(null));
+    assertEquals("BLOG_AUTHOR_", nestedMapping.getColumnPrefix("BLOG_"));
+    assertArrayEquals(new String[] {"AUTHOR_id"}, nestedMapping.getNotNullColumns("AUTHOR_"));
+    assertArrayEquals(new String[] {"id"}, nestedMapping.getNotNullColumns(null));
+  }
+
+  @Test
+  void shouldReturnNullPrefixWhenNoneIsSpecified() {
+    ResultMapping nested = new ResultMapping.Builder(configuration, "author").nestedResultMapId("author").build();
+    ResultMap blog = new ResultMap.Builder(configuration, "blog", HashMap.class, Collections.singletonList(nested)).build();
+
+    ResultMap.NestedResultMapping nestedMapping = blog.getNestedResultMappings().get(0);
+    assertNull(nestedMapping.getColumnPrefix(null));
+    assertEquals(0, nestedMapping.getNotNullColumns(null).length);
+  }
+}
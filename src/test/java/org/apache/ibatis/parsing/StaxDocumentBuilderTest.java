@@ -0,0 +1,77 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
+import org.apache.ibatis.io.Resources;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+
+class StaxDocumentBuilderTest {
+
+  private static final String MAPPER = "org/apache/ibatis/builder/BlogMapper.xml";
+
+  @Test
+  void shouldBuildSameModelAsDomParser() throws Exception {
+    XPathParser dom;
+    try (InputStream inputStream = Resources.getResourceAsStream(MAPPER)) {
+      dom = new XPathParser(inputStream, true, null, new XMLMapperEntityResolver());
+    }
+    XPathParser stax;
+    try (InputStream inputStream = Resources.getResourceAsStream(MAPPER)) {
+      stax = new XPathParser(StaxDocumentBuilder.parse(inputStream), false, null, null);
+    }
+    assertEquals(dom.evalNode("/mapper").toString(), stax.evalNode("/mapper").toString());
+    assertEquals(dom.evalNodes("/mapper/select").size(), stax.evalNodes("/mapper/select").size());
+  }
+
+  @Test
+  void shouldKeepCdataAndSkipComments() {
+    String xml = "<mapper><!-- comment --><select id=\"a\">select * from t where a &lt; 1 <![CDATA[and b > 2]]></select></mapper>";
+    XPathParser parser = new XPathParser(StaxDocumentBuilder.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
+    XNode select = parser.evalNode("/mapper/select");
+    assertEquals("a", select.getStringAttribute("id"));
+    Node first = select.getNode().getFirstChild();
+    assertEquals(Node.TEXT_NODE, first.getNodeType());
+    assertEquals("select * from t where a < 1 ", first.getNodeValue());
+    assertEquals(Node.CDATA_SECTION_NODE, first.getNextSibling().getNodeType());
+    assertEquals(1, parser.evalNode("/mapper").getNode().getChildNodes().getLength());
+  }
+
+  @Test
+  void shouldResolveSimplePathsLikeXPath() throws Exception {
+    XPathParser parser;
+    try (InputStream inputStream = Resources.getResourceAsStream(MAPPER)) {
+      parser = new XPathParser(inputStream, false, null, new XMLMapperEntityResolver());
+    }
+    XNode mapper = parser.evalNode("/mapper");
+    List<XNode> statements = mapper.evalNodes("select|insert|update|delete");
+    List<XNode> expected = mapper.evalNodes("*[self::select or self::insert or self::update or self::delete]");
+    assertEquals(expected.size(), statements.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertSame(expected.get(i).getNode(), statements.get(i).getNode());
+    }
+    assertSame(mapper.evalNode("/mapper/resultMap[1]").getNode(), mapper.evalNode("/mapper/resultMap").getNode());
+    assertNull(mapper.evalNode("cache-ref"));
+  }
+}
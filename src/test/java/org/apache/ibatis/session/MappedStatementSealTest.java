@@ -0,0 +1,251 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ibatis.builder.CacheRefResolver;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.junit.jupiter.api.Test;
+
+class MappedStatementSealTest {
+
+  @Test
+  void shouldSealWhenSessionFactoryIsBuilt() {
+    final Configuration config = new Configuration();
+    final MappedStatement ms = newStatement(config, "blog.selectBlog");
+    config.addMappedStatement(ms);
+
+    new SqlSessionFactoryBuilder().build(config);
+
+    assertTrue(config.isMappedStatementsSealed());
+    assertSame(ms, config.getMappedStatement("blog.selectBlog"));
+    assertSame(ms, config.getMappedStatement("selectBlog"));
+    assertTrue(config.hasStatement("selectBlog"));
+    assertThrows(IllegalArgumentException.class, () -> config.getMappedStatement("blog.missing"));
+  }
+
+  @Test
+  void shouldResealWhenNewStatementIsAdded() {
+    final Configuration config = new Configuration();
+    config.addMappedStatement(newStatement(config, "blog.selectBlog"));
+    assertTrue(config.sealMappedStatements());
+
+    final MappedStatement added = newStatement(config, "author.selectAuthor");
+    config.addMappedStatement(added);
+    assertSame(added, config.getMappedStatement("author.selectAuthor"));
+    assertTrue(config.isMappedStatementsSealed());
+    assertSame(added, config.sealedMappings.mappedStatements.get("author.selectAuthor"));
+  }
+
+  @Test
+  void shouldResealOnceAfterRegistration() {
+    final Configuration config = new Configuration();
+    config.addMappedStatement(newStatement(config, "blog.selectBlog"));
+    assertTrue(config.sealMappedStatements());
+    final Configuration.SealedMappings sealed = config.sealedMappings;
+
+    config.registerMappings(() -> {
+      config.addMappedStatement(newStatement(config, "author.selectAuthor"));
+      config.addMappedStatement(newStatement(config, "author.selectAuthors"));
+      // lookups during the registration still read the previous snapshot
+      assertSame(sealed, config.sealedMappings);
+    });
+
+    // the snapshot is copied once, by the next lookup
+    assertSame(sealed, config.sealedMappings);
+    assertTrue(config.hasStatement("author.selectAuthors"));
+    assertNotSame(sealed, config.sealedMappings);
+    assertTrue(config.sealedMappings.mappedStatements.containsKey("author.selectAuthors"));
+  }
+
+  @Test
+  void shouldResealOnceForManySeparateRegistrations() {
+    final Configuration config = new Configuration();
+    config.addMappedStatement(newStatement(config, "blog.selectBlog"));
+    assertTrue(config.sealMappedStatements());
+    final Configuration.SealedMappings sealed = config.sealedMappings;
+
+    for (int i = 0; i < 100; i++) {
+      config.addMappedStatement(newStatement(config, "author.select" + i));
+      config.addResultMap(newResultMap(config, "author.map" + i));
+    }
+    assertSame(sealed, config.sealedMappings);
+
+    assertTrue(config.hasStatement("author.select99"));
+    final Configuration.SealedMappings resealed = config.sealedMappings;
+    assertNotSame(sealed, resealed);
+    assertTrue(config.hasResultMap("author.map99"));
+    assertSame(resealed, config.sealedMappings);
+  }
+
+  @Test
+  void shouldAnswerMissesFromSnapshotWithoutLocking() throws Exception {
+    final Configuration config = new Configuration();
+    config.addMappedStatement(newStatement(config, "blog.selectBlog"));
+    config.addResultMap(newResultMap(config, "blog.blogMap"));
+    config.addCache(new PerpetualCache("blog"));
+    assertTrue(config.sealMappedStatements());
+
+    final ExecutorService otherThread = Executors.newSingleThreadExecutor();
+    try {
+      synchronized (config.registryLock) {
+        assertFalse(get(otherThread.submit(() -> config.hasStatement("blog.missing"))));
+        assertFalse(get(otherThread.submit(() -> config.hasResultMap("blog.missing"))));
+        assertFalse(get(otherThread.submit(() -> config.hasCache("author"))));
+        assertTrue(get(otherThread.submit(() -> failureOf(() -> config.getResultMap("blog.missing"))))
+            .contains("does not contain value for blog.missing"));
+        assertTrue(get(otherThread.submit(() -> failureOf(() -> config.getCache("author"))))
+            .contains("does not contain value for author"));
+        assertTrue(get(otherThread.submit(() -> failureOf(() -> config.getMappedStatement("blog.missing"))))
+            .contains("does not contain value for blog.missing"));
+      }
+    } finally {
+      otherThread.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldLookUpWhileStatementsAreAdded() throws Exception {
+    final Configuration config = new Configuration();
+    config.addMappedStatement(newStatement(config, "blog.selectBlog"));
+    assertTrue(config.sealMappedStatements());
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread reader = new Thread(() -> {
+      try {
+        while (running.get()) {
+          assertNotNull(config.getMappedStatement("blog.selectBlog"));
+          config.hasStatement("author.select" + ThreadLocalRandom.current().nextInt(500));
+        }
+      } catch (Throwable t) {
+        failure.set(t);
+      }
+    });
+    reader.start();
+    try {
+      for (int i = 0; i < 500; i++) {
+        config.addMappedStatement(newStatement(config, "author.select" + i));
+      }
+    } finally {
+      running.set(false);
+      reader.join();
+    }
+    assertNull(failure.get());
+    assertTrue(config.isMappedStatementsSealed());
+    assertNotNull(config.getMappedStatement("author.select499"));
+  }
+
+  @Test
+  void shouldServePreviousMappingsWhileReplacing() throws Exception {
+    final Configuration config = new Configuration();
+    final MappedStatement oldStatement = newStatement(config, "blog.selectBlog");
+    final ResultMap oldResultMap = newResultMap(config, "blog.blogMap");
+    final Cache oldCache = new PerpetualCache("blog");
+    config.addMappedStatement(oldStatement);
+    config.addResultMap(oldResultMap);
+    config.addCache(oldCache);
+    assertTrue(config.sealMappedStatements());
+
+    final MappedStatement newStatement = newStatement(config, "blog.selectBlog");
+    final ResultMap newResultMap = newResultMap(config, "blog.blogMap");
+    final Cache newCache = new PerpetualCache("blog");
+    final ExecutorService otherThread = Executors.newSingleThreadExecutor();
+    try {
+      config.replaceMappers(() -> {
+        config.removeNamespace("blog");
+        config.addResultMap(newResultMap);
+        config.addCache(newCache);
+        config.addMappedStatement(newStatement);
+        // other threads keep reading the previous mappings until the replacement is published
+        assertSame(oldStatement, get(otherThread.submit(() -> config.getMappedStatement("blog.selectBlog"))));
+        assertSame(oldResultMap, get(otherThread.submit(() -> config.getResultMap("blog.blogMap"))));
+        assertSame(oldCache, get(otherThread.submit(() -> config.getCache("blog"))));
+      });
+      assertSame(newStatement, get(otherThread.submit(() -> config.getMappedStatement("blog.selectBlog"))));
+      assertSame(newResultMap, get(otherThread.submit(() -> config.getResultMap("blog.blogMap"))));
+      assertSame(newCache, get(otherThread.submit(() -> config.getCache("blog"))));
+    } finally {
+      otherThread.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldReportAmbiguousShortNamesFromSnapshot() {
+    final Configuration config = new Configuration();
+    config.addMappedStatement(newStatement(config, "blog.select"));
+    config.addMappedStatement(newStatement(config, "author.select"));
+    assertTrue(config.sealMappedStatements());
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> config.getMappedStatement("select"));
+    assertTrue(e.getMessage().contains("ambiguous"));
+    assertNotNull(config.getMappedStatement("author.select"));
+  }
+
+  @Test
+  void shouldNotSealWithIncompleteElements() {
+    final Configuration config = new Configuration();
+    config.addMappedStatement(newStatement(config, "blog.selectBlog"));
+    MapperBuilderAssistant assistant = new MapperBuilderAssistant(config, "blog.xml");
+    assistant.setCurrentNamespace("blog");
+    config.addIncompleteCacheRef(new CacheRefResolver(assistant, "missing"));
+
+    assertFalse(config.sealMappedStatements());
+    assertFalse(config.isMappedStatementsSealed());
+  }
+
+  private static String failureOf(Runnable lookup) {
+    try {
+      lookup.run();
+      return null;
+    } catch (IllegalArgumentException e) {
+      return e.getMessage();
+    }
+  }
+
+  private static <T> T get(Future<T> future) {
+    try {
+      return future.get(5, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static ResultMap newResultMap(Configuration config, String id) {
+    return new ResultMap.Builder(config, id, HashMap.class, new ArrayList<>()).build();
+  }
+
+  private static MappedStatement newStatement(Configuration config, String id) {
+    return new MappedStatement.Builder(config, id, new StaticSqlSource(config, "select 1"), SqlCommandType.SELECT).build();
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMap;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.junit.jupiter.api.Test;
+
+class ReflectorWarmUpTest {
+
+  @Test
+  void shouldWarmUpParameterAndResultTypes() {
+    final Set<Class<?>> warmedUp = ConcurrentHashMap.newKeySet();
+    final Configuration config = new Configuration();
+    config.setReflectorFactory(new DefaultReflectorFactory() {
+      @Override
+      public Reflector findForClass(Class<?> type) {
+        warmedUp.add(type);
+        return super.findForClass(type);
+      }
+    });
+    config.setReflectorWarmUpEnabled(true);
+
+    final ResultMap resultMap = new ResultMap.Builder(config, "blogMap", Blog.class, new ArrayList<>()).build();
+    config.addResultMap(resultMap);
+    final ResultMap mapResultMap = new ResultMap.Builder(config, "mapMap", HashMap.class, new ArrayList<>()).build();
+    config.addResultMap(mapResultMap);
+    final ParameterMap parameterMap = new ParameterMap.Builder(config, "authorParam", Author.class, new ArrayList<>()).build();
+    config.addMappedStatement(new MappedStatement.Builder(config, "selectBlog",
+        new StaticSqlSource(config, "select * from blog where author_id = ?"), SqlCommandType.SELECT)
+        .parameterMap(parameterMap).resultMaps(Collections.singletonList(resultMap)).build());
+
+    new SqlSessionFactoryBuilder().build(config);
+
+    assertTrue(warmedUp.contains(Blog.class));
+    assertTrue(warmedUp.contains(Author.class));
+    assertFalse(warmedUp.contains(HashMap.class));
+  }
+
+  @Test
+  void shouldNotWarmUpWhenDisabled() {
+    final Set<Class<?>> warmedUp = ConcurrentHashMap.newKeySet();
+    final Configuration config = new Configuration();
+    config.setReflectorFactory(new DefaultReflectorFactory() {
+      @Override
+      public Reflector findForClass(Class<?> type) {
+        warmedUp.add(type);
+        return super.findForClass(type);
+      }
+    });
+    config.addResultMap(new ResultMap.Builder(config, "blogMap", Blog.class, new ArrayList<>()).build());
+
+    new SqlSessionFactoryBuilder().build(config);
+
+    assertTrue(warmedUp.isEmpty());
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.columnar_result;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.result.ColumnarResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.ObjectTypeHandler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ColumnarResultTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // create an SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/columnar_result/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/columnar_result/CreateDB.sql");
+  }
+
+  @Test
+  void shouldReadResultIntoColumns() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      ColumnarResult result = mapper.getMeasurements();
+      assertEquals(3, result.getRowCount());
+      assertEquals(5, result.getColumnCount());
+
+      ColumnarResult.IntColumn ids = (ColumnarResult.IntColumn) result.getColumn("ID");
+      assertArrayEquals(new int[] { 1, 2, 3 }, ids.toArray());
+
+      ColumnarResult.LongColumn sensorIds = (ColumnarResult.LongColumn) result.getColumn("sensor_id");
+      assertArrayEquals(new long[] { 100L, 100L, 200L }, sensorIds.toArray());
+
+      ColumnarResult.DoubleColumn readings = (ColumnarResult.DoubleColumn) result.getColumn("READING");
+      assertEquals(1.5D, readings.getDouble(0));
+      assertEquals(2.5D, readings.getDouble(1));
+      assertTrue(readings.isNull(2));
+      assertNull(readings.getObject(2));
+
+      ColumnarResult.StringColumn units = (ColumnarResult.StringColumn) result.getColumn("UNIT");
+      assertEquals(Arrays.asList("C", "F"), units.getDictionary());
+      assertArrayEquals(new int[] { 0, 0, 1 }, units.toCodeArray());
+      assertEquals("F", units.getString(2));
+
+      ColumnarResult.Column takenOn = result.getColumn("TAKEN_ON");
+      assertTrue(takenOn instanceof ColumnarResult.ObjectColumn);
+      assertNotNull(takenOn.getObject(0));
+      assertTrue(takenOn.isNull(2));
+    }
+  }
+
+  @Test
+  void shouldPassColumnarResultToResultHandler() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<ColumnarResult> results = new ArrayList<>();
+      mapper.getMeasurementsWithHandler(context -> results.add(context.getResultObject()));
+      assertEquals(1, results.size());
+      assertEquals(3, results.get(0).getRowCount());
+      assertEquals(Arrays.asList("ID", "UNIT"), results.get(0).getColumnNames());
+    }
+  }
+
+  @Test
+  void shouldApplyRowBounds() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<ColumnarResult> results = sqlSession.selectList(
+          "org.apache.ibatis.submitted.columnar_result.Mapper.getMeasurements", null, new RowBounds(1, 1));
+      assertEquals(1, results.size());
+      ColumnarResult.IntColumn ids = (ColumnarResult.IntColumn) results.get(0).getColumn("ID");
+      assertArrayEquals(new int[] { 2 }, ids.toArray());
+    }
+  }
+
+  @Test
+  void shouldUseWiderColumnsForUnsignedIntegers() {
+    ObjectTypeHandler typeHandler = new ObjectTypeHandler();
+    assertTrue(ColumnarResult.createColumn(JdbcType.INTEGER, "java.lang.Integer", typeHandler) instanceof ColumnarResult.IntColumn);
+    // unsigned INT is reported as Long, unsigned BIGINT as BigInteger
+    assertTrue(ColumnarResult.createColumn(JdbcType.INTEGER, "java.lang.Long", typeHandler) instanceof ColumnarResult.LongColumn);
+    assertTrue(ColumnarResult.createColumn(JdbcType.BIGINT, "java.lang.Long", typeHandler) instanceof ColumnarResult.LongColumn);
+    assertTrue(ColumnarResult.createColumn(JdbcType.BIGINT, "java.math.BigInteger", typeHandler) instanceof ColumnarResult.ObjectColumn);
+  }
+
+  @Test
+  void shouldNotAddRowsAfterBuild() {
+    ColumnarResult.Builder builder = new ColumnarResult.Builder(Collections.emptyList(), Collections.emptyList());
+    ColumnarResult result = builder.build();
+    assertThrows(IllegalStateException.class, () -> builder.addRow(null));
+    assertEquals(0, result.getRowCount());
+  }
+
+}
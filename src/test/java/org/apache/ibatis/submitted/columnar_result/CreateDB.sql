@@ -0,0 +1,29 @@
+--
+--    Copyright 2009-2020 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table measurements if exists;
+
+create table measurements (
+  id int,
+  sensor_id bigint,
+  reading double,
+  unit varchar(10),
+  taken_on date
+);
+
+insert into measurements (id, sensor_id, reading, unit, taken_on) values(1, 100, 1.5, 'C', '2020-01-01');
+insert into measurements (id, sensor_id, reading, unit, taken_on) values(2, 100, 2.5, 'C', '2020-01-02');
+insert into measurements (id, sensor_id, reading, unit, taken_on) values(3, 200, null, 'F', null);
@@ -0,0 +1,95 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compact_map_results;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.result.RowMap;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class CompactMapResultsTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // create an SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/compact_map_results/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/compact_map_results/CreateDB.sql");
+  }
+
+  @Test
+  void shouldReturnReadOnlyRowMaps() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<Map<String, Object>> users = mapper.getUsers();
+      assertEquals(2, users.size());
+      Map<String, Object> user = users.get(0);
+      assertTrue(user instanceof RowMap);
+      assertEquals(3, user.size());
+      assertEquals(1, user.get("ID"));
+      assertEquals("User1", user.get("USER_NAME"));
+      assertEquals("one", user.get("NICKNAME"));
+      Map<String, Object> expected = new HashMap<>();
+      expected.put("ID", 1);
+      expected.put("USER_NAME", "User1");
+      expected.put("NICKNAME", "one");
+      assertEquals(expected, user);
+      assertThrows(UnsupportedOperationException.class, () -> user.put("ID", 2));
+    }
+  }
+
+  @Test
+  void shouldOmitNullValuesLikeHashMap() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Map<String, Object> user = mapper.getUser(2);
+      assertEquals(2, user.size());
+      assertFalse(user.containsKey("NICKNAME"));
+      assertFalse(user.keySet().contains("NICKNAME"));
+    }
+  }
+
+  @Test
+  void shouldHonorCallSettersOnNulls() {
+    sqlSessionFactory.getConfiguration().setCallSettersOnNulls(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Map<String, Object> user = mapper.getUser(2);
+      assertEquals(3, user.size());
+      assertTrue(user.containsKey("NICKNAME"));
+      assertNull(user.get("NICKNAME"));
+    } finally {
+      sqlSessionFactory.getConfiguration().setCallSettersOnNulls(false);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.execution_listener;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.listener.ExecutionListener;
+import org.apache.ibatis.executor.listener.ExecutionStatistics;
+import org.apache.ibatis.executor.listener.ExecutionStatistics.StatementStatistics;
+import org.apache.ibatis.executor.listener.SlowQueryLogger;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExecutionListenerTest {
+
+  private static final String GET_NAME = "org.apache.ibatis.submitted.execution_listener.Mapper.getName";
+  private static final String GET_NAMES = "org.apache.ibatis.submitted.execution_listener.Mapper.getNames";
+  private static final String UPDATE_NAME = "org.apache.ibatis.submitted.execution_listener.Mapper.updateName";
+  private static final String GET_FAILING = "org.apache.ibatis.submitted.execution_listener.Mapper.getFailing";
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/execution_listener/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/execution_listener/CreateDB.sql");
+  }
+
+  @Test
+  void shouldRegisterBuiltInListenersFromSettings() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    assertEquals(Integer.valueOf(60000), configuration.getSlowQueryThreshold());
+    assertNotNull(configuration.getExecutionStatistics());
+    assertTrue(configuration.getExecutionListeners().stream().anyMatch(l -> l instanceof SlowQueryLogger));
+    configuration.setSlowQueryThreshold(null);
+    configuration.setExecutionStatisticsEnabled(false);
+    assertFalse(configuration.hasExecutionListeners());
+  }
+
+  @Test
+  void shouldCollectStatisticsPerStatement() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(2, mapper.getNames().size());
+      assertEquals("User1", mapper.getName(1));
+      assertEquals("User1", mapper.getName(1));
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals("User1", mapper.getName(1));
+      assertEquals(1, mapper.updateName(2, "Renamed"));
+      sqlSession.commit();
+    }
+    ExecutionStatistics statistics = sqlSessionFactory.getConfiguration().getExecutionStatistics();
+
+    StatementStatistics getName = statistics.getStatistics(GET_NAME);
+    assertEquals(1, getName.getExecutionCount());
+    assertEquals(1, getName.getRows());
+    assertEquals(1, getName.getPrepareTime().getCount());
+    assertEquals(1, getName.getLocalCacheHits());
+    assertEquals(1, getName.getLocalCacheMisses());
+    assertEquals(1, getName.getSecondLevelCacheHits());
+    assertEquals(2, getName.getSecondLevelCacheMisses());
+
+    assertEquals(2, statistics.getStatistics(GET_NAMES).getRows());
+
+    StatementStatistics updateName = statistics.getStatistics(UPDATE_NAME);
+    assertEquals(1, updateName.getExecutionCount());
+    assertEquals(1, updateName.getRows());
+    assertEquals(1, updateName.getBuildTime().getCount());
+  }
+
+  @Test
+  void shouldNotifyCustomListener() {
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    ExecutionListener listener = new ExecutionListener() {
+      @Override
+      public void sqlBuilt(MappedStatement ms, long nanos) {
+        events.add("built");
+      }
+
+      @Override
+      public void statementPrepared(MappedStatement ms, long nanos) {
+        events.add("prepared");
+      }
+
+      @Override
+      public void statementExecuted(MappedStatement ms, BoundSql boundSql, long executeNanos, long mappingNanos, int rowCount) {
+        assertTrue(executeNanos >= 0 && mappingNanos >= 0);
+        events.add("executed " + boundSql.getSql().trim() + " " + rowCount);
+      }
+
+      @Override
+      public void cacheAccessed(MappedStatement ms, CacheLevel level, boolean hit) {
+        events.add(level + (hit ? " hit" : " miss"));
+      }
+    };
+    sqlSessionFactory.getConfiguration().addExecutionListener(listener);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(Mapper.class).getName(2);
+    } finally {
+      sqlSessionFactory.getConfiguration().removeExecutionListener(listener);
+    }
+    assertEquals(5, events.size());
+    assertEquals("built", events.get(0));
+    assertEquals("SECOND_LEVEL miss", events.get(1));
+    assertEquals("LOCAL miss", events.get(2));
+    assertEquals("prepared", events.get(3));
+    assertEquals("executed select name from users where id = ? 1", events.get(4));
+  }
+
+  @Test
+  void shouldReportFailedStatements() {
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    ExecutionListener listener = new ExecutionListener() {
+      @Override
+      public void statementExecuted(MappedStatement ms, BoundSql boundSql, long executeNanos, long mappingNanos, int rowCount) {
+        events.add("executed");
+      }
+
+      @Override
+      public void statementFailed(MappedStatement ms, BoundSql boundSql, long nanos, Throwable cause) {
+        assertTrue(nanos >= 0);
+        assertTrue(cause instanceof SQLException);
+        events.add("failed " + ms.getId());
+      }
+    };
+    sqlSessionFactory.getConfiguration().addExecutionListener(listener);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertThrows(PersistenceException.class, () -> mapper.getFailing(1));
+    } finally {
+      sqlSessionFactory.getConfiguration().removeExecutionListener(listener);
+    }
+    assertEquals(Collections.singletonList("failed " + GET_FAILING), events);
+
+    StatementStatistics getFailing = sqlSessionFactory.getConfiguration().getExecutionStatistics()
+        .getStatistics(GET_FAILING);
+    assertEquals(0, getFailing.getExecutionCount());
+    assertEquals(1, getFailing.getFailureCount());
+    assertEquals(1, getFailing.getFailureTime().getCount());
+  }
+
+}
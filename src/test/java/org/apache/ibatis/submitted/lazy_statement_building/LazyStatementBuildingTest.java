@@ -0,0 +1,144 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.lazy_statement_building;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class LazyStatementBuildingTest {
+
+  private static final String CONFIG = "org/apache/ibatis/submitted/lazy_statement_building/mybatis-config.xml";
+  private static final String NAMESPACE = "org.apache.ibatis.submitted.lazy_statement_building.Mapper";
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // create an SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader(CONFIG)) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/lazy_statement_building/CreateDB.sql");
+  }
+
+  @Test
+  void shouldBuildStatementOnFirstUse() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    assertTrue(configuration.hasStatement(NAMESPACE + ".getUser", false));
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Map<String, Object> user = sqlSession.selectOne(NAMESPACE + ".getUser", 1);
+      assertEquals("User1", user.get("name"));
+    }
+    assertNull(configuration.getLazyStatement(NAMESPACE + ".getUser"));
+    assertSame(configuration.getMappedStatement(NAMESPACE + ".getUser"), configuration.getMappedStatement("getUser"));
+  }
+
+  @Test
+  void shouldBuildSelectKeyWithStatement() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Map<String, Object> user = new HashMap<>();
+      user.put("name", "User2");
+      assertEquals(1, sqlSession.insert(NAMESPACE + ".insertUser", user));
+      assertEquals(2, user.get("id"));
+    }
+  }
+
+  @Test
+  void shouldReportBrokenStatementOnFirstUse() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    assertNotNull(configuration.getLazyStatement(NAMESPACE + ".getBrokenUser"));
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertThrows(PersistenceException.class, () -> sqlSession.selectOne(NAMESPACE + ".getBrokenUser", 1));
+    }
+    // the statement stays registered and fails again on the next access
+    assertNotNull(configuration.getLazyStatement(NAMESPACE + ".getBrokenUser"));
+  }
+
+  @Test
+  void shouldValidateAllStatementsWhenEnabled() throws Exception {
+    Configuration configuration;
+    try (Reader reader = Resources.getResourceAsReader(CONFIG)) {
+      configuration = new XMLConfigBuilder(reader).parse();
+    }
+    configuration.setLazyStatementValidationEnabled(true);
+    assertThrows(BuilderException.class, () -> new SqlSessionFactoryBuilder().build(configuration));
+  }
+
+  @Test
+  void shouldListLazyStatementNamesWithoutBuildingThem() throws Exception {
+    Configuration configuration;
+    try (Reader reader = Resources.getResourceAsReader(CONFIG)) {
+      configuration = new XMLConfigBuilder(reader).parse();
+    }
+    Collection<String> names = configuration.getMappedStatementNames();
+    assertTrue(names.contains(NAMESPACE + ".getUser"));
+    assertTrue(names.contains(NAMESPACE + ".getBrokenUser"));
+    assertNotNull(configuration.getLazyStatement(NAMESPACE + ".getUser"));
+    assertNotNull(configuration.getLazyStatement(NAMESPACE + ".getBrokenUser"));
+    // building every statement still reports the broken one
+    assertThrows(BuilderException.class, configuration::getMappedStatements);
+  }
+
+  @Test
+  void shouldNotBuildLazyStatementsWhenWarmingUpReflectors() throws Exception {
+    Configuration configuration;
+    try (Reader reader = Resources.getResourceAsReader(CONFIG)) {
+      configuration = new XMLConfigBuilder(reader).parse();
+    }
+    configuration.setReflectorWarmUpEnabled(true);
+    new SqlSessionFactoryBuilder().build(configuration);
+    assertNotNull(configuration.getLazyStatement(NAMESPACE + ".getBrokenUser"));
+  }
+
+  @Test
+  void shouldReportShortNameAmbiguousAfterLaterMapper() {
+    Configuration configuration = new Configuration();
+    configuration.setLazyStatementBuildingEnabled(true);
+    configuration.addMappedStatement(newStatement(configuration, "blog.select"));
+    assertNotNull(configuration.getMappedStatement("select"));
+
+    configuration.addMappedStatement(newStatement(configuration, "author.select"));
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> configuration.getMappedStatement("select"));
+    assertTrue(e.getMessage().contains("ambiguous"));
+    assertNotNull(configuration.getMappedStatement("blog.select"));
+  }
+
+  private static MappedStatement newStatement(Configuration configuration, String id) {
+    return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "select 1"), SqlCommandType.SELECT).build();
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.mapper_reload;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperReloader;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MapperReloadTest {
+
+  private static final String PACKAGE = "org/apache/ibatis/submitted/mapper_reload/";
+  private static final String USER_MAPPER = "org.apache.ibatis.submitted.mapper_reload.UserMapper";
+  private static final String REPORT_MAPPER = "org.apache.ibatis.submitted.mapper_reload.ReportMapper";
+
+  @TempDir
+  Path mapperDir;
+
+  private SqlSessionFactory sqlSessionFactory;
+  private XMLMapperReloader reloader;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    copyMapper("UserMapper.xml");
+    copyMapper("ReportMapper.xml");
+    Properties properties = new Properties();
+    String dir = mapperDir.toUri().toString();
+    properties.setProperty("mapperDir", dir.substring(0, dir.length() - 1));
+    try (Reader reader = Resources.getResourceAsReader(PACKAGE + "mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader, properties);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        PACKAGE + "CreateDB.sql");
+    reloader = new XMLMapperReloader(sqlSessionFactory.getConfiguration());
+  }
+
+  @Test
+  void shouldNotReloadUnchangedMappers() {
+    assertTrue(reloader.reloadChanged().isEmpty());
+  }
+
+  @Test
+  void shouldReloadChangedMapperAndItsDependents() throws Exception {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    MappedStatement oldStatement = configuration.getMappedStatement(USER_MAPPER + ".getName");
+    assertEquals("User1", selectOne(USER_MAPPER + ".getName"));
+
+    replaceInMapper("UserMapper.xml", "<sql id=\"nameColumn\">name</sql>", "<sql id=\"nameColumn\">upper(name)</sql>");
+    Set<String> reloaded = reloader.reloadChanged();
+
+    assertEquals(new HashSet<>(Arrays.asList(USER_MAPPER, REPORT_MAPPER)), reloaded);
+    MappedStatement newStatement = configuration.getMappedStatement(USER_MAPPER + ".getName");
+    assertNotSame(oldStatement, newStatement);
+    // the replaced cache starts empty and the include in the dependent mapper picks up the new fragment
+    assertEquals("USER1", selectOne(USER_MAPPER + ".getName"));
+    assertEquals("USER1", selectOne(REPORT_MAPPER + ".getReportName"));
+    assertSame(newStatement.getCache(), configuration.getMappedStatement(REPORT_MAPPER + ".getReportName").getCache());
+    assertNotSame(oldStatement.getCache(), newStatement.getCache());
+    // sessions holding the previous statement keep using it
+    assertFalse(oldStatement.getBoundSql(1).getSql().contains("upper"));
+    assertTrue(newStatement.getBoundSql(1).getSql().contains("upper"));
+    assertTrue(configuration.isMappedStatementsSealed());
+    assertTrue(reloader.reloadChanged().isEmpty());
+  }
+
+  @Test
+  void shouldReadMappersTheWayTheyWereRegistered() throws Exception {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    assertTrue(configuration.isUrlResource(configuration.getNamespaceResource(USER_MAPPER)));
+
+    Configuration classpathConfiguration = new Configuration();
+    String resource = PACKAGE + "UserMapper.xml";
+    try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+      new XMLMapperBuilder(inputStream, classpathConfiguration, resource, classpathConfiguration.getSqlFragments()).parse();
+    }
+    assertFalse(classpathConfiguration.isUrlResource(resource));
+    assertEquals(Collections.singleton(USER_MAPPER),
+        new XMLMapperReloader(classpathConfiguration).reload(Collections.singleton(resource)));
+  }
+
+  @Test
+  void shouldKeepPreviousMappersWhenReloadFails() throws Exception {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    MappedStatement oldStatement = configuration.getMappedStatement(USER_MAPPER + ".getName");
+
+    replaceInMapper("UserMapper.xml", "resultType=\"string\"", "resultMap=\"missingMap\"");
+    assertThrows(BuilderException.class, () -> reloader.reloadChanged());
+
+    assertSame(oldStatement, configuration.getMappedStatement(USER_MAPPER + ".getName"));
+    assertTrue(configuration.hasStatement(REPORT_MAPPER + ".getReportName"));
+    assertEquals("User1", selectOne(REPORT_MAPPER + ".getReportName"));
+  }
+
+  @Test
+  void shouldServeQueriesWhileReloading() throws Exception {
+    AtomicBoolean reloading = new AtomicBoolean(true);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread reader = new Thread(() -> {
+        try {
+          while (reloading.get()) {
+            try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+              Map<String, Object> user = sqlSession.selectOne(USER_MAPPER + ".getUser", 1);
+              assertTrue("User1".equalsIgnoreCase((String) user.get("name")));
+              assertTrue("User1".equalsIgnoreCase(sqlSession.selectOne(REPORT_MAPPER + ".getReportName", 1)));
+            }
+          }
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+      });
+      reader.start();
+      readers.add(reader);
+    }
+    try {
+      for (int i = 0; i < 20 && failure.get() == null; i++) {
+        if (i % 2 == 0) {
+          replaceInMapper("UserMapper.xml", "<sql id=\"nameColumn\">name</sql>", "<sql id=\"nameColumn\">upper(name)</sql>");
+        } else {
+          replaceInMapper("UserMapper.xml", "<sql id=\"nameColumn\">upper(name)</sql>", "<sql id=\"nameColumn\">name</sql>");
+        }
+        assertEquals(new HashSet<>(Arrays.asList(USER_MAPPER, REPORT_MAPPER)), reloader.reloadChanged());
+      }
+    } finally {
+      reloading.set(false);
+      for (Thread reader : readers) {
+        reader.join();
+      }
+    }
+    assertNull(failure.get(), () -> "Query failed during reload: " + failure.get());
+    assertEquals("User1", selectOne(USER_MAPPER + ".getName"));
+  }
+
+  private String selectOne(String statement) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.selectOne(statement, 1);
+    }
+  }
+
+  private void copyMapper(String name) throws Exception {
+    try (InputStream inputStream = Resources.getResourceAsStream(PACKAGE + name)) {
+      Files.copy(inputStream, mapperDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private void replaceInMapper(String name, String target, String replacement) throws Exception {
+    Path mapper = mapperDir.resolve(name);
+    String content = new String(Files.readAllBytes(mapper), StandardCharsets.UTF_8);
+    Files.write(mapper, content.replace(target, replacement).getBytes(StandardCharsets.UTF_8));
+  }
+}
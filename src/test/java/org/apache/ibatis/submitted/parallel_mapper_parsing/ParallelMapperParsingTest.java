@@ -0,0 +1,76 @@
+/**
+ *    Copyright 2009-2020 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.parallel_mapper_parsing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ParallelMapperParsingTest {
+
+  private static final String ORDER_MAPPER = "org.apache.ibatis.submitted.parallel_mapper_parsing.OrderMapper";
+  private static final String USER_MAPPER = "org.apache.ibatis.submitted.parallel_mapper_parsing.UserMapper";
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // create an SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_mapper_parsing/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/parallel_mapper_parsing/CreateDB.sql");
+  }
+
+  @Test
+  void shouldResolveForwardReferencesAfterAllMappersAreMerged() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    assertTrue(configuration.isParallelMapperParsingEnabled());
+    assertTrue(configuration.getIncompleteResultMaps().isEmpty());
+    assertTrue(configuration.getIncompleteCacheRefs().isEmpty());
+    assertTrue(configuration.getIncompleteStatements().isEmpty());
+    assertTrue(configuration.hasStatement(ORDER_MAPPER + ".getOrderUser", false));
+    assertSame(configuration.getCache(USER_MAPPER), configuration.getMappedStatement(ORDER_MAPPER + ".getOrders").getCache());
+  }
+
+  @Test
+  void shouldQueryWithResultMapsFromOtherMapper() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Map<String, Object>> orders = sqlSession.selectList(ORDER_MAPPER + ".getOrders");
+      assertEquals(2, orders.size());
+      assertEquals(100, orders.get(0).get("amount"));
+      @SuppressWarnings("unchecked")
+      Map<String, Object> user = (Map<String, Object>) orders.get(0).get("user");
+      assertEquals("User1", user.get("name"));
+      Map<String, Object> orderUser = sqlSession.selectOne(ORDER_MAPPER + ".getOrderUser", 11);
+      assertEquals("User2", orderUser.get("name"));
+    }
+  }
+}
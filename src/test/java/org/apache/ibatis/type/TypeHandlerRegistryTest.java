@@ -221,6 +221,47 @@ class TypeHandlerRegistryTest {
     assertTrue(typeHandlerRegistry.hasTypeHandler(Address.class));
   }
 
+  @Test
+  void shouldResolveRegisteredHandlerAfterCachedMiss() {
+    assertNull(typeHandlerRegistry.getTypeHandler(RichType.class, JdbcType.VARCHAR));
+    assertFalse(typeHandlerRegistry.hasTypeHandler(RichType.class, JdbcType.VARCHAR));
+    typeHandlerRegistry.register(RichType.class, StringTypeHandler.class);
+    TypeHandler<?> handler = typeHandlerRegistry.getTypeHandler(RichType.class, JdbcType.VARCHAR);
+    assertTrue(handler instanceof StringTypeHandler);
+    assertTrue(typeHandlerRegistry.hasTypeHandler(RichType.class));
+  }
+
+  @Test
+  void shouldReturnSameHandlerForRepeatedLookups() {
+    TypeHandler<Integer> handler = typeHandlerRegistry.getTypeHandler(Integer.class, JdbcType.VARCHAR);
+    assertSame(handler, typeHandlerRegistry.getTypeHandler(Integer.class, JdbcType.VARCHAR));
+    IntegerTypeHandler varcharHandler = new IntegerTypeHandler();
+    typeHandlerRegistry.register(Integer.class, JdbcType.VARCHAR, varcharHandler);
+    assertSame(varcharHandler, typeHandlerRegistry.getTypeHandler(Integer.class, JdbcType.VARCHAR));
+    assertSame(handler, typeHandlerRegistry.getTypeHandler(Integer.class, JdbcType.INTEGER));
+  }
+
+  @Test
+  void shouldNotKeepMissResolvedConcurrentlyWithRegistration() throws Exception {
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    try {
+      for (int iteration = 0; iteration < 500; iteration++) {
+        TypeHandlerRegistry typeHandlerRegistry = new TypeHandlerRegistry();
+        Future<?> lookups = executorService.submit(() -> {
+          for (int i = 0; i < 20; i++) {
+            typeHandlerRegistry.getTypeHandler(RichType.class, JdbcType.VARCHAR);
+          }
+        });
+        typeHandlerRegistry.register(RichType.class, StringTypeHandler.class);
+        lookups.get();
+        assertNotNull(typeHandlerRegistry.getTypeHandler(RichType.class, JdbcType.VARCHAR),
+            "stale miss is cached at round " + iteration);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
   enum TestEnum {
     ONE,
     TWO